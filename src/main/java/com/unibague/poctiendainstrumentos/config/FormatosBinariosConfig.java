@@ -0,0 +1,35 @@
+package com.unibague.poctiendainstrumentos.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Registra las codificaciones binarias CBOR ({@code application/cbor}) y Smile
+ * ({@code application/x-jackson-smile}) junto a JSON, para que los clientes las pidan con
+ * {@code Accept} o las envíen con {@code Content-Type}.
+ *
+ * <p>Los convertidores usan el mismo constructor de Jackson que la aplicación configura para JSON,
+ * de modo que conservan sus módulos y opciones (las fechas como texto ISO, por ejemplo). Como las
+ * anotaciones del modelo no dependen del formato, el discriminador {@code type} de los instrumentos y
+ * los valores de {@code @JsonValue} de los enumerados son los mismos que en JSON.</p>
+ *
+ * @author Jorge
+ */
+@Configuration
+public class FormatosBinariosConfig
+{
+    @Bean
+    public MappingJackson2CborHttpMessageConverter convertidorCbor(Jackson2ObjectMapperBuilder constructor) {
+        return new MappingJackson2CborHttpMessageConverter(constructor.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter convertidorSmile(Jackson2ObjectMapperBuilder constructor) {
+        return new MappingJackson2SmileHttpMessageConverter(constructor.factory(new SmileFactory()).build());
+    }
+}
@@ -0,0 +1,42 @@
+package com.unibague.poctiendainstrumentos.config;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Prepara la serialización de los instrumentos para la proyección de campos ({@code fields=}).
+ *
+ * <p>Asocia a {@link Instrumento} y sus subclases el filtro de Jackson {@link #FILTRO} mediante una
+ * clase mixin, sin anotar el modelo, y registra como filtro por defecto uno que escribe todas las
+ * propiedades. Así, las respuestas sin proyección no cambian; las que la piden reemplazan ese filtro
+ * por uno que sólo deja pasar los campos solicitados. Como el constructor de Jackson es compartido,
+ * la configuración aplica también a CBOR y Smile.</p>
+ *
+ * @author Jorge
+ */
+@Configuration
+public class ProyeccionConfig
+{
+    /**
+     * Identificador del filtro de propiedades de los instrumentos.
+     */
+    public static final String FILTRO = "proyeccionInstrumento";
+
+    /**
+     * Mixin que asigna el filtro {@link #FILTRO} a los instrumentos.
+     */
+    @JsonFilter(FILTRO)
+    private abstract static class InstrumentoFiltrado {}
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer proyeccionInstrumentos() {
+        return constructor -> constructor
+                .mixIn(Instrumento.class, InstrumentoFiltrado.class)
+                .filters(new SimpleFilterProvider().setDefaultFilter(SimpleBeanPropertyFilter.serializeAll()));
+    }
+}
@@ -0,0 +1,124 @@
+package com.unibague.poctiendainstrumentos.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unibague.poctiendainstrumentos.dto.ApiResponse;
+import com.unibague.poctiendainstrumentos.service.ReplicadorCatalogo;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Reenvía al líder las escrituras que llegan a un nodo seguidor.
+ *
+ * <p>Las peticiones que modifican el catálogo ({@code POST}, {@code PUT}, {@code DELETE} y
+ * {@code PATCH} bajo {@code /instrumentos} o {@code /reactivo/instrumentos}, salvo los filtros,
+ * que sólo consultan) se envían tal cual al líder, con sus credenciales y su {@code If-Match},
+ * y su respuesta se devuelve al cliente. Tras una escritura exitosa el seguidor
+ * se sincroniza de inmediato, para que el cliente vea su cambio en las lecturas siguientes.
+ * Las lecturas se atienden siempre en el nodo local. En el líder este filtro no hace nada.</p>
+ *
+ * @author Jorge
+ */
+@Component
+public class ReenvioEscriturasFilter extends OncePerRequestFilter
+{
+    /**
+     * Cabeceras de la petición que se copian al reenviarla.
+     */
+    private static final List<String> CABECERAS_PETICION =
+            List.of(HttpHeaders.AUTHORIZATION, HttpHeaders.CONTENT_TYPE, HttpHeaders.ACCEPT, HttpHeaders.IF_MATCH);
+
+    /**
+     * Cabeceras de la respuesta del líder que se copian al cliente.
+     */
+    private static final List<String> CABECERAS_RESPUESTA =
+            List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.ETAG, HttpHeaders.LOCATION);
+
+    @Autowired
+    private ReplicadorCatalogo replicadorCatalogo;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String metodo = request.getMethod();
+        String ruta = request.getRequestURI().substring(request.getContextPath().length());
+        return !replicadorCatalogo.esSeguidor()
+                || !(ruta.startsWith("/instrumentos") || ruta.startsWith("/reactivo/instrumentos"))
+                || ruta.endsWith("/filtrar")
+                || "GET".equals(metodo) || "HEAD".equals(metodo) || "OPTIONS".equals(metodo);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String ruta = request.getRequestURI().substring(request.getContextPath().length());
+        if (request.getQueryString() != null) {
+            ruta += "?" + request.getQueryString();
+        }
+        HttpRequest.Builder solicitud = HttpRequest.newBuilder(URI.create(replicadorCatalogo.getLiderUrl() + ruta))
+                .timeout(Duration.ofSeconds(10))
+                .method(request.getMethod(), HttpRequest.BodyPublishers.ofByteArray(request.getInputStream().readAllBytes()));
+        for (String cabecera : CABECERAS_PETICION) {
+            String valor = request.getHeader(cabecera);
+            if (valor != null) {
+                solicitud.header(cabecera, valor);
+            }
+        }
+
+        HttpResponse<byte[]> respuesta;
+        try {
+            respuesta = replicadorCatalogo.cliente().send(solicitud.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            escribirError(response, "No fue posible reenviar la escritura al líder: " + e.getMessage());
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            escribirError(response, "Se interrumpió el reenvío de la escritura al líder");
+            return;
+        }
+
+        if (respuesta.statusCode() < 300) {
+            try {
+                replicadorCatalogo.sincronizar();
+            } catch (IOException e) {
+                // La escritura ya se aplicó en el líder; el hilo de replicación la traerá después.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        response.setStatus(respuesta.statusCode());
+        for (String cabecera : CABECERAS_RESPUESTA) {
+            respuesta.headers().firstValue(cabecera).ifPresent(valor -> response.setHeader(cabecera, valor));
+        }
+        response.getOutputStream().write(respuesta.body());
+    }
+
+    /**
+     * Responde {@code 503} con el formato estándar de error cuando el líder no está disponible.
+     *
+     * @param response respuesta HTTP
+     * @param mensaje mensaje de error
+     * @throws IOException si falla la escritura de la respuesta
+     */
+    private void escribirError(HttpServletResponse response, String mensaje) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ApiResponse(true, mensaje));
+    }
+}
@@ -0,0 +1,394 @@
+package com.unibague.poctiendainstrumentos.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unibague.poctiendainstrumentos.dto.EstadisticasCacheDTO;
+import com.unibague.poctiendainstrumentos.dto.EventoCambioDTO;
+import com.unibague.poctiendainstrumentos.exception.CambiosNoDisponiblesException;
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+import com.unibague.poctiendainstrumentos.service.IServicioInstrumento;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caché acotada de los instrumentos más consultados por código, con su JSON ya serializado.
+ *
+ * <p>Es el nivel caliente de la consulta por código: el catálogo sigue siendo el nivel frío, que con
+ * el almacenamiento fuera del heap guarda cada instrumento codificado y lo decodifica en cada lectura.
+ * Un acierto devuelve el instrumento y los bytes de su respuesta sin leer el catálogo ni volver a
+ * serializar.</p>
+ *
+ * <p>La admisión sigue la idea de TinyLFU: todas las consultas se registran en un
+ * {@link ContadorFrecuencias}, y cuando la caché está llena un instrumento leído del catálogo sólo
+ * entra si se ha consultado más que el candidato a expulsar, que es el menos frecuente de una muestra
+ * de {@link #MUESTRA} entradas al azar. Así una consulta aislada a un instrumento poco popular no
+ * desplaza a uno que se consulta constantemente.</p>
+ *
+ * <p>Las entradas se invalidan leyendo los eventos de cambio del catálogo: antes de responder,
+ * si la versión del catálogo avanzó, se retiran los instrumentos mencionados en los eventos nuevos,
+ * de modo que quien modificó un instrumento nunca vuelve a leer la versión anterior. Si los eventos
+ * pendientes ya se sobrescribieron en el buffer, la caché se vacía. Un instrumento leído del catálogo
+ * no se admite si cambió mientras se leía.</p>
+ *
+ * <p>Los aciertos no toman ningún cerrojo; la admisión y la invalidación se serializan.</p>
+ *
+ * @author Jorge
+ */
+@Component
+public class CacheInstrumentos
+{
+    /**
+     * Cantidad de entradas que se comparan para elegir a cuál expulsar.
+     */
+    private static final int MUESTRA = 8;
+
+    /**
+     * Cantidad máxima de eventos leídos del buffer en cada consulta.
+     */
+    private static final int LOTE = 256;
+
+    /**
+     * Instrumento en la caché junto con su representación JSON.
+     */
+    public static final class Entrada
+    {
+        private final String clave;
+        private final int hash;
+        private final Instrumento instrumento;
+        private final long version;
+        private final byte[] json;
+
+        /**
+         * Posición en {@link #ranuras}; sólo se modifica con el cerrojo tomado.
+         */
+        private int ranura;
+
+        private Entrada(String clave, Instrumento instrumento, byte[] json) {
+            this.clave = clave;
+            this.hash = ContadorFrecuencias.hash(clave);
+            this.instrumento = instrumento;
+            this.version = instrumento.getVersion();
+            this.json = json;
+        }
+
+        /**
+         * @return instrumento tal como estaba al serializarse
+         */
+        public Instrumento instrumento() {
+            return instrumento;
+        }
+
+        /**
+         * @return versión del instrumento serializado
+         */
+        public long version() {
+            return version;
+        }
+
+        /**
+         * @return instrumento serializado en JSON; no debe modificarse
+         */
+        public byte[] json() {
+            return json;
+        }
+    }
+
+    private final IServicioInstrumento servicioInstrumento;
+
+    private final ObjectMapper mapeador;
+
+    /**
+     * Cantidad máxima de entradas; 0 deshabilita la caché.
+     */
+    private final int capacidad;
+
+    /**
+     * Entradas por código en minúsculas.
+     */
+    private final ConcurrentHashMap<String, Entrada> entradas = new ConcurrentHashMap<>();
+
+    /**
+     * Entradas en posiciones contiguas, para elegir muestras al azar.
+     */
+    private final Entrada[] ranuras;
+
+    /**
+     * Cantidad de posiciones ocupadas en {@link #ranuras}.
+     */
+    private int ocupadas;
+
+    private final ContadorFrecuencias frecuencias;
+
+    /**
+     * Cerrojo que serializa la admisión, la expulsión y la invalidación.
+     */
+    private final ReentrantLock cerrojo = new ReentrantLock();
+
+    /**
+     * Última secuencia del catálogo cuyos cambios ya se aplicaron a la caché.
+     */
+    private volatile long cursor;
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder promociones = new LongAdder();
+    private final LongAdder rechazos = new LongAdder();
+    private final LongAdder expulsiones = new LongAdder();
+    private final LongAdder invalidaciones = new LongAdder();
+
+    /**
+     * Crea la caché sobre el servicio del catálogo.
+     *
+     * @param servicioInstrumento catálogo del que se leen los instrumentos y sus cambios
+     * @param mapeador serializador JSON de las respuestas
+     * @param capacidad cantidad máxima de instrumentos en la caché; 0 la deshabilita
+     */
+    @Autowired
+    public CacheInstrumentos(IServicioInstrumento servicioInstrumento, ObjectMapper mapeador,
+                             @Value("${tienda.cache.capacidad:4096}") int capacidad) {
+        if (capacidad < 0) {
+            throw new IllegalArgumentException("La capacidad de la caché no puede ser negativa");
+        }
+        this.servicioInstrumento = servicioInstrumento;
+        this.mapeador = mapeador;
+        this.capacidad = capacidad;
+        this.ranuras = new Entrada[capacidad];
+        this.frecuencias = new ContadorFrecuencias(capacidad);
+        this.cursor = servicioInstrumento.versionCatalogo();
+    }
+
+    /**
+     * Obtiene un instrumento por código, desde la caché o desde el catálogo.
+     *
+     * @param codigo código del instrumento
+     * @return entrada con el instrumento y su JSON, o vacío si el instrumento no existe
+     */
+    public Optional<Entrada> obtener(String codigo) {
+        String clave = codigo.toLowerCase(Locale.ROOT);
+        if (capacidad == 0) {
+            return servicioInstrumento.buscarInstrumento(codigo).map(instrumento -> crear(clave, instrumento));
+        }
+        ponerAlDia();
+        Entrada entrada = entradas.get(clave);
+        frecuencias.registrar(entrada != null ? entrada.hash : ContadorFrecuencias.hash(clave));
+        if (entrada != null) {
+            aciertos.increment();
+            return Optional.of(entrada);
+        }
+        fallos.increment();
+        long version = cursor;
+        Optional<Instrumento> instrumento = servicioInstrumento.buscarInstrumento(codigo);
+        if (instrumento.isEmpty()) {
+            return Optional.empty();
+        }
+        entrada = crear(clave, instrumento.get());
+        admitir(entrada, version);
+        return Optional.of(entrada);
+    }
+
+    /**
+     * Devuelve las métricas acumuladas de la caché.
+     *
+     * @return métricas
+     */
+    public EstadisticasCacheDTO estadisticas() {
+        long totalAciertos = aciertos.sum();
+        long totalFallos = fallos.sum();
+        long consultas = totalAciertos + totalFallos;
+        return new EstadisticasCacheDTO(capacidad, entradas.size(), totalAciertos, totalFallos,
+                consultas == 0 ? 0 : (double) totalAciertos / consultas, promociones.sum(),
+                rechazos.sum(), expulsiones.sum(), invalidaciones.sum());
+    }
+
+    /**
+     * Serializa un instrumento leído del catálogo.
+     *
+     * @param clave código en minúsculas
+     * @param instrumento instrumento
+     * @return entrada nueva, todavía fuera de la caché
+     */
+    private Entrada crear(String clave, Instrumento instrumento) {
+        try {
+            return new Entrada(clave, instrumento, mapeador.writeValueAsBytes(instrumento));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Aplica los cambios pendientes del catálogo si su versión avanzó.
+     */
+    private void ponerAlDia() {
+        if (servicioInstrumento.versionCatalogo() != cursor) {
+            cerrojo.lock();
+            try {
+                aplicarCambios();
+            } finally {
+                cerrojo.unlock();
+            }
+        }
+    }
+
+    /**
+     * Retira las entradas de los instrumentos modificados desde {@link #cursor}. Requiere el cerrojo.
+     */
+    private void aplicarCambios() {
+        long actual = servicioInstrumento.versionCatalogo();
+        if (actual < cursor) {
+            vaciar(actual);
+            return;
+        }
+        try {
+            while (cursor < actual) {
+                List<EventoCambioDTO> eventos = servicioInstrumento.cambiosDesde(cursor, LOTE);
+                if (eventos.isEmpty()) {
+                    break;
+                }
+                for (EventoCambioDTO evento : eventos) {
+                    if (quitar(evento.getCodigo().toLowerCase(Locale.ROOT))) {
+                        invalidaciones.increment();
+                    }
+                }
+                cursor = eventos.getLast().getSecuencia();
+            }
+        } catch (CambiosNoDisponiblesException e) {
+            vaciar(actual);
+        }
+    }
+
+    /**
+     * Intenta admitir un instrumento leído del catálogo.
+     *
+     * @param entrada entrada nueva
+     * @param version valor de {@link #cursor} antes de leer el instrumento
+     */
+    private void admitir(Entrada entrada, long version) {
+        cerrojo.lock();
+        try {
+            aplicarCambios();
+            if (entradas.containsKey(entrada.clave) || cambioDesde(entrada.clave, version)) {
+                return;
+            }
+            if (ocupadas < capacidad) {
+                colocar(entrada, ocupadas++);
+            } else {
+                Entrada victima = elegirVictima();
+                if (frecuencias.frecuencia(entrada.hash) <= frecuencias.frecuencia(victima.hash)) {
+                    rechazos.increment();
+                    return;
+                }
+                entradas.remove(victima.clave);
+                expulsiones.increment();
+                colocar(entrada, victima.ranura);
+            }
+            promociones.increment();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Indica si un instrumento pudo cambiar entre una versión del catálogo y {@link #cursor}.
+     * Requiere el cerrojo.
+     *
+     * @param clave código en minúsculas
+     * @param version versión a partir de la cual se buscan cambios
+     * @return {@code true} si hay un evento del instrumento o si los eventos ya no están disponibles
+     */
+    private boolean cambioDesde(String clave, long version) {
+        if (version == cursor) {
+            return false;
+        }
+        if (cursor < version || cursor - version > LOTE) {
+            return true;
+        }
+        try {
+            for (EventoCambioDTO evento : servicioInstrumento.cambiosDesde(version, LOTE)) {
+                if (evento.getSecuencia() > cursor) {
+                    break;
+                }
+                if (evento.getCodigo().toLowerCase(Locale.ROOT).equals(clave)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (CambiosNoDisponiblesException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Elige, entre {@link #MUESTRA} entradas al azar, la de menor frecuencia estimada. Requiere el cerrojo.
+     *
+     * @return entrada a expulsar
+     */
+    private Entrada elegirVictima() {
+        ThreadLocalRandom azar = ThreadLocalRandom.current();
+        Entrada victima = ranuras[azar.nextInt(ocupadas)];
+        int menor = frecuencias.frecuencia(victima.hash);
+        for (int i = 1; i < MUESTRA && menor > 0; i++) {
+            Entrada candidata = ranuras[azar.nextInt(ocupadas)];
+            int frecuencia = frecuencias.frecuencia(candidata.hash);
+            if (frecuencia < menor) {
+                victima = candidata;
+                menor = frecuencia;
+            }
+        }
+        return victima;
+    }
+
+    /**
+     * Ubica una entrada en una posición y la publica para los lectores. Requiere el cerrojo.
+     *
+     * @param entrada entrada
+     * @param ranura posición en {@link #ranuras}
+     */
+    private void colocar(Entrada entrada, int ranura) {
+        ranuras[ranura] = entrada;
+        entrada.ranura = ranura;
+        entradas.put(entrada.clave, entrada);
+    }
+
+    /**
+     * Retira la entrada de un instrumento, si está en la caché, llenando su posición con la última.
+     * Requiere el cerrojo.
+     *
+     * @param clave código en minúsculas
+     * @return {@code true} si la entrada estaba en la caché
+     */
+    private boolean quitar(String clave) {
+        Entrada entrada = entradas.remove(clave);
+        if (entrada == null) {
+            return false;
+        }
+        Entrada ultima = ranuras[--ocupadas];
+        ranuras[entrada.ranura] = ultima;
+        ultima.ranura = entrada.ranura;
+        ranuras[ocupadas] = null;
+        return true;
+    }
+
+    /**
+     * Retira todas las entradas. Requiere el cerrojo.
+     *
+     * @param version versión del catálogo a partir de la cual se seguirán aplicando cambios
+     */
+    private void vaciar(long version) {
+        invalidaciones.add(ocupadas);
+        entradas.clear();
+        Arrays.fill(ranuras, 0, ocupadas, null);
+        ocupadas = 0;
+        cursor = version;
+    }
+}
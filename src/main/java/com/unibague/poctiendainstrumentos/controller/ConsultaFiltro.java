@@ -0,0 +1,268 @@
+package com.unibague.poctiendainstrumentos.controller;
+
+import com.unibague.poctiendainstrumentos.dto.FiltroInstrumentoDTO;
+import com.unibague.poctiendainstrumentos.model.enums.CampoOrden;
+import com.unibague.poctiendainstrumentos.model.enums.SensibilidadTeclado;
+import com.unibague.poctiendainstrumentos.model.enums.TipoGuitarra;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.util.UriUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Filtro de instrumentos recibido como parámetros de consulta, junto con su forma canónica.
+ *
+ * <p>La forma canónica es la cadena de consulta que resulta de ordenar los parámetros por nombre,
+ * escribir cada nombre como en {@link FiltroInstrumentoDTO} sin importar cómo lo escribió el cliente
+ * y normalizar los valores: el nombre y la marca en minúsculas (el filtro no distingue mayúsculas),
+ * los números sin ceros sobrantes, los enumerados con su valor JSON, {@code descendente},
+ * {@code difuso} y {@code facetas} sólo cuando son verdaderos, y los límites de precio y los
+ * campos de la proyección ordenados y sin repetir. Dos consultas equivalentes tienen así la misma
+ * forma canónica, que sirve como clave de caché.</p>
+ *
+ * @param filtro criterios de filtrado
+ * @param facetas indica si se pidieron las facetas
+ * @param fields campos de la proyección separados por comas, o {@code null} si no se pidió
+ * @param canonica cadena de consulta canónica, codificada para URL
+ * @author Jorge
+ */
+record ConsultaFiltro(FiltroInstrumentoDTO filtro, boolean facetas, String fields, String canonica)
+{
+    /**
+     * Nombres de los parámetros admitidos, por su versión en minúsculas.
+     */
+    private static final Map<String, String> PARAMETROS = List.of(
+                    "nombre", "marca", "difuso", "precioMin", "precioMax", "stockMin", "stockMax",
+                    "fechaIngresoDesde", "fechaIngresoHasta",
+                    "tipoGuitarra", "sensibilidad", "ordenarPor", "descendente", "limite",
+                    "limitesPrecio", "facetas", "fields").stream()
+            .collect(Collectors.toMap(nombre -> nombre.toLowerCase(Locale.ROOT), Function.identity()));
+
+    /**
+     * Interpreta los parámetros de una consulta.
+     *
+     * @param parametros parámetros de la consulta
+     * @return filtro y forma canónica de la consulta
+     * @throws IllegalArgumentException si un parámetro es desconocido, está repetido o tiene un valor inválido
+     */
+    static ConsultaFiltro desde(MultiValueMap<String, String> parametros) {
+        // Valores crudos por nombre canónico; los parámetros vacíos se ignoran.
+        Map<String, List<String>> valores = new TreeMap<>();
+        parametros.forEach((nombre, lista) -> {
+            String canonico = PARAMETROS.get(nombre.trim().toLowerCase(Locale.ROOT));
+            if (canonico == null) {
+                throw new IllegalArgumentException("Parámetro de filtro desconocido: " + nombre);
+            }
+            for (String valor : lista) {
+                if (valor != null && !valor.isBlank()) {
+                    valores.computeIfAbsent(canonico, clave -> new ArrayList<>()).add(valor.trim());
+                }
+            }
+        });
+
+        // Valores normalizados por nombre canónico, ordenados por nombre.
+        Map<String, String> normalizados = new TreeMap<>();
+        FiltroInstrumentoDTO.FiltroInstrumentoDTOBuilder filtro = FiltroInstrumentoDTO.builder();
+        boolean facetas = false;
+        String fields = null;
+        for (Map.Entry<String, List<String>> entrada : valores.entrySet()) {
+            String nombre = entrada.getKey();
+            List<String> lista = entrada.getValue();
+            switch (nombre) {
+                case "limitesPrecio" -> {
+                    TreeSet<Double> limites = new TreeSet<>();
+                    for (String valor : lista) {
+                        for (String parte : valor.split(",")) {
+                            if (!parte.isBlank()) {
+                                limites.add(decimal(nombre, parte.trim()));
+                            }
+                        }
+                    }
+                    filtro.limitesPrecio(new ArrayList<>(limites));
+                    normalizados.put(nombre, limites.stream().map(ConsultaFiltro::numero).collect(Collectors.joining(",")));
+                }
+                case "fields" -> {
+                    TreeSet<String> campos = new TreeSet<>();
+                    for (String valor : lista) {
+                        for (String parte : valor.split(",")) {
+                            if (!parte.isBlank()) {
+                                campos.add(parte.trim());
+                            }
+                        }
+                    }
+                    fields = String.join(",", campos);
+                    normalizados.put(nombre, fields);
+                }
+                default -> {
+                    if (lista.size() > 1) {
+                        throw new IllegalArgumentException("El parámetro " + nombre + " está repetido");
+                    }
+                    String valor = lista.getFirst();
+                    switch (nombre) {
+                        case "nombre" -> {
+                            valor = valor.toLowerCase(Locale.ROOT);
+                            filtro.nombre(valor);
+                        }
+                        case "marca" -> {
+                            valor = valor.toLowerCase(Locale.ROOT);
+                            filtro.marca(valor);
+                        }
+                        case "difuso" -> {
+                            // difuso=false equivale a omitir el parámetro.
+                            boolean difuso = booleano(nombre, valor);
+                            filtro.difuso(difuso ? true : null);
+                            valor = difuso ? "true" : null;
+                        }
+                        case "precioMin" -> {
+                            double precio = decimal(nombre, valor);
+                            filtro.precioMin(precio);
+                            valor = numero(precio);
+                        }
+                        case "precioMax" -> {
+                            double precio = decimal(nombre, valor);
+                            filtro.precioMax(precio);
+                            valor = numero(precio);
+                        }
+                        case "stockMin" -> {
+                            int stock = entero(nombre, valor);
+                            filtro.stockMin(stock);
+                            valor = String.valueOf(stock);
+                        }
+                        case "stockMax" -> {
+                            int stock = entero(nombre, valor);
+                            filtro.stockMax(stock);
+                            valor = String.valueOf(stock);
+                        }
+                        case "fechaIngresoDesde" -> {
+                            LocalDate fecha = fecha(nombre, valor);
+                            filtro.fechaIngresoDesde(fecha);
+                            valor = fecha.toString();
+                        }
+                        case "fechaIngresoHasta" -> {
+                            LocalDate fecha = fecha(nombre, valor);
+                            filtro.fechaIngresoHasta(fecha);
+                            valor = fecha.toString();
+                        }
+                        case "tipoGuitarra" -> {
+                            TipoGuitarra tipo = tipoGuitarra(valor);
+                            filtro.tipoGuitarra(tipo);
+                            valor = tipo.getValor();
+                        }
+                        case "sensibilidad" -> {
+                            SensibilidadTeclado sensibilidad = sensibilidad(valor);
+                            filtro.sensibilidad(sensibilidad);
+                            valor = sensibilidad.getValor();
+                        }
+                        case "ordenarPor" -> {
+                            CampoOrden campo = CampoOrden.desdeValor(valor);
+                            filtro.ordenarPor(campo);
+                            valor = campo.getValor();
+                        }
+                        case "descendente" -> {
+                            // descendente=false equivale a omitir el parámetro.
+                            boolean descendente = booleano(nombre, valor);
+                            filtro.descendente(descendente ? true : null);
+                            valor = descendente ? "true" : null;
+                        }
+                        case "limite" -> {
+                            int limite = entero(nombre, valor);
+                            filtro.limite(limite);
+                            valor = String.valueOf(limite);
+                        }
+                        case "facetas" -> {
+                            // facetas=false equivale a omitir el parámetro.
+                            facetas = booleano(nombre, valor);
+                            valor = facetas ? "true" : null;
+                        }
+                        default -> throw new IllegalStateException("Parámetro sin tratamiento: " + nombre);
+                    }
+                    if (valor != null) {
+                        normalizados.put(nombre, valor);
+                    }
+                }
+            }
+        }
+
+        String canonica = normalizados.entrySet().stream()
+                .map(entrada -> entrada.getKey() + "=" + UriUtils.encodeQueryParam(entrada.getValue(), StandardCharsets.UTF_8))
+                .collect(Collectors.joining("&"));
+        return new ConsultaFiltro(filtro.build(), facetas, fields, canonica);
+    }
+
+    private static double decimal(String nombre, String valor) {
+        try {
+            double numero = Double.parseDouble(valor);
+            if (Double.isFinite(numero)) {
+                return numero;
+            }
+        } catch (NumberFormatException e) {
+            // Se informa abajo.
+        }
+        throw new IllegalArgumentException("El parámetro " + nombre + " debe ser un número: " + valor);
+    }
+
+    private static int entero(String nombre, String valor) {
+        try {
+            return Integer.parseInt(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El parámetro " + nombre + " debe ser un entero: " + valor);
+        }
+    }
+
+    private static LocalDate fecha(String nombre, String valor) {
+        try {
+            return LocalDate.parse(valor);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("El parámetro " + nombre + " debe ser una fecha AAAA-MM-DD: " + valor);
+        }
+    }
+
+    private static boolean booleano(String nombre, String valor) {
+        if (!valor.equalsIgnoreCase("true") && !valor.equalsIgnoreCase("false")) {
+            throw new IllegalArgumentException("El parámetro " + nombre + " debe ser true o false");
+        }
+        return Boolean.parseBoolean(valor);
+    }
+
+    /**
+     * Escribe un número sin ceros sobrantes ni notación científica ({@code 1000.0} y {@code 1e3} dan {@code 1000}).
+     */
+    private static String numero(double valor) {
+        return BigDecimal.valueOf(valor).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Acepta el valor JSON del tipo ({@code Eléctrica}) o el nombre de la constante ({@code ELECTRICA}).
+     */
+    private static TipoGuitarra tipoGuitarra(String valor) {
+        for (TipoGuitarra tipo : TipoGuitarra.values()) {
+            if (tipo.name().equalsIgnoreCase(valor)) {
+                return tipo;
+            }
+        }
+        return TipoGuitarra.desdeValor(valor);
+    }
+
+    /**
+     * Acepta el valor JSON de la sensibilidad ({@code Básica}) o el nombre de la constante ({@code BASICA}).
+     */
+    private static SensibilidadTeclado sensibilidad(String valor) {
+        for (SensibilidadTeclado sensibilidad : SensibilidadTeclado.values()) {
+            if (sensibilidad.name().equalsIgnoreCase(valor)) {
+                return sensibilidad;
+            }
+        }
+        return SensibilidadTeclado.desdeValor(valor);
+    }
+}
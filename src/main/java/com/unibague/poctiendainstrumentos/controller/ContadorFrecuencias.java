@@ -0,0 +1,133 @@
+package com.unibague.poctiendainstrumentos.controller;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Estimador aproximado de la frecuencia con que se consulta cada clave (count-min sketch),
+ * usado por {@link CacheInstrumentos} para decidir qué instrumentos admite.
+ *
+ * <p>Guarda cuatro filas de contadores de un byte saturados en 15, como los contadores de cuatro
+ * bits de TinyLFU. Cada clave tiene un contador por fila y su frecuencia estimada es el menor de
+ * los cuatro; al registrarla sólo se incrementan los que valen ese mínimo, lo que reduce la
+ * sobreestimación cuando muchas claves comparten contadores. El tamaño no depende de la cantidad
+ * de claves distintas consultadas.</p>
+ *
+ * <p>Para que la popularidad antigua no pese para siempre, después de cada diez consultas por
+ * posición de la caché todos los contadores se reducen a la mitad. Los incrementos no toman
+ * cerrojos: si dos hilos incrementan a la vez el mismo contador puede perderse uno, lo que sólo
+ * resta precisión a una estimación que de por sí es aproximada.</p>
+ *
+ * @author Jorge
+ */
+final class ContadorFrecuencias
+{
+    /**
+     * Valor máximo de un contador.
+     */
+    private static final int MAXIMO = 15;
+
+    /**
+     * Multiplicadores impares que derivan el índice de cada fila a partir del hash de la clave.
+     */
+    private static final int[] SEMILLAS = {0x97cb3127, 0xb8b3e5c9, 0x6c8e9cf5, 0x2c1b3c6d};
+
+    /**
+     * Contadores de las cuatro filas, una a continuación de otra.
+     */
+    private final byte[] contadores;
+
+    /**
+     * Máscara para ubicar una posición dentro de una fila; el ancho de cada fila es una potencia de dos.
+     */
+    private final int mascara;
+
+    /**
+     * Cantidad de registros tras la cual se envejecen los contadores.
+     */
+    private final int periodo;
+
+    /**
+     * Registros desde el último envejecimiento.
+     */
+    private final AtomicInteger muestras = new AtomicInteger();
+
+    /**
+     * Crea un estimador dimensionado para una caché de la capacidad indicada.
+     *
+     * @param capacidad cantidad máxima de claves en la caché
+     */
+    ContadorFrecuencias(int capacidad) {
+        int ancho = Integer.highestOneBit(Math.max(16, capacidad) * 4 - 1) << 1;
+        this.contadores = new byte[ancho * SEMILLAS.length];
+        this.mascara = ancho - 1;
+        this.periodo = Math.max(16, capacidad) * 10;
+    }
+
+    /**
+     * Dispersa el hash de una clave para que los bits bajos dependan de todos los demás.
+     *
+     * @param clave clave consultada
+     * @return hash dispersado
+     */
+    static int hash(String clave) {
+        int h = clave.hashCode() * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Registra una consulta de la clave.
+     *
+     * @param hash hash de la clave obtenido con {@link #hash(String)}
+     */
+    void registrar(int hash) {
+        int actual = frecuencia(hash);
+        if (actual < MAXIMO) {
+            for (int fila = 0; fila < SEMILLAS.length; fila++) {
+                int indice = indice(hash, fila);
+                if (contadores[indice] == actual) {
+                    contadores[indice]++;
+                }
+            }
+        }
+        if (muestras.incrementAndGet() == periodo) {
+            envejecer();
+        }
+    }
+
+    /**
+     * Estima cuántas veces se consultó la clave desde los últimos envejecimientos.
+     *
+     * @param hash hash de la clave obtenido con {@link #hash(String)}
+     * @return frecuencia estimada, entre 0 y 15
+     */
+    int frecuencia(int hash) {
+        int minimo = MAXIMO;
+        for (int fila = 0; fila < SEMILLAS.length; fila++) {
+            minimo = Math.min(minimo, contadores[indice(hash, fila)]);
+        }
+        return minimo;
+    }
+
+    /**
+     * Reduce todos los contadores a la mitad y descuenta la mitad del periodo.
+     */
+    private void envejecer() {
+        for (int i = 0; i < contadores.length; i++) {
+            contadores[i] >>= 1;
+        }
+        muestras.addAndGet(-periodo / 2);
+    }
+
+    /**
+     * Ubica el contador de una clave en una fila.
+     *
+     * @param hash hash de la clave
+     * @param fila número de fila
+     * @return índice en {@link #contadores}
+     */
+    private int indice(int hash, int fila) {
+        int h = hash * SEMILLAS[fila];
+        h += h >>> 16;
+        return fila * (mascara + 1) + (h & mascara);
+    }
+}
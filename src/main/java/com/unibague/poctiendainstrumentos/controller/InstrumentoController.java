@@ -1,19 +1,39 @@
 package com.unibague.poctiendainstrumentos.controller;
 
+import com.unibague.poctiendainstrumentos.dto.AjustePrecioMasivoDTO;
+import com.unibague.poctiendainstrumentos.dto.AjusteStockMasivoDTO;
 import com.unibague.poctiendainstrumentos.dto.ApiResponse;
+import com.unibague.poctiendainstrumentos.dto.CoincidenciaBusquedaDTO;
+import com.unibague.poctiendainstrumentos.dto.DeltaCatalogoDTO;
+import com.unibague.poctiendainstrumentos.dto.EstadisticasCacheDTO;
 import com.unibague.poctiendainstrumentos.dto.FiltroInstrumentoDTO;
+import com.unibague.poctiendainstrumentos.dto.StockDTO;
 import com.unibague.poctiendainstrumentos.model.Funda;
 import com.unibague.poctiendainstrumentos.model.Guitarra;
 import com.unibague.poctiendainstrumentos.model.Instrumento;
 import com.unibague.poctiendainstrumentos.model.Teclado;
 import com.unibague.poctiendainstrumentos.service.IServicioInstrumento;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * Controlador REST para manejar solicitudes relacionadas con instrumentos musicales.
@@ -26,6 +46,27 @@ import java.util.Optional;
  *
  * <p>Permite filtrar instrumentos usando un objeto DTO con múltiples criterios mediante un endpoint dedicado.</p>
  *
+ * <p>La consulta de un instrumento devuelve su versión en el encabezado {@code ETag}. Las operaciones
+ * PUT y DELETE aceptan el encabezado {@code If-Match} con esa versión y responden 412 si el instrumento
+ * fue modificado por otro cliente desde que se leyó.</p>
+ *
+ * <p>La consulta por código se atiende a través de {@link CacheInstrumentos}, que conserva ya
+ * serializados los instrumentos más consultados.</p>
+ *
+ * <p>Además de JSON, las respuestas y los cuerpos de las solicitudes pueden codificarse en CBOR
+ * ({@code application/cbor}) o Smile ({@code application/x-jackson-smile}) según los encabezados
+ * {@code Accept} y {@code Content-Type}; ver {@link com.unibague.poctiendainstrumentos.config.FormatosBinariosConfig}.</p>
+ *
+ * <p>Los listados completos se sirven desde {@link ListadosPrecomprimidos}, comprimidos con gzip una
+ * vez por versión del catálogo y con un ETag que permite responder 304; el resto de las respuestas
+ * grandes las comprime Tomcat al enviarlas.</p>
+ *
+ * <p>Los listados y el filtro aceptan el parámetro {@code fields} con los campos que se quieren de
+ * cada instrumento (por ejemplo {@code fields=codigo,nombre,precioBase,stock}); ver {@link ProyeccionCampos}.</p>
+ *
+ * <p>El filtro también se ofrece como {@code GET /filtrar} con parámetros de consulta, con ETag y
+ * {@code Cache-Control} para que las cachés intermedias puedan guardar los resultados.</p>
+ *
  * <p>Los métodos devuelven {@link ResponseEntity} con el código HTTP adecuado y
  * respuestas unificadas en formato {@link ApiResponse} para operaciones CRUD y mensajes.</p>
  *
@@ -36,9 +77,40 @@ import java.util.Optional;
 public class InstrumentoController
 {
 
+    /**
+     * Tipo de contenido de la codificación Smile.
+     */
+    static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
     @Autowired
     private IServicioInstrumento servicioInstrumento;
 
+    @Autowired
+    private SuscripcionesCambios suscripcionesCambios;
+
+    @Autowired
+    private CacheInstrumentos cacheInstrumentos;
+
+    @Autowired
+    private ListadosPrecomprimidos listadosPrecomprimidos;
+
+    @Autowired
+    private ProyeccionCampos proyeccionCampos;
+
+    /**
+     * Tiempo durante el cual un cliente puede reutilizar un resultado de {@code GET /filtrar} sin
+     * revalidarlo.
+     */
+    @Value("${tienda.filtro.cache-segundos:10}")
+    private long segundosCacheFiltro;
+
+    /**
+     * Indica si los resultados de {@code GET /filtrar} pueden guardarse en cachés compartidas
+     * (proxies y CDN) o sólo en la del cliente.
+     */
+    @Value("${tienda.filtro.cache-compartida:true}")
+    private boolean cacheFiltroCompartida;
+
     /**
      * Valida que el código de instrumento o funda no sea nulo ni vacío.
      *
@@ -46,12 +118,125 @@ public class InstrumentoController
      * @param campo nombre del campo para mensaje de error
      * @throws IllegalArgumentException si el código es nulo o vacío
      */
-    private void validarCodigo(String codigo, String campo) {
+    static void validarCodigo(String codigo, String campo) {
         if (codigo == null || codigo.isBlank()) {
             throw new IllegalArgumentException("El " + campo + " debe existir y no estar vacío");
         }
     }
 
+    /**
+     * Primeros segmentos de las rutas literales bajo {@code /instrumentos}. Un instrumento con uno de
+     * estos códigos quedaría oculto detrás de la ruta literal en {@code GET /instrumentos/{codigo}}, así
+     * que no se aceptan como códigos, sin distinguir mayúsculas porque los códigos tampoco las distinguen.
+     */
+    static final Set<String> CODIGOS_RESERVADOS = Set.of("healthcheck", "guitarras", "teclados", "cambios",
+            "delta", "cache", "filtrar", "buscar", "masivo");
+
+    /**
+     * Valida que el código de un instrumento recibido para agregar o editar no sea una ruta reservada.
+     *
+     * @param instrumento instrumento recibido
+     * @throws IllegalArgumentException si el código coincide con una ruta reservada
+     */
+    static void validarCodigoNuevo(Instrumento instrumento) {
+        if (instrumento != null && instrumento.getCodigo() != null
+                && CODIGOS_RESERVADOS.contains(instrumento.getCodigo().trim().toLowerCase(Locale.ROOT))) {
+            throw new IllegalArgumentException("El código " + instrumento.getCodigo() + " está reservado para una ruta del servicio");
+        }
+    }
+
+    /**
+     * Obtiene la versión esperada a partir del encabezado {@code If-Match}.
+     * Acepta un único ETag, fuerte o débil ({@code "3"} o {@code W/"3"}); {@code *} equivale a no comprobar.
+     *
+     * @param ifMatch valor del encabezado, puede ser nulo
+     * @return versión esperada, o {@code null} si no se debe comprobar
+     * @throws IllegalArgumentException si el encabezado no tiene un formato válido
+     */
+    static Long versionEsperada(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String etag = ifMatch.trim();
+        if (etag.startsWith("W/")) {
+            etag = etag.substring(2);
+        }
+        etag = etag.replace("\"", "");
+        try {
+            return Long.parseLong(etag);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El encabezado If-Match no es válido: " + ifMatch);
+        }
+    }
+
+    /**
+     * Indica si JSON es la codificación preferida según el encabezado {@code Accept}, es decir, si
+     * ningún formato binario (CBOR o Smile) se pidió con mayor calidad que JSON.
+     *
+     * @param accept valor del encabezado, puede ser nulo
+     * @return {@code true} si la respuesta debe ser JSON
+     */
+    static boolean prefiereJson(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return true;
+        }
+        List<MediaType> tipos;
+        try {
+            tipos = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            // La negociación de Spring responde al encabezado inválido.
+            return false;
+        }
+        double calidadJson = 0;
+        double calidadBinaria = 0;
+        for (MediaType tipo : tipos) {
+            if (tipo.includes(MediaType.APPLICATION_JSON)) {
+                calidadJson = Math.max(calidadJson, tipo.getQualityValue());
+            }
+            if (tipo.equalsTypeAndSubtype(MediaType.APPLICATION_CBOR)
+                    || tipo.equalsTypeAndSubtype(SMILE)) {
+                calidadBinaria = Math.max(calidadBinaria, tipo.getQualityValue());
+            }
+        }
+        return calidadJson > 0 && calidadJson >= calidadBinaria;
+    }
+
+    /**
+     * Indica si el cliente acepta respuestas comprimidas con gzip según el encabezado {@code Accept-Encoding}.
+     *
+     * @param acceptEncoding valor del encabezado, puede ser nulo
+     * @return {@code true} si se acepta {@code gzip} (o {@code *}) con calidad mayor que cero
+     */
+    static boolean aceptaGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean gzip = null;
+        Boolean comodin = null;
+        for (String codificacion : acceptEncoding.split(",")) {
+            String[] partes = codificacion.trim().split(";");
+            String nombre = partes[0].trim();
+            boolean aceptada = true;
+            for (int i = 1; i < partes.length; i++) {
+                String parametro = partes[i].trim();
+                if (parametro.startsWith("q=")) {
+                    try {
+                        aceptada = Double.parseDouble(parametro.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        aceptada = false;
+                    }
+                }
+            }
+            if (nombre.equalsIgnoreCase("gzip")) {
+                gzip = aceptada;
+            } else if (nombre.equals("*")) {
+                comodin = aceptada;
+            }
+        }
+        // Una mención explícita de gzip prevalece sobre el comodín.
+        return gzip != null ? gzip : Boolean.TRUE.equals(comodin);
+    }
+
     /**
      * Endpoint para verificar el estado del servicio.
      *
@@ -72,6 +257,7 @@ public class InstrumentoController
     @PostMapping
     public ResponseEntity<ApiResponse> agregarInstrumento(@RequestBody Instrumento instrumento)
     {
+            validarCodigoNuevo(instrumento);
             servicioInstrumento.agregarInstrumento(instrumento);
             return ResponseEntity.status(HttpStatus.CREATED)
                     .body(new ApiResponse(false, "Instrumento agregado correctamente"));
@@ -80,58 +266,145 @@ public class InstrumentoController
     /**
      * Endpoint que devuelve la lista completa de instrumentos registrados.
      *
-     * @return lista de instrumentos en respuesta con código 200 (OK).
+     * @param fields campos a incluir en cada instrumento, separados por comas (opcional)
+     * @param cabeceras encabezados de la solicitud ({@code Accept}, {@code Accept-Encoding}, {@code If-None-Match})
+     * @return lista de instrumentos en respuesta con código 200 (OK), o 304 si no cambió.
      */
     @GetMapping
-    public ResponseEntity<List<Instrumento>> listarInstrumentos()
+    public ResponseEntity<?> listarInstrumentos(@RequestParam(value = "fields", required = false) String fields,
+                                                @RequestHeader HttpHeaders cabeceras)
     {
-        List<Instrumento> listaInstrumentos= servicioInstrumento.listarInstrumentos();
-        return ResponseEntity.ok(listaInstrumentos);
+        return responderListado("instrumentos", servicioInstrumento::listarInstrumentos, fields, cabeceras);
     }
 
     /**
      * Devuelve la lista solo de guitarras.
      *
+     * @param fields campos a incluir en cada guitarra, separados por comas (opcional)
+     * @param cabeceras encabezados de la solicitud ({@code Accept}, {@code Accept-Encoding}, {@code If-None-Match})
      * @return lista de {@link Guitarra}
      */
     @GetMapping(value = "/guitarras")
-    public ResponseEntity<List<Guitarra>> listarGuitarras()
+    public ResponseEntity<?> listarGuitarras(@RequestParam(value = "fields", required = false) String fields,
+                                             @RequestHeader HttpHeaders cabeceras)
     {
-        List<Guitarra> listaGuitarras = servicioInstrumento.listarGuitarras();
-        return ResponseEntity.ok(listaGuitarras);
-
+        return responderListado("guitarras", servicioInstrumento::listarGuitarras, fields, cabeceras);
     }
 
     /**
      * Devuelve la lista solo de teclados.
      *
+     * @param fields campos a incluir en cada teclado, separados por comas (opcional)
+     * @param cabeceras encabezados de la solicitud ({@code Accept}, {@code Accept-Encoding}, {@code If-None-Match})
      * @return lista de {@link Teclado}
      */
     @GetMapping(value = "/teclados")
-    public ResponseEntity<List<Teclado>> listarTeclados()
+    public ResponseEntity<?> listarTeclados(@RequestParam(value = "fields", required = false) String fields,
+                                            @RequestHeader HttpHeaders cabeceras)
     {
-        List<Teclado> listaTeclados = servicioInstrumento.listarTeclados();
-        return ResponseEntity.ok(listaTeclados);
+        return responderListado("teclados", servicioInstrumento::listarTeclados, fields, cabeceras);
+    }
 
+    /**
+     * Responde un listado completo con el cuerpo precomprimido de la versión actual del catálogo:
+     * comprimido con gzip si el cliente lo acepta, y sin cuerpo (304) si el cliente ya tiene esa
+     * versión. Si el cliente prefiere un formato binario o pide una proyección de campos, el listado
+     * se serializa en cada solicitud.
+     *
+     * @param nombre nombre del listado
+     * @param listar consulta que obtiene los instrumentos del listado
+     * @param fields campos a incluir, separados por comas, o {@code null} para todos
+     * @param cabeceras encabezados de la solicitud
+     * @return respuesta con el listado
+     */
+    private ResponseEntity<?> responderListado(String nombre, Supplier<? extends List<? extends Instrumento>> listar,
+                                               String fields, HttpHeaders cabeceras)
+    {
+        if (fields != null)
+        {
+            return ResponseEntity.ok(proyeccionCampos.proyectar(listar.get().toArray(Instrumento[]::new), fields));
+        }
+        if (!prefiereJson(cabeceras.getFirst(HttpHeaders.ACCEPT)))
+        {
+            // Como arreglo, Jackson conoce el tipo de los elementos y escribe el discriminador "type".
+            return ResponseEntity.ok(listar.get().toArray(Instrumento[]::new));
+        }
+        ListadosPrecomprimidos.Cuerpo cuerpo = listadosPrecomprimidos.obtener(nombre, listar);
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .eTag(cuerpo.etag())
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (cuerpo.gzip() != null && aceptaGzip(cabeceras.getFirst(HttpHeaders.ACCEPT_ENCODING)))
+        {
+            return respuesta.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(cuerpo.gzip());
+        }
+        return respuesta.body(cuerpo.json());
+    }
+
+    /**
+     * Abre un canal Server-Sent Events con los cambios del catálogo (creaciones, ediciones y
+     * eliminaciones de instrumentos y fundas). Cada evento lleva como identificador la versión
+     * del catálogo que alcanzó, de modo que el cliente puede reanudar desde el último recibido.
+     *
+     * @param ultimoEvento identificador del último evento recibido, enviado por el cliente al reconectarse
+     * @param desde versión del catálogo desde la que se quieren recibir cambios (alternativa al encabezado)
+     * @return emisor SSE de la suscripción
+     */
+    @GetMapping(value = "/cambios", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter suscribirCambios(@RequestHeader(value = "Last-Event-ID", required = false) Long ultimoEvento,
+                                       @RequestParam(value = "desde", required = false) Long desde)
+    {
+        return suscripcionesCambios.suscribir(ultimoEvento != null ? ultimoEvento : desde);
+    }
+
+    /**
+     * Devuelve los instrumentos y fundas creados, modificados o eliminados desde una versión del
+     * catálogo, para que un cliente que estuvo desconectado se ponga al día sin descargar todo.
+     * Si esos cambios ya no se conservan, la respuesta indica que se requiere una resincronización completa.
+     *
+     * @param desde última versión del catálogo conocida por el cliente
+     * @return cambios desde la versión en respuesta con código 200 (OK)
+     */
+    @GetMapping(value = "/delta")
+    public ResponseEntity<DeltaCatalogoDTO> obtenerDelta(@RequestParam("desde") long desde)
+    {
+        return ResponseEntity.ok(servicioInstrumento.deltaDesde(desde));
     }
 
     /**
      * Busca un instrumento por su código único.
      *
      * @param codigo código del instrumento a buscar.
-     * @return instrumento encontrado con código 200 o mensaje error 404 si no existe.
+     * @return instrumento encontrado con código 200 y su versión como ETag, o mensaje error 404 si no existe.
      */
     @GetMapping(value = "/{codigo}")
-    public ResponseEntity<?> buscarInstrumento(@PathVariable("codigo") String codigo)
+    public ResponseEntity<?> buscarInstrumento(@PathVariable("codigo") String codigo,
+                                               @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept)
     {
         validarCodigo(codigo, "código del instrumento");
-        Optional<Instrumento> instrumento = servicioInstrumento.buscarInstrumento(codigo);
-        if (instrumento.isEmpty())
+        Optional<CacheInstrumentos.Entrada> entrada = cacheInstrumentos.obtener(codigo);
+        if (entrada.isEmpty())
         {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new ApiResponse(true, "El instrumento no existe"));
         }
-        return ResponseEntity.ok(instrumento.get());
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok().eTag(String.valueOf(entrada.get().version()));
+        if (!prefiereJson(accept))
+        {
+            return respuesta.body(entrada.get().instrumento());
+        }
+        return respuesta.contentType(MediaType.APPLICATION_JSON).body(entrada.get().json());
+    }
+
+    /**
+     * Devuelve las métricas de la caché de consultas por código.
+     *
+     * @return tasa de aciertos, promociones, expulsiones e invalidaciones acumuladas
+     */
+    @GetMapping(value = "/cache/estadisticas")
+    public ResponseEntity<EstadisticasCacheDTO> estadisticasCache()
+    {
+        return ResponseEntity.ok(cacheInstrumentos.estadisticas());
     }
 
     /**
@@ -139,14 +412,17 @@ public class InstrumentoController
      *
      * @param codigo código único del instrumento
      * @param instrumentoModificado nuevos datos del instrumento
-     * @return respuesta con mensaje de éxito y código 200
+     * @param ifMatch versión esperada del instrumento (opcional)
+     * @return respuesta con mensaje de éxito y código 200, o 412 si la versión no coincide
      */
     @PutMapping(value = "/{codigo}")
     public ResponseEntity<ApiResponse> editarInstrumento(@PathVariable("codigo") String codigo,
-                                                         @RequestBody Instrumento instrumentoModificado)
+                                                         @RequestBody Instrumento instrumentoModificado,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
     {
         validarCodigo(codigo, "código del instrumento");
-        servicioInstrumento.editarInstrumento(codigo, instrumentoModificado);
+        validarCodigoNuevo(instrumentoModificado);
+        servicioInstrumento.editarInstrumento(codigo, instrumentoModificado, versionEsperada(ifMatch));
         return ResponseEntity.status(HttpStatus.OK)
                 .body(new ApiResponse(false, "Instrumento editado correctamente"));
     }
@@ -155,17 +431,64 @@ public class InstrumentoController
      * Elimina un instrumento por código.
      *
      * @param codigo código único del instrumento
-     * @return respuesta con mensaje de éxito y código 200
+     * @param ifMatch versión esperada del instrumento (opcional)
+     * @return respuesta con mensaje de éxito y código 200, o 412 si la versión no coincide
      */
     @DeleteMapping(value = "/{codigo}")
-    public ResponseEntity<ApiResponse> eliminarInstrumento(@PathVariable("codigo") String codigo)
+    public ResponseEntity<ApiResponse> eliminarInstrumento(@PathVariable("codigo") String codigo,
+                                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
     {
         validarCodigo(codigo, "código del instrumento");
-        servicioInstrumento.eliminarInstrumento(codigo);
+        servicioInstrumento.eliminarInstrumento(codigo, versionEsperada(ifMatch));
         return ResponseEntity.status(HttpStatus.OK)
                 .body(new ApiResponse(false, "Instrumento eliminado correctamente"));
     }
 
+    /**
+     * Reserva unidades del stock de un instrumento de forma atómica.
+     *
+     * @param codigo código único del instrumento
+     * @param cantidad unidades a reservar
+     * @return stock restante con código 200, o 409 si no hay stock suficiente
+     */
+    @PostMapping(value = "/{codigo}/stock/reservar")
+    public ResponseEntity<StockDTO> reservarStock(@PathVariable("codigo") String codigo,
+                                                  @RequestParam("cantidad") int cantidad)
+    {
+        validarCodigo(codigo, "código del instrumento");
+        return ResponseEntity.ok(new StockDTO(codigo, servicioInstrumento.reservarStock(codigo, cantidad)));
+    }
+
+    /**
+     * Devuelve unidades al stock de un instrumento de forma atómica.
+     *
+     * @param codigo código único del instrumento
+     * @param cantidad unidades a liberar
+     * @return stock disponible con código 200
+     */
+    @PostMapping(value = "/{codigo}/stock/liberar")
+    public ResponseEntity<StockDTO> liberarStock(@PathVariable("codigo") String codigo,
+                                                 @RequestParam("cantidad") int cantidad)
+    {
+        validarCodigo(codigo, "código del instrumento");
+        return ResponseEntity.ok(new StockDTO(codigo, servicioInstrumento.liberarStock(codigo, cantidad)));
+    }
+
+    /**
+     * Suma o resta unidades al stock de un instrumento de forma atómica.
+     *
+     * @param codigo código único del instrumento
+     * @param delta unidades a sumar (positivo) o restar (negativo)
+     * @return stock resultante con código 200, o 409 si quedaría negativo
+     */
+    @PostMapping(value = "/{codigo}/stock/ajustar")
+    public ResponseEntity<StockDTO> ajustarStock(@PathVariable("codigo") String codigo,
+                                                 @RequestParam("delta") int delta)
+    {
+        validarCodigo(codigo, "código del instrumento");
+        return ResponseEntity.ok(new StockDTO(codigo, servicioInstrumento.ajustarStock(codigo, delta)));
+    }
+
     /**
      * Agrega fundas a una guitarra existente.
      *
@@ -189,15 +512,17 @@ public class InstrumentoController
      * @param codigo código de la guitarra
      * @param codigoFunda código de la funda a modificar
      * @param fundaModificada funda con datos actualizados
-     * @return respuesta con mensaje de éxito y código 200
+     * @param ifMatch versión esperada de la guitarra (opcional)
+     * @return respuesta con mensaje de éxito y código 200, o 412 si la versión no coincide
      */
     @PutMapping(value = "/guitarras/{codigo}/fundas/{codigoFunda}")
     public ResponseEntity<ApiResponse> editarFunda(@PathVariable("codigo") String codigo,
                                                     @PathVariable("codigoFunda") String codigoFunda,
-                                                    @RequestBody Funda fundaModificada) {
+                                                    @RequestBody Funda fundaModificada,
+                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         validarCodigo(codigo, "código de la guitarra");
         validarCodigo(codigoFunda, "código de la funda");
-        servicioInstrumento.editarFunda(codigo, codigoFunda, fundaModificada);
+        servicioInstrumento.editarFunda(codigo, codigoFunda, fundaModificada, versionEsperada(ifMatch));
         return ResponseEntity.status(HttpStatus.OK)
                 .body(new ApiResponse(false, "Funda modificada correctamente"));
     }
@@ -207,15 +532,17 @@ public class InstrumentoController
      *
      * @param codigo código de la guitarra
      * @param codigoFunda código de la funda a eliminar
-     * @return respuesta con mensaje de éxito y código 200
+     * @param ifMatch versión esperada de la guitarra (opcional)
+     * @return respuesta con mensaje de éxito y código 200, o 412 si la versión no coincide
      */
     @DeleteMapping(value = "/guitarras/{codigo}/fundas/{codigoFunda}")
     public ResponseEntity<ApiResponse> eliminarFunda(@PathVariable("codigo") String codigo,
-                                                     @PathVariable("codigoFunda") String codigoFunda)
+                                                     @PathVariable("codigoFunda") String codigoFunda,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
     {
         validarCodigo(codigo, "código de la guitarra");
         validarCodigo(codigoFunda, "código de la funda");
-        servicioInstrumento.eliminarFunda(codigo, codigoFunda);
+        servicioInstrumento.eliminarFunda(codigo, codigoFunda, versionEsperada(ifMatch));
         return ResponseEntity.status(HttpStatus.OK)
                 .body(new ApiResponse(false, "Funda eliminada correctamente"));
 
@@ -223,13 +550,128 @@ public class InstrumentoController
 
     /**
      * Filtra instrumentos según los criterios en un DTO.
+     * Si se solicitan las facetas, la respuesta incluye además los conteos por marca,
+     * tipo de guitarra, sensibilidad y rango de precio calculados en la misma evaluación.
+     * Con {@code ordenarPor}, {@code descendente} y {@code limite} se obtienen sólo los primeros
+     * resultados en ese orden, por ejemplo las diez guitarras eléctricas más baratas.
      *
-     * @param filtro DTO con filtros como nombre, marca, precio, stock, tipo, sensibilidad
-     * @return lista de instrumentos que cumplen los criterios
+     * @param filtro DTO con filtros como nombre, marca, precio, stock, tipo, sensibilidad, orden y límite
+     * @param facetas indica si se deben calcular las facetas de los resultados
+     * @param fields campos a incluir en cada instrumento, separados por comas (opcional)
+     * @return lista de instrumentos que cumplen los criterios, o resultados con facetas
      */
     @PostMapping(value = "/filtrar")
-    public ResponseEntity<List<Instrumento>> filtrarInstrumentos(@RequestBody FiltroInstrumentoDTO filtro) {
-        List<Instrumento> resultado = servicioInstrumento.filtrarInstrumentos(filtro);
-        return ResponseEntity.ok(resultado);
+    public ResponseEntity<?> filtrarInstrumentos(@RequestBody FiltroInstrumentoDTO filtro,
+                                                 @RequestParam(value = "facetas", defaultValue = "false") boolean facetas,
+                                                 @RequestParam(value = "fields", required = false) String fields) {
+        return ResponseEntity.ok(resultadoFiltro(filtro, facetas, fields));
+    }
+
+    /**
+     * Filtra instrumentos con los criterios como parámetros de consulta, para que la respuesta pueda
+     * guardarse en la caché del navegador y revalidarse con {@code If-None-Match}. Acepta los mismos criterios que
+     * {@code POST /filtrar} (con {@code limitesPrecio} separados por comas), además de {@code facetas}
+     * y {@code fields}; los nombres de los parámetros no distinguen mayúsculas.
+     *
+     * <p>El ETag combina la forma canónica de la consulta (ver {@link ConsultaFiltro}) con la versión del
+     * catálogo, así que una consulta equivalente escrita en otro orden o con otras mayúsculas tiene el
+     * mismo ETag, y una revalidación responde 304 sin evaluar el filtro mientras el catálogo no cambie.
+     * El encabezado {@code Content-Location} indica la URL canónica de la consulta.</p>
+     *
+     * <p>El resultado depende sólo de la consulta y de la versión del catálogo, no del usuario, así que
+     * por defecto se marca como público y con {@code s-maxage}: sin esa indicación una caché compartida no
+     * guarda respuestas a peticiones con {@code Authorization}. Una caché compartida que reciba la
+     * consulta la revalida con el mismo ETag. Si la caché compartida no debe servir el catálogo a
+     * clientes que no pasaron por la autenticación, {@code tienda.filtro.cache-compartida=false} la
+     * marca como privada.</p>
+     *
+     * @param parametros parámetros de la consulta
+     * @param solicitud solicitud, para comparar el ETag con {@code If-None-Match}
+     * @return instrumentos que cumplen los criterios, o resultados con facetas; 304 si no cambiaron
+     */
+    @GetMapping(value = "/filtrar")
+    public ResponseEntity<?> filtrarPorConsulta(@RequestParam MultiValueMap<String, String> parametros,
+                                                WebRequest solicitud) {
+        ConsultaFiltro consulta = ConsultaFiltro.desde(parametros);
+        String etag = "W/\"filtro-" + DigestUtils.md5DigestAsHex(consulta.canonica().getBytes(StandardCharsets.UTF_8))
+                + "-" + servicioInstrumento.versionCatalogo() + "\"";
+        Duration vigencia = Duration.ofSeconds(segundosCacheFiltro);
+        CacheControl cache = cacheFiltroCompartida
+                ? CacheControl.maxAge(vigencia).cachePublic().sMaxAge(vigencia)
+                : CacheControl.maxAge(vigencia).cachePrivate();
+        if (solicitud.checkNotModified(etag)) {
+            // checkNotModified ya escribió el ETag en la respuesta 304.
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cache).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(cache)
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                .header(HttpHeaders.CONTENT_LOCATION, "/instrumentos/filtrar"
+                        + (consulta.canonica().isEmpty() ? "" : "?" + consulta.canonica()))
+                .body(resultadoFiltro(consulta.filtro(), consulta.facetas(), consulta.fields()));
+    }
+
+    /**
+     * Evalúa un filtro y arma el cuerpo de la respuesta.
+     *
+     * @param filtro criterios de filtrado
+     * @param facetas indica si se deben calcular las facetas de los resultados
+     * @param fields campos a incluir en cada instrumento, o {@code null} para todos
+     * @return resultados con facetas, o arreglo de instrumentos; envueltos en la proyección si se pidió
+     */
+    private Object resultadoFiltro(FiltroInstrumentoDTO filtro, boolean facetas, String fields) {
+        Object resultado = facetas
+                ? servicioInstrumento.filtrarConFacetas(filtro)
+                // Como arreglo, Jackson conoce el tipo de los elementos y escribe el discriminador "type".
+                : servicioInstrumento.filtrarInstrumentos(filtro).toArray(Instrumento[]::new);
+        return fields == null ? resultado : proyeccionCampos.proyectar(resultado, fields);
+    }
+
+    /**
+     * Busca instrumentos por texto libre en el nombre, la marca, el material del cuerpo y los nombres
+     * de las fundas, sin distinguir mayúsculas ni tildes ({@code ?q=guitarra clasica} encuentra
+     * "Guitarra Clásica"). Los resultados vienen ordenados por relevancia con su puntaje.
+     * Con {@code difuso=true} también se toleran errores de escritura ({@code ?q=yamah} encuentra "Yamaha").
+     *
+     * @param q texto a buscar
+     * @param limite cantidad máxima de resultados (por defecto 10, máximo 1000)
+     * @param difuso indica si se toleran errores de escritura (por defecto no)
+     * @param fields campos a incluir en cada instrumento, separados por comas (opcional)
+     * @return coincidencias del más relevante al menos relevante
+     */
+    @GetMapping(value = "/buscar")
+    public ResponseEntity<?> buscarTexto(@RequestParam("q") String q,
+                                         @RequestParam(value = "limite", defaultValue = "10") int limite,
+                                         @RequestParam(value = "difuso", defaultValue = "false") boolean difuso,
+                                         @RequestParam(value = "fields", required = false) String fields) {
+        Object resultado = servicioInstrumento.buscarTexto(q, limite, difuso).toArray(CoincidenciaBusquedaDTO[]::new);
+        return ResponseEntity.ok(fields == null ? resultado : proyeccionCampos.proyectar(resultado, fields));
+    }
+
+    /**
+     * Ajusta en un porcentaje el precio base de los instrumentos seleccionados por un filtro.
+     *
+     * @param ajuste filtro de selección y porcentaje de variación
+     * @return respuesta con la cantidad de instrumentos ajustados y código 200
+     */
+    @PostMapping(value = "/masivo/precio")
+    public ResponseEntity<ApiResponse> ajustarPrecios(@RequestBody AjustePrecioMasivoDTO ajuste) {
+        int ajustados = servicioInstrumento.ajustarPrecios(ajuste.getFiltro(), ajuste.getPorcentaje());
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(new ApiResponse(false, "Precios ajustados correctamente en " + ajustados + " instrumentos"));
+    }
+
+    /**
+     * Fija o desplaza el stock de los instrumentos seleccionados por un filtro.
+     *
+     * @param ajuste filtro de selección y nuevo stock o delta
+     * @return respuesta con la cantidad de instrumentos ajustados y código 200
+     */
+    @PostMapping(value = "/masivo/stock")
+    public ResponseEntity<ApiResponse> ajustarStock(@RequestBody AjusteStockMasivoDTO ajuste) {
+        int ajustados = servicioInstrumento.ajustarStock(ajuste.getFiltro(), ajuste.getStock(), ajuste.getDelta());
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(new ApiResponse(false, "Stock ajustado correctamente en " + ajustados + " instrumentos"));
     }
 }
@@ -0,0 +1,290 @@
+package com.unibague.poctiendainstrumentos.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.unibague.poctiendainstrumentos.dto.ApiResponse;
+import com.unibague.poctiendainstrumentos.dto.FiltroInstrumentoDTO;
+import com.unibague.poctiendainstrumentos.model.Funda;
+import com.unibague.poctiendainstrumentos.model.Guitarra;
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+import com.unibague.poctiendainstrumentos.model.Teclado;
+import com.unibague.poctiendainstrumentos.service.IServicioInstrumento;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static com.unibague.poctiendainstrumentos.controller.InstrumentoController.validarCodigo;
+import static com.unibague.poctiendainstrumentos.controller.InstrumentoController.validarCodigoNuevo;
+import static com.unibague.poctiendainstrumentos.controller.InstrumentoController.versionEsperada;
+
+/**
+ * Variante reactiva de {@link InstrumentoController} para consumidores que procesan el catálogo como flujo.
+ *
+ * <p>Ofrece las mismas operaciones CRUD, de fundas y de filtrado bajo {@code /reactivo/instrumentos}.
+ * Los listados y los resultados del filtro se emiten como {@link Flux} en formato NDJSON (un
+ * instrumento JSON por línea), en bloques de pocos instrumentos: Spring MVC pide cada bloque sólo
+ * después de escribir el anterior, así que un cliente lento frena la producción en lugar de obligar
+ * a reunir el catálogo completo en memoria. Los listados recorren la instantánea inmutable del
+ * catálogo y el filtro evalúa cada instrumento a medida que se pide.</p>
+ *
+ * <p>Las operaciones de un solo elemento devuelven {@link Mono}. Las escrituras se ejecutan en
+ * {@link Schedulers#boundedElastic()}, porque pueden esperar al escritor único del catálogo.
+ * Los errores se traducen con el mismo {@code GlobalExceptionHandler} que el controlador tradicional.</p>
+ *
+ * @author Jorge
+ */
+@RestController
+@RequestMapping("/reactivo/instrumentos")
+public class InstrumentoReactivoController
+{
+
+    /**
+     * Cantidad de instrumentos que se serializan juntos en cada elemento del flujo.
+     */
+    private static final int TAMANO_BLOQUE = 64;
+
+    @Autowired
+    private IServicioInstrumento servicioInstrumento;
+
+    private final ObjectWriter escritor;
+
+    /**
+     * Crea el controlador con el serializador de instrumentos de la aplicación.
+     *
+     * @param objectMapper mapeador JSON configurado por Spring
+     */
+    public InstrumentoReactivoController(ObjectMapper objectMapper) {
+        this.escritor = objectMapper.writerFor(Instrumento.class);
+    }
+
+    /**
+     * Agrupa un flujo de instrumentos en bloques de líneas NDJSON ya serializadas.
+     * Spring MVC escribe y vacía la respuesta una vez por elemento del flujo; emitir bloques de
+     * {@value #TAMANO_BLOQUE} instrumentos evita pagar ese costo por cada instrumento, y la demanda
+     * del cliente sigue regulando la producción, ahora de a un bloque.
+     *
+     * @param instrumentos flujo de instrumentos
+     * @return flujo de bloques, cada uno con un instrumento JSON por línea
+     */
+    private Flux<String> enLineas(Flux<? extends Instrumento> instrumentos) {
+        return instrumentos.buffer(TAMANO_BLOQUE).map(bloque -> {
+            StringBuilder lineas = new StringBuilder(bloque.size() * 256);
+            for (Instrumento instrumento : bloque) {
+                try {
+                    lineas.append(escritor.writeValueAsString(instrumento)).append('\n');
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException("No fue posible serializar el instrumento " + instrumento.getCodigo(), e);
+                }
+            }
+            return lineas.toString();
+        });
+    }
+
+    /**
+     * Ejecuta una escritura fuera del hilo que atiende la petición.
+     *
+     * @param escritura operación sobre el servicio que devuelve la respuesta
+     * @param <T> tipo de la respuesta
+     * @return respuesta diferida de la escritura
+     */
+    private static <T> Mono<T> escribir(Callable<T> escritura) {
+        return Mono.fromCallable(escritura).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Agrega un nuevo instrumento.
+     *
+     * @param instrumento objeto {@link Instrumento} enviado en el cuerpo de la solicitud.
+     * @return respuesta con código 201 (CREATED) y mensaje de éxito.
+     */
+    @PostMapping
+    public Mono<ResponseEntity<ApiResponse>> agregarInstrumento(@RequestBody Instrumento instrumento)
+    {
+        validarCodigoNuevo(instrumento);
+        return escribir(() -> {
+            servicioInstrumento.agregarInstrumento(instrumento);
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(new ApiResponse(false, "Instrumento agregado correctamente"));
+        });
+    }
+
+    /**
+     * Emite todos los instrumentos registrados, uno por línea.
+     *
+     * @return flujo de instrumentos
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<String> listarInstrumentos()
+    {
+        return enLineas(Flux.fromIterable(servicioInstrumento.listarInstrumentos()));
+    }
+
+    /**
+     * Emite sólo las guitarras, uno por línea.
+     *
+     * @return flujo de guitarras
+     */
+    @GetMapping(value = "/guitarras", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<String> listarGuitarras()
+    {
+        return enLineas(Flux.fromIterable(servicioInstrumento.listarInstrumentos()).ofType(Guitarra.class));
+    }
+
+    /**
+     * Emite sólo los teclados, uno por línea.
+     *
+     * @return flujo de teclados
+     */
+    @GetMapping(value = "/teclados", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<String> listarTeclados()
+    {
+        return enLineas(Flux.fromIterable(servicioInstrumento.listarInstrumentos()).ofType(Teclado.class));
+    }
+
+    /**
+     * Busca un instrumento por su código único.
+     *
+     * @param codigo código del instrumento a buscar.
+     * @return instrumento encontrado con código 200 y su versión como ETag, o mensaje error 404 si no existe.
+     */
+    @GetMapping(value = "/{codigo}")
+    public Mono<ResponseEntity<?>> buscarInstrumento(@PathVariable("codigo") String codigo)
+    {
+        validarCodigo(codigo, "código del instrumento");
+        return Mono.justOrEmpty(servicioInstrumento.buscarInstrumento(codigo))
+                .<ResponseEntity<?>>map(instrumento -> ResponseEntity.ok()
+                        .eTag(String.valueOf(instrumento.getVersion()))
+                        .body(instrumento))
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(new ApiResponse(true, "El instrumento no existe")));
+    }
+
+    /**
+     * Edita un instrumento existente identificado por código.
+     *
+     * @param codigo código único del instrumento
+     * @param instrumentoModificado nuevos datos del instrumento
+     * @param ifMatch versión esperada del instrumento (opcional)
+     * @return respuesta con mensaje de éxito y código 200, o 412 si la versión no coincide
+     */
+    @PutMapping(value = "/{codigo}")
+    public Mono<ResponseEntity<ApiResponse>> editarInstrumento(@PathVariable("codigo") String codigo,
+                                                               @RequestBody Instrumento instrumentoModificado,
+                                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
+    {
+        validarCodigo(codigo, "código del instrumento");
+        validarCodigoNuevo(instrumentoModificado);
+        Long version = versionEsperada(ifMatch);
+        return escribir(() -> {
+            servicioInstrumento.editarInstrumento(codigo, instrumentoModificado, version);
+            return ResponseEntity.ok(new ApiResponse(false, "Instrumento editado correctamente"));
+        });
+    }
+
+    /**
+     * Elimina un instrumento por código.
+     *
+     * @param codigo código único del instrumento
+     * @param ifMatch versión esperada del instrumento (opcional)
+     * @return respuesta con mensaje de éxito y código 200, o 412 si la versión no coincide
+     */
+    @DeleteMapping(value = "/{codigo}")
+    public Mono<ResponseEntity<ApiResponse>> eliminarInstrumento(@PathVariable("codigo") String codigo,
+                                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
+    {
+        validarCodigo(codigo, "código del instrumento");
+        Long version = versionEsperada(ifMatch);
+        return escribir(() -> {
+            servicioInstrumento.eliminarInstrumento(codigo, version);
+            return ResponseEntity.ok(new ApiResponse(false, "Instrumento eliminado correctamente"));
+        });
+    }
+
+    /**
+     * Agrega fundas a una guitarra.
+     *
+     * @param codigo código de la guitarra
+     * @param fundas lista de fundas para agregar
+     * @return respuesta con mensaje de éxito y código 201
+     */
+    @PostMapping(value = "/guitarras/{codigo}/fundas")
+    public Mono<ResponseEntity<ApiResponse>> agregarFundas(@PathVariable("codigo") String codigo,
+                                                           @RequestBody List<Funda> fundas)
+    {
+        validarCodigo(codigo, "código de la guitarra");
+        return escribir(() -> {
+            servicioInstrumento.agregarFundas(codigo, fundas);
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(new ApiResponse(false, "Fundas agregadas correctamente"));
+        });
+    }
+
+    /**
+     * Edita una funda específica de una guitarra.
+     *
+     * @param codigo código de la guitarra
+     * @param codigoFunda código de la funda a modificar
+     * @param fundaModificada funda con datos actualizados
+     * @param ifMatch versión esperada de la guitarra (opcional)
+     * @return respuesta con mensaje de éxito y código 200, o 412 si la versión no coincide
+     */
+    @PutMapping(value = "/guitarras/{codigo}/fundas/{codigoFunda}")
+    public Mono<ResponseEntity<ApiResponse>> editarFunda(@PathVariable("codigo") String codigo,
+                                                         @PathVariable("codigoFunda") String codigoFunda,
+                                                         @RequestBody Funda fundaModificada,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
+    {
+        validarCodigo(codigo, "código de la guitarra");
+        validarCodigo(codigoFunda, "código de la funda");
+        Long version = versionEsperada(ifMatch);
+        return escribir(() -> {
+            servicioInstrumento.editarFunda(codigo, codigoFunda, fundaModificada, version);
+            return ResponseEntity.ok(new ApiResponse(false, "Funda modificada correctamente"));
+        });
+    }
+
+    /**
+     * Elimina una funda específica de una guitarra.
+     *
+     * @param codigo código de la guitarra
+     * @param codigoFunda código de la funda a eliminar
+     * @param ifMatch versión esperada de la guitarra (opcional)
+     * @return respuesta con mensaje de éxito y código 200, o 412 si la versión no coincide
+     */
+    @DeleteMapping(value = "/guitarras/{codigo}/fundas/{codigoFunda}")
+    public Mono<ResponseEntity<ApiResponse>> eliminarFunda(@PathVariable("codigo") String codigo,
+                                                           @PathVariable("codigoFunda") String codigoFunda,
+                                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
+    {
+        validarCodigo(codigo, "código de la guitarra");
+        validarCodigo(codigoFunda, "código de la funda");
+        Long version = versionEsperada(ifMatch);
+        return escribir(() -> {
+            servicioInstrumento.eliminarFunda(codigo, codigoFunda, version);
+            return ResponseEntity.ok(new ApiResponse(false, "Funda eliminada correctamente"));
+        });
+    }
+
+    /**
+     * Emite, uno por línea, los instrumentos que cumplen los criterios de un filtro.
+     * Los criterios se validan antes de responder; cada instrumento se evalúa cuando el cliente está listo para recibirlo.
+     *
+     * @param filtro DTO con filtros como nombre, marca, precio, stock, tipo, sensibilidad
+     * @return flujo de los instrumentos que cumplen los criterios
+     */
+    @PostMapping(value = "/filtrar", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<String> filtrarInstrumentos(@RequestBody FiltroInstrumentoDTO filtro)
+    {
+        return enLineas(Flux.fromStream(servicioInstrumento.filtrarEnFlujo(filtro)));
+    }
+}
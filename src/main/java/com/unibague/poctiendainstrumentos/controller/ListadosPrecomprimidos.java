@@ -0,0 +1,134 @@
+package com.unibague.poctiendainstrumentos.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+import com.unibague.poctiendainstrumentos.service.IServicioInstrumento;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cuerpos JSON de los listados completos del catálogo, serializados y comprimidos con gzip una sola
+ * vez por versión del catálogo.
+ *
+ * <p>Mientras el catálogo no cambie, todas las solicitudes de un mismo listado reciben los mismos
+ * bytes, sin volver a listar, serializar ni comprimir. La primera solicitud posterior a un cambio
+ * reconstruye el cuerpo; las que llegan mientras tanto esperan a esa reconstrucción en lugar de
+ * repetirla. Cada cuerpo lleva un ETag débil derivado de la versión, de modo que un cliente con el
+ * listado vigente recibe 304.</p>
+ *
+ * <p>Los listados cuyo JSON supera {@link #tamanoMaximo} bytes no se conservan: se serializan en cada
+ * solicitud y, si el cliente acepta gzip, los comprime Tomcat al enviarlos.</p>
+ *
+ * @author Jorge
+ */
+@Component
+public class ListadosPrecomprimidos
+{
+    /**
+     * Cuerpo de un listado en una versión del catálogo.
+     *
+     * @param version versión del catálogo leída antes de listar
+     * @param etag ETag débil del listado en esa versión
+     * @param json cuerpo sin comprimir; no debe modificarse
+     * @param gzip cuerpo comprimido con gzip, o {@code null} si el listado no se conserva
+     */
+    public record Cuerpo(long version, String etag, byte[] json, byte[] gzip) {}
+
+    private final IServicioInstrumento servicioInstrumento;
+
+    private final ObjectWriter escritor;
+
+    /**
+     * Tamaño máximo en bytes del JSON de un listado que se conserva.
+     */
+    private final int tamanoMaximo;
+
+    /**
+     * Último cuerpo de cada listado.
+     */
+    private final ConcurrentHashMap<String, Cuerpo> cuerpos = new ConcurrentHashMap<>();
+
+    /**
+     * Cerrojos que serializan la reconstrucción de cada listado.
+     */
+    private final ConcurrentHashMap<String, ReentrantLock> cerrojos = new ConcurrentHashMap<>();
+
+    /**
+     * Crea la caché de listados.
+     *
+     * @param servicioInstrumento catálogo, del que se lee la versión
+     * @param mapeador serializador JSON de las respuestas
+     * @param tamanoMaximo tamaño máximo en bytes del JSON de un listado que se conserva
+     */
+    @Autowired
+    public ListadosPrecomprimidos(IServicioInstrumento servicioInstrumento, ObjectMapper mapeador,
+                                  @Value("${tienda.compresion.tamano-maximo:33554432}") int tamanoMaximo) {
+        this.servicioInstrumento = servicioInstrumento;
+        this.escritor = mapeador.writerFor(mapeador.getTypeFactory().constructCollectionType(List.class, Instrumento.class));
+        this.tamanoMaximo = tamanoMaximo;
+    }
+
+    /**
+     * Devuelve el cuerpo vigente de un listado, reconstruyéndolo si el catálogo cambió.
+     *
+     * @param nombre nombre del listado, que identifica el cuerpo y forma parte del ETag
+     * @param listar consulta que obtiene los instrumentos del listado
+     * @return cuerpo del listado en la versión actual del catálogo
+     */
+    public Cuerpo obtener(String nombre, Supplier<? extends List<? extends Instrumento>> listar) {
+        Cuerpo cuerpo = cuerpos.get(nombre);
+        if (cuerpo != null && cuerpo.version() == servicioInstrumento.versionCatalogo()) {
+            return cuerpo;
+        }
+        ReentrantLock cerrojo = cerrojos.computeIfAbsent(nombre, clave -> new ReentrantLock());
+        cerrojo.lock();
+        try {
+            long version = servicioInstrumento.versionCatalogo();
+            cuerpo = cuerpos.get(nombre);
+            if (cuerpo != null && cuerpo.version() == version) {
+                return cuerpo;
+            }
+            byte[] json = escritor.writeValueAsBytes(listar.get());
+            String etag = "W/\"" + nombre + "-" + version + "\"";
+            if (json.length > tamanoMaximo) {
+                cuerpos.remove(nombre);
+                return new Cuerpo(version, etag, json, null);
+            }
+            cuerpo = new Cuerpo(version, etag, json, comprimir(json));
+            cuerpos.put(nombre, cuerpo);
+            return cuerpo;
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Comprime un cuerpo con gzip.
+     *
+     * @param datos bytes sin comprimir
+     * @return bytes comprimidos
+     */
+    private static byte[] comprimir(byte[] datos) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(datos.length / 8 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(salida, 8192)) {
+            gzip.write(datos);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return salida.toByteArray();
+    }
+}
@@ -0,0 +1,89 @@
+package com.unibague.poctiendainstrumentos.controller;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.unibague.poctiendainstrumentos.config.ProyeccionConfig;
+import com.unibague.poctiendainstrumentos.model.Guitarra;
+import com.unibague.poctiendainstrumentos.model.Teclado;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Proyección de campos de los instrumentos a partir del parámetro {@code fields}.
+ *
+ * <p>Envuelve el cuerpo de la respuesta en un {@link MappingJacksonValue} cuyo filtro sólo deja pasar
+ * las propiedades pedidas, de modo que Jackson no lee ni recorre las demás (por ejemplo, las fundas de
+ * cada guitarra si no se pidieron). El discriminador {@code type} no es una propiedad del filtro y se
+ * escribe siempre. El filtro alcanza a todos los instrumentos del cuerpo, también a los que van dentro
+ * de un resultado con facetas.</p>
+ *
+ * @author Jorge
+ */
+@Component
+public class ProyeccionCampos
+{
+    /**
+     * Propiedades serializables de guitarras y teclados.
+     */
+    private final Set<String> camposValidos;
+
+    /**
+     * Obtiene de la configuración de Jackson los campos que se pueden proyectar.
+     *
+     * @param mapeador serializador JSON de la aplicación
+     */
+    @Autowired
+    public ProyeccionCampos(ObjectMapper mapeador) {
+        Set<String> campos = new TreeSet<>();
+        for (Class<?> tipo : new Class<?>[]{Guitarra.class, Teclado.class}) {
+            BeanDescription descripcion = mapeador.getSerializationConfig()
+                    .introspect(mapeador.constructType(tipo));
+            for (BeanPropertyDefinition propiedad : descripcion.findProperties()) {
+                if (propiedad.couldSerialize()) {
+                    campos.add(propiedad.getName());
+                }
+            }
+        }
+        this.camposValidos = Collections.unmodifiableSet(campos);
+    }
+
+    /**
+     * Aplica la proyección pedida a un cuerpo de respuesta.
+     *
+     * @param cuerpo cuerpo con instrumentos; si es una lista de instrumentos conviene pasarla como
+     *               arreglo para que se conserve el discriminador {@code type}
+     * @param fields lista de campos separados por comas
+     * @return cuerpo envuelto con el filtro de la proyección
+     * @throws IllegalArgumentException si la lista está vacía o contiene un campo desconocido
+     */
+    public MappingJacksonValue proyectar(Object cuerpo, String fields) {
+        Set<String> campos = new LinkedHashSet<>();
+        for (String campo : fields.split(",")) {
+            String nombre = campo.trim();
+            if (nombre.isEmpty()) {
+                continue;
+            }
+            if (!camposValidos.contains(nombre)) {
+                throw new IllegalArgumentException("El campo '" + nombre + "' no existe; campos válidos: "
+                        + String.join(", ", camposValidos));
+            }
+            campos.add(nombre);
+        }
+        if (campos.isEmpty()) {
+            throw new IllegalArgumentException("El parámetro fields debe indicar al menos un campo");
+        }
+        MappingJacksonValue valor = new MappingJacksonValue(cuerpo);
+        valor.setFilters(new SimpleFilterProvider()
+                .addFilter(ProyeccionConfig.FILTRO, SimpleBeanPropertyFilter.filterOutAllExcept(campos)));
+        return valor;
+    }
+}
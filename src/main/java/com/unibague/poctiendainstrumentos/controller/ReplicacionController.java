@@ -0,0 +1,66 @@
+package com.unibague.poctiendainstrumentos.controller;
+
+import com.unibague.poctiendainstrumentos.dto.DeltaCatalogoDTO;
+import com.unibague.poctiendainstrumentos.dto.EstadoReplicacionDTO;
+import com.unibague.poctiendainstrumentos.dto.InstantaneaCatalogoDTO;
+import com.unibague.poctiendainstrumentos.service.IServicioInstrumento;
+import com.unibague.poctiendainstrumentos.service.ReplicadorCatalogo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Controlador REST para la replicación del catálogo entre nodos.
+ *
+ * <p>Los seguidores consultan el registro de cambios del líder y, si hace falta, su copia completa.
+ * Cualquier nodo informa además el estado de su replicación.</p>
+ *
+ * @author Jorge
+ */
+@RestController
+@RequestMapping("/replicacion")
+public class ReplicacionController
+{
+    @Autowired
+    private IServicioInstrumento servicioInstrumento;
+
+    @Autowired
+    private ReplicadorCatalogo replicadorCatalogo;
+
+    /**
+     * Devuelve los cambios del catálogo de este nodo posteriores a una versión.
+     *
+     * @param desde última versión aplicada por el seguidor
+     * @return cambios desde la versión, o indicación de resincronización completa
+     */
+    @GetMapping(value = "/registro")
+    public ResponseEntity<DeltaCatalogoDTO> registro(@RequestParam("desde") long desde)
+    {
+        return ResponseEntity.ok(servicioInstrumento.deltaDesde(desde));
+    }
+
+    /**
+     * Devuelve la copia completa del catálogo de este nodo con su versión.
+     *
+     * @return versión y lista de instrumentos
+     */
+    @GetMapping(value = "/instantanea")
+    public ResponseEntity<InstantaneaCatalogoDTO> instantanea()
+    {
+        return ResponseEntity.ok(servicioInstrumento.instantaneaCatalogo());
+    }
+
+    /**
+     * Devuelve el rol del nodo y el retraso de su replicación respecto del líder.
+     *
+     * @return estado de la replicación
+     */
+    @GetMapping(value = "/estado")
+    public ResponseEntity<EstadoReplicacionDTO> estado()
+    {
+        return ResponseEntity.ok(replicadorCatalogo.estado());
+    }
+}
@@ -0,0 +1,237 @@
+package com.unibague.poctiendainstrumentos.controller;
+
+import com.unibague.poctiendainstrumentos.dto.ApiResponse;
+import com.unibague.poctiendainstrumentos.dto.EventoCambioDTO;
+import com.unibague.poctiendainstrumentos.exception.CambiosNoDisponiblesException;
+import com.unibague.poctiendainstrumentos.service.IServicioInstrumento;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Difunde los eventos de cambio del catálogo a los suscriptores del canal Server-Sent Events.
+ *
+ * <p>Cada suscriptor se atiende en su propio hilo virtual, que lee del buffer circular del servicio
+ * a partir de su propia posición y, cuando no hay eventos nuevos, se suspende hasta que el servicio
+ * avisa que publicó otros. Los escritores del catálogo nunca esperan a los suscriptores: el aviso
+ * sólo despierta los hilos suspendidos, y un cliente lento sólo bloquea su propio hilo.</p>
+ *
+ * <p>El mismo aviso compara la versión del catálogo con la última secuencia entregada a cada
+ * suscriptor. Si uno se retrasa más de {@link #retrasoMaximo} eventos, se le quita de los avisos y,
+ * en cuanto su hilo termina el envío en curso, se le envía un evento {@code reanudar} con la última
+ * secuencia entregada como identificador y se cierra la conexión, en lugar de acumular eventos en
+ * memoria; el cliente puede reconectarse con el encabezado {@code Last-Event-ID}. Si los eventos que
+ * le faltan ya se descartaron, se le envía un evento {@code resincronizar} sin identificador: no hay
+ * una secuencia desde la que reanudar sin perder cambios, así que el cliente debe descargar de nuevo
+ * el catálogo y suscribirse desde la versión que obtuvo.</p>
+ *
+ * @author Jorge
+ */
+@Component
+public class SuscripcionesCambios
+{
+    /**
+     * Cantidad máxima de eventos leídos del buffer en cada iteración.
+     */
+    private static final int LOTE = 256;
+
+    @Autowired
+    private IServicioInstrumento servicioInstrumento;
+
+    /**
+     * Cantidad de eventos pendientes a partir de la cual un suscriptor se considera lento.
+     */
+    @Value("${tienda.cambios.retraso-maximo:3072}")
+    private long retrasoMaximo;
+
+    /**
+     * Intervalo entre comentarios de mantenimiento, usados para detectar conexiones cerradas.
+     */
+    @Value("${tienda.cambios.latido-ms:15000}")
+    private long latidoMs;
+
+    /**
+     * Duración máxima de una conexión antes de que el cliente deba reconectarse.
+     */
+    @Value("${tienda.cambios.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    /**
+     * Contador para nombrar los hilos de los suscriptores.
+     */
+    private final AtomicInteger suscriptores = new AtomicInteger();
+
+    /**
+     * Suscripciones activas, a las que se avisa de cada publicación.
+     */
+    private final Set<Suscripcion> activas = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Se registra en el servicio para recibir un aviso por cada publicación de eventos.
+     */
+    @PostConstruct
+    void iniciar() {
+        servicioInstrumento.avisarCambios(this::avisar);
+    }
+
+    /**
+     * Registra un suscriptor que recibirá los cambios posteriores a la versión indicada.
+     *
+     * @param desde última versión conocida por el cliente, o {@code null} para recibir sólo cambios nuevos
+     * @return emisor SSE asociado a la suscripción
+     */
+    public SseEmitter suscribir(Long desde) {
+        SseEmitter emisor = new SseEmitter(timeoutMs);
+        Suscripcion suscripcion = new Suscripcion(emisor, desde != null ? desde : servicioInstrumento.versionCatalogo());
+        emisor.onCompletion(suscripcion::cerrar);
+        emisor.onTimeout(suscripcion::cerrar);
+        emisor.onError(e -> suscripcion.cerrar());
+        Thread.ofVirtual()
+                .name("sse-cambios-" + suscriptores.incrementAndGet())
+                .start(suscripcion::atender);
+        return emisor;
+    }
+
+    /**
+     * Despierta a los suscriptores tras una publicación y separa a los que se retrasaron demasiado.
+     * Se ejecuta en el hilo del escritor, así que sólo lee contadores y reanuda hilos.
+     */
+    private void avisar() {
+        long version = servicioInstrumento.versionCatalogo();
+        for (Suscripcion suscripcion : activas) {
+            if (version - suscripcion.cursor > retrasoMaximo) {
+                suscripcion.rezagar();
+            } else {
+                suscripcion.despertar();
+            }
+        }
+    }
+
+    /**
+     * Estado de un suscriptor: su emisor, su hilo y la última secuencia que se le entregó.
+     */
+    private class Suscripcion
+    {
+        private final SseEmitter emisor;
+        private volatile Thread hilo;
+
+        /**
+         * Última secuencia entregada; sólo la escribe el hilo del suscriptor y la leen los avisos.
+         */
+        private volatile long cursor;
+        private volatile boolean activa = true;
+        private volatile boolean rezagada;
+
+        Suscripcion(SseEmitter emisor, long cursor) {
+            this.emisor = emisor;
+            this.cursor = cursor;
+        }
+
+        /**
+         * Ciclo del hilo del suscriptor: envía los eventos pendientes hasta que la conexión se cierre.
+         * Sin eventos nuevos, se suspende hasta un aviso o hasta el próximo latido.
+         */
+        void atender() {
+            hilo = Thread.currentThread();
+            activas.add(this);
+            long ultimoEnvio = System.currentTimeMillis();
+            try {
+                while (activa) {
+                    List<EventoCambioDTO> eventos = servicioInstrumento.cambiosDesde(cursor, LOTE);
+                    for (EventoCambioDTO evento : eventos) {
+                        if (rezagada) {
+                            break;
+                        }
+                        emisor.send(SseEmitter.event()
+                                .id(String.valueOf(evento.getSecuencia()))
+                                .name("cambio")
+                                .data(evento));
+                        cursor = evento.getSecuencia();
+                    }
+                    if (rezagada) {
+                        despedir("reanudar", "Consumidor lento: reconecte con Last-Event-ID " + cursor, true);
+                        return;
+                    }
+                    long espera = ultimoEnvio + latidoMs - System.currentTimeMillis();
+                    if (!eventos.isEmpty()) {
+                        ultimoEnvio = System.currentTimeMillis();
+                    } else if (espera <= 0) {
+                        emisor.send(SseEmitter.event().comment("latido"));
+                        ultimoEnvio = System.currentTimeMillis();
+                    } else if (servicioInstrumento.versionCatalogo() == cursor) {
+                        // Un aviso posterior a la comprobación deja el permiso y parkNanos retorna enseguida.
+                        LockSupport.parkNanos(espera * 1_000_000);
+                    }
+                }
+            } catch (CambiosNoDisponiblesException e) {
+                despedir("resincronizar", e.getMessage() + ": descargue de nuevo el catálogo", false);
+            } catch (IOException | IllegalStateException e) {
+                cerrar();
+            } finally {
+                activas.remove(this);
+            }
+        }
+
+        /**
+         * Reanuda el hilo del suscriptor si está suspendido esperando eventos.
+         */
+        void despertar() {
+            Thread actual = hilo;
+            if (actual != null) {
+                LockSupport.unpark(actual);
+            }
+        }
+
+        /**
+         * Marca al suscriptor como demasiado retrasado: deja de recibir avisos y su hilo cierra la
+         * conexión en cuanto termine el envío en curso.
+         */
+        void rezagar() {
+            rezagada = true;
+            activas.remove(this);
+            despertar();
+        }
+
+        /**
+         * Envía un último evento y cierra la conexión.
+         *
+         * @param nombre nombre del evento
+         * @param mensaje explicación para el cliente
+         * @param reanudable si el evento lleva como identificador la secuencia desde la que se puede
+         *                   reanudar; si no, el cliente conserva el último identificador que recibió
+         */
+        private void despedir(String nombre, String mensaje, boolean reanudable) {
+            try {
+                SseEmitter.SseEventBuilder evento = SseEmitter.event();
+                if (reanudable) {
+                    evento.id(String.valueOf(cursor));
+                }
+                emisor.send(evento
+                        .name(nombre)
+                        .data(new ApiResponse(true, mensaje)));
+                emisor.complete();
+            } catch (IOException | IllegalStateException e) {
+                emisor.completeWithError(e);
+            }
+            cerrar();
+        }
+
+        /**
+         * Marca la suscripción como terminada para que su hilo finalice.
+         */
+        void cerrar() {
+            activa = false;
+            activas.remove(this);
+            despertar();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.unibague.poctiendainstrumentos.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Solicitud de ajuste porcentual del precio base de todos los instrumentos que cumplen un filtro.
+ *
+ * <p>Por ejemplo, un porcentaje de {@code 8} sube un 8% el precio de los instrumentos
+ * seleccionados y uno de {@code -15} lo baja un 15%.</p>
+ *
+ * @author Jorge
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AjustePrecioMasivoDTO
+{
+    /**
+     * Filtro que selecciona los instrumentos a ajustar.
+     */
+    private FiltroInstrumentoDTO filtro;
+
+    /**
+     * Porcentaje de variación del precio base (positivo sube, negativo baja).
+     */
+    private Double porcentaje;
+}
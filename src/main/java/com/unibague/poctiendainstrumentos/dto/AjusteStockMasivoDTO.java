@@ -0,0 +1,35 @@
+package com.unibague.poctiendainstrumentos.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Solicitud de ajuste del stock de todos los instrumentos que cumplen un filtro.
+ *
+ * <p>Se debe indicar exactamente uno de los dos campos de ajuste: {@code stock}
+ * fija el mismo valor en todos los instrumentos seleccionados (por ejemplo, 0 para
+ * productos descontinuados) y {@code delta} suma o resta una cantidad al stock actual.</p>
+ *
+ * @author Jorge
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AjusteStockMasivoDTO
+{
+    /**
+     * Filtro que selecciona los instrumentos a ajustar.
+     */
+    private FiltroInstrumentoDTO filtro;
+
+    /**
+     * Nuevo stock para todos los instrumentos seleccionados.
+     */
+    private Integer stock;
+
+    /**
+     * Cantidad a sumar (o restar, si es negativa) al stock de cada instrumento seleccionado.
+     */
+    private Integer delta;
+}
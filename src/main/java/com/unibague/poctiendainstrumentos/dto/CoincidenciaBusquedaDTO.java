@@ -0,0 +1,27 @@
+package com.unibague.poctiendainstrumentos.dto;
+
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado de una búsqueda de texto: un instrumento junto con su puntaje de relevancia.
+ *
+ * @author Jorge
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CoincidenciaBusquedaDTO
+{
+    /**
+     * Instrumento encontrado.
+     */
+    private Instrumento instrumento;
+
+    /**
+     * Puntaje BM25 del instrumento para la consulta; mayor es más relevante.
+     */
+    private double puntaje;
+}
@@ -0,0 +1,49 @@
+package com.unibague.poctiendainstrumentos.dto;
+
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Respuesta de sincronización incremental del catálogo a partir de una versión conocida por el cliente.
+ *
+ * <p>Si {@code resincronizacionCompleta} es {@code true}, los cambios desde la versión pedida ya no
+ * se conservan y el cliente debe descargar el catálogo completo; en ese caso las listas vienen vacías.
+ * En cualquier caso, {@code version} es la versión que el cliente debe usar en la siguiente consulta.</p>
+ *
+ * @author Jorge
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeltaCatalogoDTO
+{
+    /**
+     * Versión del catálogo que refleja esta respuesta.
+     */
+    private long version;
+
+    /**
+     * Indica que el cliente debe descartar su copia y descargar el catálogo completo.
+     */
+    private boolean resincronizacionCompleta;
+
+    /**
+     * Instrumentos creados o modificados (incluye las guitarras cuyas fundas cambiaron), en su estado actual.
+     */
+    private List<Instrumento> modificados;
+
+    /**
+     * Códigos de los instrumentos eliminados.
+     */
+    private List<String> eliminados;
+
+    /**
+     * Códigos de las fundas eliminadas, agrupados por el código de su guitarra.
+     */
+    private Map<String, List<String>> fundasEliminadas;
+}
@@ -0,0 +1,61 @@
+package com.unibague.poctiendainstrumentos.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Métricas de la caché de instrumentos consultados por código.
+ *
+ * @author Jorge
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EstadisticasCacheDTO
+{
+    /**
+     * Cantidad máxima de instrumentos en la caché; 0 si está deshabilitada.
+     */
+    private int capacidad;
+
+    /**
+     * Cantidad de instrumentos en la caché.
+     */
+    private int tamano;
+
+    /**
+     * Consultas atendidas desde la caché.
+     */
+    private long aciertos;
+
+    /**
+     * Consultas que tuvieron que leer el instrumento del catálogo.
+     */
+    private long fallos;
+
+    /**
+     * Proporción de aciertos sobre el total de consultas, entre 0 y 1.
+     */
+    private double tasaAciertos;
+
+    /**
+     * Instrumentos admitidos en la caché tras un fallo.
+     */
+    private long promociones;
+
+    /**
+     * Instrumentos no admitidos por ser menos frecuentes que el candidato a expulsar.
+     */
+    private long rechazos;
+
+    /**
+     * Instrumentos expulsados para dar lugar a otro más frecuente.
+     */
+    private long expulsiones;
+
+    /**
+     * Instrumentos retirados porque cambiaron en el catálogo.
+     */
+    private long invalidaciones;
+}
@@ -0,0 +1,52 @@
+package com.unibague.poctiendainstrumentos.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Estado de la replicación del catálogo en un nodo.
+ *
+ * @author Jorge
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EstadoReplicacionDTO
+{
+    /**
+     * Rol del nodo: {@code lider} o {@code seguidor}.
+     */
+    private String rol;
+
+    /**
+     * URL del líder, o {@code null} si el nodo es líder.
+     */
+    private String lider;
+
+    /**
+     * Última versión del catálogo del líder aplicada en este nodo.
+     */
+    private long versionAplicada;
+
+    /**
+     * Cantidad de versiones del líder pendientes de aplicar en la última consulta.
+     */
+    private long retrasoVersiones;
+
+    /**
+     * Milisegundos transcurridos desde la última sincronización exitosa con el líder,
+     * o {@code -1} si aún no se ha sincronizado.
+     */
+    private long retrasoMs;
+
+    /**
+     * Cantidad de resincronizaciones completas realizadas.
+     */
+    private long resincronizaciones;
+
+    /**
+     * Último error al consultar al líder, o {@code null} si la última consulta fue exitosa.
+     */
+    private String ultimoError;
+}
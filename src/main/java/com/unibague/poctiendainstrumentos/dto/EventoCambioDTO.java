@@ -0,0 +1,51 @@
+package com.unibague.poctiendainstrumentos.dto;
+
+import com.unibague.poctiendainstrumentos.model.enums.EntidadCambio;
+import com.unibague.poctiendainstrumentos.model.enums.TipoCambio;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Evento publicado por cada modificación del catálogo de instrumentos.
+ *
+ * <p>La secuencia coincide con la versión del catálogo alcanzada por la modificación,
+ * por lo que sirve como marcador para reanudar la suscripción al canal de cambios.</p>
+ *
+ * @author Jorge
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventoCambioDTO
+{
+    /**
+     * Versión del catálogo alcanzada con este cambio.
+     */
+    private long secuencia;
+
+    /**
+     * Tipo de modificación.
+     */
+    private TipoCambio tipo;
+
+    /**
+     * Tipo de elemento modificado.
+     */
+    private EntidadCambio entidad;
+
+    /**
+     * Código del instrumento afectado (o de la guitarra propietaria de la funda).
+     */
+    private String codigo;
+
+    /**
+     * Código de la funda afectada, o {@code null} si el cambio es de un instrumento.
+     */
+    private String codigoFunda;
+
+    /**
+     * Versión del instrumento después del cambio.
+     */
+    private long version;
+}
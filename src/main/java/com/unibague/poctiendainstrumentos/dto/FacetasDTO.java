@@ -0,0 +1,44 @@
+package com.unibague.poctiendainstrumentos.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Conteos por faceta calculados sobre el conjunto de instrumentos que cumplen un filtro.
+ *
+ * <p>Permite a los clientes mostrar junto a los resultados valores como
+ * "Yamaha (42), Fender (17)" sin tener que lanzar una consulta de filtrado por cada faceta.</p>
+ *
+ * <p>Las claves de los tipos de guitarra y de las sensibilidades usan la misma
+ * representación legible que se emplea en JSON ({@code "Eléctrica"}, {@code "Alta"}, etc.).</p>
+ *
+ * @author Jorge
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetasDTO
+{
+    /**
+     * Cantidad de instrumentos por marca.
+     */
+    private Map<String, Long> marcas;
+
+    /**
+     * Cantidad de guitarras por tipo de guitarra.
+     */
+    private Map<String, Long> tiposGuitarra;
+
+    /**
+     * Cantidad de teclados por sensibilidad.
+     */
+    private Map<String, Long> sensibilidades;
+
+    /**
+     * Cantidad de instrumentos por rango de precio base.
+     */
+    private Map<String, Long> rangosPrecio;
+}
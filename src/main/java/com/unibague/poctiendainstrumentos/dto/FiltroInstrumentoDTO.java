@@ -1,15 +1,20 @@
 package com.unibague.poctiendainstrumentos.dto;
 
+import com.unibague.poctiendainstrumentos.model.enums.CampoOrden;
 import com.unibague.poctiendainstrumentos.model.enums.TipoGuitarra;
 import com.unibague.poctiendainstrumentos.model.enums.SensibilidadTeclado;
 import lombok.Builder;
 import lombok.Data;
 
+import java.time.LocalDate;
+import java.util.List;
+
 /**
  * Data Transfer Object (DTO) para encapsular los filtros usados al consultar instrumentos musicales.
  *
  * <p>Incluye múltiples campos opcionales permitiendo filtrar por nombre, marca, rango de precio,
- * rango de stock, tipo de guitarra y sensibilidad de teclado.</p>
+ * rango de stock, rango de fecha de ingreso, tipo de guitarra y sensibilidad de teclado. Opcionalmente indica el campo por el que
+ * se ordenan los resultados y cuántos se devuelven, por ejemplo los diez más baratos.</p>
  *
  * <p>Se utiliza habitualmente en peticiones REST para búsquedas avanzadas.</p>
  *
@@ -31,6 +36,13 @@ public class FiltroInstrumentoDTO
      */
     private String marca;
 
+    /**
+     * Indica si el nombre y la marca toleran errores de escritura (opcional). Con {@code true} se
+     * comparan por términos, sin tildes ni mayúsculas, y cada término buscado acepta uno o dos
+     * errores según su largo, de modo que {@code "Fendr"} encuentra {@code "Fender"}.
+     */
+    private Boolean difuso;
+
     /**
      * Precio mínimo permitido.
      */
@@ -51,6 +63,17 @@ public class FiltroInstrumentoDTO
      */
     private Integer stockMax;
 
+    /**
+     * Primera fecha de ingreso permitida, incluida. Con alguna de las fechas el filtro se resuelve con
+     * el índice por fecha de ingreso y, sin otro orden, los resultados salen ordenados por esa fecha.
+     */
+    private LocalDate fechaIngresoDesde;
+
+    /**
+     * Última fecha de ingreso permitida, incluida.
+     */
+    private LocalDate fechaIngresoHasta;
+
     /**
      * Tipo de guitarra a filtrar (si aplica).
      */
@@ -60,4 +83,25 @@ public class FiltroInstrumentoDTO
      * Sensibilidad del teclado a filtrar (si aplica).
      */
     private SensibilidadTeclado sensibilidad;
+
+    /**
+     * Límites ascendentes de los rangos de precio usados en la faceta de precios (opcional).
+     * Si no se indican se usan los rangos por defecto del servicio.
+     */
+    private List<Double> limitesPrecio;
+
+    /**
+     * Campo por el que se ordenan los resultados (opcional). Sin orden se conserva el del catálogo.
+     */
+    private CampoOrden ordenarPor;
+
+    /**
+     * Indica si el orden es descendente. Por defecto es ascendente.
+     */
+    private Boolean descendente;
+
+    /**
+     * Cantidad máxima de resultados (opcional). Con orden se devuelven los primeros según ese orden.
+     */
+    private Integer limite;
 }
@@ -0,0 +1,33 @@
+package com.unibague.poctiendainstrumentos.dto;
+
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Copia completa del catálogo junto con la versión desde la que se deben pedir los cambios siguientes.
+ *
+ * <p>La versión se lee antes que los instrumentos, así que la lista puede incluir cambios
+ * posteriores a ella. Como aplicar un cambio dos veces no altera el resultado, quien la use
+ * sólo tiene que pedir después los cambios desde esa versión.</p>
+ *
+ * @author Jorge
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InstantaneaCatalogoDTO
+{
+    /**
+     * Versión del catálogo leída antes de copiar los instrumentos.
+     */
+    private long version;
+
+    /**
+     * Instrumentos del catálogo.
+     */
+    private List<Instrumento> instrumentos;
+}
@@ -0,0 +1,32 @@
+package com.unibague.poctiendainstrumentos.dto;
+
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Resultado de un filtrado de instrumentos acompañado de sus conteos por faceta.
+ *
+ * <p>Se devuelve en lugar de la lista simple cuando el cliente solicita las facetas,
+ * de modo que resultados y conteos se obtienen en una sola evaluación del filtro.</p>
+ *
+ * @author Jorge
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoFiltroDTO
+{
+    /**
+     * Instrumentos que cumplen los criterios del filtro.
+     */
+    private List<Instrumento> resultados;
+
+    /**
+     * Conteos por faceta calculados sobre los resultados.
+     */
+    private FacetasDTO facetas;
+}
@@ -0,0 +1,26 @@
+package com.unibague.poctiendainstrumentos.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Stock disponible de un instrumento después de una operación de reserva, liberación o ajuste.
+ *
+ * @author Jorge
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockDTO
+{
+    /**
+     * Código del instrumento.
+     */
+    private String codigo;
+
+    /**
+     * Stock disponible después de la operación.
+     */
+    private int stock;
+}
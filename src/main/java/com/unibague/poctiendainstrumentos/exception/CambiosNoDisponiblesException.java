@@ -0,0 +1,26 @@
+package com.unibague.poctiendainstrumentos.exception;
+
+import java.io.Serial;
+
+/**
+ * Excepción lanzada cuando se piden los cambios del catálogo a partir de una versión
+ * que ya no se conserva (o que el catálogo aún no alcanzó).
+ *
+ * <p>El cliente debe volver a sincronizarse por completo en lugar de aplicar cambios parciales.</p>
+ *
+ * @author Jorge
+ */
+public class CambiosNoDisponiblesException extends RuntimeException
+{
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Crea la excepción con un mensaje descriptivo.
+     *
+     * @param mensaje detalle de la versión no disponible
+     */
+    public CambiosNoDisponiblesException(String mensaje) {
+        super(mensaje);
+    }
+}
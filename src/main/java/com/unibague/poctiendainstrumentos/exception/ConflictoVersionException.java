@@ -0,0 +1,27 @@
+package com.unibague.poctiendainstrumentos.exception;
+
+import java.io.Serial;
+
+/**
+ * Excepción lanzada cuando una modificación indica una versión esperada que ya no
+ * corresponde a la versión actual del instrumento, porque otro escritor lo modificó antes.
+ *
+ * <p>Se traduce a una respuesta HTTP 412 (Precondition Failed) para las peticiones
+ * que enviaron el encabezado {@code If-Match}.</p>
+ *
+ * @author Jorge
+ */
+public class ConflictoVersionException extends RuntimeException
+{
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Crea la excepción con un mensaje descriptivo.
+     *
+     * @param mensaje detalle del conflicto
+     */
+    public ConflictoVersionException(String mensaje) {
+        super(mensaje);
+    }
+}
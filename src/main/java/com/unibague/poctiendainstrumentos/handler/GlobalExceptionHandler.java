@@ -1,6 +1,8 @@
 package com.unibague.poctiendainstrumentos.handler;
 
 import com.unibague.poctiendainstrumentos.dto.ApiResponse;
+import com.unibague.poctiendainstrumentos.exception.CambiosNoDisponiblesException;
+import com.unibague.poctiendainstrumentos.exception.ConflictoVersionException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -22,6 +24,8 @@ import java.util.NoSuchElementException;
  *     <li>{@link NoSuchElementException}: para recursos no encontrados.</li>
  *     <li>{@link IllegalArgumentException}: para solicitudes inválidas o argumentos incorrectos.</li>
  *     <li>{@link IllegalStateException}: para conflictos de estado, como duplicados.</li>
+ *     <li>{@link ConflictoVersionException}: para modificaciones con una versión esperada desactualizada.</li>
+ *     <li>{@link CambiosNoDisponiblesException}: para cambios del catálogo que ya no se conservan.</li>
  * </ul>
  *
  * <p>Cada excepción retorna un objeto {@link ApiResponse} con un mensaje y un indicador de error,
@@ -83,4 +87,28 @@ public class GlobalExceptionHandler
         return ResponseEntity.status(HttpStatus.CONFLICT)
                 .body(new ApiResponse(true, e.getMessage()));
     }
+
+    /**
+     * Maneja modificaciones cuya versión esperada ({@code If-Match}) ya no es la actual.
+     *
+     * @param e excepción de conflicto de versión.
+     * @return respuesta con estado {@link HttpStatus#PRECONDITION_FAILED} y mensaje de error.
+     */
+    @ExceptionHandler(ConflictoVersionException.class)
+    public ResponseEntity<ApiResponse> handlePreconditionFailed(ConflictoVersionException e) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .body(new ApiResponse(true, e.getMessage()));
+    }
+
+    /**
+     * Maneja solicitudes de cambios a partir de una versión del catálogo que ya no se conserva.
+     *
+     * @param e excepción de cambios no disponibles.
+     * @return respuesta con estado {@link HttpStatus#GONE} y mensaje de error.
+     */
+    @ExceptionHandler(CambiosNoDisponiblesException.class)
+    public ResponseEntity<ApiResponse> handleGone(CambiosNoDisponiblesException e) {
+        return ResponseEntity.status(HttpStatus.GONE)
+                .body(new ApiResponse(true, e.getMessage()));
+    }
 }
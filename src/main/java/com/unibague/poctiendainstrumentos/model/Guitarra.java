@@ -24,7 +24,9 @@ import java.util.stream.Stream;
  * la lista de fundas ofreciendo operaciones para agregar, buscar, editar y eliminar fundas.</p>
  *
  * <p>La lista de fundas se expone de forma inmutable para evitar modificaciones
- * externas accidentales.</p>
+ * externas accidentales. Además se maneja con copia en escritura: agregar, editar o eliminar
+ * fundas construye una lista nueva y la publica con una sola asignación, de modo que quien
+ * esté leyendo la guitarra al mismo tiempo ve la lista anterior o la nueva, nunca una a medias.</p>
  *
  * <p>Los métodos para editar y eliminar fundas lanzan excepción {@link NoSuchElementException}
  * si no se encuentra la funda con el código especificado.</p>
@@ -46,9 +48,9 @@ public class Guitarra extends Instrumento
     private String materialCuerpo;
 
     /**
-     * Lista de fundas asociadas a la guitarra.
+     * Lista inmutable de fundas asociadas a la guitarra; se reemplaza completa en cada modificación.
      */
-    private List<Funda> fundas = new ArrayList<>();
+    private volatile List<Funda> fundas = Collections.emptyList();
 
     /**
      * Constructor con parámetros para crear una guitarra completa.
@@ -69,6 +71,26 @@ public class Guitarra extends Instrumento
         this.materialCuerpo = materialCuerpo;
     }
 
+    /**
+     * Constructor de copia. La copia comparte la lista de fundas, que es inmutable.
+     *
+     * @param otra guitarra a copiar
+     */
+    public Guitarra(Guitarra otra) {
+        super(otra);
+        this.tipo = otra.tipo;
+        this.materialCuerpo = otra.materialCuerpo;
+        this.fundas = otra.fundas;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Guitarra copiar() {
+        return new Guitarra(this);
+    }
+
     /**
      * Calcula el valor total de la guitarra sumando el precio base
      * y el precio de todas las fundas asociadas.
@@ -93,11 +115,9 @@ public class Guitarra extends Instrumento
     public void agregarFundas(List<Funda> fundas) {
         if (fundas == null) return;
         else {
-            this.fundas = new ArrayList<>(
-                    Stream.concat(this.fundas.stream(), fundas.stream())
-                            .distinct()
-                            .toList()
-            );
+            this.fundas = Stream.concat(this.fundas.stream(), fundas.stream())
+                    .distinct()
+                    .toList();
         }
     }
 
@@ -124,7 +144,9 @@ public class Guitarra extends Instrumento
          Optional<Funda> funda = buscarFunda(codigo);
         if (funda.isPresent())
         {
-            fundas.remove(funda.get());
+            List<Funda> nuevas = new ArrayList<>(fundas);
+            nuevas.remove(funda.get());
+            fundas = Collections.unmodifiableList(nuevas);
         }
         else
         {
@@ -145,7 +167,9 @@ public class Guitarra extends Instrumento
         Optional<Funda> fundaAEditar = buscarFunda(codigo);
         if (fundaAEditar.isPresent())
         {
-            fundas.set(fundas.indexOf(fundaAEditar.get()), funda);
+            List<Funda> nuevas = new ArrayList<>(fundas);
+            nuevas.set(nuevas.indexOf(fundaAEditar.get()), funda);
+            fundas = Collections.unmodifiableList(nuevas);
         }
         else
         {
@@ -159,7 +183,16 @@ public class Guitarra extends Instrumento
      * @return lista inmutable de fundas, vacía si no hay fundas
      */
     public List<Funda> getFundas() {
-        return fundas == null ? Collections.emptyList() : Collections.unmodifiableList(fundas);
+        return fundas == null ? Collections.emptyList() : fundas;
+    }
+
+    /**
+     * Reemplaza las fundas de la guitarra por una copia inmutable de la lista recibida.
+     *
+     * @param fundas nuevas fundas, o {@code null} para dejar la guitarra sin fundas
+     */
+    public void setFundas(List<Funda> fundas) {
+        this.fundas = fundas == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(fundas));
     }
 
     /**
@@ -4,9 +4,12 @@
  */
 package com.unibague.poctiendainstrumentos.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDate;
@@ -24,6 +27,16 @@ import java.time.LocalDate;
  * para calcular el valor del instrumento, el cual debe ser implementado por las subclases
  * específicas.</p>
  *
+ * <p>Un instrumento ya publicado en el catálogo no se modifica: el servicio hace una copia con
+ * {@link #copiar()}, la modifica (por ejemplo con {@link #reservarStock(int)}, {@link #liberarStock(int)}
+ * o {@link #ajustarStock(int)}) y reemplaza el original por la copia. Así, quien lee un instrumento
+ * del catálogo ve siempre un estado completo y estable.</p>
+ *
+ * <p>Cada instrumento lleva una versión que aumenta con cada modificación. Se expone en JSON
+ * sólo para lectura y permite el control de concurrencia optimista: el servicio da la versión
+ * siguiente a la copia que reemplaza al instrumento, y rechaza el cambio si quien lo pide esperaba
+ * otra versión.</p>
+ *
  * <p>Se utiliza {@code @JsonTypeInfo} y {@code @JsonSubTypes} para permitir la deserialización
  * correcta de subtipos concretos desde JSON, usando el campo discriminador "type".</p>
  *
@@ -74,6 +87,21 @@ public abstract class Instrumento
      */
     private LocalDate fechaIngreso;
 
+    /**
+     * Versión del instrumento; aumenta con cada modificación.
+     * Es de sólo lectura en JSON: la asigna el servicio.
+     */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private long version;
+
+    /**
+     * Orden de ingreso del instrumento en su partición del catálogo; lo asigna el servicio y lo
+     * heredan las copias, para ubicar el instrumento en la lista sin recorrerla.
+     */
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private long ordenIngreso;
+
     /**
      * Constructor con parámetros para crear un instrumento completo.
      *
@@ -93,6 +121,29 @@ public abstract class Instrumento
         this.fechaIngreso = fechaIngreso;
     }
 
+    /**
+     * Constructor de copia: copia los atributos comunes de otro instrumento, incluida su versión.
+     *
+     * @param otro instrumento a copiar
+     */
+    protected Instrumento(Instrumento otro) {
+        this.codigo = otro.codigo;
+        this.nombre = otro.nombre;
+        this.marca = otro.marca;
+        this.precioBase = otro.precioBase;
+        this.stock = otro.stock;
+        this.fechaIngreso = otro.fechaIngreso;
+        this.version = otro.version;
+        this.ordenIngreso = otro.ordenIngreso;
+    }
+
+    /**
+     * Crea una copia del instrumento que se puede modificar sin afectar al original.
+     *
+     * @return copia con los mismos atributos
+     */
+    public abstract Instrumento copiar();
+
     /**
      * Calcula el valor específico del instrumento.
      * Debe ser implementado por las subclases.
@@ -130,6 +181,74 @@ public abstract class Instrumento
         }
     }
 
+    /**
+     * Reserva unidades del stock.
+     *
+     * @param cantidad unidades a reservar, debe ser positiva
+     * @return stock restante después de la reserva
+     * @throws IllegalArgumentException si la cantidad no es positiva
+     * @throws IllegalStateException si no hay stock suficiente
+     */
+    public int reservarStock(int cantidad) {
+        validarCantidad(cantidad);
+        return modificarStock(-cantidad);
+    }
+
+    /**
+     * Devuelve unidades al stock (por ejemplo, al cancelar una reserva).
+     *
+     * @param cantidad unidades a liberar, debe ser positiva
+     * @return stock disponible después de liberar
+     * @throws IllegalArgumentException si la cantidad no es positiva
+     */
+    public int liberarStock(int cantidad) {
+        validarCantidad(cantidad);
+        return modificarStock(cantidad);
+    }
+
+    /**
+     * Suma o resta unidades al stock.
+     *
+     * @param delta unidades a sumar (positivo) o restar (negativo)
+     * @return stock resultante
+     * @throws IllegalStateException si el stock resultante sería negativo
+     */
+    public int ajustarStock(int delta) {
+        return modificarStock(delta);
+    }
+
+    /**
+     * Aplica un delta al stock.
+     *
+     * @param delta unidades a sumar o restar
+     * @return stock resultante
+     * @throws IllegalStateException si el stock resultante sería negativo
+     * @throws IllegalArgumentException si el stock resultante excede el máximo representable
+     */
+    private int modificarStock(int delta) {
+        long nuevo = (long) stock + delta;
+        if (nuevo < 0) {
+            throw new IllegalStateException("Stock insuficiente para el instrumento " + codigo);
+        }
+        if (nuevo > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Stock invalido");
+        }
+        stock = (int) nuevo;
+        return stock;
+    }
+
+    /**
+     * Valida que una cantidad de unidades sea positiva.
+     *
+     * @param cantidad cantidad a validar
+     * @throws IllegalArgumentException si la cantidad no es positiva
+     */
+    private static void validarCantidad(int cantidad) {
+        if (cantidad <= 0) {
+            throw new IllegalArgumentException("La cantidad debe ser positiva");
+        }
+    }
+
     /**
      * Representación en cadena del instrumento con sus atributos principales.
      *
@@ -68,6 +68,26 @@ public class Teclado extends Instrumento implements IProgramable
         this.sensibilidad = sensibilidad;
     }
 
+    /**
+     * Constructor de copia.
+     *
+     * @param otro teclado a copiar
+     */
+    public Teclado(Teclado otro) {
+        super(otro);
+        this.numeroTeclas = otro.numeroTeclas;
+        this.digital = otro.digital;
+        this.sensibilidad = otro.sensibilidad;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Teclado copiar() {
+        return new Teclado(this);
+    }
+
     /**
      * Calcula el valor del teclado considerando el precio base y
      * un recargo del 15% si es digital.
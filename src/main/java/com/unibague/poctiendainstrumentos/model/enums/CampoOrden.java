@@ -0,0 +1,89 @@
+package com.unibague.poctiendainstrumentos.model.enums;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * Enumeración de los campos por los que se pueden ordenar los resultados de un filtro.
+ *
+ * <p>El valor JSON de cada campo es el nombre de la propiedad del instrumento, de modo que el
+ * cliente ordena con el mismo nombre con que recibe el campo.</p>
+ *
+ * <ul>
+ *   <li>PRECIO_BASE: "precioBase"</li>
+ *   <li>STOCK: "stock"</li>
+ *   <li>FECHA_INGRESO: "fechaIngreso"</li>
+ *   <li>NOMBRE: "nombre"</li>
+ * </ul>
+ *
+ * @author Jorge
+ */
+public enum CampoOrden
+{
+    /**
+     * Precio base del instrumento.
+     */
+    PRECIO_BASE("precioBase"),
+
+    /**
+     * Cantidad disponible.
+     */
+    STOCK("stock"),
+
+    /**
+     * Fecha de ingreso al inventario.
+     */
+    FECHA_INGRESO("fechaIngreso"),
+
+    /**
+     * Nombre o modelo, sin distinguir mayúsculas de minúsculas.
+     */
+    NOMBRE("nombre");
+
+    /**
+     * Nombre de la propiedad del instrumento.
+     */
+    private final String valor;
+
+    /**
+     * Constructor privado del enum, asigna el nombre de la propiedad.
+     * @param valor nombre de la propiedad
+     */
+    CampoOrden(String valor) {
+        this.valor = valor;
+    }
+
+    /**
+     * Devuelve el nombre de la propiedad, usado al serializar a JSON.
+     *
+     * @return nombre de la propiedad
+     */
+    @JsonValue
+    public String getValor() {
+        return valor;
+    }
+
+    /**
+     * Crea una instancia de CampoOrden a partir del nombre de la propiedad o del nombre de la
+     * constante, ignorando mayúsculas/minúsculas y espacios.
+     * Usado por Jackson al deserializar requests JSON.
+     *
+     * @param valor nombre del campo
+     * @return instancia de CampoOrden correspondiente
+     * @throws IllegalArgumentException si el valor es nulo o no corresponde a ningún campo ordenable
+     */
+    @JsonCreator
+    public static CampoOrden desdeValor(String valor) {
+        if (valor == null) {
+            throw new IllegalArgumentException("El campo de orden no puede ser nulo");
+        }
+        String normalizado = valor.trim();
+
+        for (CampoOrden campo : values()) {
+            if (campo.valor.equalsIgnoreCase(normalizado) || campo.name().equalsIgnoreCase(normalizado)) {
+                return campo;
+            }
+        }
+        throw new IllegalArgumentException("Campo de orden no válido: " + valor);
+    }
+}
@@ -0,0 +1,24 @@
+package com.unibague.poctiendainstrumentos.model.enums;
+
+/**
+ * Enumeración que representa el tipo de elemento afectado por una modificación del catálogo.
+ *
+ * <ul>
+ *   <li>INSTRUMENTO: un instrumento (guitarra o teclado).</li>
+ *   <li>FUNDA: una funda de una guitarra.</li>
+ * </ul>
+ *
+ * @author Jorge
+ */
+public enum EntidadCambio
+{
+    /**
+     * Instrumento del catálogo.
+     */
+    INSTRUMENTO,
+
+    /**
+     * Funda asociada a una guitarra.
+     */
+    FUNDA
+}
@@ -0,0 +1,30 @@
+package com.unibague.poctiendainstrumentos.model.enums;
+
+/**
+ * Enumeración que representa el tipo de modificación registrada en el catálogo.
+ *
+ * <ul>
+ *   <li>CREADO: el elemento se agregó al catálogo.</li>
+ *   <li>ACTUALIZADO: el elemento cambió alguno de sus datos.</li>
+ *   <li>ELIMINADO: el elemento se retiró del catálogo.</li>
+ * </ul>
+ *
+ * @author Jorge
+ */
+public enum TipoCambio
+{
+    /**
+     * Elemento agregado.
+     */
+    CREADO,
+
+    /**
+     * Elemento modificado.
+     */
+    ACTUALIZADO,
+
+    /**
+     * Elemento eliminado.
+     */
+    ELIMINADO
+}
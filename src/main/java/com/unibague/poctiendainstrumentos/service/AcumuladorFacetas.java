@@ -0,0 +1,185 @@
+package com.unibague.poctiendainstrumentos.service;
+
+import com.unibague.poctiendainstrumentos.dto.FacetasDTO;
+import com.unibague.poctiendainstrumentos.model.Guitarra;
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+import com.unibague.poctiendainstrumentos.model.Teclado;
+import com.unibague.poctiendainstrumentos.model.enums.SensibilidadTeclado;
+import com.unibague.poctiendainstrumentos.model.enums.TipoGuitarra;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Acumula los conteos por faceta de los instrumentos que cumplen un filtro.
+ *
+ * <p>Se alimenta con cada coincidencia durante el mismo recorrido que construye la lista
+ * de resultados, por lo que obtener las facetas no requiere evaluaciones adicionales
+ * del catálogo.</p>
+ *
+ * <p>Las marcas se agrupan sin distinguir mayúsculas de minúsculas, igual que el filtro
+ * por marca. Los tipos de guitarra y sensibilidades usan contadores indexados por ordinal.</p>
+ *
+ * @author Jorge
+ */
+class AcumuladorFacetas
+{
+    /**
+     * Límites de los rangos de precio, en orden ascendente.
+     */
+    private final double[] limitesPrecio;
+
+    /**
+     * Conteo por marca, sin distinguir mayúsculas de minúsculas.
+     */
+    private final Map<String, Long> marcas = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    /**
+     * Conteo por ordinal de {@link TipoGuitarra}.
+     */
+    private final long[] tiposGuitarra = new long[TipoGuitarra.values().length];
+
+    /**
+     * Conteo por ordinal de {@link SensibilidadTeclado}.
+     */
+    private final long[] sensibilidades = new long[SensibilidadTeclado.values().length];
+
+    /**
+     * Conteo por rango de precio; hay un rango más que límites.
+     */
+    private final long[] rangosPrecio;
+
+    /**
+     * Crea un acumulador vacío.
+     *
+     * @param limitesPrecio límites ascendentes de los rangos de precio
+     */
+    AcumuladorFacetas(double[] limitesPrecio) {
+        this.limitesPrecio = limitesPrecio;
+        this.rangosPrecio = new long[limitesPrecio.length + 1];
+    }
+
+    /**
+     * Convierte los límites recibidos en el filtro a un arreglo ordenado.
+     *
+     * @param limites límites indicados por el cliente, puede ser nulo o vacío
+     * @param porDefecto límites a usar si el cliente no indicó ninguno
+     * @return límites ascendentes
+     * @throws IllegalArgumentException si algún límite es nulo o negativo
+     */
+    static double[] limites(List<Double> limites, double[] porDefecto) {
+        if (limites == null || limites.isEmpty()) {
+            return porDefecto;
+        }
+        double[] resultado = new double[limites.size()];
+        for (int i = 0; i < resultado.length; i++) {
+            Double limite = limites.get(i);
+            if (limite == null || limite < 0) {
+                throw new IllegalArgumentException("Límite de precio invalido");
+            }
+            resultado[i] = limite;
+        }
+        Arrays.sort(resultado);
+        return resultado;
+    }
+
+    /**
+     * Suma un instrumento a los conteos de todas las facetas que le aplican.
+     *
+     * @param instrumento instrumento que cumple el filtro
+     */
+    void contar(Instrumento instrumento) {
+        if (instrumento.getMarca() != null) {
+            marcas.merge(instrumento.getMarca(), 1L, Long::sum);
+        }
+        if (instrumento instanceof Guitarra guitarra && guitarra.getTipo() != null) {
+            tiposGuitarra[guitarra.getTipo().ordinal()]++;
+        } else if (instrumento instanceof Teclado teclado && teclado.getSensibilidad() != null) {
+            sensibilidades[teclado.getSensibilidad().ordinal()]++;
+        }
+        rangosPrecio[rango(instrumento.getPrecioBase())]++;
+    }
+
+    /**
+     * Suma los conteos de otro acumulador construido con los mismos límites.
+     *
+     * @param otro acumulador a combinar
+     */
+    void combinar(AcumuladorFacetas otro) {
+        otro.marcas.forEach((marca, cantidad) -> marcas.merge(marca, cantidad, Long::sum));
+        for (int i = 0; i < tiposGuitarra.length; i++) {
+            tiposGuitarra[i] += otro.tiposGuitarra[i];
+        }
+        for (int i = 0; i < sensibilidades.length; i++) {
+            sensibilidades[i] += otro.sensibilidades[i];
+        }
+        for (int i = 0; i < rangosPrecio.length; i++) {
+            rangosPrecio[i] += otro.rangosPrecio[i];
+        }
+    }
+
+    /**
+     * Construye el DTO de facetas, omitiendo los valores sin coincidencias
+     * salvo en los rangos de precio, que siempre se listan completos.
+     *
+     * @return facetas acumuladas
+     */
+    FacetasDTO aFacetas() {
+        Map<String, Long> tipos = new LinkedHashMap<>();
+        for (TipoGuitarra tipo : TipoGuitarra.values()) {
+            if (tiposGuitarra[tipo.ordinal()] > 0) {
+                tipos.put(tipo.getValor(), tiposGuitarra[tipo.ordinal()]);
+            }
+        }
+        Map<String, Long> sensibilidadesMap = new LinkedHashMap<>();
+        for (SensibilidadTeclado sensibilidad : SensibilidadTeclado.values()) {
+            if (sensibilidades[sensibilidad.ordinal()] > 0) {
+                sensibilidadesMap.put(sensibilidad.getValor(), sensibilidades[sensibilidad.ordinal()]);
+            }
+        }
+        Map<String, Long> precios = new LinkedHashMap<>();
+        for (int i = 0; i < rangosPrecio.length; i++) {
+            precios.put(etiquetaRango(i), rangosPrecio[i]);
+        }
+        return new FacetasDTO(new LinkedHashMap<>(marcas), tipos, sensibilidadesMap, precios);
+    }
+
+    /**
+     * Calcula el índice del rango de precio al que pertenece un valor.
+     * Cada rango incluye su límite inferior y excluye el superior.
+     *
+     * @param precio precio base del instrumento
+     * @return índice del rango
+     */
+    private int rango(double precio) {
+        int i = 0;
+        while (i < limitesPrecio.length && precio >= limitesPrecio[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Genera la etiqueta legible de un rango de precio.
+     *
+     * @param i índice del rango
+     * @return etiqueta como "0 - 500000" o "5000000+"
+     */
+    private String etiquetaRango(int i) {
+        String desde = i == 0 ? "0" : formatear(limitesPrecio[i - 1]);
+        return i == limitesPrecio.length ? desde + "+" : desde + " - " + formatear(limitesPrecio[i]);
+    }
+
+    /**
+     * Formatea un límite sin decimales innecesarios.
+     *
+     * @param valor límite de precio
+     * @return representación textual
+     */
+    private static String formatear(double valor) {
+        return valor == Math.rint(valor) ? String.valueOf((long) valor) : String.valueOf(valor);
+    }
+}
@@ -0,0 +1,580 @@
+package com.unibague.poctiendainstrumentos.service;
+
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Almacenamiento de instrumentos fuera del heap, en el formato de {@link CodificadorBinario}.
+ *
+ * <p>Los registros se escriben uno tras otro en segmentos de tamaño fijo, reservados con
+ * {@link ByteBuffer#allocateDirect(int)} o, si se indica un directorio, proyectados en memoria
+ * desde archivos temporales. En el heap sólo quedan arreglos primitivos: la dirección de cada
+ * registro por posición de ingreso, el hash de su código y una tabla hash de direccionamiento
+ * abierto del código a la posición. El recolector no tiene que recorrer ningún objeto por
+ * instrumento, por grande que sea el catálogo.</p>
+ *
+ * <p>Las modificaciones de la cabecera (stock, precio, versión) se hacen en el lugar; las demás
+ * escriben un registro nuevo al final y el anterior queda como espacio muerto. Cuando el espacio
+ * muerto supera al vivo, el almacenamiento se compacta copiando los registros vivos a segmentos
+ * nuevos; los segmentos anteriores se liberan cuando ninguna {@link Vista} los usa.</p>
+ *
+ * <p>Las modificaciones se hacen con el cerrojo de escritura tomado mediante {@link #bloquear()},
+ * que quien modifica mantiene durante toda la operación para validar y modificar de forma atómica.
+ * Mientras lo mantiene, las posiciones no cambian: la compactación se hace al liberarlo.
+ * Las búsquedas y la creación de vistas toman el cerrojo de lectura; el recorrido de una vista
+ * no toma ninguno. Las modificaciones en el lugar se encierran entre {@link #iniciarModificacion(int)}
+ * y {@link #terminarModificacion(int)}, que cambian el sello del registro, y la vista lee cada
+ * registro de forma optimista: si el sello indica que se modificó durante la lectura, la repite
+ * con el cerrojo de lectura tomado.</p>
+ *
+ * @author Jorge
+ */
+class AlmacenFueraDeHeap
+{
+    /**
+     * Valores especiales de la tabla hash; las demás entradas son la posición más uno.
+     */
+    private static final int VACIO = 0;
+    private static final int BORRADO = -1;
+
+    /**
+     * Dirección de las posiciones cuyo instrumento fue eliminado.
+     */
+    private static final long SIN_REGISTRO = -1;
+
+    private final CodificadorBinario codificador;
+    private final int tamanoSegmento;
+    private final Path directorio;
+    private final ReentrantReadWriteLock cerrojo = new ReentrantReadWriteLock();
+
+    private ByteBuffer[] segmentos = new ByteBuffer[0];
+
+    /**
+     * Primer byte libre del último segmento.
+     */
+    private int libre;
+
+    /**
+     * Dirección de cada registro por posición de ingreso: número de segmento en los 32 bits altos
+     * y desplazamiento en los bajos.
+     */
+    private long[] direcciones = new long[1024];
+
+    /**
+     * Hash del código de cada posición, para descartar colisiones sin leer el registro.
+     */
+    private int[] hashes = new int[1024];
+
+    private int[] tabla = new int[2048];
+
+    /**
+     * Posiciones usadas, incluidas las de instrumentos eliminados.
+     */
+    private int ocupadas;
+
+    private int vivos;
+
+    private int borrados;
+
+    private long bytesVivos;
+
+    private long bytesMuertos;
+
+    /**
+     * Crea un almacenamiento vacío.
+     *
+     * @param codificador codificador de los registros
+     * @param tamanoSegmento tamaño en bytes de cada segmento; ningún registro puede superarlo
+     * @param directorio directorio de los archivos proyectados en memoria, o {@code null} para usar memoria directa
+     * @throws IllegalArgumentException si el tamaño del segmento no es positivo
+     */
+    AlmacenFueraDeHeap(CodificadorBinario codificador, int tamanoSegmento, Path directorio) {
+        if (tamanoSegmento <= 0) {
+            throw new IllegalArgumentException("El tamaño del segmento debe ser positivo");
+        }
+        this.codificador = codificador;
+        this.tamanoSegmento = tamanoSegmento & ~7;
+        this.directorio = directorio;
+    }
+
+    /**
+     * Toma el cerrojo de escritura. Debe liberarse con {@link #desbloquear()}.
+     */
+    void bloquear() {
+        cerrojo.writeLock().lock();
+    }
+
+    /**
+     * Compacta el almacenamiento si conviene y libera el cerrojo de escritura.
+     */
+    void desbloquear() {
+        try {
+            compactarSiConviene();
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Busca un instrumento y lo decodifica.
+     *
+     * @param clave código normalizado
+     * @return instrumento nuevo con los datos del registro, o {@code null} si no existe
+     */
+    Instrumento buscar(String clave) {
+        cerrojo.readLock().lock();
+        try {
+            int posicion = ubicar(clave);
+            return posicion < 0 ? null : instrumento(posicion);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Crea una vista de los instrumentos actuales, en orden de ingreso.
+     *
+     * @param clase clase de los instrumentos incluidos, o -1 para incluirlos todos
+     * @return vista inmutable
+     */
+    Vista vista(int clase) {
+        cerrojo.readLock().lock();
+        try {
+            long[] seleccion = new long[vivos];
+            int total = 0;
+            for (int posicion = 0; posicion < ocupadas; posicion++) {
+                long direccion = direcciones[posicion];
+                if (direccion != SIN_REGISTRO
+                        && (clase < 0 || CodificadorBinario.clase(segmento(direccion), desplazamiento(direccion)) == clase)) {
+                    seleccion[total++] = direccion;
+                }
+            }
+            return new Vista(codificador, segmentos, seleccion, total, cerrojo.readLock());
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Devuelve la posición del instrumento con un código. Requiere algún cerrojo tomado.
+     *
+     * @param clave código normalizado
+     * @return posición, o -1 si no existe
+     */
+    int ubicar(String clave) {
+        int hash = hash(clave);
+        int mascara = tabla.length - 1;
+        for (int i = hash & mascara; ; i = (i + 1) & mascara) {
+            int entrada = tabla[i];
+            if (entrada == VACIO) {
+                return -1;
+            }
+            if (entrada != BORRADO) {
+                int posicion = entrada - 1;
+                if (hashes[posicion] == hash && clave.equals(clave(posicion))) {
+                    return posicion;
+                }
+            }
+        }
+    }
+
+    /**
+     * Indica la cantidad de posiciones a recorrer con {@link #vivo(int)}. Requiere el cerrojo de escritura.
+     *
+     * @return posiciones usadas
+     */
+    int ocupadas() {
+        return ocupadas;
+    }
+
+    /**
+     * Indica si una posición tiene un instrumento.
+     *
+     * @param posicion posición menor que {@link #ocupadas()}
+     * @return {@code false} si el instrumento de la posición fue eliminado
+     */
+    boolean vivo(int posicion) {
+        return direcciones[posicion] != SIN_REGISTRO;
+    }
+
+    /**
+     * Decodifica el instrumento de una posición.
+     *
+     * @param posicion posición viva
+     * @return instrumento nuevo con los datos del registro
+     */
+    Instrumento instrumento(int posicion) {
+        long direccion = direcciones[posicion];
+        return codificador.decodificar(segmento(direccion), desplazamiento(direccion));
+    }
+
+    /**
+     * Devuelve el segmento que contiene el registro de una posición, para leer o modificar su
+     * cabecera con los métodos de {@link CodificadorBinario}.
+     *
+     * @param posicion posición viva
+     * @return segmento del registro
+     */
+    ByteBuffer segmento(int posicion) {
+        return segmento(direcciones[posicion]);
+    }
+
+    /**
+     * Devuelve el desplazamiento del registro de una posición dentro de su segmento.
+     *
+     * @param posicion posición viva
+     * @return desplazamiento del registro
+     */
+    int desplazamiento(int posicion) {
+        return desplazamiento(direcciones[posicion]);
+    }
+
+    /**
+     * Marca el registro de una posición como en modificación antes de cambiar su cabecera en el
+     * lugar. Requiere el cerrojo de escritura; debe cerrarse con {@link #terminarModificacion(int)}.
+     *
+     * @param posicion posición viva
+     */
+    void iniciarModificacion(int posicion) {
+        CodificadorBinario.abrirSello(segmento(posicion), desplazamiento(posicion));
+    }
+
+    /**
+     * Termina la modificación en el lugar abierta con {@link #iniciarModificacion(int)}.
+     *
+     * @param posicion posición viva
+     */
+    void terminarModificacion(int posicion) {
+        CodificadorBinario.cerrarSello(segmento(posicion), desplazamiento(posicion));
+    }
+
+    /**
+     * Agrega un instrumento al final. Requiere el cerrojo de escritura y que el código no exista.
+     *
+     * @param clave código normalizado
+     * @param instrumento instrumento a guardar
+     * @return posición del instrumento
+     */
+    int agregar(String clave, Instrumento instrumento) {
+        byte[] registro = codificador.codificar(instrumento);
+        if (ocupadas == direcciones.length) {
+            direcciones = Arrays.copyOf(direcciones, ocupadas * 2);
+            hashes = Arrays.copyOf(hashes, ocupadas * 2);
+        }
+        int posicion = ocupadas;
+        direcciones[posicion] = escribir(registro);
+        hashes[posicion] = hash(clave);
+        ocupadas++;
+        vivos++;
+        insertarEnTabla(posicion);
+        return posicion;
+    }
+
+    /**
+     * Reemplaza el instrumento de una posición, que conserva su lugar en el orden de ingreso
+     * y la secuencia de su último cambio. Requiere el cerrojo de escritura.
+     *
+     * @param posicion posición viva
+     * @param clave código normalizado del instrumento nuevo, que puede ser distinto del anterior
+     * @param instrumento instrumento nuevo
+     */
+    void reemplazar(int posicion, String clave, Instrumento instrumento) {
+        byte[] registro = codificador.codificar(instrumento);
+        long anterior = direcciones[posicion];
+        int longitudAnterior = CodificadorBinario.longitud(segmento(anterior), desplazamiento(anterior));
+        long secuencia = CodificadorBinario.secuencia(segmento(anterior), desplazamiento(anterior));
+        long direccion = escribir(registro);
+        CodificadorBinario.fijarSecuencia(segmento(direccion), desplazamiento(direccion), secuencia);
+        direcciones[posicion] = direccion;
+        bytesVivos -= longitudAnterior;
+        bytesMuertos += longitudAnterior;
+        int hash = hash(clave);
+        if (hash != hashes[posicion] || !clave.equals(clave(posicion))) {
+            quitarDeTabla(posicion);
+            hashes[posicion] = hash;
+            insertarEnTabla(posicion);
+        }
+    }
+
+    /**
+     * Elimina el instrumento de una posición. Requiere el cerrojo de escritura.
+     *
+     * @param posicion posición viva
+     */
+    void eliminar(int posicion) {
+        long direccion = direcciones[posicion];
+        int longitud = CodificadorBinario.longitud(segmento(direccion), desplazamiento(direccion));
+        quitarDeTabla(posicion);
+        direcciones[posicion] = SIN_REGISTRO;
+        vivos--;
+        bytesVivos -= longitud;
+        bytesMuertos += longitud;
+    }
+
+    /**
+     * Copia un registro al final del último segmento, abriendo uno nuevo si no cabe.
+     *
+     * @param registro bytes del registro
+     * @return dirección del registro
+     * @throws IllegalArgumentException si el registro es más grande que un segmento
+     */
+    private long escribir(byte[] registro) {
+        if (registro.length > tamanoSegmento) {
+            throw new IllegalArgumentException("El instrumento ocupa " + registro.length
+                    + " bytes y no cabe en un segmento de " + tamanoSegmento);
+        }
+        if (segmentos.length == 0 || libre + registro.length > tamanoSegmento) {
+            segmentos = Arrays.copyOf(segmentos, segmentos.length + 1);
+            segmentos[segmentos.length - 1] = reservarSegmento();
+            libre = 0;
+        }
+        int numero = segmentos.length - 1;
+        segmentos[numero].put(libre, registro);
+        long direccion = (long) numero << 32 | libre;
+        libre += registro.length;
+        bytesVivos += registro.length;
+        return direccion;
+    }
+
+    /**
+     * Reserva la memoria de un segmento nuevo. Los archivos proyectados se abren con
+     * {@link StandardOpenOption#DELETE_ON_CLOSE}: la proyección sigue siendo válida después de
+     * cerrar el canal y el archivo desaparece con ella.
+     *
+     * @return segmento vacío
+     */
+    private ByteBuffer reservarSegmento() {
+        if (directorio == null) {
+            return ByteBuffer.allocateDirect(tamanoSegmento);
+        }
+        try {
+            Files.createDirectories(directorio);
+            Path archivo = Files.createTempFile(directorio, "catalogo-", ".seg");
+            try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+                return canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanoSegmento);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo reservar un segmento en " + directorio, e);
+        }
+    }
+
+    /**
+     * Compacta el almacenamiento cuando el espacio muerto ocupa al menos un segmento y supera
+     * al vivo, o cuando la mayoría de las posiciones son de instrumentos eliminados.
+     * Con ese umbral, cada byte vivo se copia en promedio menos de una vez por cada byte escrito.
+     */
+    private void compactarSiConviene() {
+        boolean espacio = bytesMuertos >= tamanoSegmento && bytesMuertos > bytesVivos;
+        boolean posiciones = ocupadas > 1024 && ocupadas - vivos > vivos;
+        if (espacio || posiciones) {
+            compactar();
+        }
+    }
+
+    /**
+     * Copia los registros vivos, en orden, a segmentos nuevos y reconstruye los índices.
+     */
+    private void compactar() {
+        ByteBuffer[] anteriores = segmentos;
+        long[] direccionesAnteriores = direcciones;
+        int[] hashesAnteriores = hashes;
+        int capacidad = Math.max(1024, Integer.highestOneBit(Math.max(1, vivos)) * 2);
+
+        segmentos = new ByteBuffer[0];
+        libre = 0;
+        bytesVivos = 0;
+        bytesMuertos = 0;
+        direcciones = new long[capacidad];
+        hashes = new int[capacidad];
+        int total = 0;
+        for (int posicion = 0; posicion < ocupadas; posicion++) {
+            long direccion = direccionesAnteriores[posicion];
+            if (direccion == SIN_REGISTRO) {
+                continue;
+            }
+            ByteBuffer segmento = anteriores[(int) (direccion >>> 32)];
+            int desplazamiento = (int) direccion;
+            byte[] registro = new byte[CodificadorBinario.longitud(segmento, desplazamiento)];
+            segmento.get(desplazamiento, registro);
+            direcciones[total] = escribir(registro);
+            hashes[total] = hashesAnteriores[posicion];
+            total++;
+        }
+        ocupadas = total;
+        vivos = total;
+        reconstruirTabla(total);
+    }
+
+    private void insertarEnTabla(int posicion) {
+        if ((vivos + borrados) * 2 > tabla.length) {
+            reconstruirTabla(vivos);
+            return;
+        }
+        int mascara = tabla.length - 1;
+        for (int i = hashes[posicion] & mascara; ; i = (i + 1) & mascara) {
+            if (tabla[i] == VACIO || tabla[i] == BORRADO) {
+                borrados -= tabla[i] == BORRADO ? 1 : 0;
+                tabla[i] = posicion + 1;
+                return;
+            }
+        }
+    }
+
+    private void quitarDeTabla(int posicion) {
+        int mascara = tabla.length - 1;
+        for (int i = hashes[posicion] & mascara; ; i = (i + 1) & mascara) {
+            if (tabla[i] == posicion + 1) {
+                tabla[i] = BORRADO;
+                borrados++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reconstruye la tabla hash con todas las posiciones vivas, sin entradas borradas y con
+     * capacidad para al menos el doble de los instrumentos.
+     *
+     * @param cantidad cantidad de instrumentos vivos
+     */
+    private void reconstruirTabla(int cantidad) {
+        int capacidad = Math.max(2048, Integer.highestOneBit(Math.max(1, cantidad)) * 4);
+        tabla = new int[capacidad];
+        borrados = 0;
+        int mascara = capacidad - 1;
+        for (int posicion = 0; posicion < ocupadas; posicion++) {
+            if (direcciones[posicion] == SIN_REGISTRO) {
+                continue;
+            }
+            int i = hashes[posicion] & mascara;
+            while (tabla[i] != VACIO) {
+                i = (i + 1) & mascara;
+            }
+            tabla[i] = posicion + 1;
+        }
+    }
+
+    private String clave(int posicion) {
+        long direccion = direcciones[posicion];
+        return CodificadorBinario.codigo(segmento(direccion), desplazamiento(direccion)).toLowerCase(Locale.ROOT);
+    }
+
+    private ByteBuffer segmento(long direccion) {
+        return segmentos[(int) (direccion >>> 32)];
+    }
+
+    private static int desplazamiento(long direccion) {
+        return (int) direccion;
+    }
+
+    /**
+     * Mezcla los bits del hash del código para repartir mejor los códigos con prefijos comunes.
+     */
+    private static int hash(String clave) {
+        int hash = clave.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Lectura de varios campos de un registro, que debe poder repetirse sin efectos.
+     *
+     * @param <T> tipo del resultado
+     */
+    @FunctionalInterface
+    interface LectorRegistro<T>
+    {
+        T leer(ByteBuffer segmento, int desplazamiento);
+    }
+
+    /**
+     * Lista inmutable de los instrumentos de un momento dado. Guarda sólo las direcciones de los
+     * registros y la referencia a los segmentos de entonces, que siguen vivos mientras la vista
+     * exista aunque el almacenamiento se compacte; cada elemento se decodifica al pedirlo y queda
+     * libre para el recolector en cuanto se deja de usar. Los cambios de stock, precio o versión
+     * hechos en el lugar después de crear la vista pueden verse en ella, pero cada elemento
+     * se lee completo de antes o de después de cada cambio.
+     */
+    static final class Vista extends AbstractList<Instrumento> implements RandomAccess
+    {
+        private final CodificadorBinario codificador;
+        private final ByteBuffer[] segmentos;
+        private final long[] direcciones;
+        private final int tamano;
+        private final Lock cerrojoLectura;
+
+        private Vista(CodificadorBinario codificador, ByteBuffer[] segmentos, long[] direcciones, int tamano,
+                      Lock cerrojoLectura) {
+            this.codificador = codificador;
+            this.segmentos = segmentos;
+            this.direcciones = direcciones;
+            this.tamano = tamano;
+            this.cerrojoLectura = cerrojoLectura;
+        }
+
+        @Override
+        public Instrumento get(int indice) {
+            Objects.checkIndex(indice, tamano);
+            return leer(indice, codificador::decodificar);
+        }
+
+        /**
+         * Lee varios campos de un elemento sin mezclar los de antes y los de después de una
+         * modificación en el lugar. Lee primero sin cerrojo y, si el registro cambió mientras tanto,
+         * repite la lectura con el cerrojo de lectura, que excluye a quien modifica.
+         *
+         * @param indice índice del elemento
+         * @param lector lectura de los campos del registro
+         * @param <T> tipo del resultado
+         * @return resultado de una lectura completa
+         */
+        <T> T leer(int indice, LectorRegistro<T> lector) {
+            ByteBuffer segmento = segmento(indice);
+            int desplazamiento = desplazamiento(indice);
+            long sello = CodificadorBinario.sello(segmento, desplazamiento);
+            T resultado = lector.leer(segmento, desplazamiento);
+            if (CodificadorBinario.selloVigente(segmento, desplazamiento, sello)) {
+                return resultado;
+            }
+            cerrojoLectura.lock();
+            try {
+                return lector.leer(segmento, desplazamiento);
+            } finally {
+                cerrojoLectura.unlock();
+            }
+        }
+
+        @Override
+        public int size() {
+            return tamano;
+        }
+
+        /**
+         * Devuelve el segmento del registro de un elemento, para leer su cabecera sin decodificarlo.
+         */
+        ByteBuffer segmento(int indice) {
+            return segmentos[(int) (direcciones[indice] >>> 32)];
+        }
+
+        /**
+         * Devuelve el desplazamiento del registro de un elemento dentro de su segmento.
+         */
+        int desplazamiento(int indice) {
+            return (int) direcciones[indice];
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.unibague.poctiendainstrumentos.service;
+
+import com.unibague.poctiendainstrumentos.dto.EventoCambioDTO;
+import com.unibague.poctiendainstrumentos.exception.CambiosNoDisponiblesException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Buffer circular acotado con los últimos eventos de cambio del catálogo.
+ *
+ * <p>Cada evento ocupa la posición que le corresponde por su secuencia, de modo que publicar
+ * es una escritura atómica y nunca bloquea al escritor. Cuando el buffer da la vuelta, los eventos
+ * más antiguos se sobrescriben; como varios escritores pueden publicar a la vez, un evento que llega
+ * tarde no reemplaza a uno más nuevo que ya ocupa su posición.</p>
+ *
+ * <p>Los lectores recorren las posiciones desde su propia secuencia. Si encuentran un evento
+ * más nuevo que el esperado, el que buscaban ya fue sobrescrito y deben volver a sincronizarse;
+ * si encuentran uno más antiguo, el evento esperado aún no se ha publicado.</p>
+ *
+ * @author Jorge
+ */
+class BufferCambios
+{
+    /**
+     * Posiciones del buffer; su cantidad es potencia de dos.
+     */
+    private final AtomicReferenceArray<EventoCambioDTO> eventos;
+
+    /**
+     * Máscara para calcular la posición a partir de la secuencia.
+     */
+    private final int mascara;
+
+    /**
+     * Crea un buffer con al menos la capacidad indicada, redondeada a la siguiente potencia de dos.
+     *
+     * @param capacidad cantidad mínima de eventos a conservar
+     * @throws IllegalArgumentException si la capacidad no es positiva
+     */
+    BufferCambios(int capacidad) {
+        if (capacidad <= 0) {
+            throw new IllegalArgumentException("La capacidad del buffer de cambios debe ser positiva");
+        }
+        int tamano = Integer.highestOneBit(capacidad);
+        if (tamano < capacidad) {
+            tamano <<= 1;
+        }
+        this.eventos = new AtomicReferenceArray<>(tamano);
+        this.mascara = tamano - 1;
+    }
+
+    /**
+     * Devuelve la cantidad de eventos que conserva el buffer.
+     *
+     * @return capacidad del buffer
+     */
+    int capacidad() {
+        return eventos.length();
+    }
+
+    /**
+     * Publica un evento en la posición de su secuencia, salvo que ya la ocupe un evento más nuevo.
+     *
+     * @param evento evento a publicar
+     */
+    void publicar(EventoCambioDTO evento) {
+        int posicion = (int) (evento.getSecuencia() & mascara);
+        while (true) {
+            EventoCambioDTO actual = eventos.get(posicion);
+            if (actual != null && actual.getSecuencia() > evento.getSecuencia()) {
+                return;
+            }
+            if (eventos.compareAndSet(posicion, actual, evento)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Lee en orden los eventos posteriores a una secuencia, hasta el primero aún no publicado.
+     *
+     * @param secuencia última secuencia ya conocida por el lector
+     * @param maximo cantidad máxima de eventos a devolver
+     * @return eventos consecutivos posteriores a la secuencia, posiblemente vacía
+     * @throws CambiosNoDisponiblesException si alguno de los eventos siguientes ya fue sobrescrito
+     */
+    List<EventoCambioDTO> leerDesde(long secuencia, int maximo) {
+        List<EventoCambioDTO> resultado = new ArrayList<>();
+        for (long siguiente = secuencia + 1; resultado.size() < maximo; siguiente++) {
+            EventoCambioDTO evento = eventos.get((int) (siguiente & mascara));
+            if (evento == null || evento.getSecuencia() < siguiente) {
+                break;
+            }
+            if (evento.getSecuencia() > siguiente) {
+                throw new CambiosNoDisponiblesException("Los cambios posteriores a la versión " + secuencia
+                        + " ya no están disponibles");
+            }
+            resultado.add(evento);
+        }
+        return resultado;
+    }
+}
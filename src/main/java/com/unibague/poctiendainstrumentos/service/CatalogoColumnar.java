@@ -0,0 +1,370 @@
+package com.unibague.poctiendainstrumentos.service;
+
+import com.unibague.poctiendainstrumentos.dto.FiltroInstrumentoDTO;
+import com.unibague.poctiendainstrumentos.model.Guitarra;
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+import com.unibague.poctiendainstrumentos.model.Teclado;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Copia columnar (estructura de arreglos) de los campos filtrables del catálogo.
+ *
+ * <p>Guarda el precio base, el stock, la clase de instrumento, el ordinal de su enum
+ * específico y el identificador de la marca en un diccionario propio de las copias columnares
+ * en arreglos primitivos paralelos a la
+ * lista de instrumentos. Los filtros por rango y por igualdad se evalúan con bucles cortos
+ * sobre esos arreglos, sin recorrer los objetos ni desempaquetar valores por elemento.</p>
+ *
+ * <p>Cada criterio actualiza una máscara de selección en una pasada independiente; sólo las
+ * filas que sobreviven se materializan como {@link Instrumento}, y sobre ellas se aplica el
+ * filtro por nombre, que no tiene representación columnar.</p>
+ *
+ * <p>La copia es inmutable y corresponde a una versión concreta del catálogo. Las columnas se
+ * guardan en bloques de {@link ListaSegmentada#TAMANO_SEGMENTO} filas, uno por segmento de la
+ * instantánea de la que se construyeron. Cuando el catálogo cambia, {@link #actualizar(List, long)}
+ * arma la copia de la instantánea nueva reutilizando los bloques de los segmentos que no cambiaron y
+ * reconstruyendo sólo los demás: un cambio de stock o un alta reconstruyen un bloque, no el catálogo.
+ * Los bloques reutilizados comparten el diccionario de marcas; para que no acumule las marcas de
+ * instrumentos ya eliminados, la copia se reconstruye entera con un diccionario nuevo cuando las filas
+ * reconstruidas desde la última reconstrucción completa superan las que tenía entonces, así que su
+ * costo se reparte entre los cambios que la provocan.</p>
+ *
+ * @author Jorge
+ */
+class CatalogoColumnar
+{
+    /**
+     * Clase de instrumento para las guitarras.
+     */
+    static final byte GUITARRA = 0;
+
+    /**
+     * Clase de instrumento para los teclados.
+     */
+    static final byte TECLADO = 1;
+
+    /**
+     * Clase de instrumento para cualquier otro subtipo.
+     */
+    static final byte OTRO = 2;
+
+    /**
+     * Cantidad de filas de cada bloque, igual a la de un segmento de la instantánea.
+     */
+    private static final int TAMANO_BLOQUE = ListaSegmentada.TAMANO_SEGMENTO;
+
+    /**
+     * Versión del catálogo a partir de la cual se construyó la copia.
+     */
+    private final long version;
+
+    /**
+     * Lista de la que se construyó la copia.
+     */
+    private final List<Instrumento> origen;
+
+    /**
+     * Bloques de columnas, en el orden de la lista.
+     */
+    private final Bloque[] bloques;
+
+    /**
+     * Diccionario de las marcas de los bloques. Lo comparten las copias armadas desde la última
+     * reconstrucción completa y se reemplaza en la siguiente.
+     */
+    private final DiccionarioCadenas diccionarioMarcas;
+
+    /**
+     * Filas que tenía la copia en la última reconstrucción completa.
+     */
+    private final int filasCompletas;
+
+    /**
+     * Filas reconstruidas por las copias armadas desde la última reconstrucción completa.
+     */
+    private final long filasReconstruidas;
+
+    /**
+     * Construye la copia columnar de una lista de instrumentos.
+     *
+     * @param instrumentos instrumentos del catálogo, en orden
+     * @param version versión del catálogo que representan
+     */
+    CatalogoColumnar(List<Instrumento> instrumentos, long version) {
+        this(instrumentos, version, null);
+    }
+
+    /**
+     * Construye la copia columnar de una lista reutilizando, si conviene, los bloques de una copia anterior.
+     *
+     * @param instrumentos instrumentos del catálogo, en orden
+     * @param version versión del catálogo que representan
+     * @param anterior copia anterior del mismo catálogo, o {@code null} para construirla entera
+     */
+    private CatalogoColumnar(List<Instrumento> instrumentos, long version, CatalogoColumnar anterior) {
+        int total = instrumentos.size();
+        int cantidad = (total + TAMANO_BLOQUE - 1) / TAMANO_BLOQUE;
+        Object[][] segmentos = ListaSegmentada.segmentos(instrumentos);
+        this.version = version;
+        this.origen = instrumentos;
+        this.bloques = new Bloque[cantidad];
+
+        long reconstruir = 0;
+        for (int i = 0; i < cantidad; i++) {
+            if (anterior != null && segmentos != null && anterior.bloqueVigente(i, segmentos[i], filas(total, i))) {
+                bloques[i] = anterior.bloques[i];
+            } else {
+                reconstruir += filas(total, i);
+            }
+        }
+        if (anterior != null && anterior.filasReconstruidas + reconstruir <= anterior.filasCompletas) {
+            this.diccionarioMarcas = anterior.diccionarioMarcas;
+            this.filasCompletas = anterior.filasCompletas;
+            this.filasReconstruidas = anterior.filasReconstruidas + reconstruir;
+        } else {
+            // Reconstrucción completa: se descartan los bloques anteriores y su diccionario.
+            Arrays.fill(bloques, null);
+            this.diccionarioMarcas = new DiccionarioCadenas(Integer.MAX_VALUE);
+            this.filasCompletas = total;
+            this.filasReconstruidas = 0;
+        }
+        for (int i = 0; i < cantidad; i++) {
+            if (bloques[i] == null) {
+                Object[] filas = segmentos != null ? segmentos[i]
+                        : instrumentos.subList(i * TAMANO_BLOQUE, i * TAMANO_BLOQUE + filas(total, i)).toArray();
+                bloques[i] = new Bloque(filas, filas(total, i), diccionarioMarcas);
+            }
+        }
+    }
+
+    /**
+     * Arma la copia columnar de una versión posterior del catálogo, reutilizando los bloques de esta
+     * copia cuyos segmentos siguen en la lista nueva. Esta copia no cambia.
+     *
+     * @param instrumentos instrumentos del catálogo, en orden
+     * @param version versión del catálogo que representan
+     * @return copia columnar de la lista
+     */
+    CatalogoColumnar actualizar(List<Instrumento> instrumentos, long version) {
+        return new CatalogoColumnar(instrumentos, version, this);
+    }
+
+    /**
+     * Devuelve la versión del catálogo representada por esta copia.
+     *
+     * @return versión del catálogo
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Indica si esta copia se construyó a partir de la lista indicada.
+     *
+     * @param instrumentos lista de instrumentos (normalmente una instantánea del catálogo)
+     * @return {@code true} si es la misma lista de la que se construyó la copia
+     */
+    boolean representa(List<Instrumento> instrumentos) {
+        return origen == instrumentos;
+    }
+
+    /**
+     * Evalúa un filtro sobre las columnas y materializa las filas que lo cumplen.
+     *
+     * @param filtro criterios del filtro
+     * @return instrumentos que cumplen el filtro, en el orden del catálogo
+     */
+    List<Instrumento> filtrar(FiltroInstrumentoDTO filtro) {
+        // Todos los bloques ya registraron sus marcas, así que el conjunto cubre todos sus identificadores.
+        boolean[] marcasAceptadas = filtro.getMarca() != null
+                ? diccionarioMarcas.coincidenciasSinMayusculas(filtro.getMarca()) : null;
+        String nombre = filtro.getNombre() != null ? filtro.getNombre().toLowerCase() : null;
+        byte[] mascara = new byte[TAMANO_BLOQUE];
+        List<Instrumento> resultado = new ArrayList<>();
+        for (Bloque bloque : bloques) {
+            bloque.filtrar(filtro, marcasAceptadas, nombre, mascara, resultado);
+        }
+        return resultado;
+    }
+
+    /**
+     * Indica si el bloque de una posición sigue representando el segmento de la misma posición de otra
+     * instantánea: un segmento con la misma identidad tiene el mismo contenido.
+     *
+     * @param posicion posición del bloque
+     * @param segmento segmento de la instantánea nueva en esa posición
+     * @param filas filas que usa la instantánea nueva de ese segmento
+     * @return {@code true} si el bloque se puede reutilizar
+     */
+    private boolean bloqueVigente(int posicion, Object[] segmento, int filas) {
+        return posicion < bloques.length && bloques[posicion].filas == segmento && bloques[posicion].tamano == filas;
+    }
+
+    /**
+     * Calcula las filas del bloque de una posición.
+     *
+     * @param total filas de la lista
+     * @param posicion posición del bloque
+     * @return filas del bloque
+     */
+    private static int filas(int total, int posicion) {
+        return Math.min(TAMANO_BLOQUE, total - posicion * TAMANO_BLOQUE);
+    }
+
+    /**
+     * Columnas de un bloque de filas consecutivas. Es inmutable y la comparten las copias que lo reutilizan.
+     */
+    private static final class Bloque
+    {
+        /**
+         * Instrumentos del bloque en el mismo orden que las columnas; es el segmento de la instantánea,
+         * que no se modifica, y puede tener posiciones sin usar al final.
+         */
+        private final Object[] filas;
+
+        /**
+         * Cantidad de filas usadas.
+         */
+        private final int tamano;
+
+        /**
+         * Precio base por fila.
+         */
+        private final double[] precios;
+
+        /**
+         * Stock por fila.
+         */
+        private final int[] stock;
+
+        /**
+         * Clase de instrumento por fila ({@link CatalogoColumnar#GUITARRA}, {@link CatalogoColumnar#TECLADO} u {@link CatalogoColumnar#OTRO}).
+         */
+        private final byte[] clases;
+
+        /**
+         * Ordinal del tipo de guitarra o de la sensibilidad del teclado por fila, -1 si no tiene.
+         */
+        private final byte[] ordinales;
+
+        /**
+         * Identificador de la marca por fila en el diccionario de la copia, -1 si no tiene.
+         */
+        private final int[] marcas;
+
+        /**
+         * Construye las columnas de un bloque.
+         *
+         * @param filas instrumentos del bloque
+         * @param tamano cantidad de filas usadas
+         * @param diccionarioMarcas diccionario en el que se registran las marcas
+         */
+        Bloque(Object[] filas, int tamano, DiccionarioCadenas diccionarioMarcas) {
+            this.filas = filas;
+            this.tamano = tamano;
+            this.precios = new double[tamano];
+            this.stock = new int[tamano];
+            this.clases = new byte[tamano];
+            this.ordinales = new byte[tamano];
+            this.marcas = new int[tamano];
+
+            for (int i = 0; i < tamano; i++) {
+                Instrumento instrumento = (Instrumento) filas[i];
+                precios[i] = instrumento.getPrecioBase();
+                stock[i] = instrumento.getStock();
+                ordinales[i] = -1;
+                if (instrumento instanceof Guitarra guitarra) {
+                    clases[i] = GUITARRA;
+                    if (guitarra.getTipo() != null) {
+                        ordinales[i] = (byte) guitarra.getTipo().ordinal();
+                    }
+                } else if (instrumento instanceof Teclado teclado) {
+                    clases[i] = TECLADO;
+                    if (teclado.getSensibilidad() != null) {
+                        ordinales[i] = (byte) teclado.getSensibilidad().ordinal();
+                    }
+                } else {
+                    clases[i] = OTRO;
+                }
+                marcas[i] = diccionarioMarcas.id(instrumento.getMarca());
+            }
+        }
+
+        /**
+         * Evalúa un filtro sobre las columnas del bloque y agrega las filas que lo cumplen.
+         *
+         * @param filtro criterios del filtro
+         * @param marcasAceptadas identificadores de las marcas que cumplen el filtro, o {@code null} si no filtra por marca
+         * @param nombre nombre buscado en minúsculas, o {@code null} si no filtra por nombre
+         * @param mascara máscara de selección, de al menos {@link #tamano} posiciones, que se sobrescribe
+         * @param resultado lista a la que se agregan las filas que cumplen el filtro
+         */
+        void filtrar(FiltroInstrumentoDTO filtro, boolean[] marcasAceptadas, String nombre, byte[] mascara,
+                     List<Instrumento> resultado) {
+            int total = tamano;
+            Arrays.fill(mascara, 0, total, (byte) 1);
+
+            if (marcasAceptadas != null) {
+                enConjunto(marcas, marcasAceptadas, mascara);
+            }
+            if (filtro.getPrecioMin() != null || filtro.getPrecioMax() != null) {
+                double min = filtro.getPrecioMin() != null ? filtro.getPrecioMin() : Double.NEGATIVE_INFINITY;
+                double max = filtro.getPrecioMax() != null ? filtro.getPrecioMax() : Double.POSITIVE_INFINITY;
+                for (int i = 0; i < total; i++) {
+                    mascara[i] &= (byte) (precios[i] >= min & precios[i] <= max ? 1 : 0);
+                }
+            }
+            if (filtro.getStockMin() != null || filtro.getStockMax() != null) {
+                int min = filtro.getStockMin() != null ? filtro.getStockMin() : Integer.MIN_VALUE;
+                int max = filtro.getStockMax() != null ? filtro.getStockMax() : Integer.MAX_VALUE;
+                for (int i = 0; i < total; i++) {
+                    mascara[i] &= (byte) (stock[i] >= min & stock[i] <= max ? 1 : 0);
+                }
+            }
+            if (filtro.getTipoGuitarra() != null) {
+                claseYOrdinal(GUITARRA, (byte) filtro.getTipoGuitarra().ordinal(), mascara);
+            }
+            if (filtro.getSensibilidad() != null) {
+                claseYOrdinal(TECLADO, (byte) filtro.getSensibilidad().ordinal(), mascara);
+            }
+
+            for (int i = 0; i < total; i++) {
+                Instrumento instrumento = (Instrumento) filas[i];
+                if (mascara[i] != 0 && (nombre == null || instrumento.getNombre().toLowerCase().contains(nombre))) {
+                    resultado.add(instrumento);
+                }
+            }
+        }
+
+        /**
+         * Conserva en la máscara sólo las filas cuyo identificador está marcado en el conjunto.
+         * Los identificadores negativos o posteriores al conjunto no pertenecen a él.
+         *
+         * @param columna columna de identificadores
+         * @param conjunto identificadores aceptados, indexados por identificador
+         * @param mascara máscara de selección a actualizar
+         */
+        private static void enConjunto(int[] columna, boolean[] conjunto, byte[] mascara) {
+            for (int i = 0; i < columna.length; i++) {
+                int id = columna[i];
+                mascara[i] &= (byte) (id >= 0 && id < conjunto.length && conjunto[id] ? 1 : 0);
+            }
+        }
+
+        /**
+         * Conserva en la máscara sólo las filas de la clase indicada con el ordinal indicado.
+         *
+         * @param clase clase de instrumento
+         * @param ordinal ordinal del enum específico de la clase
+         * @param mascara máscara de selección a actualizar
+         */
+        private void claseYOrdinal(byte clase, byte ordinal, byte[] mascara) {
+            for (int i = 0; i < clases.length; i++) {
+                mascara[i] &= (byte) (clases[i] == clase & ordinales[i] == ordinal ? 1 : 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.unibague.poctiendainstrumentos.service;
+
+import com.unibague.poctiendainstrumentos.model.Funda;
+import com.unibague.poctiendainstrumentos.model.Guitarra;
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+import com.unibague.poctiendainstrumentos.model.Teclado;
+import com.unibague.poctiendainstrumentos.model.enums.SensibilidadTeclado;
+import com.unibague.poctiendainstrumentos.model.enums.TipoGuitarra;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Formato binario compacto de un instrumento, usado por el almacenamiento fuera del heap.
+ *
+ * <p>Cada registro empieza con una cabecera de ancho fijo, alineada a 8 bytes, con los campos
+ * que consultan los filtros y las operaciones de stock; así pueden leerse y modificarse en su
+ * lugar sin decodificar el registro completo:</p>
+ * <pre>
+ *  0  int     longitud total del registro (múltiplo de 8)
+ *  4  byte    clase: 0 guitarra, 1 teclado
+ *  5  byte    tipo de guitarra o sensibilidad del teclado (ordinal, -1 si es nulo)
+ *  6  byte    teclado digital (1) o no (0)
+ *  8  long    versión
+ * 16  double  precio base
+ * 24  int     stock
+ * 28  int     fecha de ingreso en días desde 1970-01-01 ({@link Integer#MIN_VALUE} si es nula)
+ * 32  int     marca (identificador del diccionario, -1 si es nula)
+ * 36  int     material del cuerpo (identificador del diccionario) o número de teclas
+ * 40  long    secuencia del último cambio publicado del instrumento (versión del catálogo)
+ * 48  long    sello de modificación en el lugar: impar mientras se modifica la cabecera
+ * 56  ...     código y nombre; en las guitarras, la cantidad de fundas y, por cada una,
+ *             su código, el identificador de su nombre y su precio
+ * </pre>
+ * <p>Las cadenas libres se guardan como su longitud en UTF-8 ({@code short}, -1 si es nula)
+ * seguida de sus bytes; las que se repiten mucho se guardan como el identificador que les
+ * asigna su {@link DiccionarioCadenas}.</p>
+ * <p>Quien lee un registro sin cerrojo mientras otro modifica su cabecera en el lugar lo lee con
+ * {@link #sello(ByteBuffer, int)} antes y {@link #selloVigente(ByteBuffer, int, long)} después:
+ * si el sello era impar o cambió, la lectura pudo mezclar valores de antes y de después y debe
+ * repetirse. Quien modifica rodea las escrituras con {@link #abrirSello(ByteBuffer, int)} y
+ * {@link #cerrarSello(ByteBuffer, int)}.</p>
+ *
+ * @author Jorge
+ */
+final class CodificadorBinario
+{
+    /**
+     * Valores del campo de clase.
+     */
+    static final byte GUITARRA = 0;
+    static final byte TECLADO = 1;
+
+    /**
+     * Desplazamientos de los campos de la cabecera.
+     */
+    private static final int LONGITUD = 0;
+    private static final int CLASE = 4;
+    private static final int VARIANTE = 5;
+    private static final int DIGITAL = 6;
+    private static final int VERSION = 8;
+    private static final int PRECIO = 16;
+    private static final int STOCK = 24;
+    private static final int FECHA = 28;
+    private static final int MARCA = 32;
+    private static final int EXTRA = 36;
+    private static final int SECUENCIA = 40;
+    private static final int SELLO = 48;
+    private static final int CADENAS = 56;
+
+    /**
+     * Acceso al sello con semántica de memoria; los registros están alineados a 8 bytes.
+     */
+    private static final VarHandle SELLOS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    /**
+     * Día de ingreso que se guarda cuando el instrumento no tiene fecha.
+     */
+    static final int SIN_FECHA = Integer.MIN_VALUE;
+    private static final TipoGuitarra[] TIPOS = TipoGuitarra.values();
+    private static final SensibilidadTeclado[] SENSIBILIDADES = SensibilidadTeclado.values();
+
+    private final DiccionarioCadenas marcas;
+    private final DiccionarioCadenas materiales;
+    private final DiccionarioCadenas nombresFunda;
+
+    /**
+     * Crea un codificador que guarda las marcas, los materiales y los nombres de las fundas
+     * como identificadores de sus diccionarios.
+     *
+     * @param marcas diccionario de las marcas
+     * @param materiales diccionario de los materiales del cuerpo
+     * @param nombresFunda diccionario de los nombres de las fundas
+     */
+    CodificadorBinario(DiccionarioCadenas marcas, DiccionarioCadenas materiales, DiccionarioCadenas nombresFunda) {
+        this.marcas = marcas;
+        this.materiales = materiales;
+        this.nombresFunda = nombresFunda;
+    }
+
+    /**
+     * Codifica un instrumento en un registro nuevo.
+     *
+     * @param instrumento guitarra o teclado a codificar
+     * @return bytes del registro, con la longitud redondeada a múltiplo de 8
+     * @throws IllegalArgumentException si el instrumento no es de un tipo conocido o alguna cadena es demasiado larga
+     */
+    byte[] codificar(Instrumento instrumento) {
+        byte[] codigo = utf8(instrumento.getCodigo());
+        byte[] nombre = utf8(instrumento.getNombre());
+        int longitud = CADENAS + tamano(codigo) + tamano(nombre);
+
+        List<Funda> fundas = List.of();
+        List<byte[]> codigosFunda = new ArrayList<>();
+        if (instrumento instanceof Guitarra guitarra) {
+            fundas = guitarra.getFundas();
+            longitud += Short.BYTES;
+            for (Funda funda : fundas) {
+                byte[] codigoFunda = utf8(funda.getCodigo());
+                codigosFunda.add(codigoFunda);
+                longitud += tamano(codigoFunda) + Integer.BYTES + Double.BYTES;
+            }
+            if (fundas.size() > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("La guitarra tiene demasiadas fundas");
+            }
+        } else if (!(instrumento instanceof Teclado)) {
+            throw new IllegalArgumentException("Tipo de instrumento no soportado: " + instrumento.getClass().getSimpleName());
+        }
+        longitud = (longitud + 7) & ~7;
+
+        ByteBuffer registro = ByteBuffer.allocate(longitud);
+        registro.putInt(LONGITUD, longitud);
+        registro.putLong(VERSION, instrumento.getVersion());
+        registro.putDouble(PRECIO, instrumento.getPrecioBase());
+        registro.putInt(STOCK, instrumento.getStock());
+        LocalDate fecha = instrumento.getFechaIngreso();
+        registro.putInt(FECHA, fecha == null ? SIN_FECHA : (int) fecha.toEpochDay());
+        registro.putInt(MARCA, marcas.id(instrumento.getMarca()));
+        registro.position(CADENAS);
+        escribir(registro, codigo);
+        escribir(registro, nombre);
+
+        if (instrumento instanceof Guitarra guitarra) {
+            registro.put(CLASE, GUITARRA);
+            registro.put(VARIANTE, guitarra.getTipo() == null ? -1 : (byte) guitarra.getTipo().ordinal());
+            registro.putInt(EXTRA, materiales.id(guitarra.getMaterialCuerpo()));
+            registro.putShort((short) fundas.size());
+            for (int i = 0; i < fundas.size(); i++) {
+                Funda funda = fundas.get(i);
+                escribir(registro, codigosFunda.get(i));
+                registro.putInt(nombresFunda.id(funda.getNombre()));
+                registro.putDouble(funda.getPrecio());
+            }
+        } else {
+            Teclado teclado = (Teclado) instrumento;
+            registro.put(CLASE, TECLADO);
+            registro.put(VARIANTE, teclado.getSensibilidad() == null ? -1 : (byte) teclado.getSensibilidad().ordinal());
+            registro.put(DIGITAL, (byte) (teclado.isDigital() ? 1 : 0));
+            registro.putInt(EXTRA, teclado.getNumeroTeclas());
+        }
+        return registro.array();
+    }
+
+    /**
+     * Decodifica un registro en un instrumento nuevo, independiente del almacenamiento.
+     *
+     * @param segmento segmento que contiene el registro
+     * @param desplazamiento posición del registro en el segmento
+     * @return guitarra o teclado con los datos del registro
+     */
+    Instrumento decodificar(ByteBuffer segmento, int desplazamiento) {
+        int posicion = desplazamiento + CADENAS;
+        String codigo = leerCadena(segmento, posicion);
+        posicion += tamano(segmento, posicion);
+        String nombre = leerCadena(segmento, posicion);
+        posicion += tamano(segmento, posicion);
+
+        byte variante = segmento.get(desplazamiento + VARIANTE);
+        Instrumento instrumento;
+        if (clase(segmento, desplazamiento) == GUITARRA) {
+            Guitarra guitarra = new Guitarra();
+            guitarra.setTipo(variante < 0 ? null : TIPOS[variante]);
+            guitarra.setMaterialCuerpo(valor(materiales, segmento.getInt(desplazamiento + EXTRA)));
+            int cantidad = segmento.getShort(posicion);
+            posicion += Short.BYTES;
+            List<Funda> fundas = new ArrayList<>(cantidad);
+            for (int i = 0; i < cantidad; i++) {
+                String codigoFunda = leerCadena(segmento, posicion);
+                posicion += tamano(segmento, posicion);
+                String nombreFunda = valor(nombresFunda, segmento.getInt(posicion));
+                double precio = segmento.getDouble(posicion + Integer.BYTES);
+                posicion += Integer.BYTES + Double.BYTES;
+                fundas.add(new Funda(codigoFunda, nombreFunda, precio, guitarra));
+            }
+            guitarra.setFundas(fundas);
+            instrumento = guitarra;
+        } else {
+            Teclado teclado = new Teclado();
+            teclado.setSensibilidad(variante < 0 ? null : SENSIBILIDADES[variante]);
+            teclado.setDigital(segmento.get(desplazamiento + DIGITAL) != 0);
+            teclado.setNumeroTeclas(segmento.getInt(desplazamiento + EXTRA));
+            instrumento = teclado;
+        }
+        instrumento.setCodigo(codigo);
+        instrumento.setNombre(nombre);
+        instrumento.setMarca(valor(marcas, marca(segmento, desplazamiento)));
+        instrumento.setPrecioBase(precio(segmento, desplazamiento));
+        instrumento.setStock(stock(segmento, desplazamiento));
+        int fecha = segmento.getInt(desplazamiento + FECHA);
+        instrumento.setFechaIngreso(fecha == SIN_FECHA ? null : LocalDate.ofEpochDay(fecha));
+        instrumento.setVersion(version(segmento, desplazamiento));
+        return instrumento;
+    }
+
+    /**
+     * Lee sólo el código de un registro.
+     *
+     * @param segmento segmento que contiene el registro
+     * @param desplazamiento posición del registro en el segmento
+     * @return código del instrumento
+     */
+    static String codigo(ByteBuffer segmento, int desplazamiento) {
+        return leerCadena(segmento, desplazamiento + CADENAS);
+    }
+
+    /**
+     * Lee la longitud de un registro, que es también la distancia hasta el siguiente.
+     */
+    static int longitud(ByteBuffer segmento, int desplazamiento) {
+        return segmento.getInt(desplazamiento + LONGITUD);
+    }
+
+    /**
+     * Lee la clase de un registro: {@link #GUITARRA} o {@link #TECLADO}.
+     */
+    static byte clase(ByteBuffer segmento, int desplazamiento) {
+        return segmento.get(desplazamiento + CLASE);
+    }
+
+    /**
+     * Lee el ordinal del tipo de guitarra o de la sensibilidad del teclado.
+     *
+     * @return ordinal, o -1 si el valor es nulo
+     */
+    static byte variante(ByteBuffer segmento, int desplazamiento) {
+        return segmento.get(desplazamiento + VARIANTE);
+    }
+
+    /**
+     * Lee el identificador de la marca en el diccionario de marcas.
+     *
+     * @return identificador, o -1 si la marca es nula
+     */
+    static int marca(ByteBuffer segmento, int desplazamiento) {
+        return segmento.getInt(desplazamiento + MARCA);
+    }
+
+    /**
+     * Lee la versión del instrumento.
+     */
+    static long version(ByteBuffer segmento, int desplazamiento) {
+        return segmento.getLong(desplazamiento + VERSION);
+    }
+
+    /**
+     * Reemplaza en su lugar la versión del instrumento.
+     */
+    static void fijarVersion(ByteBuffer segmento, int desplazamiento, long version) {
+        segmento.putLong(desplazamiento + VERSION, version);
+    }
+
+    /**
+     * Lee la versión del catálogo en la que cambió el instrumento por última vez.
+     */
+    static long secuencia(ByteBuffer segmento, int desplazamiento) {
+        return segmento.getLong(desplazamiento + SECUENCIA);
+    }
+
+    /**
+     * Reemplaza en su lugar la versión del catálogo en la que cambió el instrumento por última vez.
+     */
+    static void fijarSecuencia(ByteBuffer segmento, int desplazamiento, long secuencia) {
+        segmento.putLong(desplazamiento + SECUENCIA, secuencia);
+    }
+
+    /**
+     * Lee el sello de un registro antes de leer sus campos sin cerrojo.
+     *
+     * @return sello a comprobar con {@link #selloVigente(ByteBuffer, int, long)}
+     */
+    static long sello(ByteBuffer segmento, int desplazamiento) {
+        return (long) SELLOS.getAcquire(segmento, desplazamiento + SELLO);
+    }
+
+    /**
+     * Indica si los campos leídos después de {@link #sello(ByteBuffer, int)} son los de una
+     * misma modificación: el sello era par y no cambió.
+     *
+     * @param sello sello leído antes de los campos
+     */
+    static boolean selloVigente(ByteBuffer segmento, int desplazamiento, long sello) {
+        VarHandle.acquireFence();
+        return (sello & 1) == 0 && (long) SELLOS.getOpaque(segmento, desplazamiento + SELLO) == sello;
+    }
+
+    /**
+     * Marca la cabecera de un registro como en modificación. Las escrituras posteriores no se
+     * adelantan a la marca. Sólo puede haber un escritor por registro.
+     */
+    static void abrirSello(ByteBuffer segmento, int desplazamiento) {
+        long sello = (long) SELLOS.getOpaque(segmento, desplazamiento + SELLO);
+        SELLOS.setOpaque(segmento, desplazamiento + SELLO, sello + 1);
+        VarHandle.releaseFence();
+    }
+
+    /**
+     * Termina la modificación abierta con {@link #abrirSello(ByteBuffer, int)}, publicando las
+     * escrituras hechas entre ambas.
+     */
+    static void cerrarSello(ByteBuffer segmento, int desplazamiento) {
+        long sello = (long) SELLOS.getOpaque(segmento, desplazamiento + SELLO);
+        SELLOS.setRelease(segmento, desplazamiento + SELLO, sello + 1);
+    }
+
+    /**
+     * Lee el precio base del instrumento.
+     */
+    static double precio(ByteBuffer segmento, int desplazamiento) {
+        return segmento.getDouble(desplazamiento + PRECIO);
+    }
+
+    /**
+     * Reemplaza en su lugar el precio base del instrumento.
+     */
+    static void fijarPrecio(ByteBuffer segmento, int desplazamiento, double precio) {
+        segmento.putDouble(desplazamiento + PRECIO, precio);
+    }
+
+    /**
+     * Lee el stock del instrumento.
+     */
+    static int stock(ByteBuffer segmento, int desplazamiento) {
+        return segmento.getInt(desplazamiento + STOCK);
+    }
+
+    /**
+     * Reemplaza en su lugar el stock del instrumento.
+     */
+    static void fijarStock(ByteBuffer segmento, int desplazamiento, int stock) {
+        segmento.putInt(desplazamiento + STOCK, stock);
+    }
+
+    /**
+     * Lee el día de ingreso del instrumento, en días desde 1970-01-01, o {@link #SIN_FECHA}.
+     */
+    static int dia(ByteBuffer segmento, int desplazamiento) {
+        return segmento.getInt(desplazamiento + FECHA);
+    }
+
+    private static String valor(DiccionarioCadenas diccionario, int id) {
+        return id < 0 ? null : diccionario.valor(id);
+    }
+
+    private static byte[] utf8(String cadena) {
+        if (cadena == null) {
+            return null;
+        }
+        byte[] bytes = cadena.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Texto demasiado largo: " + cadena.substring(0, 32) + "...");
+        }
+        return bytes;
+    }
+
+    private static int tamano(byte[] bytes) {
+        return Short.BYTES + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static int tamano(ByteBuffer segmento, int posicion) {
+        return Short.BYTES + Math.max(0, segmento.getShort(posicion));
+    }
+
+    private static void escribir(ByteBuffer registro, byte[] bytes) {
+        if (bytes == null) {
+            registro.putShort((short) -1);
+        } else {
+            registro.putShort((short) bytes.length);
+            registro.put(bytes);
+        }
+    }
+
+    private static String leerCadena(ByteBuffer segmento, int posicion) {
+        int longitud = segmento.getShort(posicion);
+        if (longitud < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[longitud];
+        segmento.get(posicion + Short.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,190 @@
+package com.unibague.poctiendainstrumentos.service;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Diccionario concurrente de cadenas para valores que se repiten mucho en el catálogo,
+ * como las marcas, los materiales del cuerpo o los nombres de las fundas.
+ *
+ * <p>Cada valor distinto se guarda una sola vez: {@link #canonica(String)} devuelve siempre la
+ * misma instancia para cadenas iguales, de modo que los instrumentos que comparten un valor
+ * comparten también el objeto {@link String}, y la copia que trajo cada petición queda libre
+ * para el recolector. Además, cada valor recibe un identificador entero pequeño y consecutivo,
+ * que los índices pueden guardar en arreglos primitivos en lugar de la cadena.</p>
+ *
+ * <p>Los valores no se eliminan nunca y los traen los clientes, así que el diccionario tiene un
+ * máximo de valores distintos. Una vez lleno, {@link #canonica(String)} devuelve los valores nuevos
+ * tal como llegaron, sin compartirlos, y {@link #id(String)} los rechaza: quien guarda identificadores
+ * no puede seguir sin ellos. Las consultas no toman ningún cerrojo; sólo el registro de un valor
+ * nuevo se serializa para asignarle el siguiente identificador.</p>
+ *
+ * @author Jorge
+ */
+class DiccionarioCadenas
+{
+    /**
+     * Valor canónico y su identificador.
+     *
+     * @param valor instancia compartida del valor
+     * @param id identificador del valor
+     */
+    private record Entrada(String valor, int id) {}
+
+    /**
+     * Entradas del diccionario por valor.
+     */
+    private final ConcurrentHashMap<String, Entrada> entradas = new ConcurrentHashMap<>();
+
+    /**
+     * Cerrojo que serializa el registro de valores nuevos.
+     */
+    private final ReentrantLock cerrojo = new ReentrantLock();
+
+    /**
+     * Valores por identificador; sólo son válidas las primeras {@link #tamano} posiciones.
+     */
+    private volatile String[] valores = new String[16];
+
+    /**
+     * Cantidad de valores registrados. Se escribe después del valor, así que quien la lee ve
+     * publicados todos los valores con identificador menor.
+     */
+    private volatile int tamano;
+
+    /**
+     * Cantidad máxima de valores distintos.
+     */
+    private final int maximo;
+
+    /**
+     * Crea un diccionario vacío.
+     *
+     * @param maximo cantidad máxima de valores distintos; con 0 no se comparte ningún valor
+     * @throws IllegalArgumentException si el máximo es negativo
+     */
+    DiccionarioCadenas(int maximo) {
+        if (maximo < 0) {
+            throw new IllegalArgumentException("El máximo de valores no puede ser negativo");
+        }
+        this.maximo = maximo;
+    }
+
+    /**
+     * Devuelve la instancia compartida de un valor, registrándolo si es nuevo y cabe.
+     *
+     * @param valor cadena a canonizar
+     * @return instancia canónica igual al valor, el mismo valor si es nuevo y el diccionario está
+     *         lleno, o {@code null} si el valor es nulo
+     */
+    String canonica(String valor) {
+        if (valor == null) {
+            return null;
+        }
+        Entrada entrada = entrada(valor);
+        return entrada != null ? entrada.valor() : valor;
+    }
+
+    /**
+     * Devuelve el identificador de un valor, registrándolo si es nuevo.
+     *
+     * @param valor cadena
+     * @return identificador del valor, o -1 si el valor es nulo
+     * @throws IllegalStateException si el valor es nuevo y el diccionario está lleno
+     */
+    int id(String valor) {
+        if (valor == null) {
+            return -1;
+        }
+        Entrada entrada = entrada(valor);
+        if (entrada == null) {
+            throw new IllegalStateException("Se alcanzó el máximo de " + maximo + " valores distintos");
+        }
+        return entrada.id();
+    }
+
+    /**
+     * Devuelve el valor correspondiente a un identificador.
+     *
+     * @param id identificador obtenido de este diccionario
+     * @return valor canónico
+     */
+    String valor(int id) {
+        return valores[id];
+    }
+
+    /**
+     * Devuelve la cantidad de valores registrados, que es también el siguiente identificador libre.
+     *
+     * @return cantidad de valores
+     */
+    int tamano() {
+        return tamano;
+    }
+
+    /**
+     * Marca los identificadores cuyo valor es igual al indicado sin distinguir mayúsculas de minúsculas.
+     *
+     * @param valor valor buscado
+     * @return arreglo indexado por identificador, con {@code true} en los valores que coinciden
+     */
+    boolean[] coincidenciasSinMayusculas(String valor) {
+        return coincidencias(valor::equalsIgnoreCase);
+    }
+
+    /**
+     * Marca los identificadores cuyo valor cumple un criterio. El criterio se evalúa una vez por
+     * valor distinto, no por instrumento.
+     *
+     * @param criterio criterio que deben cumplir los valores
+     * @return arreglo indexado por identificador, con {@code true} en los valores que lo cumplen
+     */
+    boolean[] coincidencias(Predicate<String> criterio) {
+        int total = tamano;
+        String[] actuales = valores;
+        boolean[] coincidencias = new boolean[total];
+        for (int id = 0; id < total; id++) {
+            coincidencias[id] = criterio.test(actuales[id]);
+        }
+        return coincidencias;
+    }
+
+    /**
+     * Obtiene la entrada de un valor, registrándolo si es nuevo y cabe.
+     *
+     * @param valor cadena no nula
+     * @return entrada del valor, o {@code null} si es nuevo y el diccionario está lleno
+     */
+    private Entrada entrada(String valor) {
+        Entrada entrada = entradas.get(valor);
+        return entrada != null ? entrada : entradas.computeIfAbsent(valor, this::registrar);
+    }
+
+    /**
+     * Asigna el siguiente identificador a un valor nuevo.
+     *
+     * @param valor cadena no registrada
+     * @return entrada nueva, o {@code null} si el diccionario está lleno
+     */
+    private Entrada registrar(String valor) {
+        cerrojo.lock();
+        try {
+            int id = tamano;
+            if (id == maximo) {
+                return null;
+            }
+            String[] actuales = valores;
+            if (id == actuales.length) {
+                actuales = Arrays.copyOf(actuales, (int) Math.min((long) id * 2, maximo));
+            }
+            actuales[id] = valor;
+            valores = actuales;
+            tamano = id + 1;
+            return new Entrada(valor, id);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+}
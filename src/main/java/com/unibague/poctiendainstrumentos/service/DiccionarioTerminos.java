@@ -0,0 +1,264 @@
+package com.unibague.poctiendainstrumentos.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Diccionario ordenado de los términos indexados, con búsqueda de los términos parecidos a una
+ * palabra mal escrita ({@code "yamah"} encuentra {@code "yamaha"}).
+ *
+ * <p>La distancia entre dos términos es la de Damerau-Levenshtein restringida: la cantidad mínima de
+ * letras agregadas, quitadas, cambiadas o intercambiadas con la vecina para pasar de uno a otro. La
+ * distancia admitida depende del largo de la palabra buscada (ver {@link #distanciaMaxima(String)}).</p>
+ *
+ * <p>Comparar la palabra con cada término costaría un cálculo de distancia por término del catálogo.
+ * Como los términos están ordenados, los que comparten un prefijo son consecutivos: la búsqueda los
+ * recorre en orden y recalcula la tabla de distancias sólo desde la primera letra que cambia respecto
+ * del término anterior, como si bajara por un trie. Cuando una fila de la tabla ya supera la distancia
+ * admitida, ningún término con ese prefijo puede servir y la búsqueda salta directamente al primer
+ * término con otro prefijo. Así se visita una fracción pequeña del diccionario.</p>
+ *
+ * <p>El diccionario admite altas y bajas concurrentes con las búsquedas; una búsqueda puede ver o no
+ * un término agregado o quitado mientras recorre.</p>
+ *
+ * @author Jorge
+ */
+final class DiccionarioTerminos
+{
+    /**
+     * Término parecido a una palabra.
+     *
+     * @param termino término del diccionario
+     * @param distancia distancia a la palabra buscada
+     */
+    record Parecido(String termino, int distancia) {}
+
+    /**
+     * Términos en orden lexicográfico.
+     */
+    private final ConcurrentSkipListSet<String> terminos = new ConcurrentSkipListSet<>();
+
+    /**
+     * Registra un término.
+     *
+     * @param termino término normalizado
+     */
+    void agregar(String termino) {
+        terminos.add(termino);
+    }
+
+    /**
+     * Quita un término que ya no aparece en ningún documento.
+     *
+     * @param termino término normalizado
+     */
+    void quitar(String termino) {
+        terminos.remove(termino);
+    }
+
+    /**
+     * Devuelve la cantidad de términos registrados.
+     *
+     * @return cantidad de términos
+     */
+    int tamano() {
+        return terminos.size();
+    }
+
+    /**
+     * Distancia admitida para una palabra: ninguna hasta dos letras, una hasta cinco y dos desde seis.
+     * Con palabras cortas, una distancia mayor aceptaría casi cualquier término.
+     *
+     * @param palabra palabra buscada
+     * @return distancia máxima admitida
+     */
+    static int distanciaMaxima(String palabra) {
+        return palabra.length() <= 2 ? 0 : palabra.length() <= 5 ? 1 : 2;
+    }
+
+    /**
+     * Busca los términos a distancia {@link #distanciaMaxima(String)} o menor de una palabra.
+     *
+     * @param palabra palabra normalizada
+     * @return términos parecidos, los más cercanos primero y en orden alfabético entre iguales
+     */
+    List<Parecido> parecidos(String palabra) {
+        return parecidos(palabra, distanciaMaxima(palabra));
+    }
+
+    /**
+     * Busca los términos a distancia {@code maxima} o menor de una palabra.
+     *
+     * @param palabra palabra normalizada
+     * @param maxima distancia máxima admitida
+     * @return términos parecidos, los más cercanos primero y en orden alfabético entre iguales
+     */
+    List<Parecido> parecidos(String palabra, int maxima) {
+        List<Parecido> parecidos = new ArrayList<>();
+        if (maxima == 0) {
+            if (terminos.contains(palabra)) {
+                parecidos.add(new Parecido(palabra, 0));
+            }
+            return parecidos;
+        }
+        int columnas = palabra.length() + 1;
+        // filas[i]: distancias entre las primeras i letras del término actual y cada prefijo de la palabra.
+        List<int[]> filas = new ArrayList<>();
+        int[] inicial = new int[columnas];
+        for (int j = 0; j < columnas; j++) {
+            inicial[j] = j;
+        }
+        filas.add(inicial);
+
+        String anterior = "";
+        int calculadas = 0;
+        Iterator<String> recorrido = terminos.iterator();
+        while (recorrido.hasNext()) {
+            String termino = recorrido.next();
+            int desde = Math.min(calculadas, prefijoComun(anterior, termino));
+            String salto = null;
+            for (int i = desde + 1; i <= termino.length(); i++) {
+                if (filas.size() <= i) {
+                    filas.add(new int[columnas]);
+                }
+                int minimo = calcularFila(filas, i, termino, palabra);
+                calculadas = i;
+                // Con el intercambio de letras, la fila i + 1 puede salir de la fila i - 1.
+                if (minimo > maxima && minimoDe(filas.get(i - 1)) >= maxima) {
+                    salto = sucesor(termino, i);
+                    calculadas = i - 1;
+                    break;
+                }
+            }
+            anterior = termino;
+            if (salto != null) {
+                if (salto.isEmpty()) {
+                    break;
+                }
+                recorrido = terminos.tailSet(salto, true).iterator();
+                continue;
+            }
+            int distancia = filas.get(termino.length())[palabra.length()];
+            if (distancia <= maxima) {
+                parecidos.add(new Parecido(termino, distancia));
+            }
+        }
+        parecidos.sort(Comparator.comparingInt(Parecido::distancia).thenComparing(Parecido::termino));
+        return parecidos;
+    }
+
+    /**
+     * Indica si cada palabra buscada se parece a alguno de los términos de un texto.
+     *
+     * @param texto texto en el que se busca, puede ser {@code null}
+     * @param buscadas palabras normalizadas; si no hay ninguna, el texto coincide
+     * @return {@code true} si todas las palabras tienen un término parecido en el texto
+     */
+    static boolean coincide(String texto, List<String> buscadas) {
+        if (buscadas.isEmpty()) {
+            return true;
+        }
+        List<String> terminosTexto = IndiceTexto.terminos(texto);
+        for (String buscada : buscadas) {
+            int maxima = distanciaMaxima(buscada);
+            boolean encontrada = false;
+            for (String termino : terminosTexto) {
+                if (distancia(buscada, termino, maxima) <= maxima) {
+                    encontrada = true;
+                    break;
+                }
+            }
+            if (!encontrada) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calcula la distancia entre dos palabras, sin pasar de un máximo.
+     *
+     * @param a primera palabra
+     * @param b segunda palabra
+     * @param maxima distancia a partir de la cual no interesa el valor exacto
+     * @return distancia entre las palabras, o {@code maxima + 1} si es mayor que {@code maxima}
+     */
+    static int distancia(String a, String b, int maxima) {
+        if (Math.abs(a.length() - b.length()) > maxima) {
+            return maxima + 1;
+        }
+        List<int[]> filas = new ArrayList<>(a.length() + 1);
+        int[] inicial = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            inicial[j] = j;
+        }
+        filas.add(inicial);
+        for (int i = 1; i <= a.length(); i++) {
+            filas.add(new int[b.length() + 1]);
+            if (calcularFila(filas, i, a, b) > maxima && minimoDe(filas.get(i - 1)) >= maxima) {
+                return maxima + 1;
+            }
+        }
+        return Math.min(filas.get(a.length())[b.length()], maxima + 1);
+    }
+
+    /**
+     * Calcula la fila {@code i} de la tabla de distancias entre {@code termino} y {@code palabra}
+     * a partir de las anteriores.
+     *
+     * @return menor valor de la fila
+     */
+    private static int calcularFila(List<int[]> filas, int i, String termino, String palabra) {
+        int[] fila = filas.get(i);
+        int[] previa = filas.get(i - 1);
+        int[] antePrevia = i >= 2 ? filas.get(i - 2) : null;
+        char letra = termino.charAt(i - 1);
+        fila[0] = i;
+        int minimo = i;
+        for (int j = 1; j < fila.length; j++) {
+            int costo = palabra.charAt(j - 1) == letra ? 0 : 1;
+            int valor = Math.min(Math.min(fila[j - 1] + 1, previa[j] + 1), previa[j - 1] + costo);
+            if (antePrevia != null && j >= 2 && letra == palabra.charAt(j - 2) && termino.charAt(i - 2) == palabra.charAt(j - 1)) {
+                valor = Math.min(valor, antePrevia[j - 2] + 1);
+            }
+            fila[j] = valor;
+            minimo = Math.min(minimo, valor);
+        }
+        return minimo;
+    }
+
+    private static int minimoDe(int[] fila) {
+        int minimo = Integer.MAX_VALUE;
+        for (int valor : fila) {
+            minimo = Math.min(minimo, valor);
+        }
+        return minimo;
+    }
+
+    private static int prefijoComun(String a, String b) {
+        int limite = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < limite && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Primera cadena posterior a todas las que empiezan con las primeras {@code largo} letras de un término.
+     *
+     * @return cadena sucesora, o vacía si no hay ninguna
+     */
+    private static String sucesor(String termino, int largo) {
+        for (int i = largo - 1; i >= 0; i--) {
+            char letra = termino.charAt(i);
+            if (letra != Character.MAX_VALUE) {
+                return termino.substring(0, i) + (char) (letra + 1);
+            }
+        }
+        return "";
+    }
+}
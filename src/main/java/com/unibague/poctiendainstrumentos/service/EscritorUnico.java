@@ -0,0 +1,168 @@
+package com.unibague.poctiendainstrumentos.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Ejecuta todas las modificaciones del catálogo en un único hilo escritor.
+ *
+ * <p>Los hilos que atienden peticiones encolan cada modificación en una cola sin bloqueos y reciben
+ * un {@link CompletableFuture}. El hilo escritor vacía la cola por lotes: aplica las modificaciones
+ * una tras otra, sin competir con ningún otro escritor, y al terminar cada lote invoca
+ * {@link #alTerminarLote} para que el servicio publique una instantánea nueva del catálogo. Los
+ * futuros se completan después de publicarla, de modo que quien escribe ve su cambio en la
+ * siguiente lectura.</p>
+ *
+ * @author Jorge
+ */
+class EscritorUnico
+{
+    /**
+     * Cantidad máxima de modificaciones aplicadas antes de publicar una instantánea.
+     */
+    private final int tamanoLote;
+
+    /**
+     * Modificaciones pendientes, en orden de llegada.
+     */
+    private final Queue<Mutacion<?>> pendientes = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Acción que se ejecuta en el hilo escritor al terminar cada lote.
+     */
+    private final Runnable alTerminarLote;
+
+    /**
+     * Hilo que aplica las modificaciones.
+     */
+    private final Thread hilo;
+
+    /**
+     * Crea el escritor e inicia su hilo.
+     *
+     * @param tamanoLote cantidad máxima de modificaciones por lote
+     * @param alTerminarLote acción a ejecutar después de aplicar cada lote
+     * @throws IllegalArgumentException si el tamaño del lote no es positivo
+     */
+    EscritorUnico(int tamanoLote, Runnable alTerminarLote) {
+        if (tamanoLote <= 0) {
+            throw new IllegalArgumentException("El tamaño del lote de escritura debe ser positivo");
+        }
+        this.tamanoLote = tamanoLote;
+        this.alTerminarLote = alTerminarLote;
+        this.hilo = Thread.ofPlatform().name("escritor-catalogo").daemon().start(this::procesar);
+    }
+
+    /**
+     * Indica si el hilo actual es el hilo escritor.
+     *
+     * @return {@code true} si se está ejecutando dentro de una modificación encolada
+     */
+    boolean esHiloEscritor() {
+        return Thread.currentThread() == hilo;
+    }
+
+    /**
+     * Encola una modificación para que la aplique el hilo escritor.
+     *
+     * @param operacion modificación a aplicar
+     * @param <T> tipo del resultado de la modificación
+     * @return futuro que se completa con el resultado, o con la excepción lanzada por la modificación
+     */
+    <T> CompletableFuture<T> enviar(Supplier<T> operacion) {
+        Mutacion<T> mutacion = new Mutacion<>(operacion);
+        pendientes.offer(mutacion);
+        LockSupport.unpark(hilo);
+        return mutacion.futuro;
+    }
+
+    /**
+     * Encola una modificación y espera a que se aplique.
+     * Las excepciones de la modificación se relanzan tal cual en el hilo que la envió.
+     *
+     * @param operacion modificación a aplicar
+     * @param <T> tipo del resultado de la modificación
+     * @return resultado de la modificación
+     */
+    <T> T ejecutar(Supplier<T> operacion) {
+        try {
+            return enviar(operacion).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Ciclo del hilo escritor: toma lotes de la cola, los aplica y publica el resultado.
+     * Si la publicación falla, todas las modificaciones del lote se informan con ese error,
+     * pero el hilo sigue atendiendo la cola.
+     */
+    private void procesar() {
+        List<Mutacion<?>> lote = new ArrayList<>(tamanoLote);
+        while (true) {
+            Mutacion<?> mutacion;
+            while (lote.size() < tamanoLote && (mutacion = pendientes.poll()) != null) {
+                mutacion.aplicar();
+                lote.add(mutacion);
+            }
+            if (lote.isEmpty()) {
+                LockSupport.park(this);
+                continue;
+            }
+            RuntimeException fallo = null;
+            try {
+                alTerminarLote.run();
+            } catch (RuntimeException e) {
+                fallo = e;
+            }
+            for (Mutacion<?> aplicada : lote) {
+                aplicada.completar(fallo);
+            }
+            lote.clear();
+        }
+    }
+
+    /**
+     * Modificación encolada junto con su resultado, que se entrega al terminar el lote.
+     *
+     * @param <T> tipo del resultado
+     */
+    private static final class Mutacion<T>
+    {
+        private final Supplier<T> operacion;
+        private final CompletableFuture<T> futuro = new CompletableFuture<>();
+        private T resultado;
+        private Throwable error;
+
+        Mutacion(Supplier<T> operacion) {
+            this.operacion = operacion;
+        }
+
+        void aplicar() {
+            try {
+                resultado = operacion.get();
+            } catch (Throwable e) {
+                error = e;
+            }
+        }
+
+        void completar(RuntimeException falloLote) {
+            if (error != null) {
+                futuro.completeExceptionally(error);
+            } else if (falloLote != null) {
+                futuro.completeExceptionally(falloLote);
+            } else {
+                futuro.complete(resultado);
+            }
+        }
+    }
+}
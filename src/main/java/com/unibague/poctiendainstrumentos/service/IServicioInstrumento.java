@@ -4,7 +4,14 @@
  */
 package com.unibague.poctiendainstrumentos.service;
 
+import com.unibague.poctiendainstrumentos.dto.CoincidenciaBusquedaDTO;
+import com.unibague.poctiendainstrumentos.dto.DeltaCatalogoDTO;
+import com.unibague.poctiendainstrumentos.dto.EventoCambioDTO;
 import com.unibague.poctiendainstrumentos.dto.FiltroInstrumentoDTO;
+import com.unibague.poctiendainstrumentos.dto.InstantaneaCatalogoDTO;
+import com.unibague.poctiendainstrumentos.dto.ResultadoFiltroDTO;
+import com.unibague.poctiendainstrumentos.exception.CambiosNoDisponiblesException;
+import com.unibague.poctiendainstrumentos.exception.ConflictoVersionException;
 import com.unibague.poctiendainstrumentos.model.Funda;
 import com.unibague.poctiendainstrumentos.model.Guitarra;
 import com.unibague.poctiendainstrumentos.model.Instrumento;
@@ -12,6 +19,7 @@ import com.unibague.poctiendainstrumentos.model.Teclado;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Interface que define las operaciones de servicio para la gestión de instrumentos musicales.
@@ -77,7 +85,20 @@ public interface IServicioInstrumento {
      * @param instrumento nuevo objeto con la información actualizada
      * @throws NoSuchElementException si no existe instrumento con ese código
      */
-    void editarInstrumento(String codigo, Instrumento instrumento);
+    default void editarInstrumento(String codigo, Instrumento instrumento) {
+        editarInstrumento(codigo, instrumento, null);
+    }
+
+    /**
+     * Edita un instrumento existente sólo si su versión actual es la esperada.
+     *
+     * @param codigo código del instrumento a modificar
+     * @param instrumento nuevo objeto con la información actualizada
+     * @param versionEsperada versión que debe tener el instrumento, o {@code null} para no comprobarla
+     * @throws NoSuchElementException si no existe instrumento con ese código
+     * @throws ConflictoVersionException si la versión actual no es la esperada
+     */
+    void editarInstrumento(String codigo, Instrumento instrumento, Long versionEsperada);
 
     /**
      * Elimina un instrumento identificado por código.
@@ -85,7 +106,19 @@ public interface IServicioInstrumento {
      * @param codigo código del instrumento a eliminar
      * @throws NoSuchElementException si no existe instrumento con ese código
      */
-    void eliminarInstrumento(String codigo);
+    default void eliminarInstrumento(String codigo) {
+        eliminarInstrumento(codigo, null);
+    }
+
+    /**
+     * Elimina un instrumento sólo si su versión actual es la esperada.
+     *
+     * @param codigo código del instrumento a eliminar
+     * @param versionEsperada versión que debe tener el instrumento, o {@code null} para no comprobarla
+     * @throws NoSuchElementException si no existe instrumento con ese código
+     * @throws ConflictoVersionException si la versión actual no es la esperada
+     */
+    void eliminarInstrumento(String codigo, Long versionEsperada);
 
     /**
      * Agrega una lista de fundas a la guitarra con el código dado.
@@ -106,7 +139,22 @@ public interface IServicioInstrumento {
      * @throws NoSuchElementException si no se encuentra la guitarra o funda
      * @throws IllegalArgumentException si el código no corresponde a una guitarra
      */
-    void editarFunda(String codigoGuitarra, String codigoFunda, Funda funda);
+    default void editarFunda(String codigoGuitarra, String codigoFunda, Funda funda) {
+        editarFunda(codigoGuitarra, codigoFunda, funda, null);
+    }
+
+    /**
+     * Edita una funda de una guitarra sólo si la versión actual de la guitarra es la esperada.
+     *
+     * @param codigoGuitarra código de la guitarra
+     * @param codigoFunda código de la funda a editar
+     * @param funda datos actualizados de la funda
+     * @param versionEsperada versión que debe tener la guitarra, o {@code null} para no comprobarla
+     * @throws NoSuchElementException si no se encuentra la guitarra o funda
+     * @throws IllegalArgumentException si el código no corresponde a una guitarra
+     * @throws ConflictoVersionException si la versión actual de la guitarra no es la esperada
+     */
+    void editarFunda(String codigoGuitarra, String codigoFunda, Funda funda, Long versionEsperada);
 
     /**
      * Elimina una funda identificada dentro de una guitarra dada.
@@ -116,7 +164,21 @@ public interface IServicioInstrumento {
      * @throws NoSuchElementException si no se encuentra la guitarra o funda
      * @throws IllegalArgumentException si el código no corresponde a una guitarra
      */
-    void eliminarFunda(String codigoGuitarra, String codigoFunda);
+    default void eliminarFunda(String codigoGuitarra, String codigoFunda) {
+        eliminarFunda(codigoGuitarra, codigoFunda, null);
+    }
+
+    /**
+     * Elimina una funda de una guitarra sólo si la versión actual de la guitarra es la esperada.
+     *
+     * @param codigoGuitarra código de la guitarra
+     * @param codigoFunda código de la funda a eliminar
+     * @param versionEsperada versión que debe tener la guitarra, o {@code null} para no comprobarla
+     * @throws NoSuchElementException si no se encuentra la guitarra o funda
+     * @throws IllegalArgumentException si el código no corresponde a una guitarra
+     * @throws ConflictoVersionException si la versión actual de la guitarra no es la esperada
+     */
+    void eliminarFunda(String codigoGuitarra, String codigoFunda, Long versionEsperada);
 
     /**
      * Filtra la lista de instrumentos según los parámetros especificados
@@ -126,4 +188,153 @@ public interface IServicioInstrumento {
      * @return lista con instrumentos que cumplen todos los criterios
      */
     List<Instrumento> filtrarInstrumentos(FiltroInstrumentoDTO filtro);
+
+    /**
+     * Recorre de forma perezosa los instrumentos que cumplen un filtro, sobre la versión del
+     * catálogo vigente al invocarlo. Cada coincidencia se evalúa sólo cuando el consumidor la pide,
+     * de modo que un consumidor lento no obliga a reunir todos los resultados en memoria.
+     *
+     * @param filtro objeto DTO con criterios de filtrado
+     * @return flujo secuencial de los instrumentos que cumplen el filtro, en orden
+     */
+    Stream<Instrumento> filtrarEnFlujo(FiltroInstrumentoDTO filtro);
+
+    /**
+     * Filtra los instrumentos y calcula en la misma evaluación los conteos por faceta
+     * (marca, tipo de guitarra, sensibilidad y rango de precio) de los resultados.
+     *
+     * @param filtro objeto DTO con criterios de filtrado y límites opcionales de la faceta de precios
+     * @return resultados del filtro junto con sus facetas
+     * @throws IllegalArgumentException si algún límite de precio es inválido
+     */
+    ResultadoFiltroDTO filtrarConFacetas(FiltroInstrumentoDTO filtro);
+
+    /**
+     * Busca instrumentos por texto en el nombre, la marca, el material del cuerpo y los nombres de
+     * las fundas, sin distinguir mayúsculas ni tildes. Los resultados se ordenan por relevancia (BM25):
+     * un instrumento aparece si contiene al menos uno de los términos de la consulta. En modo difuso
+     * cada término también encuentra los términos indexados a uno o dos errores de escritura, según su
+     * largo, con menos peso cuanto más lejanos.
+     *
+     * @param consulta texto a buscar
+     * @param limite cantidad máxima de resultados
+     * @param difuso indica si se toleran errores de escritura en la consulta
+     * @return instrumentos encontrados con su puntaje, del más relevante al menos relevante
+     * @throws IllegalArgumentException si la consulta está vacía o el límite está fuera de rango
+     */
+    List<CoincidenciaBusquedaDTO> buscarTexto(String consulta, int limite, boolean difuso);
+
+    /**
+     * Ajusta en un porcentaje el precio base de todos los instrumentos que cumplen un filtro.
+     * El ajuste se aplica completo o no se aplica.
+     *
+     * @param filtro filtro que selecciona los instrumentos
+     * @param porcentaje porcentaje de variación del precio (positivo sube, negativo baja)
+     * @return cantidad de instrumentos ajustados
+     * @throws IllegalArgumentException si falta algún parámetro, si el porcentaje no es finito o si algún
+     *                                  precio resultante es negativo o no es finito
+     */
+    int ajustarPrecios(FiltroInstrumentoDTO filtro, Double porcentaje);
+
+    /**
+     * Fija o desplaza el stock de todos los instrumentos que cumplen un filtro.
+     * El ajuste se aplica completo o no se aplica.
+     *
+     * @param filtro filtro que selecciona los instrumentos
+     * @param stock nuevo stock para todos los seleccionados, o {@code null} si se usa {@code delta}
+     * @param delta cantidad a sumar al stock de cada seleccionado, o {@code null} si se usa {@code stock}
+     * @return cantidad de instrumentos ajustados
+     * @throws IllegalArgumentException si los parámetros son inconsistentes o algún stock resultante es inválido
+     */
+    int ajustarStock(FiltroInstrumentoDTO filtro, Integer stock, Integer delta);
+
+    /**
+     * Reserva unidades del stock de un instrumento de forma atómica.
+     *
+     * @param codigo código del instrumento
+     * @param cantidad unidades a reservar, debe ser positiva
+     * @return stock restante
+     * @throws NoSuchElementException si no existe instrumento con ese código
+     * @throws IllegalArgumentException si la cantidad no es positiva
+     * @throws IllegalStateException si no hay stock suficiente
+     */
+    int reservarStock(String codigo, int cantidad);
+
+    /**
+     * Devuelve unidades al stock de un instrumento de forma atómica.
+     *
+     * @param codigo código del instrumento
+     * @param cantidad unidades a liberar, debe ser positiva
+     * @return stock disponible
+     * @throws NoSuchElementException si no existe instrumento con ese código
+     * @throws IllegalArgumentException si la cantidad no es positiva
+     */
+    int liberarStock(String codigo, int cantidad);
+
+    /**
+     * Suma o resta unidades al stock de un instrumento de forma atómica.
+     *
+     * @param codigo código del instrumento
+     * @param delta unidades a sumar (positivo) o restar (negativo)
+     * @return stock resultante
+     * @throws NoSuchElementException si no existe instrumento con ese código
+     * @throws IllegalStateException si el stock resultante sería negativo
+     */
+    int ajustarStock(String codigo, int delta);
+
+    /**
+     * Obtiene la versión actual del catálogo, que aumenta con cada modificación.
+     *
+     * @return versión del catálogo
+     */
+    long versionCatalogo();
+
+    /**
+     * Obtiene en orden los eventos de cambio posteriores a una versión del catálogo.
+     *
+     * @param version última versión ya conocida por el cliente
+     * @param maximo cantidad máxima de eventos a devolver
+     * @return eventos posteriores a la versión, vacía si no hay cambios nuevos
+     * @throws CambiosNoDisponiblesException si la versión es desconocida o sus cambios ya se descartaron
+     */
+    List<EventoCambioDTO> cambiosDesde(long version, int maximo);
+
+    /**
+     * Registra una acción que se ejecuta cada vez que se publican eventos de cambio, para que
+     * quien los consume no tenga que consultar {@link #cambiosDesde(long, int)} periódicamente.
+     * Se ejecuta en el hilo que modificó el catálogo, posiblemente con cerrojos tomados, así que
+     * debe ser breve y no bloquear.
+     *
+     * @param aviso acción a ejecutar después de publicar eventos
+     */
+    void avisarCambios(Runnable aviso);
+
+    /**
+     * Obtiene los instrumentos y fundas creados, modificados o eliminados desde una versión del catálogo.
+     *
+     * @param version última versión del catálogo conocida por el cliente
+     * @return cambios desde la versión; indica resincronización completa si ya no se conservan
+     */
+    DeltaCatalogoDTO deltaDesde(long version);
+
+    /**
+     * Obtiene una copia completa del catálogo con la versión desde la que se deben pedir los cambios siguientes.
+     *
+     * @return versión y lista de instrumentos
+     */
+    InstantaneaCatalogoDTO instantaneaCatalogo();
+
+    /**
+     * Aplica cambios recibidos de otro nodo, conservando las versiones de origen de los instrumentos.
+     *
+     * @param cambios instrumentos modificados, eliminados y fundas eliminadas
+     */
+    void aplicarReplica(DeltaCatalogoDTO cambios);
+
+    /**
+     * Reemplaza el catálogo por una copia completa recibida de otro nodo.
+     *
+     * @param instrumentos instrumentos de la copia completa
+     */
+    void reemplazarCatalogo(List<Instrumento> instrumentos);
 }
@@ -0,0 +1,147 @@
+package com.unibague.poctiendainstrumentos.service;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * Índice ordenado de los instrumentos por fecha de ingreso.
+ *
+ * <p>Cada entrada tiene como clave el día de ingreso y el código normalizado, de modo que un rango
+ * de fechas se resuelve con una búsqueda O(log n) del primer día y un recorrido de las entradas del
+ * rango, sin mirar el resto del catálogo. Los instrumentos sin fecha no se indexan.</p>
+ *
+ * <p>El índice se actualiza sin cerrojo junto al índice por código. Las entradas se quitan sólo si
+ * siguen apuntando al mismo objeto que se reemplazó o eliminó, y al mover una entrada se agrega la
+ * nueva antes de quitar la anterior; así dos ediciones seguidas del mismo instrumento no se borran
+ * la entrada una a la otra. Cuando los reemplazos del índice por código no siguen un orden fijo,
+ * {@link #sincronizar(LocalDate, String, Object, Function)} decide cada entrada según la fecha vigente
+ * del instrumento en lugar de según el valor reemplazado. Una entrada puede sobrevivir un instante al
+ * instrumento que indexa, por lo que quien consulta debe comprobar que sigue vigente.</p>
+ *
+ * @param <T> valor asociado a cada entrada
+ * @author Jorge
+ */
+final class IndiceFechas<T>
+{
+    /**
+     * Clave de una entrada del índice.
+     *
+     * @param dia día de ingreso, en días desde 1970-01-01
+     * @param clave código normalizado del instrumento
+     */
+    record Entrada(long dia, String clave) {}
+
+    private static final Comparator<Entrada> ORDEN = Comparator.comparingLong(Entrada::dia).thenComparing(Entrada::clave);
+
+    /**
+     * Entradas ordenadas por día y código.
+     */
+    private final ConcurrentSkipListMap<Entrada, T> entradas = new ConcurrentSkipListMap<>(ORDEN);
+
+    /**
+     * Indexa un instrumento.
+     *
+     * @param fecha fecha de ingreso, o {@code null} si no tiene
+     * @param clave código normalizado
+     * @param valor valor asociado
+     */
+    void agregar(LocalDate fecha, String clave, T valor) {
+        if (fecha != null) {
+            entradas.put(new Entrada(fecha.toEpochDay(), clave), valor);
+        }
+    }
+
+    /**
+     * Quita la entrada de un instrumento si todavía apunta al valor indicado.
+     *
+     * @param fecha fecha de ingreso, o {@code null} si no tiene
+     * @param clave código normalizado
+     * @param valor valor que se reemplazó o eliminó
+     */
+    void quitar(LocalDate fecha, String clave, T valor) {
+        if (fecha != null) {
+            entradas.computeIfPresent(new Entrada(fecha.toEpochDay(), clave), (entrada, actual) -> actual == valor ? null : actual);
+        }
+    }
+
+    /**
+     * Agrega o quita la entrada de un instrumento en una fecha según su fecha vigente, leída del índice
+     * por código después de cambiarlo. La entrada se agrega si la fecha es la vigente y luego se vuelve a
+     * comprobar con {@code computeIfPresent}, que la quita si ya no lo es: el último de dos cambios
+     * concurrentes del mismo instrumento siempre ve la entrada del otro y la corrige. Cada agregado usa
+     * un valor nuevo, comparado por identidad, para que quitar una entrada con un valor ya leído no borre
+     * la que otro acaba de poner.
+     *
+     * @param fecha fecha de ingreso anterior o nueva del instrumento, o {@code null}
+     * @param clave código normalizado
+     * @param valor valor nuevo de la entrada, distinto de todos los anteriores
+     * @param fechaVigente fecha de ingreso vigente de un código, o {@code null} si no existe o no tiene
+     */
+    void sincronizar(LocalDate fecha, String clave, T valor, Function<String, LocalDate> fechaVigente) {
+        if (fecha == null) {
+            return;
+        }
+        Entrada entrada = new Entrada(fecha.toEpochDay(), clave);
+        if (corresponde(entrada, fechaVigente.apply(clave))) {
+            entradas.put(entrada, valor);
+        }
+        entradas.computeIfPresent(entrada, (e, actual) -> corresponde(e, fechaVigente.apply(clave)) ? actual : null);
+    }
+
+    /**
+     * Reemplaza la entrada de un instrumento, que pudo cambiar de fecha o de código.
+     *
+     * @param fechaAnterior fecha de ingreso anterior, o {@code null}
+     * @param claveAnterior código normalizado anterior
+     * @param anterior valor anterior
+     * @param fechaNueva fecha de ingreso nueva, o {@code null}
+     * @param claveNueva código normalizado nuevo
+     * @param nuevo valor nuevo
+     */
+    void mover(LocalDate fechaAnterior, String claveAnterior, T anterior,
+               LocalDate fechaNueva, String claveNueva, T nuevo) {
+        agregar(fechaNueva, claveNueva, nuevo);
+        if (!Objects.equals(fechaAnterior, fechaNueva) || !claveAnterior.equals(claveNueva)) {
+            quitar(fechaAnterior, claveAnterior, anterior);
+        }
+    }
+
+    /**
+     * Devuelve las entradas con fecha dentro de un rango, en orden de fecha y código.
+     *
+     * @param desde primera fecha incluida, o {@code null} para no acotar por abajo
+     * @param hasta última fecha incluida, o {@code null} para no acotar por arriba
+     * @return vista de las entradas del rango
+     * @throws IllegalArgumentException si {@code desde} es posterior a {@code hasta}
+     */
+    Collection<Map.Entry<Entrada, T>> rango(LocalDate desde, LocalDate hasta) {
+        if (desde != null && hasta != null && desde.isAfter(hasta)) {
+            throw new IllegalArgumentException("fechaIngresoDesde no puede ser posterior a fechaIngresoHasta");
+        }
+        ConcurrentNavigableMap<Entrada, T> vista = entradas;
+        if (desde != null) {
+            vista = vista.tailMap(new Entrada(desde.toEpochDay(), ""), true);
+        }
+        if (hasta != null) {
+            vista = vista.headMap(new Entrada(hasta.toEpochDay() + 1, ""), false);
+        }
+        return vista.entrySet();
+    }
+
+    /**
+     * Indica si una entrada corresponde a la fecha de ingreso vigente de un instrumento.
+     *
+     * @param entrada entrada del índice
+     * @param fecha fecha de ingreso vigente
+     * @return {@code true} si la fecha coincide con el día de la entrada
+     */
+    static boolean corresponde(Entrada entrada, LocalDate fecha) {
+        return fecha != null && fecha.toEpochDay() == entrada.dia();
+    }
+}
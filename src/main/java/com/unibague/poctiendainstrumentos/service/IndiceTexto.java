@@ -0,0 +1,757 @@
+package com.unibague.poctiendainstrumentos.service;
+
+import com.unibague.poctiendainstrumentos.model.Funda;
+import com.unibague.poctiendainstrumentos.model.Guitarra;
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Índice invertido para la búsqueda de texto sobre el nombre, la marca, el material del cuerpo y
+ * los nombres de las fundas de los instrumentos, con ranking BM25.
+ *
+ * <p>El texto se separa en términos por cualquier carácter que no sea letra ni dígito, se pasa a
+ * minúsculas y se le quitan las tildes, de modo que {@code "Clásica"} y {@code "clasica"} son el
+ * mismo término; las palabras vacías más comunes del español no se indexan. La frecuencia de cada
+ * término se pondera según el campo: un término del nombre cuenta {@value #PESO_NOMBRE} veces, uno
+ * de la marca {@value #PESO_MARCA} y uno del material o de una funda una vez.</p>
+ *
+ * <p>Cada instrumento indexado es un documento con un número entero. La lista de un término es un
+ * arreglo de enteros con dos posiciones por documento: el número y, empaquetadas, la frecuencia del
+ * término y la longitud del documento, que es todo lo que BM25 necesita; recorrer una lista no lee
+ * nada más. Al quitar un documento sus entradas quedan como muertas y cada lista se compacta cuando
+ * tiene tantas muertas como vivas. Un número se reutiliza sólo cuando ya no aparece en ninguna lista.</p>
+ *
+ * <p>Una búsqueda recorre los términos de la consulta del más raro al más común y acumula el puntaje
+ * de cada documento. El aporte de un término nunca supera {@code idf * (k1 + 1)}, así que en cuanto
+ * la suma de esas cotas para los términos que faltan no alcanza el puntaje del último de los mejores,
+ * los términos restantes ya no recorren su lista: sólo completan las candidatas que todavía pueden
+ * quedar entre los mejores (la estrategia <i>MaxScore</i>). Los términos comunes como "guitarra"
+ * aportan poco y dejan de costar un recorrido completo en cuanto la consulta tiene otro más selectivo.</p>
+ *
+ * <p>Con la búsqueda difusa, cada término de la consulta se reemplaza por los términos indexados
+ * parecidos que da el {@link DiccionarioTerminos}, hasta {@value #MAXIMO_VARIANTES}, y el idf de
+ * cada variante se multiplica por un factor que baja con la distancia: una palabra bien escrita
+ * sigue pesando más que sus vecinas. El diccionario contiene exactamente los términos que tienen
+ * lista, así que se mantiene al crear y al descartar listas.</p>
+ *
+ * <p>Las modificaciones se aplican bajo un único cerrojo: {@link #actualizar(String)} vuelve a leer
+ * el instrumento vigente y reemplaza su documento, así que la última actualización de un código
+ * siempre deja indexado el instrumento más reciente, sin importar en qué orden lleguen. Las búsquedas
+ * no toman el cerrojo: leen las listas publicadas en ese momento, y por eso quien consulta resuelve
+ * los resultados contra el catálogo antes de devolverlos.</p>
+ *
+ * @author Jorge
+ */
+final class IndiceTexto
+{
+    /**
+     * Saturación de la frecuencia de un término en BM25.
+     */
+    static final double K1 = 1.2;
+
+    /**
+     * Peso de la normalización por longitud del documento en BM25.
+     */
+    static final double B = 0.75;
+
+    /**
+     * Veces que cuenta un término del nombre.
+     */
+    static final int PESO_NOMBRE = 3;
+
+    /**
+     * Veces que cuenta un término de la marca.
+     */
+    static final int PESO_MARCA = 2;
+
+    /**
+     * Cantidad máxima de resultados de una búsqueda.
+     */
+    static final int LIMITE_MAXIMO = 1000;
+
+    /**
+     * Acumuladores de puntajes que se conservan para reutilizar; cada uno ocupa ocho bytes por documento.
+     */
+    private static final int MAXIMO_ACUMULADORES = 4;
+
+    /**
+     * Cantidad máxima de términos parecidos en que se expande cada término de una búsqueda difusa.
+     */
+    static final int MAXIMO_VARIANTES = 16;
+
+    /**
+     * Factor del idf de una variante según su distancia al término de la consulta.
+     */
+    private static final double[] FACTOR_DISTANCIA = {1.0, 0.75, 0.5};
+
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "a", "al", "con", "de", "del", "el", "en", "la", "las", "lo", "los", "para", "por", "sin", "un", "una", "y");
+
+    /**
+     * Resultado de una búsqueda.
+     *
+     * @param clave código normalizado del instrumento
+     * @param puntaje puntaje BM25
+     */
+    record Coincidencia(String clave, double puntaje) {}
+
+    /**
+     * Contenido publicado de una lista: pares (documento, frecuencia y longitud) en las primeras
+     * {@code 2 * tamano} posiciones, de los cuales {@code muertos} son de documentos quitados.
+     */
+    private record Bloque(int[] entradas, int tamano, int muertos) {}
+
+    /**
+     * Cantidad de documentos vivos y suma de sus longitudes, publicadas juntas.
+     */
+    private record Totales(int documentos, long longitud) {}
+
+    /**
+     * Lista de documentos de un término. Sólo el escritor la modifica; los lectores leen el bloque publicado.
+     */
+    private static final class Lista
+    {
+        private final String termino;
+        private volatile Bloque bloque = new Bloque(new int[4], 0, 0);
+
+        private Lista(String termino) {
+            this.termino = termino;
+        }
+    }
+
+    /**
+     * Documento indexado: el código del instrumento y las listas en que aparece con su frecuencia.
+     */
+    private static final class Documento
+    {
+        private final String clave;
+        private final Lista[] listas;
+        private final int[] frecuencias;
+        private final int longitud;
+
+        private Documento(String clave, Lista[] listas, int[] frecuencias, int longitud) {
+            this.clave = clave;
+            this.listas = listas;
+            this.frecuencias = frecuencias;
+            this.longitud = longitud;
+        }
+
+        private int frecuencia(Lista lista) {
+            for (int i = 0; i < listas.length; i++) {
+                if (listas[i] == lista) {
+                    return frecuencias[i];
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Término de una consulta con el bloque de su lista leído al empezar.
+     */
+    private record TerminoConsulta(Lista lista, Bloque bloque, double idf) {}
+
+    /**
+     * Obtiene el instrumento vigente de un código normalizado, o {@code null} si no existe.
+     */
+    private final Function<String, Instrumento> vigente;
+
+    /**
+     * Lista de cada término.
+     */
+    private final ConcurrentHashMap<String, Lista> listas = new ConcurrentHashMap<>();
+
+    /**
+     * Términos que tienen lista, para la búsqueda difusa.
+     */
+    private final DiccionarioTerminos diccionario = new DiccionarioTerminos();
+
+    /**
+     * Documento de cada número; {@code null} si el número está libre o su documento se quitó.
+     */
+    private volatile Documento[] documentos = new Documento[1024];
+
+    /**
+     * Cantidad de documentos vivos y suma de sus longitudes, para la longitud promedio de BM25.
+     */
+    private volatile Totales totales = new Totales(0, 0);
+
+    /**
+     * Acumuladores libres, para no reservar un arreglo del tamaño del catálogo en cada búsqueda.
+     */
+    private final ConcurrentLinkedQueue<Puntajes> acumuladores = new ConcurrentLinkedQueue<>();
+
+    // Estado del escritor, protegido por el cerrojo.
+    private final ReentrantLock cerrojo = new ReentrantLock();
+    private final Map<String, Integer> numeros = new HashMap<>();
+    private int[] referencias = new int[1024];
+    private int[] libres = new int[64];
+    private int cantidadLibres;
+    private int siguienteNumero;
+
+    /**
+     * Crea un índice vacío.
+     *
+     * @param vigente función que obtiene el instrumento vigente de un código normalizado,
+     *                o {@code null} si no existe
+     */
+    IndiceTexto(Function<String, Instrumento> vigente) {
+        this.vigente = vigente;
+    }
+
+    /**
+     * Vuelve a indexar un código con el instrumento vigente, o lo quita si ya no existe.
+     * Se invoca después de cada alta, edición, baja o cambio de fundas.
+     *
+     * @param clave código normalizado
+     */
+    void actualizar(String clave) {
+        cerrojo.lock();
+        try {
+            Integer anterior = numeros.remove(clave);
+            if (anterior != null) {
+                quitar(anterior);
+            }
+            Instrumento instrumento = vigente.apply(clave);
+            if (instrumento != null) {
+                agregar(clave, instrumento);
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Busca los instrumentos más relevantes para una consulta. Un instrumento coincide si contiene
+     * al menos uno de los términos; los que contienen más términos, o términos más raros, quedan antes.
+     *
+     * @param consulta texto de la consulta
+     * @param limite cantidad máxima de resultados
+     * @param difuso indica si cada término también encuentra los términos indexados parecidos
+     * @return coincidencias de mayor a menor puntaje; entre empatadas, primero la indexada antes
+     * @throws IllegalArgumentException si la consulta está vacía o el límite está fuera de rango
+     */
+    List<Coincidencia> buscar(String consulta, int limite, boolean difuso) {
+        if (consulta == null || consulta.isBlank()) {
+            throw new IllegalArgumentException("La consulta de búsqueda no puede estar vacía");
+        }
+        if (limite <= 0 || limite > LIMITE_MAXIMO) {
+            throw new IllegalArgumentException("El límite debe estar entre 1 y " + LIMITE_MAXIMO);
+        }
+        Totales leidos = totales;
+        int total = leidos.documentos();
+        if (total == 0) {
+            return List.of();
+        }
+        double longitudPromedio = Math.max(1.0, (double) leidos.longitud() / total);
+
+        // Factor de cada lista; una lista a la que llegan varios términos de la consulta se recorre una vez.
+        Map<Lista, Double> factores = new LinkedHashMap<>();
+        for (String termino : new LinkedHashSet<>(terminos(consulta))) {
+            if (difuso) {
+                List<DiccionarioTerminos.Parecido> parecidos = diccionario.parecidos(termino);
+                for (DiccionarioTerminos.Parecido parecido : parecidos.subList(0, Math.min(parecidos.size(), MAXIMO_VARIANTES))) {
+                    Lista lista = listas.get(parecido.termino());
+                    if (lista != null) {
+                        factores.merge(lista, FACTOR_DISTANCIA[parecido.distancia()], Math::max);
+                    }
+                }
+            } else {
+                Lista lista = listas.get(termino);
+                if (lista != null) {
+                    factores.put(lista, 1.0);
+                }
+            }
+        }
+        List<TerminoConsulta> terminos = new ArrayList<>();
+        for (Map.Entry<Lista, Double> entrada : factores.entrySet()) {
+            Bloque bloque = entrada.getKey().bloque;
+            int frecuenciaDocumental = bloque.tamano() - bloque.muertos();
+            if (frecuenciaDocumental > 0) {
+                double idf = Math.log(1 + (total - frecuenciaDocumental + 0.5) / (frecuenciaDocumental + 0.5));
+                terminos.add(new TerminoConsulta(entrada.getKey(), bloque, idf * entrada.getValue()));
+            }
+        }
+        if (terminos.isEmpty()) {
+            return List.of();
+        }
+        // Se lee después de los bloques, para que contenga todos los números que aparecen en ellos.
+        Documento[] vivos = documentos;
+        Puntajes puntajes = acumuladores.poll();
+        if (puntajes == null) {
+            puntajes = new Puntajes();
+        }
+        try {
+            puntajes.preparar(vivos.length, longitudPromedio);
+            return terminos.size() == 1
+                    ? puntajes.mejores(terminos.getFirst(), vivos, limite)
+                    : puntajes.mejores(terminos, vivos, limite);
+        } finally {
+            puntajes.limpiar();
+            if (acumuladores.size() < MAXIMO_ACUMULADORES) {
+                acumuladores.offer(puntajes);
+            }
+        }
+    }
+
+    /**
+     * Obtiene los instrumentos que contienen, para cada uno de los términos indicados, alguno de sus
+     * términos parecidos. Sirve para acotar los candidatos de un filtro difuso sin recorrer el
+     * catálogo; quien consulta debe evaluar el filtro completo sobre ellos, porque el índice no
+     * distingue en qué campo aparece cada término.
+     *
+     * @param buscados términos normalizados, al menos uno
+     * @return códigos normalizados de los candidatos, en el orden en que se indexaron
+     */
+    List<String> candidatos(List<String> buscados) {
+        // Listas de las variantes de cada término; la más corta se recorre y las demás se comprueban
+        // sobre las listas de cada documento.
+        List<Set<Lista>> grupos = new ArrayList<>();
+        int menor = 0;
+        long tamanoMenor = Long.MAX_VALUE;
+        for (String buscado : new LinkedHashSet<>(buscados)) {
+            Set<Lista> grupo = Collections.newSetFromMap(new IdentityHashMap<>());
+            long tamano = 0;
+            for (DiccionarioTerminos.Parecido parecido : diccionario.parecidos(buscado)) {
+                Lista lista = listas.get(parecido.termino());
+                if (lista != null && grupo.add(lista)) {
+                    tamano += lista.bloque.tamano();
+                }
+            }
+            if (grupo.isEmpty()) {
+                return List.of();
+            }
+            if (tamano < tamanoMenor) {
+                menor = grupos.size();
+                tamanoMenor = tamano;
+            }
+            grupos.add(grupo);
+        }
+        List<Bloque> bloques = new ArrayList<>();
+        int cantidad = 0;
+        for (Lista lista : grupos.get(menor)) {
+            Bloque bloque = lista.bloque;
+            bloques.add(bloque);
+            cantidad += bloque.tamano();
+        }
+        // Se lee después de los bloques, como en la búsqueda.
+        Documento[] vivos = documentos;
+        int[] numeros = new int[cantidad];
+        cantidad = 0;
+        for (Bloque bloque : bloques) {
+            for (int i = 0; i < bloque.tamano(); i++) {
+                numeros[cantidad++] = bloque.entradas()[2 * i];
+            }
+        }
+        Arrays.sort(numeros, 0, cantidad);
+        List<String> candidatos = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            int numero = numeros[i];
+            Documento documento = vivos[numero];
+            if ((i > 0 && numeros[i - 1] == numero) || documento == null) {
+                continue;
+            }
+            boolean contieneTodos = true;
+            for (int g = 0; g < grupos.size() && contieneTodos; g++) {
+                contieneTodos = g == menor || contieneAlguna(documento, grupos.get(g));
+            }
+            if (contieneTodos) {
+                candidatos.add(documento.clave);
+            }
+        }
+        return candidatos;
+    }
+
+    private static boolean contieneAlguna(Documento documento, Set<Lista> grupo) {
+        for (Lista lista : documento.listas) {
+            if (grupo.contains(lista)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Separa un texto en términos normalizados: sin tildes, en minúsculas y sin palabras vacías.
+     *
+     * @param texto texto a separar, puede ser {@code null}
+     * @return términos en el orden en que aparecen, con repeticiones
+     */
+    static List<String> terminos(String texto) {
+        if (texto == null || texto.isEmpty()) {
+            return List.of();
+        }
+        String plano = texto;
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) >= 0x80) {
+                plano = Normalizer.normalize(texto, Normalizer.Form.NFD);
+                break;
+            }
+        }
+        List<String> terminos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        for (int i = 0; i <= plano.length(); i++) {
+            char c = i < plano.length() ? plano.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                actual.append(Character.toLowerCase(c));
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK && !actual.isEmpty()) {
+                String termino = actual.toString();
+                if (!PALABRAS_VACIAS.contains(termino)) {
+                    terminos.add(termino);
+                }
+                actual.setLength(0);
+            }
+        }
+        return terminos;
+    }
+
+    private void agregar(String clave, Instrumento instrumento) {
+        Map<String, Integer> frecuencias = new LinkedHashMap<>();
+        sumar(frecuencias, instrumento.getNombre(), PESO_NOMBRE);
+        sumar(frecuencias, instrumento.getMarca(), PESO_MARCA);
+        if (instrumento instanceof Guitarra guitarra) {
+            sumar(frecuencias, guitarra.getMaterialCuerpo(), 1);
+            for (Funda funda : guitarra.getFundas()) {
+                sumar(frecuencias, funda.getNombre(), 1);
+            }
+        }
+        if (frecuencias.isEmpty()) {
+            return;
+        }
+        Lista[] listasDocumento = new Lista[frecuencias.size()];
+        int[] pesos = new int[frecuencias.size()];
+        int longitud = 0;
+        int i = 0;
+        for (Map.Entry<String, Integer> entrada : frecuencias.entrySet()) {
+            Lista lista = listas.get(entrada.getKey());
+            if (lista == null) {
+                lista = new Lista(entrada.getKey());
+                listas.put(lista.termino, lista);
+                diccionario.agregar(lista.termino);
+            }
+            listasDocumento[i] = lista;
+            pesos[i] = Math.min(entrada.getValue(), 0xffff);
+            longitud += pesos[i];
+            i++;
+        }
+        longitud = Math.min(longitud, 0xffff);
+
+        int numero = cantidadLibres > 0 ? libres[--cantidadLibres] : siguienteNumero++;
+        if (numero >= documentos.length) {
+            documentos = Arrays.copyOf(documentos, documentos.length * 2);
+            referencias = Arrays.copyOf(referencias, referencias.length * 2);
+        }
+        // El documento se publica antes que sus entradas, para que todo número leído de una lista tenga documento.
+        documentos[numero] = new Documento(clave, listasDocumento, pesos, longitud);
+        referencias[numero] = listasDocumento.length;
+        for (int j = 0; j < listasDocumento.length; j++) {
+            Bloque bloque = listasDocumento[j].bloque;
+            int[] entradas = bloque.entradas();
+            if (2 * bloque.tamano() + 2 > entradas.length) {
+                entradas = Arrays.copyOf(entradas, entradas.length * 2);
+            }
+            entradas[2 * bloque.tamano()] = numero;
+            entradas[2 * bloque.tamano() + 1] = pesos[j] << 16 | longitud;
+            listasDocumento[j].bloque = new Bloque(entradas, bloque.tamano() + 1, bloque.muertos());
+        }
+        numeros.put(clave, numero);
+        totales = new Totales(totales.documentos() + 1, totales.longitud() + longitud);
+    }
+
+    private void quitar(int numero) {
+        Documento documento = documentos[numero];
+        documentos[numero] = null;
+        totales = new Totales(totales.documentos() - 1, totales.longitud() - documento.longitud);
+        for (Lista lista : documento.listas) {
+            Bloque bloque = lista.bloque;
+            int muertos = bloque.muertos() + 1;
+            if (2 * muertos < bloque.tamano()) {
+                lista.bloque = new Bloque(bloque.entradas(), bloque.tamano(), muertos);
+            } else {
+                compactar(lista, bloque);
+            }
+        }
+    }
+
+    /**
+     * Reescribe una lista sin las entradas de documentos quitados y libera los números que ya no
+     * aparecen en ninguna lista.
+     */
+    private void compactar(Lista lista, Bloque bloque) {
+        int[] entradas = bloque.entradas();
+        int vivas = 0;
+        for (int i = 0; i < bloque.tamano(); i++) {
+            if (documentos[entradas[2 * i]] != null) {
+                vivas++;
+            }
+        }
+        if (vivas == 0 && listas.remove(lista.termino, lista)) {
+            diccionario.quitar(lista.termino);
+        }
+        int[] compactadas = new int[Math.max(4, Integer.highestOneBit(Math.max(1, vivas)) * 4)];
+        int j = 0;
+        for (int i = 0; i < bloque.tamano(); i++) {
+            int numero = entradas[2 * i];
+            if (documentos[numero] != null) {
+                compactadas[2 * j] = numero;
+                compactadas[2 * j + 1] = entradas[2 * i + 1];
+                j++;
+            } else if (--referencias[numero] == 0) {
+                if (cantidadLibres == libres.length) {
+                    libres = Arrays.copyOf(libres, libres.length * 2);
+                }
+                libres[cantidadLibres++] = numero;
+            }
+        }
+        lista.bloque = new Bloque(compactadas, vivas, 0);
+    }
+
+    private static void sumar(Map<String, Integer> frecuencias, String texto, int peso) {
+        for (String termino : terminos(texto)) {
+            frecuencias.merge(termino, peso, Integer::sum);
+        }
+    }
+
+    /**
+     * Acumulador de puntajes de una búsqueda: un arreglo denso por número de documento y la lista de
+     * los números tocados, para recorrer y limpiar sólo esos. Se reutiliza entre búsquedas.
+     */
+    private static final class Puntajes
+    {
+        private double[] valores = new double[0];
+        private int[] tocados = new int[1024];
+        private int cantidad;
+        private double longitudPromedio;
+        private final int[] cacheEntradas = new int[256];
+        private final double[] cachePuntajes = new double[256];
+        private double cacheIdf;
+
+        /**
+         * Prepara el acumulador, vacío, para documentos con número menor que {@code capacidad}.
+         */
+        private Puntajes preparar(int capacidad, double longitudPromedio) {
+            if (valores.length < capacidad) {
+                valores = new double[capacidad];
+            }
+            this.longitudPromedio = longitudPromedio;
+            this.cacheIdf = Double.NaN;
+            return this;
+        }
+
+        private void limpiar() {
+            for (int i = 0; i < cantidad; i++) {
+                valores[tocados[i]] = 0;
+            }
+            cantidad = 0;
+        }
+
+        /**
+         * Puntaje BM25 de una entrada. Las entradas de un término repiten pocas combinaciones de
+         * frecuencia y longitud, así que los puntajes se guardan en una caché directa por término.
+         */
+        private double puntaje(double idf, int empaquetado) {
+            if (idf != cacheIdf) {
+                Arrays.fill(cacheEntradas, 0);
+                cacheIdf = idf;
+            }
+            int ranura = (empaquetado * 0x9E3779B9) >>> 24;
+            if (cacheEntradas[ranura] == empaquetado) {
+                return cachePuntajes[ranura];
+            }
+            int frecuencia = empaquetado >>> 16;
+            int longitud = empaquetado & 0xffff;
+            double puntaje = idf * frecuencia * (K1 + 1) / (frecuencia + K1 * (1 - B + B * longitud / longitudPromedio));
+            cacheEntradas[ranura] = empaquetado;
+            cachePuntajes[ranura] = puntaje;
+            return puntaje;
+        }
+
+        /**
+         * Con un solo término no hace falta acumular: cada entrada de la lista es un puntaje final.
+         */
+        private List<Coincidencia> mejores(TerminoConsulta termino, Documento[] vivos, int limite) {
+            Mejores mejores = new Mejores(limite);
+            int[] entradas = termino.bloque().entradas();
+            int tamano = termino.bloque().tamano();
+            double idf = termino.idf();
+            // Una entrada igual a la última rechazada y con número mayor tampoco entra: el peor de los
+            // mejores sólo puede mejorar. En un término común descarta casi todas sin calcular nada.
+            int rechazada = 0;
+            int numeroRechazado = Integer.MAX_VALUE;
+            for (int i = 0; i < tamano; i++) {
+                int numero = entradas[2 * i];
+                int empaquetado = entradas[2 * i + 1];
+                if (empaquetado == rechazada && numero > numeroRechazado) {
+                    continue;
+                }
+                double puntaje = puntaje(idf, empaquetado);
+                if (!mejores.admite(numero, puntaje)) {
+                    rechazada = empaquetado;
+                    numeroRechazado = numero;
+                } else if (vivos[numero] != null) {
+                    mejores.agregar(numero, puntaje);
+                }
+            }
+            return mejores.coincidencias(vivos);
+        }
+
+        private List<Coincidencia> mejores(List<TerminoConsulta> terminos, Documento[] vivos, int limite) {
+            terminos.sort(Comparator.comparingInt(t -> t.bloque().tamano() - t.bloque().muertos()));
+            // restante[i]: puntaje máximo que pueden aportar los términos i, i+1, ...
+            double[] restante = new double[terminos.size() + 1];
+            for (int i = terminos.size() - 1; i >= 0; i--) {
+                restante[i] = restante[i + 1] + terminos.get(i).idf() * (K1 + 1);
+            }
+            for (int t = 0; t < terminos.size(); t++) {
+                TerminoConsulta termino = terminos.get(t);
+                double umbral = cantidad >= limite ? seleccionar(vivos, limite).umbral() : Double.NEGATIVE_INFINITY;
+                if (restante[t] < umbral) {
+                    // Ningún documento nuevo puede entrar entre los mejores: sólo se completan las
+                    // candidatas que todavía pueden alcanzar el umbral.
+                    for (int i = 0; i < cantidad; i++) {
+                        int numero = tocados[i];
+                        if (valores[numero] + restante[t] >= umbral) {
+                            Documento documento = vivos[numero];
+                            int frecuencia = documento == null ? 0 : documento.frecuencia(termino.lista());
+                            if (frecuencia > 0) {
+                                valores[numero] += puntaje(termino.idf(), frecuencia << 16 | documento.longitud);
+                            }
+                        }
+                    }
+                } else {
+                    int[] entradas = termino.bloque().entradas();
+                    for (int i = 0; i < termino.bloque().tamano(); i++) {
+                        int numero = entradas[2 * i];
+                        if (valores[numero] == 0) {
+                            // Los puntajes son positivos: cero indica un documento todavía no visto.
+                            if (cantidad == tocados.length) {
+                                tocados = Arrays.copyOf(tocados, cantidad * 2);
+                            }
+                            tocados[cantidad++] = numero;
+                        }
+                        valores[numero] += puntaje(termino.idf(), entradas[2 * i + 1]);
+                    }
+                }
+            }
+            return seleccionar(vivos, limite).coincidencias(vivos);
+        }
+
+        /**
+         * Elige las mejores candidatas vivas acumuladas hasta el momento.
+         */
+        private Mejores seleccionar(Documento[] vivos, int limite) {
+            Mejores mejores = new Mejores(limite);
+            for (int i = 0; i < cantidad; i++) {
+                int numero = tocados[i];
+                if (mejores.admite(numero, valores[numero]) && vivos[numero] != null) {
+                    mejores.agregar(numero, valores[numero]);
+                }
+            }
+            return mejores;
+        }
+    }
+
+    /**
+     * Montículo acotado de los mejores documentos, con el peor en la cima. Un documento es mejor
+     * que otro si tiene mayor puntaje o, con el mismo puntaje, menor número. Comparar por número y
+     * no por código evita leer los documentos empatados, que en un término común son casi todos.
+     */
+    private static final class Mejores
+    {
+        private final int limite;
+        private final int[] numeros;
+        private final double[] puntajes;
+        private int cantidad;
+
+        private Mejores(int limite) {
+            this.limite = limite;
+            this.numeros = new int[limite];
+            this.puntajes = new double[limite];
+        }
+
+        /**
+         * Indica si un documento entraría entre los mejores, sin comprobar que siga vivo.
+         */
+        private boolean admite(int numero, double puntaje) {
+            return cantidad < limite || mejor(numero, puntaje, numeros[0], puntajes[0]);
+        }
+
+        private void agregar(int numero, double puntaje) {
+            int i;
+            if (cantidad < limite) {
+                // Sube desde la última posición.
+                i = cantidad++;
+                while (i > 0 && mejor(numeros[(i - 1) / 2], puntajes[(i - 1) / 2], numero, puntaje)) {
+                    numeros[i] = numeros[(i - 1) / 2];
+                    puntajes[i] = puntajes[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+            } else {
+                // Reemplaza la cima y baja.
+                i = 0;
+                while (true) {
+                    int hijo = 2 * i + 1;
+                    if (hijo >= cantidad) {
+                        break;
+                    }
+                    if (hijo + 1 < cantidad && mejor(numeros[hijo], puntajes[hijo], numeros[hijo + 1], puntajes[hijo + 1])) {
+                        hijo++;
+                    }
+                    if (!mejor(numero, puntaje, numeros[hijo], puntajes[hijo])) {
+                        break;
+                    }
+                    numeros[i] = numeros[hijo];
+                    puntajes[i] = puntajes[hijo];
+                    i = hijo;
+                }
+            }
+            numeros[i] = numero;
+            puntajes[i] = puntaje;
+        }
+
+        /**
+         * Puntaje del peor de los mejores, o menos infinito si todavía no hay {@code limite} documentos.
+         */
+        private double umbral() {
+            return cantidad < limite ? Double.NEGATIVE_INFINITY : puntajes[0];
+        }
+
+        private List<Coincidencia> coincidencias(Documento[] vivos) {
+            Integer[] orden = new Integer[cantidad];
+            for (int i = 0; i < cantidad; i++) {
+                orden[i] = i;
+            }
+            Arrays.sort(orden, (a, b) -> puntajes[a] != puntajes[b]
+                    ? Double.compare(puntajes[b], puntajes[a])
+                    : Integer.compare(numeros[a], numeros[b]));
+            List<Coincidencia> resultado = new ArrayList<>(cantidad);
+            for (int i : orden) {
+                Documento documento = vivos[numeros[i]];
+                if (documento != null) {
+                    resultado.add(new Coincidencia(documento.clave, puntajes[i]));
+                }
+            }
+            return resultado;
+        }
+
+        private static boolean mejor(int numero, double puntaje, int otroNumero, double otroPuntaje) {
+            return puntaje > otroPuntaje || (puntaje == otroPuntaje && numero < otroNumero);
+        }
+    }
+}
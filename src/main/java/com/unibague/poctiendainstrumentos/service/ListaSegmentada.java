@@ -0,0 +1,206 @@
+package com.unibague.poctiendainstrumentos.service;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Lista guardada en segmentos de tamaño fijo que permite tomar instantáneas inmutables
+ * en tiempo proporcional a la cantidad de segmentos y no a la de elementos.
+ *
+ * <p>Una instantánea copia sólo el arreglo de referencias a los segmentos y los comparte
+ * con la lista. Después de tomarla, la lista copia un segmento la primera vez que lo modifica
+ * (copia en escritura), así que las instantáneas nunca ven cambios posteriores. Un agregado
+ * al final, el caso más frecuente, copia a lo sumo el último segmento una vez por instantánea.</p>
+ *
+ * <p>La lista no es segura para varios escritores: está pensada para que la modifique un solo
+ * hilo mientras otros leen sus instantáneas.</p>
+ *
+ * @param <E> tipo de los elementos
+ * @author Jorge
+ */
+class ListaSegmentada<E> extends AbstractList<E> implements RandomAccess
+{
+    /**
+     * Bits del índice que corresponden a la posición dentro de un segmento.
+     */
+    private static final int BITS = 10;
+
+    /**
+     * Cantidad de elementos por segmento.
+     */
+    static final int TAMANO_SEGMENTO = 1 << BITS;
+
+    /**
+     * Máscara para obtener la posición dentro de un segmento.
+     */
+    private static final int MASCARA = TAMANO_SEGMENTO - 1;
+
+    /**
+     * Segmentos con los elementos; sólo los primeros {@code (tamano + TAMANO_SEGMENTO - 1) / TAMANO_SEGMENTO} están en uso.
+     */
+    private Object[][] segmentos = new Object[0][];
+
+    /**
+     * Indica, por segmento, si pertenece sólo a esta lista o si ya se compartió con una instantánea.
+     */
+    private boolean[] propios = new boolean[0];
+
+    /**
+     * Cantidad de elementos.
+     */
+    private int tamano;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int indice) {
+        Objects.checkIndex(indice, tamano);
+        return (E) segmentos[indice >>> BITS][indice & MASCARA];
+    }
+
+    @Override
+    public int size() {
+        return tamano;
+    }
+
+    @Override
+    public E set(int indice, E elemento) {
+        E anterior = get(indice);
+        segmentoEscribible(indice >>> BITS)[indice & MASCARA] = elemento;
+        return anterior;
+    }
+
+    @Override
+    public boolean add(E elemento) {
+        int segmento = tamano >>> BITS;
+        if (segmento == segmentos.length) {
+            int capacidad = Math.max(4, segmentos.length * 2);
+            segmentos = Arrays.copyOf(segmentos, capacidad);
+            propios = Arrays.copyOf(propios, capacidad);
+        }
+        if (segmentos[segmento] == null) {
+            segmentos[segmento] = new Object[TAMANO_SEGMENTO];
+            propios[segmento] = true;
+        }
+        segmentoEscribible(segmento)[tamano & MASCARA] = elemento;
+        tamano++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(int indice, E elemento) {
+        Objects.checkIndex(indice, tamano + 1);
+        add(elemento);
+        for (int i = tamano - 1; i > indice; i--) {
+            set(i, get(i - 1));
+        }
+        set(indice, elemento);
+    }
+
+    /**
+     * Elimina el elemento de una posición desplazando los siguientes, segmento por segmento.
+     *
+     * @param indice posición del elemento
+     * @return elemento eliminado
+     */
+    @Override
+    public E remove(int indice) {
+        E eliminado = get(indice);
+        int ultimo = tamano - 1;
+        int segmento = indice >>> BITS;
+        int desde = indice & MASCARA;
+        while (true) {
+            Object[] actual = segmentoEscribible(segmento);
+            int finSegmento = Math.min(TAMANO_SEGMENTO, ultimo - (segmento << BITS) + 1);
+            System.arraycopy(actual, desde + 1, actual, desde, finSegmento - desde - 1);
+            if (((segmento + 1) << BITS) > ultimo) {
+                actual[finSegmento - 1] = null;
+                break;
+            }
+            actual[TAMANO_SEGMENTO - 1] = segmentos[segmento + 1][0];
+            segmento++;
+            desde = 0;
+        }
+        tamano--;
+        modCount++;
+        return eliminado;
+    }
+
+    @Override
+    public void clear() {
+        segmentos = new Object[0][];
+        propios = new boolean[0];
+        tamano = 0;
+        modCount++;
+    }
+
+    /**
+     * Devuelve una copia inmutable del contenido actual que comparte los segmentos con la lista.
+     *
+     * @return instantánea de sólo lectura
+     */
+    List<E> instantanea() {
+        int usados = (tamano + MASCARA) >>> BITS;
+        Arrays.fill(propios, 0, usados, false);
+        return new Instantanea<>(Arrays.copyOf(segmentos, usados), tamano);
+    }
+
+    /**
+     * Devuelve los segmentos de una instantánea tomada con {@link #instantanea()}. La lista copia un
+     * segmento antes de modificarlo si ya lo compartió, así que un mismo arreglo de segmento tiene el
+     * mismo contenido en todas las instantáneas que lo comparten: quien deriva datos de una instantánea
+     * puede reutilizar los de los segmentos que siguen siendo los mismos en la siguiente.
+     *
+     * @param lista lista a consultar
+     * @return segmentos en uso de la instantánea, que no deben modificarse, o {@code null} si la
+     *         lista no es una instantánea
+     */
+    static Object[][] segmentos(List<?> lista) {
+        return lista instanceof Instantanea<?> instantanea ? instantanea.segmentos : null;
+    }
+
+    /**
+     * Devuelve un segmento que se puede modificar, copiándolo si está compartido con alguna instantánea.
+     *
+     * @param segmento número de segmento
+     * @return arreglo del segmento perteneciente sólo a esta lista
+     */
+    private Object[] segmentoEscribible(int segmento) {
+        if (!propios[segmento]) {
+            segmentos[segmento] = segmentos[segmento].clone();
+            propios[segmento] = true;
+        }
+        return segmentos[segmento];
+    }
+
+    /**
+     * Vista de sólo lectura sobre segmentos compartidos.
+     *
+     * @param <E> tipo de los elementos
+     */
+    private static final class Instantanea<E> extends AbstractList<E> implements RandomAccess
+    {
+        private final Object[][] segmentos;
+        private final int tamano;
+
+        Instantanea(Object[][] segmentos, int tamano) {
+            this.segmentos = segmentos;
+            this.tamano = tamano;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E get(int indice) {
+            Objects.checkIndex(indice, tamano);
+            return (E) segmentos[indice >>> BITS][indice & MASCARA];
+        }
+
+        @Override
+        public int size() {
+            return tamano;
+        }
+    }
+}
@@ -0,0 +1,635 @@
+package com.unibague.poctiendainstrumentos.service;
+
+import com.unibague.poctiendainstrumentos.dto.EventoCambioDTO;
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Partición del catálogo: un subconjunto de los instrumentos, elegido por el hash de su código
+ * normalizado, con su propia lista, su propio índice por código, su propia instantánea de lectura
+ * y su propia copia columnar.
+ *
+ * <p>Las modificaciones estructurales de la lista (altas, bajas, cambios de código) se serializan con
+ * el cerrojo de la partición, así que escritores que caen en particiones distintas no compiten entre
+ * sí. El cerrojo es un {@link ReentrantLock} y no un monitor para que los hilos virtuales que esperan
+ * por él no bloqueen su hilo portador.</p>
+ *
+ * <p>Reemplazar un instrumento por otro con el mismo código (un cambio de stock, una edición, un
+ * cambio de fundas) no toma el cerrojo: es un compare-and-set sobre la entrada del índice
+ * ({@link #reemplazarSinCerrojo(String, Instrumento, Instrumento)}), que sólo compite con los
+ * reemplazos del mismo instrumento. El código queda anotado como pendiente y la lista se pone al día
+ * la próxima vez que se publica ({@link #aplicarPendientes(Particion[])}), con el instrumento vigente
+ * del índice. Los lectores de las instantáneas toman el cerrojo sólo si hay reemplazos pendientes;
+ * las búsquedas por código leen el índice y ven el reemplazo de inmediato. Un ajuste masivo, que
+ * necesita que nadie cambie los instrumentos que selecciona, reserva la partición
+ * ({@link #reservar(Collection, boolean)}) y los escritores sin cerrojo pasan a esperar el cerrojo.</p>
+ *
+ * <p>Las particiones de un mismo catálogo se crean juntas con {@link #crear(int)} y publican sus
+ * instantáneas en un único arreglo compartido, que se reemplaza completo con compare-and-set. Un
+ * lector obtiene las instantáneas de todas las particiones con una sola lectura
+ * ({@link #instantaneas(Particion[])}), y una modificación que abarca varias particiones
+ * ({@link #modificar(Collection, Supplier)}) las publica todas a la vez: nadie ve, por ejemplo, un
+ * instrumento que se mudó de partición quitado de la de origen y todavía ausente en la de destino.</p>
+ *
+ * <p>Cada partición lleva también su propio registro compactado de cambios. El servicio asigna la
+ * secuencia de un cambio y lo registra con el cerrojo del registro de la partición
+ * ({@link #registrar(Collection, AtomicLong, Supplier)}), sin otro cerrojo global, así que el registro
+ * recibe las secuencias en orden. Mientras lo hace, la partición anota la menor secuencia que puede
+ * recibir el cambio; un cambio estructural además anota que está pendiente de publicar
+ * ({@link #marcarPendiente(long)}), marca que se borra al publicar las instantáneas. Así, quien lee los
+ * registros sabe hasta qué versión del catálogo ningún cambio está todavía a medio registrar o sin
+ * publicar ({@link #versionConfirmada(Particion[], long)}).</p>
+ *
+ * @author Jorge
+ */
+class Particion
+{
+    /**
+     * Número de la partición dentro del catálogo; fija el orden en que se toman los cerrojos.
+     */
+    private final int numero;
+
+    /**
+     * Instantáneas publicadas de todas las particiones del catálogo, compartidas entre ellas.
+     */
+    private final AtomicReference<List<Instrumento>[]> publicadas;
+
+    /**
+     * Instrumentos de la partición en orden de ingreso; sólo la modifican los escritores.
+     */
+    private final ListaSegmentada<Instrumento> instrumentos = new ListaSegmentada<>();
+
+    /**
+     * Índice de los instrumentos de la partición por código normalizado.
+     */
+    private final Map<String, Instrumento> indice = new ConcurrentHashMap<>();
+
+    /**
+     * Códigos normalizados de los instrumentos reemplazados sin cerrojo que la lista todavía no refleja.
+     */
+    private final Map<String, Boolean> pendientes = new ConcurrentHashMap<>();
+
+    /**
+     * Cantidad de cambios aplicados a instrumentos de la partición, usada para invalidar la copia columnar.
+     */
+    private final AtomicLong cambios = new AtomicLong();
+
+    /**
+     * Último orden de ingreso asignado en la partición; sólo lo modifican los escritores.
+     */
+    private long ultimoOrden;
+
+    /**
+     * Registro compactado de los cambios de los instrumentos de la partición.
+     */
+    private volatile RegistroCambios registro;
+
+    /**
+     * Menor secuencia que puede tener un cambio de la partición registrado y aún no publicado, o
+     * {@link Long#MAX_VALUE} si no hay ninguno pendiente.
+     */
+    private volatile long pendienteDesde = Long.MAX_VALUE;
+
+    /**
+     * Menor secuencia que puede tener el cambio que se está registrando, o {@link Long#MAX_VALUE} si
+     * no se está registrando ninguno. Sólo se modifica con el cerrojo del registro.
+     */
+    private volatile long registrandoDesde = Long.MAX_VALUE;
+
+    /**
+     * Indica que un ajuste masivo tiene reservada la partición: los reemplazos sin cerrojo deben esperar
+     * el cerrojo. Sólo se modifica con el cerrojo de la partición.
+     */
+    private volatile boolean reservada;
+
+    /**
+     * Cerrojo que serializa las modificaciones de la lista.
+     */
+    private final ReentrantLock cerrojo = new ReentrantLock();
+
+    /**
+     * Última copia columnar construida, o {@code null} si aún no se ha usado.
+     */
+    private volatile CatalogoColumnar columnar;
+
+    private Particion(int numero, AtomicReference<List<Instrumento>[]> publicadas, RegistroCambios registro) {
+        this.numero = numero;
+        this.publicadas = publicadas;
+        this.registro = registro;
+    }
+
+    /**
+     * Crea las particiones vacías de un catálogo, que comparten el arreglo de instantáneas publicadas.
+     *
+     * @param cantidad cantidad de particiones
+     * @param eliminadosRetenidos cantidad de eliminaciones que conservan entre todos los registros de cambios
+     * @param horizonte versión del catálogo desde la que los registros responden cambios
+     * @return particiones numeradas desde 0
+     */
+    @SuppressWarnings("unchecked")
+    static Particion[] crear(int cantidad, int eliminadosRetenidos, long horizonte) {
+        List<Instrumento>[] vacias = (List<Instrumento>[]) new List<?>[cantidad];
+        Arrays.fill(vacias, List.of());
+        AtomicReference<List<Instrumento>[]> publicadas = new AtomicReference<>(vacias);
+        Particion[] particiones = new Particion[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            particiones[i] = new Particion(i, publicadas, new RegistroCambios(eliminadosPorParticion(eliminadosRetenidos, cantidad), horizonte));
+        }
+        return particiones;
+    }
+
+    /**
+     * Reemplaza los registros de cambios de las particiones por registros vacíos.
+     *
+     * @param particiones particiones del catálogo
+     * @param eliminadosRetenidos cantidad de eliminaciones que conservan entre todos los registros
+     * @param horizonte versión del catálogo desde la que los registros nuevos responden cambios
+     */
+    static void reiniciarRegistros(Particion[] particiones, int eliminadosRetenidos, long horizonte) {
+        int maximo = eliminadosPorParticion(eliminadosRetenidos, particiones.length);
+        for (Particion particion : particiones) {
+            particion.registro = new RegistroCambios(maximo, horizonte);
+        }
+    }
+
+    /**
+     * Reparte entre las particiones la cantidad de eliminaciones retenidas, redondeando hacia arriba.
+     */
+    private static int eliminadosPorParticion(int eliminadosRetenidos, int cantidad) {
+        if (eliminadosRetenidos <= 0) {
+            throw new IllegalArgumentException("La cantidad de eliminaciones retenidas debe ser positiva");
+        }
+        return (int) ((eliminadosRetenidos + (long) cantidad - 1) / cantidad);
+    }
+
+    /**
+     * Devuelve las últimas instantáneas publicadas de todas las particiones de un catálogo,
+     * leídas juntas: ninguna modificación queda publicada en unas y no en otras.
+     *
+     * @param particiones particiones del catálogo, creadas con {@link #crear(int)}
+     * @return instantánea de cada partición, en orden de partición
+     */
+    static List<List<Instrumento>> instantaneas(Particion[] particiones) {
+        return List.of(particiones[0].publicadas.get());
+    }
+
+    /**
+     * Devuelve el índice por código normalizado de la partición.
+     *
+     * @return índice concurrente de la partición
+     */
+    Map<String, Instrumento> indice() {
+        return indice;
+    }
+
+    /**
+     * Agrega un instrumento al final de la lista de la partición y le asigna el siguiente orden de
+     * ingreso. Sólo debe usarse dentro de una modificación ({@link #modificar(Collection, Supplier)})
+     * o desde el escritor único, antes de poner el instrumento en el índice: un reemplazo sin cerrojo
+     * copia el orden de ingreso del instrumento que encuentra en el índice.
+     *
+     * @param instrumento instrumento nuevo en la partición
+     */
+    void agregar(Instrumento instrumento) {
+        instrumento.setOrdenIngreso(++ultimoOrden);
+        instrumentos.add(instrumento);
+    }
+
+    /**
+     * Reemplaza un instrumento de la lista por otro, que ocupa su misma posición y hereda su orden
+     * de ingreso. Sólo debe usarse dentro de una modificación o desde el escritor único.
+     *
+     * @param actual instrumento vigente; la lista puede tener todavía una versión anterior suya
+     * @param nuevo instrumento que lo reemplaza, aún no publicado
+     * @throws IllegalStateException si el instrumento actual no está en la lista
+     */
+    void reemplazar(Instrumento actual, Instrumento nuevo) {
+        nuevo.setOrdenIngreso(actual.getOrdenIngreso());
+        instrumentos.set(posicion(actual), nuevo);
+    }
+
+    /**
+     * Reemplaza un instrumento por otro con el mismo código con un compare-and-set sobre su entrada
+     * del índice, sin tomar el cerrojo. Si otro escritor ya lo reemplazó o lo quitó, no cambia nada y
+     * quien lo invoca debe volver a leer el instrumento vigente. La lista no se toca: el código queda
+     * pendiente hasta la próxima publicación.
+     *
+     * <p>Quien lo invoca debe leer el instrumento del índice antes de consultar {@link #reservada()}:
+     * un ajuste masivo reserva la partición antes de reemplazar los instrumentos que selecciona, así
+     * que un escritor que ya ve el reemplazo del ajuste ve también la reserva.</p>
+     *
+     * @param clave código normalizado
+     * @param actual instrumento leído del índice
+     * @param nuevo instrumento que lo reemplaza, aún no publicado; hereda el orden de ingreso del actual
+     * @return {@code true} si el reemplazo se aplicó
+     */
+    boolean reemplazarSinCerrojo(String clave, Instrumento actual, Instrumento nuevo) {
+        nuevo.setOrdenIngreso(actual.getOrdenIngreso());
+        // Se compara por identidad y no con replace(clave, actual, nuevo), que usa equals: dos versiones
+        // del mismo instrumento con los mismos datos son iguales según equals.
+        if (indice.computeIfPresent(clave, (k, vigente) -> vigente == actual ? nuevo : vigente) != nuevo) {
+            return false;
+        }
+        // Sin escritura si ya estaba pendiente: un código muy disputado no compite además por este mapa.
+        if (!pendientes.containsKey(clave)) {
+            pendientes.put(clave, Boolean.TRUE);
+        }
+        return true;
+    }
+
+    /**
+     * Quita un instrumento del índice si su entrada todavía apunta a él, comparando por identidad igual
+     * que {@link #reemplazarSinCerrojo(String, Instrumento, Instrumento)}. La lista no se toca.
+     *
+     * @param clave código normalizado
+     * @param actual instrumento leído del índice
+     * @return {@code true} si se quitó; {@code false} si otro escritor lo reemplazó o lo quitó antes
+     */
+    boolean quitarDelIndice(String clave, Instrumento actual) {
+        boolean[] quitado = new boolean[1];
+        indice.computeIfPresent(clave, (k, vigente) -> {
+            quitado[0] = vigente == actual;
+            return quitado[0] ? null : vigente;
+        });
+        return quitado[0];
+    }
+
+    /**
+     * Indica si un ajuste masivo tiene reservada la partición, en cuyo caso los reemplazos sin
+     * cerrojo deben hacerse con el cerrojo de la partición.
+     *
+     * @return {@code true} si la partición está reservada
+     */
+    boolean reservada() {
+        return reservada;
+    }
+
+    /**
+     * Reserva o libera varias particiones para un ajuste masivo. Quien lo invoca debe tener sus
+     * cerrojos, o ser el escritor único, y liberarlas antes de soltar los cerrojos.
+     *
+     * @param particiones particiones a reservar o liberar
+     * @param reservar {@code true} para reservar, {@code false} para liberar
+     */
+    static void reservar(Collection<Particion> particiones, boolean reservar) {
+        for (Particion particion : particiones) {
+            particion.reservada = reservar;
+        }
+    }
+
+    /**
+     * Quita un instrumento de la lista. Sólo debe usarse dentro de una modificación o desde el escritor único.
+     *
+     * @param actual instrumento de la lista
+     * @throws IllegalStateException si el instrumento no está en la lista
+     */
+    void quitar(Instrumento actual) {
+        instrumentos.remove(posicion(actual));
+    }
+
+    /**
+     * Aplica una modificación a una o varias particiones y publica sus instantáneas juntas,
+     * serializada con las demás modificaciones de esas mismas particiones. Los cerrojos se toman
+     * en orden de número de partición, para que dos modificaciones sobre las mismas particiones no
+     * se esperen mutuamente. Si la modificación lanza una excepción antes de registrar algún cambio, no
+     * se publica nada.
+     *
+     * @param particiones particiones que modifica el cambio
+     * @param cambio modificación de las listas (y los índices) de esas particiones
+     * @param <T> tipo del resultado de la modificación
+     * @return resultado de la modificación
+     */
+    static <T> T modificar(Collection<Particion> particiones, Supplier<T> cambio) {
+        List<Particion> ordenadas = ordenar(particiones);
+        int tomados = 0;
+        try {
+            for (Particion particion : ordenadas) {
+                particion.cerrojo.lock();
+                tomados++;
+            }
+            T resultado = cambio.get();
+            publicar(ordenadas);
+            return resultado;
+        } catch (RuntimeException | Error e) {
+            // Si la modificación falló después de registrar un cambio, se publica igual lo aplicado:
+            // de lo contrario la marca de pendiente no se borraría y la versión confirmada no avanzaría.
+            if (tomados == ordenadas.size() && ordenadas.stream().anyMatch(p -> p.pendienteDesde != Long.MAX_VALUE)) {
+                publicar(ordenadas);
+            }
+            throw e;
+        } finally {
+            for (int i = tomados - 1; i >= 0; i--) {
+                ordenadas.get(i).cerrojo.unlock();
+            }
+        }
+    }
+
+    /**
+     * Ordena sin repetir las particiones de una operación que toma varios cerrojos, por número de partición.
+     */
+    private static List<Particion> ordenar(Collection<Particion> particiones) {
+        return particiones.size() == 1 ? List.copyOf(particiones)
+                : particiones.stream().distinct().sorted(Comparator.comparingInt(p -> p.numero)).toList();
+    }
+
+    /**
+     * Pone al día con los reemplazos sin cerrojo pendientes y publica las instantáneas de las
+     * particiones que los tienen. No toma ningún cerrojo si no hay reemplazos pendientes. No debe usarse
+     * con el escritor único activo: las listas sólo las modifica su hilo, que las pone al día al publicar.
+     *
+     * @param particiones particiones del catálogo
+     */
+    static void aplicarPendientes(Particion[] particiones) {
+        List<Particion> desactualizadas = null;
+        for (Particion particion : particiones) {
+            if (!particion.pendientes.isEmpty()) {
+                if (desactualizadas == null) {
+                    desactualizadas = new ArrayList<>();
+                }
+                desactualizadas.add(particion);
+            }
+        }
+        if (desactualizadas != null) {
+            modificar(desactualizadas, () -> null);
+        }
+    }
+
+    /**
+     * Publica juntas las instantáneas de la lista actual de varias particiones, después de poner cada
+     * lista al día con los reemplazos sin cerrojo pendientes. Quien la invoca debe tener sus cerrojos,
+     * o ser el escritor único.
+     *
+     * @param particiones particiones a publicar, todas del mismo catálogo
+     */
+    static void publicar(List<Particion> particiones) {
+        if (particiones.isEmpty()) {
+            return;
+        }
+        List<List<Instrumento>> nuevas = new ArrayList<>(particiones.size());
+        for (Particion particion : particiones) {
+            particion.actualizarLista();
+            nuevas.add(particion.instrumentos.instantanea());
+        }
+        AtomicReference<List<Instrumento>[]> publicadas = particiones.getFirst().publicadas;
+        while (true) {
+            List<Instrumento>[] actuales = publicadas.get();
+            List<Instrumento>[] siguientes = actuales.clone();
+            for (int i = 0; i < particiones.size(); i++) {
+                siguientes[particiones.get(i).numero] = nuevas.get(i);
+            }
+            if (publicadas.compareAndSet(actuales, siguientes)) {
+                break;
+            }
+        }
+        for (Particion particion : particiones) {
+            particion.pendienteDesde = Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Pone en la lista el instrumento vigente del índice de cada código reemplazado sin cerrojo desde
+     * la última publicación. Cada código se quita de los pendientes antes de leer el índice, así que un
+     * reemplazo posterior vuelve a anotarlo. Un código que ya no está en el índice se ignora: su baja
+     * ya lo quitó de la lista.
+     */
+    private void actualizarLista() {
+        if (pendientes.isEmpty()) {
+            return;
+        }
+        for (String clave : pendientes.keySet()) {
+            pendientes.remove(clave);
+            Instrumento vigente = indice.get(clave);
+            if (vigente != null) {
+                int posicion = buscar(vigente.getOrdenIngreso());
+                if (posicion >= 0) {
+                    instrumentos.set(posicion, vigente);
+                }
+            }
+        }
+    }
+
+    /**
+     * Busca la posición de un instrumento en la lista. La lista está en orden de ingreso y cada
+     * instrumento de la partición tiene un orden de ingreso distinto, que heredan sus reemplazos, así
+     * que la búsqueda es binaria por {@link Instrumento#getOrdenIngreso()}. La lista puede tener una
+     * versión anterior del instrumento, reemplazada sin cerrojo y todavía pendiente.
+     *
+     * @param instrumento instrumento a buscar
+     * @return posición del instrumento
+     * @throws IllegalStateException si el instrumento no está en la lista
+     */
+    private int posicion(Instrumento instrumento) {
+        int posicion = buscar(instrumento.getOrdenIngreso());
+        if (posicion < 0) {
+            throw new IllegalStateException("El instrumento " + instrumento.getCodigo() + " no está en la partición");
+        }
+        return posicion;
+    }
+
+    /**
+     * Busca por búsqueda binaria la posición del instrumento con un orden de ingreso.
+     *
+     * @param orden orden de ingreso
+     * @return posición del instrumento, o {@code -1} si no está en la lista
+     */
+    private int buscar(long orden) {
+        int desde = 0;
+        int hasta = instrumentos.size() - 1;
+        while (desde <= hasta) {
+            int medio = (desde + hasta) >>> 1;
+            long ordenMedio = instrumentos.get(medio).getOrdenIngreso();
+            if (ordenMedio < orden) {
+                desde = medio + 1;
+            } else if (ordenMedio > orden) {
+                hasta = medio - 1;
+            } else {
+                return medio;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Anota que la partición va a registrar un cambio estructural con secuencia {@code desde} o mayor,
+     * que se publicará con las próximas instantáneas. Si ya había un cambio pendiente, la anotación no
+     * cambia. Sólo debe usarse con el cerrojo de la partición o desde el escritor único, antes de
+     * asignar la secuencia. Los reemplazos sin cerrojo no la usan: se ven en el índice desde que se
+     * aplican y la lista se pone al día antes de que nadie lea la instantánea.
+     *
+     * @param desde cota inferior de la secuencia que recibirá el cambio
+     */
+    void marcarPendiente(long desde) {
+        if (pendienteDesde == Long.MAX_VALUE) {
+            pendienteDesde = desde;
+        }
+    }
+
+    /**
+     * Asigna secuencias y registra cambios con los cerrojos de los registros de varias particiones,
+     * tomados en orden de número de partición. Mientras tanto cada partición anota la menor secuencia
+     * que pueden recibir sus cambios, para que la versión confirmada no la alcance antes de que queden
+     * registrados. Como las secuencias se asignan con el cerrojo del registro, cada registro las recibe
+     * en orden aunque los cambios se apliquen sin el cerrojo de la partición.
+     *
+     * @param particiones particiones cuyos registros reciben los cambios
+     * @param versionCatalogo versión del catálogo, de la que se toman las secuencias
+     * @param registro asigna las secuencias y registra los cambios con {@link #registrarCambio(EventoCambioDTO)}
+     * @param <T> tipo del resultado
+     * @return resultado del registro
+     */
+    static <T> T registrar(Collection<Particion> particiones, AtomicLong versionCatalogo, Supplier<T> registro) {
+        List<Particion> ordenadas = ordenar(particiones);
+        List<RegistroCambios> tomados = new ArrayList<>(ordenadas.size());
+        try {
+            for (Particion particion : ordenadas) {
+                RegistroCambios actual = particion.registro;
+                actual.bloquear();
+                tomados.add(actual);
+                particion.registrandoDesde = versionCatalogo.get() + 1;
+            }
+            return registro.get();
+        } finally {
+            for (int i = tomados.size() - 1; i >= 0; i--) {
+                ordenadas.get(i).registrandoDesde = Long.MAX_VALUE;
+                tomados.get(i).desbloquear();
+            }
+        }
+    }
+
+    /**
+     * Registra un cambio de un instrumento o una funda de la partición, aunque no haya cambiado la
+     * lista. Sólo debe usarse dentro de {@link #registrar(Collection, AtomicLong, Supplier)}.
+     *
+     * @param evento cambio con su secuencia ya asignada
+     */
+    void registrarCambio(EventoCambioDTO evento) {
+        cambios.incrementAndGet();
+        registro.registrar(evento);
+    }
+
+    /**
+     * Calcula la versión del catálogo hasta la que todos los cambios están registrados y publicados:
+     * la anterior a la menor secuencia pendiente o a medio registrar de alguna partición, o la versión
+     * actual si no hay ninguna. Se lee la versión actual antes de mirar las particiones: un cambio con
+     * secuencia menor o igual ya anotó su partición antes de recibirla, y las marcas sólo se borran
+     * después de registrarlo o de publicarlo.
+     *
+     * @param particiones particiones del catálogo
+     * @param versionActual versión del catálogo leída antes de llamar a este método
+     * @return versión confirmada del catálogo
+     */
+    static long versionConfirmada(Particion[] particiones, long versionActual) {
+        long confirmada = versionActual;
+        for (Particion particion : particiones) {
+            confirmada = Math.min(confirmada, Math.min(particion.pendienteDesde, particion.registrandoDesde) - 1);
+        }
+        return confirmada;
+    }
+
+    /**
+     * Reúne los cambios posteriores a una versión de los registros de todas las particiones,
+     * en orden de secuencia. Cada registro se lee por separado, sin detener a las demás particiones.
+     *
+     * @param particiones particiones del catálogo
+     * @param version última versión conocida por el cliente
+     * @return cambios posteriores a la versión, o {@code null} si algún registro ya no los conserva
+     */
+    static List<EventoCambioDTO> cambiosDesde(Particion[] particiones, long version) {
+        List<EventoCambioDTO> cambios = new ArrayList<>();
+        for (Particion particion : particiones) {
+            List<EventoCambioDTO> propios = particion.registro.cambiosDesde(version);
+            if (propios == null) {
+                return null;
+            }
+            cambios.addAll(propios);
+        }
+        if (particiones.length > 1) {
+            cambios.sort(Comparator.comparingLong(EventoCambioDTO::getSecuencia));
+        }
+        return cambios;
+    }
+
+    /**
+     * Devuelve la copia columnar de una instantánea de la partición. Si la partición cambió desde la
+     * última vez que se construyó, la pone al día reconstruyendo sólo los bloques de los segmentos que
+     * cambiaron ({@link CatalogoColumnar#actualizar(List, long)}).
+     *
+     * @param vista instantánea de la partición sobre la que se evalúa la consulta
+     * @return copia columnar de la instantánea
+     */
+    CatalogoColumnar columnar(List<Instrumento> vista) {
+        long version = cambios.get();
+        CatalogoColumnar actual = columnar;
+        if (actual == null) {
+            actual = new CatalogoColumnar(vista, version);
+            columnar = actual;
+        } else if (actual.getVersion() != version || !actual.representa(vista)) {
+            actual = actual.actualizar(vista, version);
+            columnar = actual;
+        }
+        return actual;
+    }
+
+    /**
+     * Devuelve una vista inmutable que recorre varias listas una detrás de otra, sin copiarlas.
+     *
+     * @param partes listas a concatenar
+     * @return vista de acceso aleatorio sobre la concatenación
+     */
+    static List<Instrumento> concatenar(List<List<Instrumento>> partes) {
+        return partes.size() == 1 ? partes.getFirst() : new Concatenacion(partes);
+    }
+
+    /**
+     * Vista de sólo lectura sobre la concatenación de varias listas de acceso aleatorio.
+     */
+    private static final class Concatenacion extends AbstractList<Instrumento> implements RandomAccess
+    {
+        private final List<List<Instrumento>> partes;
+        private final int[] inicios;
+        private final int tamano;
+
+        Concatenacion(List<List<Instrumento>> partes) {
+            this.partes = partes;
+            this.inicios = new int[partes.size()];
+            int acumulado = 0;
+            for (int i = 0; i < partes.size(); i++) {
+                inicios[i] = acumulado;
+                acumulado += partes.get(i).size();
+            }
+            this.tamano = acumulado;
+        }
+
+        @Override
+        public Instrumento get(int indice) {
+            Objects.checkIndex(indice, tamano);
+            int parte = Arrays.binarySearch(inicios, indice);
+            if (parte < 0) {
+                parte = -parte - 2;
+            }
+            while (partes.get(parte).size() <= indice - inicios[parte]) {
+                parte++;
+            }
+            return partes.get(parte).get(indice - inicios[parte]);
+        }
+
+        @Override
+        public int size() {
+            return tamano;
+        }
+    }
+}
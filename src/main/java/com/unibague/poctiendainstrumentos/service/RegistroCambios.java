@@ -0,0 +1,195 @@
+package com.unibague.poctiendainstrumentos.service;
+
+import com.unibague.poctiendainstrumentos.dto.EventoCambioDTO;
+import com.unibague.poctiendainstrumentos.model.enums.EntidadCambio;
+import com.unibague.poctiendainstrumentos.model.enums.TipoCambio;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.SequencedMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Registro compactado de los cambios del catálogo, usado para la sincronización incremental.
+ *
+ * <p>A diferencia del buffer circular, el registro conserva sólo el último cambio de cada
+ * instrumento o funda: al llegar un cambio nuevo sobre el mismo elemento, el anterior se descarta.
+ * Las entradas se mantienen ordenadas por secuencia, así que los cambios posteriores a una
+ * versión se obtienen recorriendo el registro desde el final.</p>
+ *
+ * <p>Las eliminaciones se conservan como marcas hasta un máximo configurable. Al superarlo se
+ * descartan las más antiguas y el horizonte del registro avanza hasta la secuencia de la última
+ * descartada: a partir de ese momento, un cliente con una versión anterior al horizonte podría
+ * no enterarse de una eliminación y debe descargar de nuevo el catálogo completo.</p>
+ *
+ * <p>Todos los métodos toman el cerrojo del registro. El catálogo fuera del heap registra cada cambio
+ * dentro del mismo cerrojo con el que asigna su secuencia, de modo que el registro nunca tiene huecos;
+ * el catálogo en memoria tiene un registro por partición y cada uno recibe sólo los cambios de la
+ * suya, con su secuencia asignada dentro del cerrojo de este registro (ver
+ * {@link Particion#registrar(java.util.Collection, java.util.concurrent.atomic.AtomicLong, java.util.function.Supplier)}).</p>
+ *
+ * @author Jorge
+ */
+class RegistroCambios
+{
+    /**
+     * Último cambio de cada elemento, por clave normalizada y en orden de secuencia.
+     */
+    private final SequencedMap<String, EventoCambioDTO> ultimos = new LinkedHashMap<>();
+
+    /**
+     * Cerrojo que protege el registro.
+     */
+    private final ReentrantLock cerrojo = new ReentrantLock();
+
+    /**
+     * Cantidad máxima de eliminaciones conservadas.
+     */
+    private final int maximoEliminados;
+
+    /**
+     * Cantidad de eliminaciones actualmente conservadas.
+     */
+    private int eliminados;
+
+    /**
+     * Versión mínima desde la que el registro puede responder cambios de forma completa.
+     */
+    private long horizonte;
+
+    /**
+     * Crea un registro vacío.
+     *
+     * @param maximoEliminados cantidad máxima de eliminaciones a conservar
+     * @throws IllegalArgumentException si el máximo no es positivo
+     */
+    RegistroCambios(int maximoEliminados) {
+        this(maximoEliminados, 0);
+    }
+
+    /**
+     * Crea un registro vacío que sólo responde cambios posteriores a una versión, porque no
+     * conoce los anteriores.
+     *
+     * @param maximoEliminados cantidad máxima de eliminaciones a conservar
+     * @param horizonte versión desde la que el registro responde cambios
+     * @throws IllegalArgumentException si el máximo no es positivo
+     */
+    RegistroCambios(int maximoEliminados, long horizonte) {
+        if (maximoEliminados <= 0) {
+            throw new IllegalArgumentException("La cantidad de eliminaciones retenidas debe ser positiva");
+        }
+        this.maximoEliminados = maximoEliminados;
+        this.horizonte = horizonte;
+    }
+
+    /**
+     * Registra un cambio, reemplazando el cambio anterior del mismo elemento.
+     *
+     * @param evento cambio a registrar; su secuencia debe ser mayor que la de todos los anteriores
+     */
+    void registrar(EventoCambioDTO evento) {
+        cerrojo.lock();
+        try {
+            String clave = clave(evento);
+            EventoCambioDTO anterior = ultimos.remove(clave);
+            if (anterior != null && anterior.getTipo() == TipoCambio.ELIMINADO) {
+                eliminados--;
+            }
+            ultimos.put(clave, evento);
+            if (evento.getTipo() == TipoCambio.ELIMINADO && ++eliminados > maximoEliminados) {
+                compactar();
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Devuelve el último cambio de cada elemento modificado después de una versión, en orden de secuencia.
+     *
+     * @param version última versión conocida por el cliente
+     * @return cambios posteriores a la versión, o {@code null} si la versión es anterior al horizonte
+     */
+    List<EventoCambioDTO> cambiosDesde(long version) {
+        cerrojo.lock();
+        try {
+            if (version < horizonte) {
+                return null;
+            }
+            List<EventoCambioDTO> resultado = new ArrayList<>();
+            for (EventoCambioDTO evento : ultimos.sequencedValues().reversed()) {
+                if (evento.getSecuencia() <= version) {
+                    break;
+                }
+                resultado.add(evento);
+            }
+            return resultado.reversed();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Devuelve la versión mínima desde la que el registro responde cambios de forma completa.
+     *
+     * @return horizonte del registro
+     */
+    long horizonte() {
+        cerrojo.lock();
+        try {
+            return horizonte;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Toma el cerrojo del registro, para agrupar varias operaciones con otras que deben ser atómicas
+     * respecto de él. Debe liberarse con {@link #desbloquear()} en un bloque {@code finally}.
+     */
+    void bloquear() {
+        cerrojo.lock();
+    }
+
+    /**
+     * Libera el cerrojo tomado con {@link #bloquear()}.
+     */
+    void desbloquear() {
+        cerrojo.unlock();
+    }
+
+    /**
+     * Descarta las eliminaciones más antiguas hasta conservar la mitad del máximo permitido,
+     * para no repetir la compactación con cada eliminación nueva.
+     */
+    private void compactar() {
+        int objetivo = maximoEliminados / 2;
+        Iterator<EventoCambioDTO> it = ultimos.values().iterator();
+        while (eliminados > objetivo && it.hasNext()) {
+            EventoCambioDTO evento = it.next();
+            if (evento.getTipo() == TipoCambio.ELIMINADO) {
+                horizonte = evento.getSecuencia();
+                it.remove();
+                eliminados--;
+            }
+        }
+    }
+
+    /**
+     * Calcula la clave de compactación de un cambio: el código del instrumento o,
+     * para las fundas, el de la guitarra junto con el de la funda.
+     *
+     * @param evento cambio
+     * @return clave normalizada
+     */
+    private static String clave(EventoCambioDTO evento) {
+        String codigo = evento.getCodigo().toLowerCase(Locale.ROOT);
+        return evento.getEntidad() == EntidadCambio.FUNDA
+                ? codigo + '/' + evento.getCodigoFunda().toLowerCase(Locale.ROOT)
+                : codigo;
+    }
+}
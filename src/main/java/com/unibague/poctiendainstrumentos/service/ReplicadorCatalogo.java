@@ -0,0 +1,248 @@
+package com.unibague.poctiendainstrumentos.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unibague.poctiendainstrumentos.dto.DeltaCatalogoDTO;
+import com.unibague.poctiendainstrumentos.dto.EstadoReplicacionDTO;
+import com.unibague.poctiendainstrumentos.dto.InstantaneaCatalogoDTO;
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Replicación del catálogo entre nodos mediante el envío del registro de cambios del líder.
+ *
+ * <p>Si se configura {@code tienda.replicacion.lider-url}, el nodo es seguidor: un hilo virtual
+ * pide periódicamente al líder los cambios posteriores a la última versión aplicada
+ * ({@code GET /replicacion/registro}) y los aplica en el servicio local, que atiende las lecturas.
+ * Si el líder ya compactó esos cambios, el seguidor descarga la copia completa
+ * ({@code GET /replicacion/instantanea}) y continúa desde su versión. Sin esa propiedad,
+ * el nodo es líder y sólo atiende esas consultas.</p>
+ *
+ * <p>Las versiones de los instrumentos viajan con ellos, de modo que un {@code If-Match}
+ * obtenido en un seguidor es válido cuando la escritura se reenvía al líder.</p>
+ *
+ * @author Jorge
+ */
+@Component
+public class ReplicadorCatalogo
+{
+    @Autowired
+    private IServicioInstrumento servicioInstrumento;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * URL base del líder, o vacía si este nodo es el líder.
+     */
+    @Value("${tienda.replicacion.lider-url:}")
+    private String liderUrl;
+
+    /**
+     * Intervalo entre consultas al líder.
+     */
+    @Value("${tienda.replicacion.intervalo-ms:200}")
+    private long intervaloMs;
+
+    /**
+     * Usuario con el que el seguidor se autentica ante el líder.
+     */
+    @Value("${tienda.replicacion.usuario:${spring.security.user.name:}}")
+    private String usuario;
+
+    /**
+     * Contraseña con la que el seguidor se autentica ante el líder.
+     */
+    @Value("${tienda.replicacion.clave:${spring.security.user.password:}}")
+    private String clave;
+
+    private HttpClient cliente;
+    private ObjectMapper lector;
+    private Thread hilo;
+    private volatile boolean activo;
+
+    /**
+     * Serializa las sincronizaciones; a diferencia de un monitor, no fija el hilo portador
+     * mientras se espera la respuesta del líder.
+     */
+    private final ReentrantLock cerrojo = new ReentrantLock();
+
+    private volatile long versionAplicada;
+    private volatile long retrasoVersiones;
+    private volatile long ultimaSincronizacion = -1;
+    private volatile long resincronizaciones;
+    private volatile String ultimoError;
+
+    /**
+     * Inicia la replicación si el nodo es seguidor.
+     */
+    @PostConstruct
+    void iniciar() {
+        if (!esSeguidor()) {
+            return;
+        }
+        liderUrl = liderUrl.endsWith("/") ? liderUrl.substring(0, liderUrl.length() - 1) : liderUrl;
+        cliente = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+        lector = objectMapper.copy().addMixIn(Instrumento.class, VersionReplicada.class);
+        activo = true;
+        hilo = Thread.ofVirtual().name("replicador-catalogo").start(this::replicar);
+    }
+
+    /**
+     * Detiene el hilo de replicación.
+     */
+    @PreDestroy
+    void detener() {
+        activo = false;
+        if (hilo != null) {
+            hilo.interrupt();
+        }
+    }
+
+    /**
+     * Indica si este nodo replica desde un líder.
+     *
+     * @return {@code true} si se configuró la URL del líder
+     */
+    public boolean esSeguidor() {
+        return liderUrl != null && !liderUrl.isBlank();
+    }
+
+    /**
+     * Devuelve la URL base del líder.
+     *
+     * @return URL del líder, o vacía si este nodo es el líder
+     */
+    public String getLiderUrl() {
+        return liderUrl;
+    }
+
+    /**
+     * Devuelve la cabecera {@code Authorization} con la que el seguidor se autentica ante el líder.
+     *
+     * @return credenciales en formato Basic
+     */
+    public String autorizacion() {
+        return "Basic " + Base64.getEncoder()
+                .encodeToString((usuario + ":" + clave).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Devuelve el cliente HTTP usado para comunicarse con el líder.
+     *
+     * @return cliente HTTP compartido
+     */
+    public HttpClient cliente() {
+        return cliente;
+    }
+
+    /**
+     * Describe el estado de la replicación en este nodo, incluido el retraso respecto del líder.
+     *
+     * @return estado de la replicación
+     */
+    public EstadoReplicacionDTO estado() {
+        if (!esSeguidor()) {
+            return new EstadoReplicacionDTO("lider", null, servicioInstrumento.versionCatalogo(), 0, 0, 0, null);
+        }
+        long ultima = ultimaSincronizacion;
+        return new EstadoReplicacionDTO("seguidor", liderUrl, versionAplicada, retrasoVersiones,
+                ultima < 0 ? -1 : System.currentTimeMillis() - ultima, resincronizaciones, ultimoError);
+    }
+
+    /**
+     * Trae del líder y aplica los cambios pendientes. Se invoca periódicamente y también después de
+     * reenviar una escritura al líder, para que quien escribió vea su cambio en este nodo.
+     *
+     * @throws IOException si no es posible consultar al líder
+     * @throws InterruptedException si se interrumpe la consulta
+     */
+    public void sincronizar() throws IOException, InterruptedException {
+        cerrojo.lock();
+        try {
+            DeltaCatalogoDTO cambios = consultar("/replicacion/registro?desde=" + versionAplicada, DeltaCatalogoDTO.class);
+            if (cambios.isResincronizacionCompleta()) {
+                InstantaneaCatalogoDTO copia = consultar("/replicacion/instantanea", InstantaneaCatalogoDTO.class);
+                servicioInstrumento.reemplazarCatalogo(copia.getInstrumentos());
+                resincronizaciones++;
+                cambios = consultar("/replicacion/registro?desde=" + copia.getVersion(), DeltaCatalogoDTO.class);
+                if (cambios.isResincronizacionCompleta()) {
+                    throw new IOException("El líder compactó los cambios posteriores a su propia copia completa");
+                }
+            }
+            retrasoVersiones = Math.max(0, cambios.getVersion() - versionAplicada);
+            servicioInstrumento.aplicarReplica(cambios);
+            versionAplicada = cambios.getVersion();
+            ultimaSincronizacion = System.currentTimeMillis();
+            ultimoError = null;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Ciclo del hilo de replicación.
+     */
+    private void replicar() {
+        while (activo) {
+            try {
+                sincronizar();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                ultimoError = e.getMessage();
+            }
+            LockSupport.parkNanos(intervaloMs * 1_000_000);
+        }
+    }
+
+    /**
+     * Hace una consulta GET al líder y convierte la respuesta JSON.
+     *
+     * @param ruta ruta relativa a la URL del líder
+     * @param tipo clase de la respuesta
+     * @param <T> tipo de la respuesta
+     * @return respuesta convertida
+     * @throws IOException si falla la conexión o el líder responde con error
+     * @throws InterruptedException si se interrumpe la consulta
+     */
+    private <T> T consultar(String ruta, Class<T> tipo) throws IOException, InterruptedException {
+        HttpRequest solicitud = HttpRequest.newBuilder(URI.create(liderUrl + ruta))
+                .timeout(Duration.ofSeconds(10))
+                .header("Authorization", autorizacion())
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        HttpResponse<byte[]> respuesta = cliente.send(solicitud, HttpResponse.BodyHandlers.ofByteArray());
+        if (respuesta.statusCode() != 200) {
+            throw new IOException("El líder respondió " + respuesta.statusCode() + " a " + ruta);
+        }
+        return lector.readValue(respuesta.body(), tipo);
+    }
+
+    /**
+     * Anotaciones adicionales para leer la versión de los instrumentos replicados,
+     * que en la API pública es de sólo lectura.
+     */
+    private abstract static class VersionReplicada
+    {
+        @JsonProperty(access = JsonProperty.Access.READ_WRITE)
+        private long version;
+    }
+}
@@ -0,0 +1,249 @@
+package com.unibague.poctiendainstrumentos.service;
+
+import com.unibague.poctiendainstrumentos.dto.FiltroInstrumentoDTO;
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+import com.unibague.poctiendainstrumentos.model.enums.CampoOrden;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Acumula las coincidencias de un filtro respetando el orden y el límite pedidos.
+ *
+ * <ul>
+ *   <li>Sin orden ni límite guarda todas las coincidencias en el orden del catálogo.</li>
+ *   <li>Con límite y sin orden guarda las primeras del catálogo y avisa cuando ya no acepta más,
+ *       de modo que el recorrido puede terminar antes.</li>
+ *   <li>Con orden y límite {@code k} mantiene un montículo acotado cuya cima es la peor de las
+ *       {@code k} mejores vistas hasta el momento: cada candidata cuesta O(log k) y se descarta en
+ *       O(1) si no mejora la cima. Nunca se guardan más de {@code k} instrumentos ni se ordena el
+ *       resultado completo; sólo las {@code k} elegidas al final.</li>
+ *   <li>Con orden y sin límite no hay forma de evitar el ordenamiento completo, que se hace al final.</li>
+ * </ul>
+ *
+ * <p>Los empates se resuelven por código, así que el resultado no depende de cómo se repartió el
+ * recorrido entre bloques o particiones. Cada bloque usa su propia selección y las selecciones se
+ * combinan de izquierda a derecha. Cada candidata guarda el valor por el que se ordena y su código
+ * normalizado, calculados una sola vez al agregarla: el montículo y el ordenamiento final comparan
+ * cada candidata muchas veces, y así no repiten en cada comparación los accesos al instrumento ni la
+ * normalización del código.</p>
+ *
+ * @author Jorge
+ */
+final class SeleccionInstrumentos
+{
+    /**
+     * Orden y límite de una selección.
+     *
+     * @param campo campo por el que se ordena, o {@code null} para conservar el orden del catálogo
+     * @param descendente indica si el orden es descendente
+     * @param comparador orden de las candidatas según el valor guardado y el código
+     * @param limite cantidad máxima de resultados
+     */
+    record Orden(CampoOrden campo, boolean descendente, Comparator<Candidata> comparador, int limite)
+    {
+        /**
+         * Selección sin orden ni límite.
+         */
+        static final Orden NINGUNO = new Orden(null, false, null, Integer.MAX_VALUE);
+
+        /**
+         * Obtiene el orden y el límite pedidos en un filtro.
+         *
+         * @param filtro criterios del filtro
+         * @return orden y límite, o {@link #NINGUNO} si el filtro no pide ninguno
+         * @throws IllegalArgumentException si el límite no es positivo o si se pide un orden
+         *                                  descendente sin indicar el campo
+         */
+        static Orden desde(FiltroInstrumentoDTO filtro) {
+            Integer limite = filtro.getLimite();
+            if (limite != null && limite <= 0) {
+                throw new IllegalArgumentException("El límite debe ser mayor que cero");
+            }
+            boolean descendente = Boolean.TRUE.equals(filtro.getDescendente());
+            CampoOrden campo = filtro.getOrdenarPor();
+            if (campo == null) {
+                if (descendente) {
+                    throw new IllegalArgumentException("El orden descendente requiere indicar ordenarPor");
+                }
+                return limite == null ? NINGUNO : new Orden(null, false, null, limite);
+            }
+            // Los nulos quedan al final en ambos sentidos.
+            Comparator<Candidata> comparador = switch (campo) {
+                case PRECIO_BASE, STOCK -> sentido(Comparator.comparingDouble(Candidata::numero), descendente);
+                case FECHA_INGRESO -> Comparator.comparing(c -> (LocalDate) c.valor(),
+                        Comparator.nullsLast(sentido(Comparator.<LocalDate>naturalOrder(), descendente)));
+                case NOMBRE -> Comparator.comparing(c -> (String) c.valor(),
+                        Comparator.nullsLast(sentido(String.CASE_INSENSITIVE_ORDER, descendente)));
+            };
+            return new Orden(campo, descendente, comparador.thenComparing(Candidata::clave), limite == null ? Integer.MAX_VALUE : limite);
+        }
+
+        private static <T> Comparator<T> sentido(Comparator<T> comparador, boolean descendente) {
+            return descendente ? comparador.reversed() : comparador;
+        }
+
+        /**
+         * Crea la candidata de un instrumento, con el valor por el que se ordena ya leído.
+         *
+         * @param instrumento instrumento candidato
+         * @return candidata con el valor de orden y el código normalizado
+         */
+        Candidata candidata(Instrumento instrumento) {
+            String clave = ServicioInstrumento.clave(instrumento.getCodigo());
+            return switch (campo) {
+                case PRECIO_BASE -> new Candidata(instrumento, instrumento.getPrecioBase(), null, clave);
+                case STOCK -> new Candidata(instrumento, instrumento.getStock(), null, clave);
+                case FECHA_INGRESO -> new Candidata(instrumento, 0, instrumento.getFechaIngreso(), clave);
+                case NOMBRE -> new Candidata(instrumento, 0, instrumento.getNombre(), clave);
+            };
+        }
+
+        /**
+         * Descarta sin crear una candidata un instrumento cuyo precio o stock es estrictamente peor que el de
+         * una candidata, que es lo que ocurre con casi todas las coincidencias una vez lleno el montículo.
+         *
+         * @param instrumento instrumento que cumple el filtro
+         * @param candidata candidata con la que se compara
+         * @return {@code true} si se ordena por precio o stock y el instrumento queda después de la candidata
+         */
+        boolean peorQue(Instrumento instrumento, Candidata candidata) {
+            double valor;
+            switch (campo) {
+                case PRECIO_BASE -> valor = instrumento.getPrecioBase();
+                case STOCK -> valor = instrumento.getStock();
+                default -> {
+                    return false;
+                }
+            }
+            int diferencia = Double.compare(valor, candidata.numero());
+            return descendente ? diferencia < 0 : diferencia > 0;
+        }
+    }
+
+    /**
+     * Instrumento candidato junto con el valor por el que se ordena, leído una sola vez al agregarlo.
+     *
+     * @param instrumento instrumento que cumple el filtro
+     * @param numero precio o stock, si se ordena por uno de ellos
+     * @param valor fecha o nombre, si se ordena por uno de ellos
+     * @param clave código normalizado, para resolver empates
+     */
+    record Candidata(Instrumento instrumento, double numero, Object valor, String clave) {}
+
+    /**
+     * Orden y límite de esta selección.
+     */
+    private final Orden orden;
+
+    /**
+     * Coincidencias guardadas en orden de llegada, cuando no hay orden.
+     */
+    private final List<Instrumento> lista;
+
+    /**
+     * Candidatas guardadas en orden de llegada, cuando hay orden pero no límite.
+     */
+    private final List<Candidata> candidatas;
+
+    /**
+     * Montículo de las mejores candidatas con la peor en la cima, cuando hay orden y límite.
+     */
+    private final PriorityQueue<Candidata> monticulo;
+
+    /**
+     * Crea una selección vacía.
+     *
+     * @param orden orden y límite de la selección
+     */
+    SeleccionInstrumentos(Orden orden) {
+        this.orden = orden;
+        boolean ordenada = orden.campo() != null;
+        boolean acotada = orden.limite() != Integer.MAX_VALUE;
+        this.lista = ordenada ? null : new ArrayList<>();
+        this.candidatas = ordenada && !acotada ? new ArrayList<>() : null;
+        this.monticulo = ordenada && acotada
+                ? new PriorityQueue<>(Math.min(orden.limite(), 1024) + 1, orden.comparador().reversed())
+                : null;
+    }
+
+    /**
+     * Agrega una coincidencia.
+     *
+     * @param instrumento instrumento que cumple el filtro
+     */
+    void agregar(Instrumento instrumento) {
+        if (lista != null) {
+            if (lista.size() < orden.limite()) {
+                lista.add(instrumento);
+            }
+        } else if (candidatas != null) {
+            candidatas.add(orden.candidata(instrumento));
+        } else if (monticulo.size() < orden.limite() || !orden.peorQue(instrumento, monticulo.peek())) {
+            agregar(orden.candidata(instrumento));
+        }
+    }
+
+    private void agregar(Candidata candidata) {
+        if (monticulo.size() < orden.limite()) {
+            monticulo.add(candidata);
+        } else if (orden.comparador().compare(candidata, monticulo.peek()) < 0) {
+            monticulo.poll();
+            monticulo.add(candidata);
+        }
+    }
+
+    /**
+     * Indica si la selección ya no puede cambiar con más coincidencias, lo que ocurre cuando no hay
+     * orden y ya se alcanzó el límite.
+     *
+     * @return {@code true} si las siguientes coincidencias se descartarían
+     */
+    boolean completa() {
+        return lista != null && lista.size() >= orden.limite();
+    }
+
+    /**
+     * Agrega las coincidencias de un rango posterior.
+     *
+     * @param siguiente selección del rango inmediatamente posterior, con el mismo orden
+     */
+    void combinar(SeleccionInstrumentos siguiente) {
+        if (lista != null) {
+            for (Instrumento instrumento : siguiente.lista) {
+                if (lista.size() >= orden.limite()) {
+                    break;
+                }
+                lista.add(instrumento);
+            }
+        } else if (candidatas != null) {
+            candidatas.addAll(siguiente.candidatas);
+        } else {
+            for (Candidata candidata : siguiente.monticulo) {
+                agregar(candidata);
+            }
+        }
+    }
+
+    /**
+     * Devuelve las coincidencias seleccionadas, en el orden pedido.
+     *
+     * @return lista modificable con las coincidencias
+     */
+    List<Instrumento> resultado() {
+        if (lista != null) {
+            return lista;
+        }
+        Candidata[] elegidas = (monticulo != null ? monticulo : candidatas).toArray(Candidata[]::new);
+        Arrays.sort(elegidas, orden.comparador());
+        List<Instrumento> resultado = new ArrayList<>(elegidas.length);
+        for (Candidata candidata : elegidas) {
+            resultado.add(candidata.instrumento());
+        }
+        return resultado;
+    }
+}
@@ -10,15 +10,39 @@
  */
 package com.unibague.poctiendainstrumentos.service;
 
+import com.unibague.poctiendainstrumentos.dto.CoincidenciaBusquedaDTO;
+import com.unibague.poctiendainstrumentos.dto.DeltaCatalogoDTO;
+import com.unibague.poctiendainstrumentos.dto.EventoCambioDTO;
 import com.unibague.poctiendainstrumentos.dto.FiltroInstrumentoDTO;
+import com.unibague.poctiendainstrumentos.dto.InstantaneaCatalogoDTO;
+import com.unibague.poctiendainstrumentos.dto.ResultadoFiltroDTO;
+import com.unibague.poctiendainstrumentos.exception.CambiosNoDisponiblesException;
+import com.unibague.poctiendainstrumentos.exception.ConflictoVersionException;
 import com.unibague.poctiendainstrumentos.model.Funda;
 import com.unibague.poctiendainstrumentos.model.Guitarra;
 import com.unibague.poctiendainstrumentos.model.Instrumento;
 import com.unibague.poctiendainstrumentos.model.Teclado;
+import com.unibague.poctiendainstrumentos.model.enums.EntidadCambio;
+import com.unibague.poctiendainstrumentos.model.enums.TipoCambio;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
 /**
  * Servicio central para la gestión de instrumentos musicales en la tienda.
@@ -54,74 +78,264 @@ import java.util.function.Predicate;
  * o que se añadan elementos duplicados o inválidos.
  * </p>
  *
+ * <p>
+ * Cada modificación publica un {@link EventoCambioDTO} en un buffer circular acotado,
+ * numerado con la versión del catálogo que alcanza, para que los clientes puedan seguir
+ * los cambios sin volver a descargar el catálogo completo.
+ * </p>
+ *
+ * <p>
+ * Las lecturas de listas y filtros se atienden sobre instantáneas inmutables del catálogo
+ * (control de concurrencia multiversión): cada modificación publica una versión nueva que comparte
+ * su estructura con la anterior, y ningún lector espera a un escritor ni ve una modificación a medias.
+ * El catálogo puede repartirse en varias particiones por hash del código ({@link Particion});
+ * las operaciones sobre un instrumento van a una sola partición y los listados y filtros
+ * se evalúan en todas y combinan sus resultados.
+ * Los instrumentos publicados no se modifican: cada cambio, incluidas las reservas de stock, arma una
+ * copia del instrumento y la pone en su lugar, de modo que una instantánea ya leída no cambia bajo los
+ * pies del lector. Las altas, bajas y cambios de código toman el cerrojo de la partición; las reservas
+ * de stock, las ediciones que conservan el código y los cambios de fundas reemplazan la copia con un
+ * compare-and-set sobre la entrada del índice, sin cerrojo, y la lista de la partición se pone al día
+ * la próxima vez que alguien lee sus instantáneas.
+ * Opcionalmente, las modificaciones pueden aplicarse en un único hilo escritor ({@link EscritorUnico})
+ * que las procesa por lotes y publica una sola instantánea por lote.
+ * </p>
+ *
  * @author Jorge
  * @version 1.0
  * @since 2025
  */
 @Service
+@ConditionalOnProperty(name = "tienda.catalogo.almacenamiento", havingValue = "heap", matchIfMissing = true)
 public class ServicioInstrumento implements IServicioInstrumento {
 
     /**
-     * Lista centralizada de todos los instrumentos gestionados.
+     * Límites por defecto de los rangos de la faceta de precios.
+     */
+    static final double[] LIMITES_PRECIO_FACETAS = {500_000, 1_000_000, 2_500_000, 5_000_000};
+
+    /**
+     * Cantidad mínima de instrumentos a partir de la cual los filtros se evalúan en paralelo.
+     * Por debajo de este umbral el costo de repartir el trabajo supera la ganancia.
+     */
+    @Value("${tienda.filtro.umbral-paralelo:20000}")
+    private int umbralParalelo = 20_000;
+
+    /**
+     * Cantidad máxima de bloques en que se reparte un mismo filtro,
+     * para que una consulta pesada no acapare el pool común.
+     */
+    @Value("${tienda.filtro.paralelismo-maximo:4}")
+    private int paralelismoMaximo = 4;
+
+    /**
+     * Indica si los filtros se evalúan sobre la copia columnar del catálogo
+     * en lugar de recorrer los objetos.
+     */
+    @Value("${tienda.filtro.columnar:false}")
+    private boolean filtroColumnar;
+
+    /**
+     * Particiones del catálogo. Cada instrumento vive en la partición que corresponde al hash
+     * de su código normalizado, con su propia lista, índice por código e instantánea de lectura.
+     */
+    private volatile Particion[] particiones;
+
+    /**
+     * Versión del catálogo; aumenta con cada modificación de instrumentos o fundas.
+     */
+    private final AtomicLong versionCatalogo = new AtomicLong();
+
+    /**
+     * Buffer circular con los últimos eventos de cambio del catálogo.
+     */
+    private volatile BufferCambios bufferCambios = new BufferCambios(4096);
+
+    /**
+     * Acciones a ejecutar después de publicar eventos de cambio.
+     */
+    private final List<Runnable> avisosCambios = new CopyOnWriteArrayList<>();
+
+    /**
+     * Cantidad de eliminaciones que conservan, entre todas las particiones, los registros de
+     * sincronización incremental.
+     */
+    private volatile int eliminadosRetenidos = 10_000;
+
+    /**
+     * Índice ordenado de los instrumentos por fecha de ingreso, para los filtros por rango de fechas.
+     * Los valores son marcas sin contenido; el instrumento vigente se lee del índice por código.
      */
-    private List<Instrumento> instrumentos;
+    private final IndiceFechas<Object> indiceFechas = new IndiceFechas<>();
 
     /**
-     * Instancia única del servicio (patrón Singleton).
+     * Índice invertido para la búsqueda de texto; lee el instrumento vigente del índice por código.
      */
-    private static ServicioInstrumento instancia;
+    private final IndiceTexto indiceTexto = new IndiceTexto(clave -> particion(clave).indice().get(clave));
+
+    /**
+     * Hilo escritor único que aplica las modificaciones por lotes, o {@code null} si cada
+     * modificación se aplica en el hilo que la solicita.
+     */
+    private volatile EscritorUnico escritor;
+
+    /**
+     * Diccionario de las marcas.
+     */
+    private volatile DiccionarioCadenas marcas = new DiccionarioCadenas(4_096);
+
+    /**
+     * Diccionario de los materiales del cuerpo de las guitarras.
+     */
+    private volatile DiccionarioCadenas materiales = new DiccionarioCadenas(4_096);
+
+    /**
+     * Diccionario de los nombres de las fundas.
+     */
+    private volatile DiccionarioCadenas nombresFunda = new DiccionarioCadenas(4_096);
 
     /**
      * Constructor privado (patrón Singleton).
-     * Inicializa la lista vacía de instrumentos.
+     * Inicializa el catálogo vacío con una sola partición.
      */
     private ServicioInstrumento() {
-        this.instrumentos = new ArrayList<>();
+        this.particiones = Particion.crear(1, eliminadosRetenidos, 0);
     }
 
     /**
      * Devuelve la instancia única del servicio.
-     * Usa sincronización para ser seguro en hilos.
+     * La instancia se crea al cargar {@link Contenedor}, la primera vez que se invoca este método;
+     * la JVM garantiza que esa inicialización ocurre una sola vez, sin tomar un monitor en cada llamada.
      *
      * @return instancia única de ServicioInstrumento
      */
-    public static synchronized ServicioInstrumento getInstance() {
-        if (instancia == null) {
-            instancia = new ServicioInstrumento();
+    public static ServicioInstrumento getInstance() {
+        return Contenedor.INSTANCIA;
+    }
+
+    /**
+     * Contenedor de la instancia única (inicialización perezosa por clase contenedora).
+     */
+    private static final class Contenedor
+    {
+        private static final ServicioInstrumento INSTANCIA = new ServicioInstrumento();
+    }
+
+    /**
+     * Configura la cantidad de eventos de cambio que se conservan en memoria.
+     *
+     * @param capacidad cantidad de eventos (se redondea a potencia de dos)
+     */
+    @Value("${tienda.cambios.capacidad:4096}")
+    void configurarCapacidadCambios(int capacidad) {
+        this.bufferCambios = new BufferCambios(capacidad);
+    }
+
+    /**
+     * Configura la cantidad de eliminaciones que conservan los registros de sincronización incremental,
+     * repartida entre las particiones. Los registros vuelven a empezar desde la versión actual.
+     *
+     * @param maximo cantidad de eliminaciones retenidas
+     * @throws IllegalArgumentException si la cantidad no es positiva
+     */
+    @Value("${tienda.cambios.eliminados-retenidos:10000}")
+    void configurarEliminadosRetenidos(int maximo) {
+        Particion.reiniciarRegistros(particiones, maximo, versionCatalogo.get());
+        this.eliminadosRetenidos = maximo;
+    }
+
+    /**
+     * Configura la cantidad máxima de valores que comparte cada diccionario de cadenas. Los valores llegan
+     * de los clientes; pasado el máximo, los nuevos se guardan tal como llegaron, y con 0 no se comparte
+     * ninguno. Se usa al configurar el servicio, antes de atender modificaciones.
+     *
+     * @param maximo cantidad máxima de valores por diccionario
+     * @throws IllegalArgumentException si la cantidad es negativa
+     */
+    @Value("${tienda.catalogo.valores-canonicos:4096}")
+    void configurarValoresCanonicos(int maximo) {
+        this.marcas = new DiccionarioCadenas(maximo);
+        this.materiales = new DiccionarioCadenas(maximo);
+        this.nombresFunda = new DiccionarioCadenas(maximo);
+    }
+
+    /**
+     * Configura la cantidad de particiones del catálogo y redistribuye los instrumentos existentes,
+     * que reciben un orden de ingreso nuevo en su partición. Se usa al configurar el servicio, antes
+     * de atender modificaciones; los registros de cambios de las particiones nuevas empiezan desde la
+     * versión actual. Con una sola partición el comportamiento es el de una lista única; con varias, las escrituras
+     * sobre particiones distintas no compiten entre sí y las consultas se reparten entre ellas.
+     *
+     * @param cantidad cantidad de particiones
+     * @throws IllegalArgumentException si la cantidad no es positiva
+     */
+    @Value("${tienda.catalogo.particiones:1}")
+    void configurarParticiones(int cantidad) {
+        if (cantidad <= 0) {
+            throw new IllegalArgumentException("La cantidad de particiones debe ser positiva");
+        }
+        Particion[] nuevas = Particion.crear(cantidad, eliminadosRetenidos, versionCatalogo.get());
+        for (List<Instrumento> anterior : instantaneas(particiones)) {
+            for (Instrumento instrumento : anterior) {
+                String clave = clave(instrumento.getCodigo());
+                Particion destino = nuevas[numeroParticion(clave, cantidad)];
+                destino.indice().put(clave, instrumento);
+                destino.agregar(instrumento);
+            }
+        }
+        Particion.publicar(List.of(nuevas));
+        particiones = nuevas;
+    }
+
+    /**
+     * Activa el modo de escritor único: las modificaciones de instrumentos y fundas se encolan
+     * y las aplica un hilo dedicado por lotes, publicando una instantánea inmutable del catálogo
+     * al terminar cada lote en lugar de hacerlo con cada modificación.
+     *
+     * @param activo {@code true} para activar el escritor único
+     * @param tamanoLote cantidad máxima de modificaciones por lote
+     */
+    @Autowired
+    void configurarEscritorUnico(@Value("${tienda.escritura.escritor-unico:false}") boolean activo,
+                                 @Value("${tienda.escritura.tamano-lote:256}") int tamanoLote) {
+        if (activo && escritor == null) {
+            escritor = new EscritorUnico(tamanoLote, this::publicarInstantanea);
         }
-        return instancia;
     }
 
     /**
      * Agrega un instrumento a la colección.
      * Garantiza que no se repita el código.
-     * Si la guitarra tiene fundas, asocia la guitarra (owner) a cada funda.
+     * Se guarda una copia del instrumento recibido, con sus propias fundas asociadas a ella: el
+     * objeto del llamador no se modifica, ni siquiera si el código ya existe.
      *
-     * @param instrumento Instrumento a agregar.
-     * @throws IllegalArgumentException si el instrumento es nulo.
+     * @param recibido Instrumento a agregar.
+     * @throws IllegalArgumentException si el instrumento o su código son nulos.
      * @throws IllegalStateException si ya existe un instrumento con ese código.
      */
     @Override
-    public void agregarInstrumento(Instrumento instrumento) {
-        if (instrumento == null) {
-            throw new IllegalArgumentException("El instrumento no puede ser nulo");
+    public void agregarInstrumento(Instrumento recibido) {
+        if (delegarAlEscritor()) {
+            escritor.ejecutar(() -> { agregarInstrumento(recibido); return null; });
+            return;
         }
-
-        buscarInstrumento(instrumento.getCodigo())
-                .ifPresent(i -> {
-                    throw new IllegalStateException("Ya existe un instrumento con este código");
-                });
-
-        if(instrumento instanceof Guitarra guitarra) {
-            if(guitarra.getFundas() != null) {
-                for(Funda funda : guitarra.getFundas()) {
-                    funda.setGuitarra(guitarra);
-                }
+        Instrumento instrumento = copiaRecibida(recibido);
+        instrumento.setVersion(1);
+        String clave = clave(instrumento.getCodigo());
+        Particion particion = particion(clave);
+        modificar(List.of(particion), () -> {
+            // Los códigos nuevos sólo entran al índice con el cerrojo de la partición, así que nadie puede
+            // ocupar el código antes del put; el orden de ingreso se asigna antes de que el alta se vea.
+            if (particion.indice().containsKey(clave)) {
+                throw new IllegalStateException("Ya existe un instrumento con este código");
             }
-            instrumentos.add(guitarra);
-        } else {
-            instrumentos.add(instrumento);
-        }
+            particion.agregar(instrumento);
+            particion.indice().put(clave, instrumento);
+            actualizarFechas(clave, null, instrumento.getFechaIngreso());
+            indiceTexto.actualizar(clave);
+            publicarCambio(TipoCambio.CREADO, EntidadCambio.INSTRUMENTO, instrumento.getCodigo(), null, instrumento.getVersion());
+            return null;
+        });
     }
 
     /**
@@ -132,7 +346,7 @@ public class ServicioInstrumento implements IServicioInstrumento {
      */
     @Override
     public List<Instrumento> listarInstrumentos() {
-        return Collections.unmodifiableList(instrumentos);
+        return Collections.unmodifiableList(vistaLectura());
     }
 
     /**
@@ -143,7 +357,7 @@ public class ServicioInstrumento implements IServicioInstrumento {
     @Override
     public List<Guitarra> listarGuitarras() {
         List<Guitarra> guitarras = new ArrayList<>();
-        for (Instrumento instrumento : instrumentos) {
+        for (Instrumento instrumento : vistaLectura()) {
             if (instrumento instanceof Guitarra) {
                 guitarras.add((Guitarra) instrumento);
             }
@@ -159,7 +373,7 @@ public class ServicioInstrumento implements IServicioInstrumento {
     @Override
     public List<Teclado> listarTeclados() {
         List<Teclado> teclados = new ArrayList<>();
-        for (Instrumento instrumento : instrumentos) {
+        for (Instrumento instrumento : vistaLectura()) {
             if (instrumento instanceof Teclado) {
                 teclados.add((Teclado) instrumento);
             }
@@ -175,46 +389,118 @@ public class ServicioInstrumento implements IServicioInstrumento {
      */
     @Override
     public Optional<Instrumento> buscarInstrumento(String codigo) {
-        return instrumentos.stream()
-                .filter(i -> codigo.equalsIgnoreCase(i.getCodigo()))
-                .findFirst();
+        String clave = clave(codigo);
+        return Optional.ofNullable(particion(clave).indice().get(clave));
     }
 
     /**
      * Edita y reemplaza los datos de un instrumento, identificado por código.
+     * Si el código no cambia, la versión se comprueba y la copia se pone en lugar del original con un
+     * compare-and-set sobre su entrada del índice, sin el cerrojo de la partición: si otra modificación
+     * lo reemplazó entretanto, la versión se vuelve a comprobar sobre el vigente. Si el código cambia,
+     * la edición toma los cerrojos de la partición actual y de la del nuevo código, así que no compite
+     * con un alta ni con una eliminación y dos ediciones no pueden terminar con el mismo código; el
+     * original se quita con el mismo compare-and-set y, si cambia de partición, ambas se publican
+     * juntas: ningún lector lo ve desaparecer.
+     * El instrumento actual no se modifica: una copia del objeto recibido toma su lugar con la versión
+     * siguiente, y el objeto del llamador tampoco se modifica.
      *
      * @param codigo código identificador
-     * @param instrumento nuevo objeto con datos a actualizar
+     * @param recibido nuevo objeto con datos a actualizar
+     * @param versionEsperada versión que debe tener el instrumento, o {@code null} para no comprobarla
+     * @throws IllegalArgumentException si el instrumento o su código son nulos
      * @throws NoSuchElementException si no existe instrumento con ese código
+     * @throws IllegalStateException si el nuevo código ya pertenece a otro instrumento
+     * @throws ConflictoVersionException si la versión actual no es la esperada
      */
     @Override
-    public void editarInstrumento(String codigo, Instrumento instrumento) {
-        Optional<Instrumento> instrumentoAEditar = buscarInstrumento(codigo);
-        if (instrumentoAEditar.isPresent()) {
-            instrumentos.set(instrumentos.indexOf(instrumentoAEditar.get()), instrumento);
-        } else {
-            throw new NoSuchElementException("No se encontró un instrumento con el código: " + codigo);
+    public void editarInstrumento(String codigo, Instrumento recibido, Long versionEsperada) {
+        if (delegarAlEscritor()) {
+            escritor.ejecutar(() -> { editarInstrumento(codigo, recibido, versionEsperada); return null; });
+            return;
+        }
+        Instrumento instrumento = copiaRecibida(recibido);
+        String claveActual = clave(codigo);
+        String claveNueva = clave(instrumento.getCodigo());
+        if (claveNueva.equals(claveActual)) {
+            Reemplazo reemplazo = reemplazarVigente(codigo, actual -> {
+                if (actual == null) {
+                    throw new NoSuchElementException("No se encontró un instrumento con el código: " + codigo);
+                }
+                instrumento.setVersion(siguienteVersion(actual, versionEsperada));
+                return instrumento;
+            });
+            actualizarFechas(claveActual, reemplazo.anterior().getFechaIngreso(), instrumento.getFechaIngreso());
+            indiceTexto.actualizar(claveActual);
+            publicarReemplazo(TipoCambio.ACTUALIZADO, EntidadCambio.INSTRUMENTO, instrumento, null);
+            return;
         }
+        Particion origen = particion(claveActual);
+        Particion destino = particion(claveNueva);
+        modificar(List.of(origen, destino), () -> {
+            Instrumento anterior;
+            do {
+                anterior = obtenerInstrumento(codigo);
+                if (destino.indice().containsKey(claveNueva)) {
+                    throw new IllegalStateException("Ya existe un instrumento con este código");
+                }
+                instrumento.setVersion(siguienteVersion(anterior, versionEsperada));
+            } while (!origen.quitarDelIndice(claveActual, anterior));
+            if (origen == destino) {
+                origen.reemplazar(anterior, instrumento);
+            } else {
+                origen.quitar(anterior);
+                destino.agregar(instrumento);
+            }
+            destino.indice().put(claveNueva, instrumento);
+            actualizarFechas(claveActual, anterior.getFechaIngreso(), null);
+            actualizarFechas(claveNueva, null, instrumento.getFechaIngreso());
+            indiceTexto.actualizar(claveNueva);
+            indiceTexto.actualizar(claveActual);
+            publicarCambio(TipoCambio.ELIMINADO, EntidadCambio.INSTRUMENTO, anterior.getCodigo(), null, instrumento.getVersion());
+            publicarCambio(TipoCambio.CREADO, EntidadCambio.INSTRUMENTO, instrumento.getCodigo(), null, instrumento.getVersion());
+            return null;
+        });
     }
 
     /**
      * Elimina un instrumento por código único.
+     * Igual que la edición, comprueba la versión del instrumento con el cerrojo de su partición y lo
+     * quita del índice con un compare-and-set; el evento de eliminación lleva la versión siguiente a la
+     * del instrumento eliminado.
      *
      * @param codigo código identificador
+     * @param versionEsperada versión que debe tener el instrumento, o {@code null} para no comprobarla
      * @throws NoSuchElementException si no existe instrumento con ese código
+     * @throws ConflictoVersionException si la versión actual no es la esperada
      */
     @Override
-    public void eliminarInstrumento(String codigo) {
-        Optional<Instrumento> instrumentoAEliminar = buscarInstrumento(codigo);
-        if (instrumentoAEliminar.isPresent()) {
-            instrumentos.remove(instrumentoAEliminar.get());
-        } else {
-            throw new NoSuchElementException("No se encontró un instrumento con el código: " + codigo);
+    public void eliminarInstrumento(String codigo, Long versionEsperada) {
+        if (delegarAlEscritor()) {
+            escritor.ejecutar(() -> { eliminarInstrumento(codigo, versionEsperada); return null; });
+            return;
         }
+        String clave = clave(codigo);
+        Particion particion = particion(clave);
+        modificar(List.of(particion), () -> {
+            Instrumento eliminado;
+            long version;
+            do {
+                eliminado = obtenerInstrumento(codigo);
+                version = siguienteVersion(eliminado, versionEsperada);
+            } while (!particion.quitarDelIndice(clave, eliminado));
+            particion.quitar(eliminado);
+            actualizarFechas(clave, eliminado.getFechaIngreso(), null);
+            indiceTexto.actualizar(clave);
+            publicarCambio(TipoCambio.ELIMINADO, EntidadCambio.INSTRUMENTO, eliminado.getCodigo(), null, version);
+            return null;
+        });
     }
 
     /**
      * Agrega una lista de fundas a una guitarra por su código.
+     * Igual que las demás operaciones sobre fundas, arma una copia de la guitarra con las fundas
+     * cambiadas y la pone en lugar de la original con un compare-and-set, sin el cerrojo de su partición.
      *
      * @param codigoGuitarra código de la guitarra destino
      * @param fundas lista de fundas a agregar
@@ -224,18 +510,21 @@ public class ServicioInstrumento implements IServicioInstrumento {
     @Override
     public void agregarFundas(String codigoGuitarra, List<Funda> fundas)
     {
-        Optional<Instrumento> instrumento = buscarInstrumento(codigoGuitarra);
-        if(instrumento.isPresent())
-        {
-            if (instrumento.get() instanceof Guitarra guitarra) {
-                guitarra.agregarFundas(fundas);
-            }else
-            {
-                throw new IllegalArgumentException("El código debe ser de una guitarra");
-            }
-        }else {
-            throw new NoSuchElementException("No se encontró una guitarra con el código: " + codigoGuitarra);
+        if (delegarAlEscritor()) {
+            escritor.ejecutar(() -> { agregarFundas(codigoGuitarra, fundas); return null; });
+            return;
+        }
+        if (fundas != null) {
+            fundas.forEach(this::canonizar);
         }
+        modificarGuitarra(codigoGuitarra, null, TipoCambio.CREADO, copia -> {
+            List<String> nuevas = fundas == null ? List.of() : fundas.stream()
+                    .filter(f -> f != null && f.getCodigo() != null && copia.buscarFunda(f.getCodigo()).isEmpty())
+                    .map(Funda::getCodigo)
+                    .toList();
+            copia.agregarFundas(fundas);
+            return nuevas;
+        });
     }
 
     /**
@@ -244,23 +533,23 @@ public class ServicioInstrumento implements IServicioInstrumento {
      * @param codigoGuitarra código de la guitarra
      * @param codigoFunda código de la funda a editar
      * @param funda nueva funda con datos actualizados
+     * @param versionEsperada versión que debe tener la guitarra, o {@code null} para no comprobarla
      * @throws NoSuchElementException si no existe guitarra o funda
      * @throws IllegalArgumentException si el código no corresponde a una guitarra
+     * @throws ConflictoVersionException si la versión actual de la guitarra no es la esperada
      */
     @Override
-    public void editarFunda(String codigoGuitarra, String codigoFunda, Funda funda) {
-        Optional<Instrumento> instrumento = buscarInstrumento(codigoGuitarra);
-        if(instrumento.isPresent())
-        {
-            if (instrumento.get() instanceof Guitarra guitarra) {
-                guitarra.editarFunda(codigoFunda, funda);
-            }else
-            {
-                throw new IllegalArgumentException("El código debe ser de una guitarra");
-            }
-        }else {
-            throw new NoSuchElementException("No se encontró una guitarra con el código: " + codigoGuitarra);
+    public void editarFunda(String codigoGuitarra, String codigoFunda, Funda funda, Long versionEsperada) {
+        if (delegarAlEscritor()) {
+            escritor.ejecutar(() -> { editarFunda(codigoGuitarra, codigoFunda, funda, versionEsperada); return null; });
+            return;
         }
+        canonizar(funda);
+        modificarGuitarra(codigoGuitarra, versionEsperada, TipoCambio.ACTUALIZADO, copia -> {
+            validarFunda(copia, codigoFunda);
+            copia.editarFunda(codigoFunda, funda);
+            return List.of(codigoFunda);
+        });
     }
 
     /**
@@ -268,41 +557,1115 @@ public class ServicioInstrumento implements IServicioInstrumento {
      *
      * @param codigoGuitarra código de la guitarra
      * @param codigoFunda código de la funda a eliminar
+     * @param versionEsperada versión que debe tener la guitarra, o {@code null} para no comprobarla
      * @throws NoSuchElementException si no existe guitarra o funda
      * @throws IllegalArgumentException si el código no corresponde a una guitarra
+     * @throws ConflictoVersionException si la versión actual de la guitarra no es la esperada
      */
     @Override
-    public void eliminarFunda(String codigoGuitarra, String codigoFunda) {
-        Optional<Instrumento> instrumento = buscarInstrumento(codigoGuitarra);
-        if(instrumento.isPresent())
-        {
-            if (instrumento.get() instanceof Guitarra guitarra) {
-                guitarra.eliminarFunda(codigoFunda);
-            }else
-            {
-                throw new IllegalArgumentException("El código debe ser de una guitarra");
-            }
-        }else {
-            throw new NoSuchElementException("No se encontró una guitarra con el código: " + codigoGuitarra);
+    public void eliminarFunda(String codigoGuitarra, String codigoFunda, Long versionEsperada) {
+        if (delegarAlEscritor()) {
+            escritor.ejecutar(() -> { eliminarFunda(codigoGuitarra, codigoFunda, versionEsperada); return null; });
+            return;
         }
+        modificarGuitarra(codigoGuitarra, versionEsperada, TipoCambio.ELIMINADO, copia -> {
+            validarFunda(copia, codigoFunda);
+            copia.eliminarFunda(codigoFunda);
+            return List.of(codigoFunda);
+        });
     }
 
     /**
      * Filtra la lista de instrumentos según los criterios proporcionados en un DTO.
      * Cada filtro es opcional y el método compone dinámicamente los predicados.
+     * Si el filtro pide orden y límite, se eligen los primeros con un montículo acotado
+     * sin ordenar ni guardar todas las coincidencias.
      *
      * @param filtro objeto DTO con los filtros (nombre, marca, precio, stock, tipo, sensibilidad, etc.)
      * @return lista de instrumentos que cumplen los criterios.
+     * @throws IllegalArgumentException si el orden o el límite son inválidos
      */
     @Override
     public List<Instrumento> filtrarInstrumentos(FiltroInstrumentoDTO filtro) {
-        Predicate<Instrumento> predicado = i -> true;
+        return Collections.unmodifiableList(evaluarFiltro(filtro, null, SeleccionInstrumentos.Orden.desde(filtro)).coincidencias());
+    }
+
+    /**
+     * Recorre de forma perezosa los instrumentos que cumplen un filtro.
+     * El predicado se construye de inmediato y se aplica sobre la instantánea vigente a medida que se consume el flujo.
+     * Con orden, con rango de fechas o con nombre o marca difusos, el flujo recorre la selección ya calculada por
+     * {@link #filtrarInstrumentos(FiltroInstrumentoDTO)}.
+     *
+     * @param filtro objeto DTO con los filtros
+     * @return flujo de los instrumentos que cumplen el filtro
+     * @throws IllegalArgumentException si el orden, el límite o el rango de fechas son inválidos
+     */
+    @Override
+    public Stream<Instrumento> filtrarEnFlujo(FiltroInstrumentoDTO filtro) {
+        SeleccionInstrumentos.Orden orden = SeleccionInstrumentos.Orden.desde(filtro);
+        if (orden.campo() != null || filtraPorFecha(filtro) || !terminosDifusos(filtro).isEmpty()) {
+            return filtrarInstrumentos(filtro).stream();
+        }
+        Predicate<Instrumento> predicado = construirPredicado(filtro);
+        return vistaLectura().stream().filter(predicado).limit(orden.limite());
+    }
+
+    /**
+     * Filtra los instrumentos y calcula las facetas de los resultados en un único recorrido.
+     * Cada coincidencia se agrega a la lista de resultados y a los conteos por marca,
+     * tipo de guitarra, sensibilidad y rango de precio.
+     *
+     * Las facetas cuentan todas las coincidencias aunque el filtro limite los resultados.
+     *
+     * @param filtro objeto DTO con los filtros y, opcionalmente, los límites de precio de la faceta
+     * @return resultados del filtro junto con sus facetas
+     * @throws IllegalArgumentException si algún límite de precio, el orden o el límite son inválidos
+     */
+    @Override
+    public ResultadoFiltroDTO filtrarConFacetas(FiltroInstrumentoDTO filtro) {
+        double[] limites = AcumuladorFacetas.limites(filtro.getLimitesPrecio(), LIMITES_PRECIO_FACETAS);
+        TareaFiltro.ResultadoParcial resultado = evaluarFiltro(filtro, limites, SeleccionInstrumentos.Orden.desde(filtro));
+        return new ResultadoFiltroDTO(resultado.coincidencias(), resultado.facetas().aFacetas());
+    }
+
+    /**
+     * Busca instrumentos por texto con el índice invertido, que se mantiene al día con cada
+     * modificación del catálogo. Los resultados se resuelven contra el índice por código, de modo que
+     * un instrumento eliminado durante la búsqueda no se devuelve.
+     *
+     * @param consulta texto a buscar
+     * @param limite cantidad máxima de resultados
+     * @param difuso indica si se toleran errores de escritura en la consulta
+     * @return instrumentos encontrados con su puntaje, del más relevante al menos relevante
+     * @throws IllegalArgumentException si la consulta está vacía o el límite está fuera de rango
+     */
+    @Override
+    public List<CoincidenciaBusquedaDTO> buscarTexto(String consulta, int limite, boolean difuso) {
+        List<CoincidenciaBusquedaDTO> resultado = new ArrayList<>();
+        for (IndiceTexto.Coincidencia coincidencia : indiceTexto.buscar(consulta, limite, difuso)) {
+            Instrumento instrumento = particion(coincidencia.clave()).indice().get(coincidencia.clave());
+            if (instrumento != null) {
+                resultado.add(new CoincidenciaBusquedaDTO(instrumento, coincidencia.puntaje()));
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Ajusta en un porcentaje el precio base de todos los instrumentos que cumplen un filtro.
+     * Los nuevos precios se calculan primero en un arreglo y se validan en conjunto; sólo si
+     * todos son válidos se aplican, de modo que el ajuste se aplica completo o no se aplica.
+     * La versión del catálogo avanza una sola vez, en tantas secuencias como instrumentos ajustados,
+     * y cada uno conserva su propio evento en el registro de cambios.
+     *
+     * @param filtro filtro que selecciona los instrumentos
+     * @param porcentaje porcentaje de variación del precio (positivo sube, negativo baja)
+     * @return cantidad de instrumentos ajustados
+     * @throws IllegalArgumentException si falta el filtro o el porcentaje, si el porcentaje no es finito, si el
+     *                                  filtro pide orden o límite, o si algún precio resultante es negativo o no
+     *                                  es finito
+     */
+    @Override
+    public int ajustarPrecios(FiltroInstrumentoDTO filtro, Double porcentaje) {
+        if (filtro == null || porcentaje == null) {
+            throw new IllegalArgumentException("El filtro y el porcentaje son requeridos");
+        }
+        if (!Double.isFinite(porcentaje)) {
+            throw new IllegalArgumentException("Porcentaje invalido");
+        }
+        validarFiltroMasivo(filtro);
+        if (delegarAlEscritor()) {
+            return escritor.ejecutar(() -> ajustarPrecios(filtro, porcentaje));
+        }
+        double factor = 1 + porcentaje / 100;
+        return ajustarSeleccion(filtro, seleccionados -> {
+            int total = seleccionados.size();
+            double[] precios = new double[total];
+            for (int i = 0; i < total; i++) {
+                precios[i] = seleccionados.get(i).getPrecioBase();
+            }
+
+            boolean validos = true;
+            for (int i = 0; i < total; i++) {
+                precios[i] *= factor;
+                validos &= precios[i] >= 0 & Double.isFinite(precios[i]);
+            }
+            if (!validos) {
+                throw new IllegalArgumentException("Precio invalido");
+            }
+            return (copia, i) -> copia.setPrecioBase(precios[i]);
+        });
+    }
+
+    /**
+     * Fija o desplaza el stock de todos los instrumentos que cumplen un filtro.
+     * Igual que en el ajuste de precios, los nuevos valores se calculan y validan en conjunto
+     * antes de aplicarse. Como el ajuste aparta los seleccionados de las reservas sin cerrojo antes de
+     * calcular, una reserva concurrente queda antes o después del ajuste, nunca se pierde.
+     *
+     * @param filtro filtro que selecciona los instrumentos
+     * @param stock nuevo stock para todos los seleccionados, o {@code null} si se usa {@code delta}
+     * @param delta cantidad a sumar al stock de cada seleccionado, o {@code null} si se usa {@code stock}
+     * @return cantidad de instrumentos ajustados
+     * @throws IllegalArgumentException si falta el filtro, si el filtro pide orden o límite, si no se indica
+     *                                  exactamente uno de {@code stock} o {@code delta}, o si algún stock
+     *                                  resultante es inválido
+     */
+    @Override
+    public int ajustarStock(FiltroInstrumentoDTO filtro, Integer stock, Integer delta) {
+        if (filtro == null) {
+            throw new IllegalArgumentException("El filtro es requerido");
+        }
+        if ((stock == null) == (delta == null)) {
+            throw new IllegalArgumentException("Debe indicar el stock o el delta, pero no ambos");
+        }
+        validarFiltroMasivo(filtro);
+        if (delegarAlEscritor()) {
+            return escritor.ejecutar(() -> ajustarStock(filtro, stock, delta));
+        }
+        long fijo = stock != null ? stock : 0;
+        long desplazamiento = delta != null ? delta : 0;
+        long multiplicador = stock != null ? 0 : 1;
+        return ajustarSeleccion(filtro, seleccionados -> {
+            int total = seleccionados.size();
+            long[] existencias = new long[total];
+            for (int i = 0; i < total; i++) {
+                existencias[i] = seleccionados.get(i).getStock();
+            }
+
+            boolean validos = true;
+            for (int i = 0; i < total; i++) {
+                existencias[i] = existencias[i] * multiplicador + fijo + desplazamiento;
+                validos &= existencias[i] >= 0 & existencias[i] <= Integer.MAX_VALUE;
+            }
+            if (!validos) {
+                throw new IllegalArgumentException("Stock invalido");
+            }
+            return (copia, i) -> copia.setStock((int) existencias[i]);
+        });
+    }
+
+    /**
+     * Reserva unidades del stock de un instrumento.
+     * La reserva se aplica sobre una copia del instrumento, que reemplaza al original con un
+     * compare-and-set sobre su entrada del índice y sin el cerrojo de la partición: sólo compite con
+     * las demás modificaciones del mismo instrumento, que la obligan a reintentar sobre el vigente.
+     *
+     * @param codigo código del instrumento
+     * @param cantidad unidades a reservar
+     * @return stock restante
+     * @throws NoSuchElementException si no existe instrumento con ese código
+     * @throws IllegalArgumentException si la cantidad no es positiva
+     * @throws IllegalStateException si no hay stock suficiente
+     */
+    @Override
+    public int reservarStock(String codigo, int cantidad) {
+        return modificarStock(codigo, copia -> copia.reservarStock(cantidad));
+    }
+
+    /**
+     * Devuelve unidades al stock de un instrumento, igual que {@link #reservarStock(String, int)}.
+     *
+     * @param codigo código del instrumento
+     * @param cantidad unidades a liberar
+     * @return stock disponible
+     * @throws NoSuchElementException si no existe instrumento con ese código
+     * @throws IllegalArgumentException si la cantidad no es positiva
+     */
+    @Override
+    public int liberarStock(String codigo, int cantidad) {
+        return modificarStock(codigo, copia -> copia.liberarStock(cantidad));
+    }
+
+    /**
+     * Suma o resta unidades al stock de un instrumento, igual que {@link #reservarStock(String, int)}.
+     *
+     * @param codigo código del instrumento
+     * @param delta unidades a sumar (positivo) o restar (negativo)
+     * @return stock resultante
+     * @throws NoSuchElementException si no existe instrumento con ese código
+     * @throws IllegalStateException si el stock resultante sería negativo
+     */
+    @Override
+    public int ajustarStock(String codigo, int delta) {
+        return modificarStock(codigo, copia -> copia.ajustarStock(delta));
+    }
 
-        if (filtro.getNombre() != null) {
-            predicado = predicado.and(i -> i.getNombre().toLowerCase().contains(filtro.getNombre().toLowerCase()));
+    /**
+     * Devuelve la versión actual del catálogo, que coincide con la secuencia del último cambio.
+     *
+     * @return versión del catálogo
+     */
+    @Override
+    public long versionCatalogo() {
+        return versionCatalogo.get();
+    }
+
+    /**
+     * Registra una acción que se ejecuta cada vez que se publican eventos de cambio.
+     *
+     * @param aviso acción breve y no bloqueante
+     */
+    @Override
+    public void avisarCambios(Runnable aviso) {
+        avisosCambios.add(aviso);
+    }
+
+    /**
+     * Ejecuta las acciones registradas con {@link #avisarCambios(Runnable)}.
+     */
+    private void avisarCambios() {
+        for (Runnable aviso : avisosCambios) {
+            aviso.run();
+        }
+    }
+
+    /**
+     * Lee los eventos de cambio posteriores a una versión del catálogo, en orden.
+     * No bloquea a los escritores: sólo lee del buffer circular.
+     *
+     * @param version última versión ya conocida por el cliente
+     * @param maximo cantidad máxima de eventos a devolver
+     * @return eventos posteriores a la versión, posiblemente vacía si no hay cambios nuevos
+     * @throws CambiosNoDisponiblesException si la versión es desconocida o sus cambios ya se descartaron
+     */
+    @Override
+    public List<EventoCambioDTO> cambiosDesde(long version, int maximo) {
+        if (version < 0 || version > versionCatalogo.get()) {
+            throw new CambiosNoDisponiblesException("La versión " + version + " del catálogo no es válida");
+        }
+        return bufferCambios.leerDesde(version, maximo);
+    }
+
+    /**
+     * Calcula los cambios del catálogo posteriores a una versión, a partir de los registros compactados
+     * de las particiones. Cada instrumento aparece una sola vez con su estado actual, aunque haya cambiado
+     * varias veces. No detiene a los escritores: la versión de la respuesta es la confirmada
+     * ({@link Particion#versionConfirmada(Particion[], long)}), hasta la que ningún cambio está a medio
+     * registrar, y los cambios posteriores que ya estén registrados se incluyen igual, porque volver a
+     * recibirlos en la siguiente consulta no altera el resultado.
+     *
+     * @param version última versión del catálogo conocida por el cliente
+     * @return cambios desde la versión, o una respuesta de resincronización completa si ya no se conservan
+     */
+    @Override
+    public DeltaCatalogoDTO deltaDesde(long version) {
+        Particion[] actuales = particiones;
+        long ultima = versionCatalogo.get();
+        long confirmada = Particion.versionConfirmada(actuales, ultima);
+        List<EventoCambioDTO> cambios = version < 0 || version > ultima ? null : Particion.cambiosDesde(actuales, version);
+        return armarDelta(confirmada, cambios, this::buscarInstrumento);
+    }
+
+    /**
+     * Devuelve una copia completa del catálogo con la versión desde la que se deben pedir los
+     * cambios siguientes. La versión confirmada se lee antes que la lista, para no perder ningún cambio:
+     * todos los cambios hasta esa versión ya están publicados en las instantáneas.
+     *
+     * @return versión y lista de instrumentos
+     */
+    @Override
+    public InstantaneaCatalogoDTO instantaneaCatalogo() {
+        long version = Particion.versionConfirmada(particiones, versionCatalogo.get());
+        return new InstantaneaCatalogoDTO(version, new ArrayList<>(vistaLectura()));
+    }
+
+    /**
+     * Aplica en este nodo los cambios recibidos de otro nodo (replicación desde el líder).
+     * Los instrumentos modificados reemplazan o se agregan tal como llegan, conservando la versión
+     * que tienen en el origen; los eliminados y las fundas eliminadas se quitan si existen.
+     * Aplicar dos veces los mismos cambios deja el catálogo igual.
+     *
+     * @param cambios cambios a aplicar
+     */
+    @Override
+    public void aplicarReplica(DeltaCatalogoDTO cambios) {
+        if (delegarAlEscritor()) {
+            escritor.ejecutar(() -> { aplicarReplica(cambios); return null; });
+            return;
         }
-        if (filtro.getMarca() != null) {
-            predicado = predicado.and(i -> i.getMarca().equalsIgnoreCase(filtro.getMarca()));
+        for (Instrumento instrumento : cambios.getModificados()) {
+            canonizar(instrumento);
+            String clave = clave(instrumento.getCodigo());
+            Particion particion = particion(clave);
+            if (instrumento instanceof Guitarra guitarra) {
+                for (Funda funda : guitarra.getFundas()) {
+                    funda.setGuitarra(guitarra);
+                }
+            }
+            modificar(List.of(particion), () -> {
+                Instrumento anterior;
+                do {
+                    anterior = particion.indice().get(clave);
+                    if (anterior == null) {
+                        particion.agregar(instrumento);
+                        particion.indice().put(clave, instrumento);
+                        break;
+                    }
+                } while (!particion.reemplazarSinCerrojo(clave, anterior, instrumento));
+                actualizarFechas(clave, anterior == null ? null : anterior.getFechaIngreso(), instrumento.getFechaIngreso());
+                indiceTexto.actualizar(clave);
+                publicarCambio(anterior == null ? TipoCambio.CREADO : TipoCambio.ACTUALIZADO, EntidadCambio.INSTRUMENTO,
+                        instrumento.getCodigo(), null, instrumento.getVersion());
+                return null;
+            });
+        }
+        for (String codigo : cambios.getEliminados()) {
+            String clave = clave(codigo);
+            Particion particion = particion(clave);
+            modificar(List.of(particion), () -> {
+                Instrumento eliminado = particion.indice().remove(clave);
+                if (eliminado != null) {
+                    particion.quitar(eliminado);
+                    actualizarFechas(clave, eliminado.getFechaIngreso(), null);
+                    indiceTexto.actualizar(clave);
+                    publicarCambio(TipoCambio.ELIMINADO, EntidadCambio.INSTRUMENTO, eliminado.getCodigo(), null, eliminado.getVersion());
+                }
+                return null;
+            });
+        }
+        cambios.getFundasEliminadas().forEach((codigo, fundas) -> {
+            String clave = clave(codigo);
+            Particion particion = particion(clave);
+            modificar(List.of(particion), () -> {
+                while (particion.indice().get(clave) instanceof Guitarra actual) {
+                    Guitarra copia = actual.copiar();
+                    List<String> quitadas = new ArrayList<>();
+                    for (String codigoFunda : fundas) {
+                        if (copia.buscarFunda(codigoFunda).isPresent()) {
+                            copia.eliminarFunda(codigoFunda);
+                            quitadas.add(codigoFunda);
+                        }
+                    }
+                    if (quitadas.isEmpty()) {
+                        break;
+                    }
+                    if (particion.reemplazarSinCerrojo(clave, actual, copia)) {
+                        indiceTexto.actualizar(clave);
+                        for (String codigoFunda : quitadas) {
+                            publicarCambio(TipoCambio.ELIMINADO, EntidadCambio.FUNDA, copia.getCodigo(), codigoFunda, copia.getVersion());
+                        }
+                        break;
+                    }
+                }
+                return null;
+            });
+        });
+    }
+
+    /**
+     * Reemplaza el catálogo de este nodo por una copia completa recibida de otro nodo:
+     * elimina los instrumentos que no están en la copia y aplica los demás como modificados.
+     *
+     * @param instrumentos instrumentos de la copia completa
+     */
+    @Override
+    public void reemplazarCatalogo(List<Instrumento> instrumentos) {
+        Set<String> presentes = new HashSet<>();
+        for (Instrumento instrumento : instrumentos) {
+            presentes.add(clave(instrumento.getCodigo()));
+        }
+        List<String> eliminados = new ArrayList<>();
+        for (Instrumento instrumento : vistaLectura()) {
+            if (!presentes.contains(clave(instrumento.getCodigo()))) {
+                eliminados.add(instrumento.getCodigo());
+            }
+        }
+        aplicarReplica(new DeltaCatalogoDTO(versionCatalogo.get(), true, instrumentos, eliminados, Map.of()));
+    }
+
+    /**
+     * Asigna la siguiente versión del catálogo a una modificación estructural, la registra en el registro
+     * de su partición y publica su evento. Sólo debe usarse con el cerrojo de la partición del código o
+     * desde el escritor único, después de aplicar la modificación: la partición queda marcada como
+     * pendiente hasta que se publiquen sus instantáneas, y no hay ningún cerrojo compartido entre particiones.
+     *
+     * @param tipo tipo de modificación
+     * @param entidad tipo de elemento modificado
+     * @param codigo código del instrumento (o de la guitarra propietaria de la funda)
+     * @param codigoFunda código de la funda, o {@code null} si el cambio es de un instrumento
+     * @param version versión del instrumento después del cambio
+     */
+    private void publicarCambio(TipoCambio tipo, EntidadCambio entidad, String codigo, String codigoFunda, long version) {
+        Particion particion = particion(clave(codigo));
+        particion.marcarPendiente(versionCatalogo.get() + 1);
+        registrarCambio(particion, tipo, entidad, codigo, codigoFunda, version);
+    }
+
+    /**
+     * Asigna la siguiente versión del catálogo al reemplazo sin cerrojo de un instrumento, lo registra en
+     * el registro de su partición y publica su evento. La partición no queda pendiente: el reemplazo ya
+     * se ve en el índice por código y quien lee las instantáneas pone antes la lista al día. Con el
+     * escritor único los lectores no tocan la lista, así que la partición queda pendiente hasta que se
+     * publique el lote.
+     *
+     * @param tipo tipo de modificación
+     * @param entidad tipo de elemento modificado
+     * @param nuevo instrumento que quedó en el índice
+     * @param codigoFunda código de la funda, o {@code null} si el cambio es de un instrumento
+     */
+    private void publicarReemplazo(TipoCambio tipo, EntidadCambio entidad, Instrumento nuevo, String codigoFunda) {
+        Particion particion = particion(clave(nuevo.getCodigo()));
+        if (escritor != null) {
+            particion.marcarPendiente(versionCatalogo.get() + 1);
+        }
+        registrarCambio(particion, tipo, entidad, nuevo.getCodigo(), codigoFunda, nuevo.getVersion());
+    }
+
+    /**
+     * Asigna la secuencia de un cambio con el cerrojo del registro de su partición, lo registra y publica su evento.
+     */
+    private void registrarCambio(Particion particion, TipoCambio tipo, EntidadCambio entidad, String codigo,
+                                 String codigoFunda, long version) {
+        Particion.registrar(List.of(particion), versionCatalogo, () -> {
+            long secuencia = versionCatalogo.incrementAndGet();
+            EventoCambioDTO evento = new EventoCambioDTO(secuencia, tipo, entidad, codigo, codigoFunda, version);
+            particion.registrarCambio(evento);
+            bufferCambios.publicar(evento);
+            return null;
+        });
+        avisarCambios();
+    }
+
+    /**
+     * Registra los cambios de un ajuste masivo como un solo avance de la versión del catálogo: marca
+     * como pendientes las particiones afectadas, reserva de una vez las secuencias de todo el lote y
+     * registra un evento por instrumento con secuencias consecutivas, con los registros de todas esas
+     * particiones tomados. Sólo debe usarse con los cerrojos de todas las particiones o desde el escritor único.
+     *
+     * @param copias instrumentos ajustados, ya puestos en lugar de los originales
+     */
+    private void publicarAjuste(List<Instrumento> copias) {
+        if (copias.isEmpty()) {
+            return;
+        }
+        Set<Particion> afectadas = new LinkedHashSet<>();
+        for (Instrumento copia : copias) {
+            afectadas.add(particion(clave(copia.getCodigo())));
+        }
+        long primera = versionCatalogo.get() + 1;
+        for (Particion particion : afectadas) {
+            particion.marcarPendiente(primera);
+        }
+        Particion.registrar(afectadas, versionCatalogo, () -> {
+            long secuencia = versionCatalogo.getAndAdd(copias.size());
+            for (Instrumento copia : copias) {
+                EventoCambioDTO evento = new EventoCambioDTO(++secuencia, TipoCambio.ACTUALIZADO, EntidadCambio.INSTRUMENTO,
+                        copia.getCodigo(), null, copia.getVersion());
+                particion(clave(copia.getCodigo())).registrarCambio(evento);
+                bufferCambios.publicar(evento);
+            }
+            return null;
+        });
+        avisarCambios();
+    }
+
+    /**
+     * Reemplaza la marca, el material del cuerpo y los nombres de las fundas de un instrumento
+     * recibido por sus instancias canónicas, para que los valores repetidos del catálogo compartan
+     * un único {@link String}. Se aplica en todas las entradas de datos antes de guardar el instrumento.
+     *
+     * @param instrumento instrumento recibido
+     */
+    private void canonizar(Instrumento instrumento) {
+        if (instrumento == null) {
+            return;
+        }
+        instrumento.setMarca(marcas.canonica(instrumento.getMarca()));
+        if (instrumento instanceof Guitarra guitarra) {
+            guitarra.setMaterialCuerpo(materiales.canonica(guitarra.getMaterialCuerpo()));
+            if (guitarra.getFundas() != null) {
+                guitarra.getFundas().forEach(this::canonizar);
+            }
+        }
+    }
+
+    /**
+     * Copia un instrumento recibido de un cliente para guardarlo en el catálogo: la copia tiene sus
+     * propias fundas, asociadas a ella, y sus cadenas canónicas. El instrumento recibido no se modifica.
+     *
+     * @param recibido instrumento recibido
+     * @return copia lista para guardar, todavía sin versión
+     * @throws IllegalArgumentException si el instrumento es nulo
+     */
+    private Instrumento copiaRecibida(Instrumento recibido) {
+        if (recibido == null) {
+            throw new IllegalArgumentException("El instrumento no puede ser nulo");
+        }
+        Instrumento copia = recibido.copiar();
+        if (copia instanceof Guitarra guitarra) {
+            List<Funda> fundas = new ArrayList<>(guitarra.getFundas().size());
+            for (Funda funda : guitarra.getFundas()) {
+                fundas.add(new Funda(funda.getCodigo(), funda.getNombre(), funda.getPrecio(), guitarra));
+            }
+            guitarra.setFundas(fundas);
+        }
+        canonizar(copia);
+        return copia;
+    }
+
+    /**
+     * Reemplaza el nombre de una funda recibida por su instancia canónica.
+     *
+     * @param funda funda recibida
+     */
+    private void canonizar(Funda funda) {
+        if (funda != null) {
+            funda.setNombre(nombresFunda.canonica(funda.getNombre()));
+        }
+    }
+
+    /**
+     * Obtiene un instrumento por código o lanza excepción si no existe.
+     *
+     * @param codigo código del instrumento
+     * @return instrumento encontrado
+     * @throws NoSuchElementException si no existe instrumento con ese código
+     */
+    private Instrumento obtenerInstrumento(String codigo) {
+        return buscarInstrumento(codigo)
+                .orElseThrow(() -> new NoSuchElementException("No se encontró un instrumento con el código: " + codigo));
+    }
+
+    /**
+     * Aplica un cambio de stock a un instrumento: lo copia, aplica el cambio sobre la copia y la pone en
+     * lugar del original con la versión siguiente, sin el cerrojo de su partición
+     * ({@link #reemplazarVigente(String, UnaryOperator)}). Las reservas de un mismo instrumento sólo
+     * compiten por su entrada del índice y por el registro de cambios de la partición.
+     *
+     * @param codigo código del instrumento
+     * @param cambio cambio del stock, que valida la cantidad y el stock resultante
+     * @return stock resultante
+     * @throws NoSuchElementException si no existe instrumento con ese código
+     */
+    private int modificarStock(String codigo, Consumer<Instrumento> cambio) {
+        if (delegarAlEscritor()) {
+            return escritor.ejecutar(() -> modificarStock(codigo, cambio));
+        }
+        Instrumento nuevo = reemplazarVigente(codigo, actual -> {
+            if (actual == null) {
+                throw new NoSuchElementException("No se encontró un instrumento con el código: " + codigo);
+            }
+            Instrumento copia = actual.copiar();
+            cambio.accept(copia);
+            copia.setVersion(actual.getVersion() + 1);
+            return copia;
+        }).nuevo();
+        publicarReemplazo(TipoCambio.ACTUALIZADO, EntidadCambio.INSTRUMENTO, nuevo, null);
+        return nuevo.getStock();
+    }
+
+    /**
+     * Reemplaza un instrumento por la versión que arma un cambio a partir del vigente, con un
+     * compare-and-set sobre su entrada del índice y sin el cerrojo de su partición. Si otro escritor lo
+     * reemplazó entre la lectura y el compare-and-set, el cambio se vuelve a armar sobre el nuevo
+     * vigente, así que no se pierde ninguna modificación. Si un ajuste masivo tiene reservada la
+     * partición, el reemplazo se hace con su cerrojo, después del ajuste.
+     *
+     * @param codigo código del instrumento
+     * @param cambio arma el reemplazo a partir del instrumento vigente, que es {@code null} si no existe;
+     *               lanza la excepción que corresponda si el cambio no es válido
+     * @return instrumento reemplazado y el que quedó en su lugar en el índice
+     */
+    private Reemplazo reemplazarVigente(String codigo, UnaryOperator<Instrumento> cambio) {
+        String clave = clave(codigo);
+        Particion particion = particion(clave);
+        while (true) {
+            Instrumento actual = particion.indice().get(clave);
+            if (particion.reservada()) {
+                return modificar(List.of(particion), () -> reemplazarVigente(codigo, cambio));
+            }
+            Instrumento nuevo = cambio.apply(actual);
+            if (particion.reemplazarSinCerrojo(clave, actual, nuevo)) {
+                return new Reemplazo(actual, nuevo);
+            }
+        }
+    }
+
+    /**
+     * Resultado de {@link #reemplazarVigente(String, UnaryOperator)}.
+     *
+     * @param anterior instrumento reemplazado
+     * @param nuevo instrumento que quedó en su lugar
+     */
+    private record Reemplazo(Instrumento anterior, Instrumento nuevo) {}
+
+    /**
+     * Aplica un ajuste masivo. Con los cerrojos de todas las particiones, selecciona los instrumentos que
+     * cumplen el filtro y los aparta de los reemplazos sin cerrojo ({@link #seleccionarApartados(FiltroInstrumentoDTO)}),
+     * deja que el ajuste calcule y valide los valores nuevos, y reemplaza cada seleccionado por una copia
+     * ajustada con la versión siguiente. Las particiones se publican juntas al terminar: ningún lector ve
+     * el ajuste a medias y, si la validación falla, no se ajusta nada.
+     *
+     * @param filtro filtro que selecciona los instrumentos
+     * @param preparar recibe los seleccionados, valida el ajuste y devuelve cómo aplicarlo a la copia de
+     *                 cada uno según su posición
+     * @return cantidad de instrumentos ajustados
+     * @throws IllegalArgumentException si el ajuste no es válido para algún seleccionado
+     */
+    private int ajustarSeleccion(FiltroInstrumentoDTO filtro,
+                                 Function<List<Instrumento>, ObjIntConsumer<Instrumento>> preparar) {
+        List<Particion> todas = List.of(particiones);
+        return modificar(todas, () -> {
+            Particion.reservar(todas, true);
+            try {
+                List<Instrumento> seleccionados = seleccionarApartados(filtro);
+                ObjIntConsumer<Instrumento> ajuste = preparar.apply(seleccionados);
+                List<Instrumento> copias = new ArrayList<>(seleccionados.size());
+                for (int i = 0; i < seleccionados.size(); i++) {
+                    Instrumento actual = seleccionados.get(i);
+                    Instrumento copia = actual.copiar();
+                    ajuste.accept(copia, i);
+                    copia.setVersion(actual.getVersion() + 1);
+                    String clave = clave(actual.getCodigo());
+                    if (!particion(clave).reemplazarSinCerrojo(clave, actual, copia)) {
+                        throw new IllegalStateException("El instrumento " + actual.getCodigo() + " cambió durante el ajuste");
+                    }
+                    copias.add(copia);
+                }
+                publicarAjuste(copias);
+                return copias.size();
+            } finally {
+                Particion.reservar(todas, false);
+            }
+        });
+    }
+
+    /**
+     * Selecciona los instrumentos que cumplen el filtro de un ajuste masivo y los aparta: cada uno se
+     * reemplaza por una copia idéntica con un compare-and-set, después de reservar las particiones, así
+     * que un reemplazo sin cerrojo que lea la copia ve la reserva y espera el cerrojo, y uno que leyó el
+     * original falla su compare-and-set. Si algún seleccionado cambió antes de apartarlo, el filtro se
+     * vuelve a evaluar. Sólo debe usarse con los cerrojos de todas las particiones, ya reservadas, o
+     * desde el escritor único.
+     *
+     * @param filtro filtro que selecciona los instrumentos
+     * @return copias apartadas de los seleccionados, que nadie más puede reemplazar hasta liberar la reserva
+     */
+    private List<Instrumento> seleccionarApartados(FiltroInstrumentoDTO filtro) {
+        Map<String, Instrumento> apartados = new HashMap<>();
+        while (true) {
+            // El filtro se evalúa sobre las instantáneas, puestas al día con los reemplazos pendientes
+            // y, con el escritor único, con los cambios del lote en curso.
+            publicarInstantanea();
+            List<Instrumento> seleccionados = evaluarFiltro(filtro, null, SeleccionInstrumentos.Orden.NINGUNO).coincidencias();
+            List<Instrumento> vigentes = new ArrayList<>(seleccionados.size());
+            for (Instrumento seleccionado : seleccionados) {
+                String clave = clave(seleccionado.getCodigo());
+                if (apartados.get(clave) != seleccionado) {
+                    Instrumento apartado = seleccionado.copiar();
+                    if (!particion(clave).reemplazarSinCerrojo(clave, seleccionado, apartado)) {
+                        break;
+                    }
+                    apartados.put(clave, apartado);
+                }
+                vigentes.add(apartados.get(clave));
+            }
+            if (vigentes.size() == seleccionados.size()) {
+                return vigentes;
+            }
+        }
+    }
+
+    /**
+     * Pone al día el índice por fecha después de cambiar la entrada del índice por código de un
+     * instrumento, con la fecha nueva y, si cambió, la anterior. Cada entrada se agrega o se quita según
+     * la fecha vigente del instrumento, así que el orden en que terminen dos cambios seguidos no importa.
+     *
+     * @param clave código normalizado
+     * @param anterior fecha de ingreso antes del cambio, o {@code null}
+     * @param nueva fecha de ingreso después del cambio, o {@code null}
+     */
+    private void actualizarFechas(String clave, LocalDate anterior, LocalDate nueva) {
+        indiceFechas.sincronizar(nueva, clave, new Object(), this::fechaVigente);
+        if (!Objects.equals(anterior, nueva)) {
+            indiceFechas.sincronizar(anterior, clave, new Object(), this::fechaVigente);
+        }
+    }
+
+    /**
+     * Devuelve la fecha de ingreso del instrumento vigente con un código.
+     *
+     * @param clave código normalizado
+     * @return fecha de ingreso, o {@code null} si no existe el instrumento o no tiene fecha
+     */
+    private LocalDate fechaVigente(String clave) {
+        Instrumento vigente = particion(clave).indice().get(clave);
+        return vigente == null ? null : vigente.getFechaIngreso();
+    }
+
+    /**
+     * Comprueba la versión de un instrumento antes de reemplazarlo o eliminarlo. El instrumento debe
+     * quitarse o reemplazarse después con un compare-and-set sobre su entrada del índice, que falla si
+     * otra modificación se adelantó; en ese caso la versión se vuelve a comprobar sobre el vigente.
+     *
+     * @param instrumento instrumento vigente
+     * @param versionEsperada versión que debe tener el instrumento, o {@code null} para no comprobarla
+     * @return versión que corresponde al instrumento después del cambio
+     * @throws ConflictoVersionException si la versión actual no es la esperada
+     */
+    private static long siguienteVersion(Instrumento instrumento, Long versionEsperada) {
+        long actual = instrumento.getVersion();
+        if (versionEsperada != null && actual != versionEsperada) {
+            throw new ConflictoVersionException("El instrumento " + instrumento.getCodigo()
+                    + " fue modificado: versión actual " + actual + ", esperada " + versionEsperada);
+        }
+        return actual + 1;
+    }
+
+    /**
+     * Aplica un cambio a las fundas de una guitarra: la copia, aplica el cambio sobre la copia, comprueba
+     * la versión y pone la copia en lugar de la original con la versión siguiente, con un compare-and-set
+     * y sin el cerrojo de su partición ({@link #reemplazarVigente(String, UnaryOperator)}). Si otra
+     * modificación se adelantó, el cambio y la comprobación se repiten sobre la guitarra vigente, así
+     * que ningún cambio se aplica sobre una guitarra que ya se reemplazó.
+     *
+     * @param codigo código de la guitarra
+     * @param versionEsperada versión que debe tener la guitarra, o {@code null} para no comprobarla
+     * @param tipo tipo de cambio que se publica por cada funda afectada
+     * @param cambio cambio de las fundas de la copia; devuelve los códigos de las fundas afectadas
+     * @throws NoSuchElementException si no existe guitarra con ese código
+     * @throws IllegalArgumentException si el código no corresponde a una guitarra
+     * @throws ConflictoVersionException si la versión actual de la guitarra no es la esperada
+     */
+    private void modificarGuitarra(String codigo, Long versionEsperada, TipoCambio tipo,
+                                   Function<Guitarra, List<String>> cambio) {
+        AtomicReference<List<String>> fundas = new AtomicReference<>();
+        Instrumento copia = reemplazarVigente(codigo, instrumento -> {
+            if (instrumento == null) {
+                throw new NoSuchElementException("No se encontró una guitarra con el código: " + codigo);
+            }
+            if (!(instrumento instanceof Guitarra actual)) {
+                throw new IllegalArgumentException("El código debe ser de una guitarra");
+            }
+            Guitarra nueva = actual.copiar();
+            fundas.set(cambio.apply(nueva));
+            nueva.setVersion(siguienteVersion(actual, versionEsperada));
+            return nueva;
+        }).nuevo();
+        indiceTexto.actualizar(clave(codigo));
+        for (String codigoFunda : fundas.get()) {
+            publicarReemplazo(tipo, EntidadCambio.FUNDA, copia, codigoFunda);
+        }
+    }
+
+    /**
+     * Verifica que una guitarra tenga la funda indicada antes de modificarla.
+     *
+     * @param guitarra guitarra propietaria
+     * @param codigoFunda código de la funda
+     * @throws NoSuchElementException si no se encuentra la funda
+     */
+    private static void validarFunda(Guitarra guitarra, String codigoFunda) {
+        if (guitarra.buscarFunda(codigoFunda).isEmpty()) {
+            throw new NoSuchElementException("No se encontró una funda con el código: " + codigoFunda);
+        }
+    }
+
+    /**
+     * Arma la respuesta de sincronización incremental a partir de los cambios del registro
+     * compactado, con el estado actual de cada instrumento modificado.
+     *
+     * @param actual versión del catálogo hasta la que llegan los cambios
+     * @param cambios cambios posteriores a la versión del cliente, o {@code null} si ya no se conservan
+     * @param buscar búsqueda de un instrumento por código
+     * @return cambios agrupados por instrumento, o una respuesta de resincronización completa
+     */
+    static DeltaCatalogoDTO armarDelta(long actual, List<EventoCambioDTO> cambios,
+                                       Function<String, Optional<Instrumento>> buscar) {
+        if (cambios == null) {
+            return new DeltaCatalogoDTO(actual, true, List.of(), List.of(), Map.of());
+        }
+
+        Map<String, Instrumento> modificados = new LinkedHashMap<>();
+        Set<String> eliminados = new LinkedHashSet<>();
+        Map<String, List<String>> fundasEliminadas = new LinkedHashMap<>();
+        for (EventoCambioDTO cambio : cambios) {
+            String codigo = cambio.getCodigo();
+            Instrumento instrumento = buscar.apply(codigo).orElse(null);
+            if (cambio.getEntidad() == EntidadCambio.FUNDA) {
+                if (cambio.getTipo() == TipoCambio.ELIMINADO) {
+                    fundasEliminadas.computeIfAbsent(codigo, c -> new ArrayList<>()).add(cambio.getCodigoFunda());
+                }
+                if (instrumento != null) {
+                    modificados.putIfAbsent(clave(codigo), instrumento);
+                }
+            } else if (cambio.getTipo() == TipoCambio.ELIMINADO || instrumento == null) {
+                eliminados.add(codigo);
+            } else {
+                modificados.putIfAbsent(clave(codigo), instrumento);
+            }
+        }
+        return new DeltaCatalogoDTO(actual, false, new ArrayList<>(modificados.values()),
+                new ArrayList<>(eliminados), fundasEliminadas);
+    }
+
+    /**
+     * Normaliza un código para usarlo como clave del índice, sin distinguir mayúsculas de minúsculas.
+     *
+     * @param codigo código del instrumento
+     * @return código en minúsculas
+     * @throws IllegalArgumentException si el código es nulo
+     */
+    static String clave(String codigo) {
+        if (codigo == null) {
+            throw new IllegalArgumentException("El código del instrumento no puede ser nulo");
+        }
+        return codigo.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Comprueba que un filtro de ajuste masivo no pida orden ni límite: el ajuste alcanza a todas
+     * las coincidencias y un límite ignorado modificaría más instrumentos de los esperados.
+     *
+     * @param filtro filtro del ajuste
+     * @throws IllegalArgumentException si el filtro indica orden, sentido o límite
+     */
+    static void validarFiltroMasivo(FiltroInstrumentoDTO filtro) {
+        if (filtro.getOrdenarPor() != null || filtro.getDescendente() != null || filtro.getLimite() != null) {
+            throw new IllegalArgumentException("Los ajustes masivos no admiten ordenarPor, descendente ni limite");
+        }
+    }
+
+    /**
+     * Evalúa un filtro sobre todo el catálogo eligiendo el modo de ejecución.
+     * Si está activo el modo columnar, los criterios se evalúan sobre la copia columnar y las
+     * facetas se cuentan sólo sobre las coincidencias. En otro caso, los catálogos pequeños se
+     * recorren de forma secuencial y, a partir de {@link #umbralParalelo}, el recorrido se reparte
+     * en el {@link ForkJoinPool#commonPool()} en a lo sumo {@link #paralelismoMaximo} bloques.
+     * Con varias particiones, cada una se evalúa por separado sobre su propia instantánea
+     * (en paralelo a partir del mismo umbral) y los resultados se combinan en orden de partición.
+     * Si el filtro indica un rango de fechas de ingreso, sólo se evalúan los instrumentos de ese rango,
+     * obtenidos del índice por fecha en O(log n + k), y salen en orden de fecha. Un filtro difuso con
+     * nombre o marca se resuelve igual, con los candidatos del índice de texto, y tiene prioridad sobre
+     * el rango de fechas porque sus términos suelen ser más selectivos.
+     *
+     * @param filtro criterios del filtro
+     * @param limitesFacetas límites de la faceta de precios, o {@code null} para no calcular facetas
+     * @param orden orden y límite de las coincidencias
+     * @return coincidencias seleccionadas y, si se pidieron, sus facetas
+     */
+    private TareaFiltro.ResultadoParcial evaluarFiltro(FiltroInstrumentoDTO filtro, double[] limitesFacetas,
+                                                       SeleccionInstrumentos.Orden orden) {
+        List<String> terminos = terminosDifusos(filtro);
+        if (!terminos.isEmpty() || filtraPorFecha(filtro)) {
+            // El índice de texto o el de fechas acota los candidatos; el resto de criterios se evalúa sobre ellos.
+            List<Instrumento> candidatos = terminos.isEmpty() ? candidatosPorFecha(filtro) : candidatosPorTerminos(terminos);
+            Predicate<Instrumento> predicado = construirPredicado(filtro);
+            if (candidatos.size() >= umbralParalelo && paralelismoMaximo > 1) {
+                int bloques = Math.min(paralelismoMaximo, ForkJoinPool.getCommonPoolParallelism() + 1);
+                return ForkJoinPool.commonPool().invoke(new TareaFiltro(candidatos, 0, candidatos.size(), bloques,
+                        predicado, limitesFacetas, orden));
+            }
+            return TareaFiltro.evaluar(candidatos, 0, candidatos.size(), predicado, limitesFacetas, orden);
+        }
+        Particion[] actuales = particiones;
+        List<List<Instrumento>> vistas = instantaneas(actuales);
+        int total = 0;
+        for (List<Instrumento> vista : vistas) {
+            total += vista.size();
+        }
+        // La copia columnar compara el nombre y la marca tal cual; los filtros difusos usan el predicado.
+        boolean columnar = filtroColumnar && !Boolean.TRUE.equals(filtro.getDifuso());
+        Predicate<Instrumento> predicado = columnar ? null : construirPredicado(filtro);
+        boolean paralelo = total >= umbralParalelo && paralelismoMaximo > 1;
+        int bloques = Math.min(paralelismoMaximo, ForkJoinPool.getCommonPoolParallelism() + 1);
+
+        if (actuales.length == 1 && !columnar && paralelo) {
+            List<Instrumento> catalogo = vistas.getFirst();
+            return ForkJoinPool.commonPool()
+                    .invoke(new TareaFiltro(catalogo, 0, total, bloques, predicado, limitesFacetas, orden));
+        }
+        IntFunction<TareaFiltro.ResultadoParcial> evaluarParticion = i -> {
+            List<Instrumento> vista = vistas.get(i);
+            if (columnar) {
+                List<Instrumento> coincidencias = actuales[i].columnar(vista).filtrar(filtro);
+                return TareaFiltro.evaluar(coincidencias, 0, coincidencias.size(), x -> true, limitesFacetas, orden);
+            }
+            return TareaFiltro.evaluar(vista, 0, vista.size(), predicado, limitesFacetas, orden);
+        };
+        if (actuales.length == 1 || !paralelo) {
+            return TareaParticiones.evaluar(evaluarParticion, 0, actuales.length);
+        }
+        return ForkJoinPool.commonPool()
+                .invoke(new TareaParticiones(evaluarParticion, 0, actuales.length, bloques));
+    }
+
+    /**
+     * Indica si un filtro restringe la fecha de ingreso.
+     *
+     * @param filtro criterios del filtro
+     * @return {@code true} si indica alguna de las fechas del rango
+     */
+    static boolean filtraPorFecha(FiltroInstrumentoDTO filtro) {
+        return filtro.getFechaIngresoDesde() != null || filtro.getFechaIngresoHasta() != null;
+    }
+
+    /**
+     * Obtiene los términos del nombre y la marca de un filtro difuso, que acotan los candidatos con
+     * el índice de texto.
+     *
+     * @param filtro criterios del filtro
+     * @return términos normalizados, o una lista vacía si el filtro no es difuso o no tiene términos
+     */
+    static List<String> terminosDifusos(FiltroInstrumentoDTO filtro) {
+        if (!Boolean.TRUE.equals(filtro.getDifuso())) {
+            return List.of();
+        }
+        List<String> terminos = new ArrayList<>(IndiceTexto.terminos(filtro.getNombre()));
+        terminos.addAll(IndiceTexto.terminos(filtro.getMarca()));
+        return terminos;
+    }
+
+    /**
+     * Obtiene del índice de texto los instrumentos vigentes que contienen un término parecido a cada
+     * uno de los términos indicados.
+     *
+     * @param terminos términos normalizados del filtro, al menos uno
+     * @return candidatos en el orden en que se indexaron
+     */
+    private List<Instrumento> candidatosPorTerminos(List<String> terminos) {
+        List<Instrumento> candidatos = new ArrayList<>();
+        for (String clave : indiceTexto.candidatos(terminos)) {
+            Instrumento instrumento = particion(clave).indice().get(clave);
+            if (instrumento != null) {
+                candidatos.add(instrumento);
+            }
+        }
+        return candidatos;
+    }
+
+    /**
+     * Obtiene del índice por fecha los instrumentos vigentes cuyo ingreso cae en el rango del filtro.
+     * Cada entrada se resuelve con el índice por código y se descarta si el instrumento ya no existe o
+     * su fecha vigente es otra.
+     *
+     * @param filtro criterios del filtro, con al menos una de las fechas del rango
+     * @return instrumentos del rango en orden de fecha de ingreso y de código
+     * @throws IllegalArgumentException si la fecha inicial es posterior a la final
+     */
+    private List<Instrumento> candidatosPorFecha(FiltroInstrumentoDTO filtro) {
+        List<Instrumento> candidatos = new ArrayList<>();
+        for (Map.Entry<IndiceFechas.Entrada, Object> entrada
+                : indiceFechas.rango(filtro.getFechaIngresoDesde(), filtro.getFechaIngresoHasta())) {
+            String clave = entrada.getKey().clave();
+            Instrumento vigente = particion(clave).indice().get(clave);
+            if (vigente != null && IndiceFechas.corresponde(entrada.getKey(), vigente.getFechaIngreso())) {
+                candidatos.add(vigente);
+            }
+        }
+        return candidatos;
+    }
+
+    /**
+     * Devuelve la vista de lectura del catálogo: la concatenación de las últimas instantáneas
+     * publicadas de cada partición, leídas juntas, sobre la que se atienden las lecturas sin
+     * esperar a los escritores.
+     *
+     * @return instrumentos del catálogo, en orden de partición y de ingreso dentro de cada una
+     */
+    private List<Instrumento> vistaLectura() {
+        return Particion.concatenar(instantaneas(particiones));
+    }
+
+    /**
+     * Lee juntas las últimas instantáneas de las particiones, después de poner al día las que tienen
+     * reemplazos sin cerrojo pendientes. Con el escritor único las pone al día su hilo al publicar cada lote.
+     *
+     * @param actuales particiones del catálogo
+     * @return instantánea de cada partición
+     */
+    private List<List<Instrumento>> instantaneas(Particion[] actuales) {
+        if (escritor == null) {
+            Particion.aplicarPendientes(actuales);
+        }
+        return Particion.instantaneas(actuales);
+    }
+
+    /**
+     * Devuelve la partición a la que pertenece un código normalizado.
+     *
+     * @param clave código normalizado
+     * @return partición del código
+     */
+    private Particion particion(String clave) {
+        Particion[] actuales = particiones;
+        return actuales[numeroParticion(clave, actuales.length)];
+    }
+
+    /**
+     * Calcula el número de partición de un código normalizado a partir de su hash,
+     * mezclando los bits altos para repartir mejor los códigos con prefijos comunes.
+     *
+     * @param clave código normalizado
+     * @param cantidad cantidad de particiones
+     * @return número de partición entre 0 y {@code cantidad - 1}
+     */
+    private static int numeroParticion(String clave, int cantidad) {
+        int hash = clave.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), cantidad);
+    }
+
+    /**
+     * Aplica una modificación a las listas y los índices de una o varias particiones. Con el escritor
+     * único, la modificación ya se ejecuta en su hilo y las instantáneas se publican al terminar el
+     * lote; en otro caso se serializa con las demás modificaciones de esas particiones y publica sus
+     * instantáneas juntas de inmediato.
+     *
+     * @param particiones particiones a modificar
+     * @param cambio modificación de las particiones
+     * @param <T> tipo del resultado de la modificación
+     * @return resultado de la modificación
+     */
+    private <T> T modificar(Collection<Particion> particiones, Supplier<T> cambio) {
+        if (escritor != null) {
+            return cambio.get();
+        }
+        return Particion.modificar(particiones, cambio);
+    }
+
+    /**
+     * Indica si una modificación debe encolarse en el escritor único en lugar de aplicarse
+     * en el hilo actual.
+     *
+     * @return {@code true} si el escritor único está activo y el hilo actual no es el escritor
+     */
+    private boolean delegarAlEscritor() {
+        EscritorUnico actual = escritor;
+        return actual != null && !actual.esHiloEscritor();
+    }
+
+    /**
+     * Publica juntas las instantáneas inmutables de todas las particiones. Las instantáneas comparten
+     * los segmentos de {@link ListaSegmentada}, así que su costo depende de la cantidad de segmentos
+     * y no de la de instrumentos.
+     */
+    private void publicarInstantanea() {
+        Particion.publicar(List.of(particiones));
+    }
+
+    /**
+     * Compone el predicado correspondiente a los criterios de un filtro.
+     * Los criterios nulos no restringen el resultado.
+     *
+     * @param filtro objeto DTO con los filtros
+     * @return predicado que cumplen los instrumentos aceptados por el filtro
+     */
+    static Predicate<Instrumento> construirPredicado(FiltroInstrumentoDTO filtro) {
+        Predicate<Instrumento> predicado = i -> true;
+
+        if (Boolean.TRUE.equals(filtro.getDifuso())) {
+            List<String> nombre = IndiceTexto.terminos(filtro.getNombre());
+            List<String> marca = IndiceTexto.terminos(filtro.getMarca());
+            predicado = predicado.and(i -> DiccionarioTerminos.coincide(i.getNombre(), nombre)
+                    && DiccionarioTerminos.coincide(i.getMarca(), marca));
+        } else {
+            if (filtro.getNombre() != null) {
+                predicado = predicado.and(i -> i.getNombre().toLowerCase().contains(filtro.getNombre().toLowerCase()));
+            }
+            if (filtro.getMarca() != null) {
+                predicado = predicado.and(i -> i.getMarca().equalsIgnoreCase(filtro.getMarca()));
+            }
         }
         if (filtro.getPrecioMin() != null) {
             predicado = predicado.and(i -> i.getPrecioBase() >= filtro.getPrecioMin());
@@ -316,15 +1679,18 @@ public class ServicioInstrumento implements IServicioInstrumento {
         if (filtro.getStockMax() != null) {
             predicado = predicado.and(i -> i.getStock() <= filtro.getStockMax());
         }
+        if (filtro.getFechaIngresoDesde() != null) {
+            predicado = predicado.and(i -> i.getFechaIngreso() != null && !i.getFechaIngreso().isBefore(filtro.getFechaIngresoDesde()));
+        }
+        if (filtro.getFechaIngresoHasta() != null) {
+            predicado = predicado.and(i -> i.getFechaIngreso() != null && !i.getFechaIngreso().isAfter(filtro.getFechaIngresoHasta()));
+        }
         if (filtro.getTipoGuitarra() != null) {
             predicado = predicado.and(i -> (i instanceof Guitarra guitarra) && guitarra.getTipo() == filtro.getTipoGuitarra());
         }
         if (filtro.getSensibilidad() != null) {
             predicado = predicado.and(i -> (i instanceof Teclado teclado) && teclado.getSensibilidad() == filtro.getSensibilidad());
         }
-
-        return instrumentos.stream()
-                .filter(predicado)
-                .toList();
+        return predicado;
     }
 }
@@ -0,0 +1,1117 @@
+/*
+ * Clase: ServicioInstrumentoFueraDeHeap
+ * Proyecto: PoC Tienda de Instrumentos
+ * Paquete: com.unibague.poctiendainstrumentos.service
+ *
+ * Descripción:
+ *   Implementación del servicio de instrumentos que guarda el catálogo fuera del heap,
+ *   en formato binario, para catálogos muy grandes.
+ */
+package com.unibague.poctiendainstrumentos.service;
+
+import com.unibague.poctiendainstrumentos.dto.CoincidenciaBusquedaDTO;
+import com.unibague.poctiendainstrumentos.dto.DeltaCatalogoDTO;
+import com.unibague.poctiendainstrumentos.dto.EventoCambioDTO;
+import com.unibague.poctiendainstrumentos.dto.FiltroInstrumentoDTO;
+import com.unibague.poctiendainstrumentos.dto.InstantaneaCatalogoDTO;
+import com.unibague.poctiendainstrumentos.dto.ResultadoFiltroDTO;
+import com.unibague.poctiendainstrumentos.exception.CambiosNoDisponiblesException;
+import com.unibague.poctiendainstrumentos.exception.ConflictoVersionException;
+import com.unibague.poctiendainstrumentos.model.Funda;
+import com.unibague.poctiendainstrumentos.model.Guitarra;
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+import com.unibague.poctiendainstrumentos.model.Teclado;
+import com.unibague.poctiendainstrumentos.model.enums.EntidadCambio;
+import com.unibague.poctiendainstrumentos.model.enums.TipoCambio;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.unibague.poctiendainstrumentos.service.ServicioInstrumento.clave;
+import static com.unibague.poctiendainstrumentos.service.ServicioInstrumento.construirPredicado;
+
+/**
+ * Servicio de instrumentos que guarda el catálogo fuera del heap.
+ *
+ * <p>
+ * Se activa con {@code tienda.catalogo.almacenamiento=fuera-de-heap} en lugar de
+ * {@link ServicioInstrumento} y ofrece exactamente las mismas operaciones. Cada instrumento,
+ * con sus fundas, se guarda como un registro en el formato de {@link CodificadorBinario} dentro de
+ * un {@link AlmacenFueraDeHeap}, en memoria directa o en archivos proyectados en memoria
+ * ({@code tienda.catalogo.fuera-de-heap.directorio}). En el heap sólo quedan arreglos primitivos
+ * y los diccionarios de marcas, materiales y nombres de funda, así que el trabajo del recolector
+ * no crece con el tamaño del catálogo.
+ * </p>
+ *
+ * <p>
+ * Los instrumentos que devuelve el servicio son copias decodificadas en el momento: los listados
+ * son vistas que decodifican cada elemento al recorrerlas, y los filtros descartan primero con los
+ * campos de la cabecera del registro (precio, stock, tipo, sensibilidad y marca) y sólo decodifican
+ * los candidatos. Modificar un objeto devuelto no modifica el catálogo.
+ * </p>
+ *
+ * <p>
+ * Las modificaciones se serializan con el cerrojo de escritura del almacenamiento; las de stock,
+ * precio y versión se hacen en el lugar, sin reescribir el registro. Los eventos de cambio, la
+ * sincronización incremental y la replicación responden igual que en {@link ServicioInstrumento},
+ * pero el registro de sincronización sólo conserva las eliminaciones (ver {@link #deltaDesde(long)}).
+ * No se aplican las particiones, el escritor único ni la copia columnar, que son propias del
+ * almacenamiento en el heap.
+ * </p>
+ *
+ * @author Jorge
+ * @version 1.0
+ * @since 2025
+ */
+@Service
+@ConditionalOnProperty(name = "tienda.catalogo.almacenamiento", havingValue = "fuera-de-heap")
+public class ServicioInstrumentoFueraDeHeap implements IServicioInstrumento {
+
+    /**
+     * Cantidad máxima de valores distintos de cada diccionario. Los registros guardan identificadores,
+     * así que un valor nuevo que ya no cabe se rechaza con {@link IllegalStateException}.
+     */
+    private static final int VALORES_DISTINTOS = 65_536;
+
+    /**
+     * Diccionario de las marcas, cuyos identificadores se guardan en los registros.
+     */
+    private final DiccionarioCadenas marcas = new DiccionarioCadenas(VALORES_DISTINTOS);
+
+    /**
+     * Diccionario de los materiales del cuerpo de las guitarras.
+     */
+    private final DiccionarioCadenas materiales = new DiccionarioCadenas(VALORES_DISTINTOS);
+
+    /**
+     * Diccionario de los nombres de las fundas.
+     */
+    private final DiccionarioCadenas nombresFunda = new DiccionarioCadenas(VALORES_DISTINTOS);
+
+    /**
+     * Registros de los instrumentos.
+     */
+    private final AlmacenFueraDeHeap almacen;
+
+    /**
+     * Índice ordenado por fecha de ingreso. Las escrituras se serializan con el cerrojo del almacén y
+     * las entradas sólo marcan la presencia del código: el registro vigente se busca al consultar.
+     */
+    private final IndiceFechas<Boolean> indiceFechas = new IndiceFechas<>();
+
+    /**
+     * Índice invertido para la búsqueda de texto; decodifica el instrumento vigente del almacén.
+     */
+    private final IndiceTexto indiceTexto;
+
+    /**
+     * Versión del catálogo; aumenta con cada modificación de instrumentos o fundas.
+     */
+    private final AtomicLong versionCatalogo = new AtomicLong();
+
+    /**
+     * Buffer circular con los últimos eventos de cambio del catálogo.
+     */
+    private volatile BufferCambios bufferCambios = new BufferCambios(4096);
+
+    /**
+     * Acciones a ejecutar después de publicar eventos de cambio.
+     */
+    private final List<Runnable> avisosCambios = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registro de las eliminaciones de instrumentos y fundas, para la sincronización incremental.
+     */
+    private volatile RegistroCambios registroCambios = new RegistroCambios(10_000);
+
+    /**
+     * Crea el servicio con un catálogo vacío.
+     *
+     * @param tamanoSegmento tamaño en bytes de cada segmento de almacenamiento
+     * @param directorio directorio de los archivos proyectados en memoria; vacío para usar memoria directa
+     */
+    @Autowired
+    public ServicioInstrumentoFueraDeHeap(
+            @Value("${tienda.catalogo.fuera-de-heap.tamano-segmento:67108864}") int tamanoSegmento,
+            @Value("${tienda.catalogo.fuera-de-heap.directorio:}") String directorio) {
+        this.almacen = new AlmacenFueraDeHeap(new CodificadorBinario(marcas, materiales, nombresFunda),
+                tamanoSegmento, directorio == null || directorio.isBlank() ? null : Path.of(directorio));
+        this.indiceTexto = new IndiceTexto(almacen::buscar);
+    }
+
+    /**
+     * Configura la cantidad de eventos de cambio que se conservan en memoria.
+     *
+     * @param capacidad cantidad de eventos (se redondea a potencia de dos)
+     */
+    @Value("${tienda.cambios.capacidad:4096}")
+    void configurarCapacidadCambios(int capacidad) {
+        this.bufferCambios = new BufferCambios(capacidad);
+    }
+
+    /**
+     * Configura la cantidad de eliminaciones que conserva el registro de sincronización incremental.
+     *
+     * @param maximo cantidad de eliminaciones retenidas
+     */
+    @Value("${tienda.cambios.eliminados-retenidos:10000}")
+    void configurarEliminadosRetenidos(int maximo) {
+        this.registroCambios = new RegistroCambios(maximo);
+    }
+
+    /**
+     * Agrega un instrumento al catálogo con versión 1.
+     *
+     * @param instrumento Instrumento a agregar.
+     * @throws IllegalArgumentException si el instrumento o su código son nulos.
+     * @throws IllegalStateException si ya existe un instrumento con ese código.
+     */
+    @Override
+    public void agregarInstrumento(Instrumento instrumento) {
+        if (instrumento == null) {
+            throw new IllegalArgumentException("El instrumento no puede ser nulo");
+        }
+        String clave = clave(instrumento.getCodigo());
+        instrumento.setVersion(1);
+        almacen.bloquear();
+        try {
+            if (almacen.ubicar(clave) >= 0) {
+                throw new IllegalStateException("Ya existe un instrumento con este código");
+            }
+            int posicion = almacen.agregar(clave, instrumento);
+            indiceFechas.agregar(instrumento.getFechaIngreso(), clave, Boolean.TRUE);
+            indiceTexto.actualizar(clave);
+            marcar(posicion, publicarCambio(TipoCambio.CREADO, EntidadCambio.INSTRUMENTO, instrumento.getCodigo(), null, instrumento.getVersion()));
+        } finally {
+            almacen.desbloquear();
+        }
+    }
+
+    /**
+     * Lista todos los instrumentos, en orden de ingreso.
+     *
+     * @return vista inmutable que decodifica cada instrumento al recorrerla
+     */
+    @Override
+    public List<Instrumento> listarInstrumentos() {
+        return almacen.vista(-1);
+    }
+
+    /**
+     * Lista sólo los instrumentos que son guitarras.
+     *
+     * @return vista inmutable de las guitarras
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Guitarra> listarGuitarras() {
+        return (List<Guitarra>) (List<?>) almacen.vista(CodificadorBinario.GUITARRA);
+    }
+
+    /**
+     * Lista sólo los instrumentos que son teclados.
+     *
+     * @return vista inmutable de los teclados
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Teclado> listarTeclados() {
+        return (List<Teclado>) (List<?>) almacen.vista(CodificadorBinario.TECLADO);
+    }
+
+    /**
+     * Busca un instrumento específico por código.
+     *
+     * @param codigo código único a buscar
+     * @return Optional con una copia del instrumento si existe
+     */
+    @Override
+    public Optional<Instrumento> buscarInstrumento(String codigo) {
+        return Optional.ofNullable(almacen.buscar(clave(codigo)));
+    }
+
+    /**
+     * Reemplaza los datos de un instrumento, que conserva su lugar en el orden del catálogo.
+     *
+     * @param codigo código identificador
+     * @param instrumento nuevo objeto con datos a actualizar
+     * @param versionEsperada versión que debe tener el instrumento, o {@code null} para no comprobarla
+     * @throws NoSuchElementException si no existe instrumento con ese código
+     * @throws IllegalStateException si el nuevo código ya pertenece a otro instrumento
+     * @throws ConflictoVersionException si la versión actual no es la esperada
+     */
+    @Override
+    public void editarInstrumento(String codigo, Instrumento instrumento, Long versionEsperada) {
+        String claveActual = clave(codigo);
+        String claveNueva = clave(instrumento.getCodigo());
+        almacen.bloquear();
+        try {
+            if (!claveNueva.equals(claveActual) && almacen.ubicar(claveNueva) >= 0) {
+                throw new IllegalStateException("Ya existe un instrumento con este código");
+            }
+            int posicion = obtenerPosicion(codigo);
+            String codigoAnterior = codigo(posicion);
+            LocalDate fechaAnterior = fecha(posicion);
+            instrumento.setVersion(siguienteVersion(posicion, versionEsperada));
+            almacen.reemplazar(posicion, claveNueva, instrumento);
+            indiceFechas.mover(fechaAnterior, claveActual, Boolean.TRUE, instrumento.getFechaIngreso(), claveNueva, Boolean.TRUE);
+            indiceTexto.actualizar(claveNueva);
+            if (!claveNueva.equals(claveActual)) {
+                indiceTexto.actualizar(claveActual);
+            }
+            if (claveNueva.equals(claveActual)) {
+                marcar(posicion, publicarCambio(TipoCambio.ACTUALIZADO, EntidadCambio.INSTRUMENTO, instrumento.getCodigo(), null, instrumento.getVersion()));
+            } else {
+                publicarCambio(TipoCambio.ELIMINADO, EntidadCambio.INSTRUMENTO, codigoAnterior, null, instrumento.getVersion());
+                marcar(posicion, publicarCambio(TipoCambio.CREADO, EntidadCambio.INSTRUMENTO, instrumento.getCodigo(), null, instrumento.getVersion()));
+            }
+        } finally {
+            almacen.desbloquear();
+        }
+    }
+
+    /**
+     * Elimina un instrumento por código único.
+     *
+     * @param codigo código identificador
+     * @param versionEsperada versión que debe tener el instrumento, o {@code null} para no comprobarla
+     * @throws NoSuchElementException si no existe instrumento con ese código
+     * @throws ConflictoVersionException si la versión actual no es la esperada
+     */
+    @Override
+    public void eliminarInstrumento(String codigo, Long versionEsperada) {
+        almacen.bloquear();
+        try {
+            int posicion = obtenerPosicion(codigo);
+            String codigoActual = codigo(posicion);
+            long version = siguienteVersion(posicion, versionEsperada);
+            indiceFechas.quitar(fecha(posicion), clave(codigoActual), Boolean.TRUE);
+            almacen.eliminar(posicion);
+            indiceTexto.actualizar(clave(codigoActual));
+            publicarCambio(TipoCambio.ELIMINADO, EntidadCambio.INSTRUMENTO, codigoActual, null, version);
+        } finally {
+            almacen.desbloquear();
+        }
+    }
+
+    /**
+     * Agrega una lista de fundas a una guitarra por su código.
+     *
+     * @param codigoGuitarra código de la guitarra destino
+     * @param fundas lista de fundas a agregar
+     * @throws NoSuchElementException si no existe guitarra
+     * @throws IllegalArgumentException si el código no corresponde a una guitarra
+     */
+    @Override
+    public void agregarFundas(String codigoGuitarra, List<Funda> fundas) {
+        almacen.bloquear();
+        try {
+            int posicion = obtenerPosicionGuitarra(codigoGuitarra);
+            Guitarra guitarra = (Guitarra) almacen.instrumento(posicion);
+            List<Funda> nuevas = fundas == null ? List.of() : fundas.stream()
+                    .filter(f -> f != null && f.getCodigo() != null && guitarra.buscarFunda(f.getCodigo()).isEmpty())
+                    .toList();
+            guitarra.setVersion(siguienteVersion(posicion, null));
+            guitarra.agregarFundas(fundas);
+            almacen.reemplazar(posicion, clave(codigoGuitarra), guitarra);
+            indiceTexto.actualizar(clave(codigoGuitarra));
+            for (Funda funda : nuevas) {
+                marcar(posicion, publicarCambio(TipoCambio.CREADO, EntidadCambio.FUNDA, guitarra.getCodigo(), funda.getCodigo(), guitarra.getVersion()));
+            }
+        } finally {
+            almacen.desbloquear();
+        }
+    }
+
+    /**
+     * Edita los datos de una funda asociada a una guitarra específica.
+     *
+     * @param codigoGuitarra código de la guitarra
+     * @param codigoFunda código de la funda a editar
+     * @param funda nueva funda con datos actualizados
+     * @param versionEsperada versión que debe tener la guitarra, o {@code null} para no comprobarla
+     * @throws NoSuchElementException si no existe guitarra o funda
+     * @throws IllegalArgumentException si el código no corresponde a una guitarra
+     * @throws ConflictoVersionException si la versión actual de la guitarra no es la esperada
+     */
+    @Override
+    public void editarFunda(String codigoGuitarra, String codigoFunda, Funda funda, Long versionEsperada) {
+        almacen.bloquear();
+        try {
+            int posicion = obtenerPosicionGuitarra(codigoGuitarra);
+            Guitarra guitarra = (Guitarra) almacen.instrumento(posicion);
+            validarFunda(guitarra, codigoFunda);
+            guitarra.setVersion(siguienteVersion(posicion, versionEsperada));
+            guitarra.editarFunda(codigoFunda, funda);
+            almacen.reemplazar(posicion, clave(codigoGuitarra), guitarra);
+            indiceTexto.actualizar(clave(codigoGuitarra));
+            marcar(posicion, publicarCambio(TipoCambio.ACTUALIZADO, EntidadCambio.FUNDA, guitarra.getCodigo(), codigoFunda, guitarra.getVersion()));
+        } finally {
+            almacen.desbloquear();
+        }
+    }
+
+    /**
+     * Elimina una funda de una guitarra específica.
+     *
+     * @param codigoGuitarra código de la guitarra
+     * @param codigoFunda código de la funda a eliminar
+     * @param versionEsperada versión que debe tener la guitarra, o {@code null} para no comprobarla
+     * @throws NoSuchElementException si no existe guitarra o funda
+     * @throws IllegalArgumentException si el código no corresponde a una guitarra
+     * @throws ConflictoVersionException si la versión actual de la guitarra no es la esperada
+     */
+    @Override
+    public void eliminarFunda(String codigoGuitarra, String codigoFunda, Long versionEsperada) {
+        almacen.bloquear();
+        try {
+            int posicion = obtenerPosicionGuitarra(codigoGuitarra);
+            Guitarra guitarra = (Guitarra) almacen.instrumento(posicion);
+            validarFunda(guitarra, codigoFunda);
+            guitarra.setVersion(siguienteVersion(posicion, versionEsperada));
+            guitarra.eliminarFunda(codigoFunda);
+            almacen.reemplazar(posicion, clave(codigoGuitarra), guitarra);
+            indiceTexto.actualizar(clave(codigoGuitarra));
+            marcar(posicion, publicarCambio(TipoCambio.ELIMINADO, EntidadCambio.FUNDA, guitarra.getCodigo(), codigoFunda, guitarra.getVersion()));
+        } finally {
+            almacen.desbloquear();
+        }
+    }
+
+    /**
+     * Filtra los instrumentos según los criterios proporcionados en un DTO.
+     *
+     * Si el filtro pide orden y límite, se eligen los primeros con un montículo acotado.
+     *
+     * @param filtro objeto DTO con los filtros (nombre, marca, precio, stock, tipo, sensibilidad, etc.)
+     * @return lista de instrumentos que cumplen los criterios.
+     * @throws IllegalArgumentException si el orden o el límite son inválidos
+     */
+    @Override
+    public List<Instrumento> filtrarInstrumentos(FiltroInstrumentoDTO filtro) {
+        return Collections.unmodifiableList(evaluarFiltro(filtro, SeleccionInstrumentos.Orden.desde(filtro)));
+    }
+
+    /**
+     * Recorre de forma perezosa los instrumentos que cumplen un filtro, decodificando sólo
+     * los que superan los criterios de la cabecera.
+     *
+     * Con orden, con rango de fechas o con nombre o marca difusos, el flujo recorre la selección ya
+     * calculada por {@link #filtrarInstrumentos(FiltroInstrumentoDTO)}.
+     *
+     * @param filtro objeto DTO con los filtros
+     * @return flujo de los instrumentos que cumplen el filtro
+     * @throws IllegalArgumentException si el orden, el límite o el rango de fechas son inválidos
+     */
+    @Override
+    public Stream<Instrumento> filtrarEnFlujo(FiltroInstrumentoDTO filtro) {
+        SeleccionInstrumentos.Orden orden = SeleccionInstrumentos.Orden.desde(filtro);
+        if (orden.campo() != null || ServicioInstrumento.filtraPorFecha(filtro)
+                || !ServicioInstrumento.terminosDifusos(filtro).isEmpty()) {
+            return filtrarInstrumentos(filtro).stream();
+        }
+        AlmacenFueraDeHeap.Vista vista = almacen.vista(-1);
+        CriteriosCabecera criterios = new CriteriosCabecera(filtro);
+        Predicate<Instrumento> predicado = construirPredicado(filtro);
+        return IntStream.range(0, vista.size())
+                .filter(i -> criterios.aceptan(vista.segmento(i), vista.desplazamiento(i)))
+                .mapToObj(vista::get)
+                .filter(predicado)
+                .limit(orden.limite());
+    }
+
+    /**
+     * Filtra los instrumentos y calcula las facetas de los resultados.
+     *
+     * @param filtro objeto DTO con los filtros y, opcionalmente, los límites de precio de la faceta
+     * @return resultados del filtro junto con sus facetas
+     * @throws IllegalArgumentException si algún límite de precio, el orden o el límite son inválidos
+     */
+    @Override
+    public ResultadoFiltroDTO filtrarConFacetas(FiltroInstrumentoDTO filtro) {
+        double[] limites = AcumuladorFacetas.limites(filtro.getLimitesPrecio(), ServicioInstrumento.LIMITES_PRECIO_FACETAS);
+        SeleccionInstrumentos.Orden orden = SeleccionInstrumentos.Orden.desde(filtro);
+        List<Instrumento> coincidencias = evaluarFiltro(filtro, SeleccionInstrumentos.Orden.NINGUNO);
+        TareaFiltro.ResultadoParcial resultado = TareaFiltro.evaluar(coincidencias, 0, coincidencias.size(), i -> true, limites, orden);
+        return new ResultadoFiltroDTO(resultado.coincidencias(), resultado.facetas().aFacetas());
+    }
+
+    /**
+     * Busca instrumentos por texto con el índice invertido en el heap; sólo se decodifican del
+     * almacén los instrumentos que quedan entre los resultados.
+     *
+     * @param consulta texto a buscar
+     * @param limite cantidad máxima de resultados
+     * @param difuso indica si se toleran errores de escritura en la consulta
+     * @return instrumentos encontrados con su puntaje, del más relevante al menos relevante
+     * @throws IllegalArgumentException si la consulta está vacía o el límite está fuera de rango
+     */
+    @Override
+    public List<CoincidenciaBusquedaDTO> buscarTexto(String consulta, int limite, boolean difuso) {
+        List<CoincidenciaBusquedaDTO> resultado = new ArrayList<>();
+        for (IndiceTexto.Coincidencia coincidencia : indiceTexto.buscar(consulta, limite, difuso)) {
+            Instrumento instrumento = almacen.buscar(coincidencia.clave());
+            if (instrumento != null) {
+                resultado.add(new CoincidenciaBusquedaDTO(instrumento, coincidencia.puntaje()));
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Ajusta en un porcentaje el precio base de todos los instrumentos que cumplen un filtro.
+     * Los nuevos precios se validan en conjunto antes de escribirse en la cabecera de cada registro.
+     *
+     * @param filtro filtro que selecciona los instrumentos
+     * @param porcentaje porcentaje de variación del precio (positivo sube, negativo baja)
+     * @return cantidad de instrumentos ajustados
+     * @throws IllegalArgumentException si falta el filtro o el porcentaje, si el porcentaje no es finito, si el
+     *                                  filtro pide orden o límite, o si algún precio resultante es negativo o no
+     *                                  es finito
+     */
+    @Override
+    public int ajustarPrecios(FiltroInstrumentoDTO filtro, Double porcentaje) {
+        if (filtro == null || porcentaje == null) {
+            throw new IllegalArgumentException("El filtro y el porcentaje son requeridos");
+        }
+        if (!Double.isFinite(porcentaje)) {
+            throw new IllegalArgumentException("Porcentaje invalido");
+        }
+        ServicioInstrumento.validarFiltroMasivo(filtro);
+        almacen.bloquear();
+        try {
+            int[] seleccionados = seleccionar(filtro);
+            double factor = 1 + porcentaje / 100;
+            double[] precios = new double[seleccionados.length];
+            boolean validos = true;
+            for (int i = 0; i < seleccionados.length; i++) {
+                precios[i] = CodificadorBinario.precio(almacen.segmento(seleccionados[i]), almacen.desplazamiento(seleccionados[i])) * factor;
+                validos &= precios[i] >= 0 & Double.isFinite(precios[i]);
+            }
+            if (!validos) {
+                throw new IllegalArgumentException("Precio invalido");
+            }
+
+            for (int i = 0; i < seleccionados.length; i++) {
+                double precio = precios[i];
+                modificarEnLugar(seleccionados[i], (segmento, desplazamiento) ->
+                        CodificadorBinario.fijarPrecio(segmento, desplazamiento, precio));
+            }
+            return seleccionados.length;
+        } finally {
+            almacen.desbloquear();
+        }
+    }
+
+    /**
+     * Fija o desplaza el stock de todos los instrumentos que cumplen un filtro.
+     *
+     * @param filtro filtro que selecciona los instrumentos
+     * @param stock nuevo stock para todos los seleccionados, o {@code null} si se usa {@code delta}
+     * @param delta cantidad a sumar al stock de cada seleccionado, o {@code null} si se usa {@code stock}
+     * @return cantidad de instrumentos ajustados
+     * @throws IllegalArgumentException si falta el filtro, si el filtro pide orden o límite, si no se indica
+     *                                  exactamente uno de {@code stock} o {@code delta}, o si algún stock
+     *                                  resultante es inválido
+     */
+    @Override
+    public int ajustarStock(FiltroInstrumentoDTO filtro, Integer stock, Integer delta) {
+        if (filtro == null) {
+            throw new IllegalArgumentException("El filtro es requerido");
+        }
+        if ((stock == null) == (delta == null)) {
+            throw new IllegalArgumentException("Debe indicar el stock o el delta, pero no ambos");
+        }
+        ServicioInstrumento.validarFiltroMasivo(filtro);
+        almacen.bloquear();
+        try {
+            int[] seleccionados = seleccionar(filtro);
+            long[] existencias = new long[seleccionados.length];
+            boolean validos = true;
+            for (int i = 0; i < seleccionados.length; i++) {
+                long actual = CodificadorBinario.stock(almacen.segmento(seleccionados[i]), almacen.desplazamiento(seleccionados[i]));
+                existencias[i] = stock != null ? stock : actual + delta;
+                validos &= existencias[i] >= 0 & existencias[i] <= Integer.MAX_VALUE;
+            }
+            if (!validos) {
+                throw new IllegalArgumentException("Stock invalido");
+            }
+
+            for (int i = 0; i < seleccionados.length; i++) {
+                int existencia = (int) existencias[i];
+                modificarEnLugar(seleccionados[i], (segmento, desplazamiento) ->
+                        CodificadorBinario.fijarStock(segmento, desplazamiento, existencia));
+            }
+            return seleccionados.length;
+        } finally {
+            almacen.desbloquear();
+        }
+    }
+
+    /**
+     * Reserva unidades del stock de un instrumento.
+     *
+     * @param codigo código del instrumento
+     * @param cantidad unidades a reservar
+     * @return stock restante
+     * @throws NoSuchElementException si no existe instrumento con ese código
+     * @throws IllegalArgumentException si la cantidad no es positiva
+     * @throws IllegalStateException si no hay stock suficiente
+     */
+    @Override
+    public int reservarStock(String codigo, int cantidad) {
+        validarCantidad(cantidad);
+        return modificarStock(codigo, -cantidad);
+    }
+
+    /**
+     * Devuelve unidades al stock de un instrumento.
+     *
+     * @param codigo código del instrumento
+     * @param cantidad unidades a liberar
+     * @return stock disponible
+     * @throws NoSuchElementException si no existe instrumento con ese código
+     * @throws IllegalArgumentException si la cantidad no es positiva
+     */
+    @Override
+    public int liberarStock(String codigo, int cantidad) {
+        validarCantidad(cantidad);
+        return modificarStock(codigo, cantidad);
+    }
+
+    /**
+     * Suma o resta unidades al stock de un instrumento.
+     *
+     * @param codigo código del instrumento
+     * @param delta unidades a sumar (positivo) o restar (negativo)
+     * @return stock resultante
+     * @throws NoSuchElementException si no existe instrumento con ese código
+     * @throws IllegalStateException si el stock resultante sería negativo
+     */
+    @Override
+    public int ajustarStock(String codigo, int delta) {
+        return modificarStock(codigo, delta);
+    }
+
+    /**
+     * Devuelve la versión actual del catálogo, que coincide con la secuencia del último cambio.
+     *
+     * @return versión del catálogo
+     */
+    @Override
+    public long versionCatalogo() {
+        return versionCatalogo.get();
+    }
+
+    /**
+     * Registra una acción que se ejecuta cada vez que se publican eventos de cambio.
+     *
+     * @param aviso acción breve y no bloqueante
+     */
+    @Override
+    public void avisarCambios(Runnable aviso) {
+        avisosCambios.add(aviso);
+    }
+
+    /**
+     * Ejecuta las acciones registradas con {@link #avisarCambios(Runnable)}.
+     */
+    private void avisarCambios() {
+        for (Runnable aviso : avisosCambios) {
+            aviso.run();
+        }
+    }
+
+    /**
+     * Lee los eventos de cambio posteriores a una versión del catálogo, en orden.
+     *
+     * @param version última versión ya conocida por el cliente
+     * @param maximo cantidad máxima de eventos a devolver
+     * @return eventos posteriores a la versión, posiblemente vacía si no hay cambios nuevos
+     * @throws CambiosNoDisponiblesException si la versión es desconocida o sus cambios ya se descartaron
+     */
+    @Override
+    public List<EventoCambioDTO> cambiosDesde(long version, int maximo) {
+        if (version < 0 || version > versionCatalogo.get()) {
+            throw new CambiosNoDisponiblesException("La versión " + version + " del catálogo no es válida");
+        }
+        return bufferCambios.leerDesde(version, maximo);
+    }
+
+    /**
+     * Calcula los cambios del catálogo posteriores a una versión. A diferencia de {@link ServicioInstrumento},
+     * el registro compactado sólo conserva las eliminaciones: los instrumentos modificados se encuentran
+     * recorriendo la secuencia del último cambio en la cabecera de cada registro, así que el heap no guarda
+     * un evento por instrumento. Se descartan las eliminaciones que un cambio posterior dejó sin efecto,
+     * como un instrumento eliminado y creado de nuevo o una funda eliminada y agregada otra vez.
+     *
+     * @param version última versión del catálogo conocida por el cliente
+     * @return cambios desde la versión, o una respuesta de resincronización completa si ya no se conservan
+     */
+    @Override
+    public DeltaCatalogoDTO deltaDesde(long version) {
+        List<EventoCambioDTO> eliminaciones;
+        long actual;
+        RegistroCambios registro = registroCambios;
+        registro.bloquear();
+        try {
+            actual = versionCatalogo.get();
+            eliminaciones = version < 0 || version > actual ? null : registro.cambiosDesde(version);
+        } finally {
+            registro.desbloquear();
+        }
+        if (eliminaciones == null) {
+            return ServicioInstrumento.armarDelta(actual, null, this::buscarInstrumento);
+        }
+
+        List<EventoCambioDTO> cambios = new ArrayList<>();
+        Map<String, Long> ultimasSecuencias = new HashMap<>();
+        AlmacenFueraDeHeap.Vista vista = almacen.vista(-1);
+        for (int i = 0; i < vista.size(); i++) {
+            EventoCambioDTO cambio = vista.leer(i, (segmento, desplazamiento) -> {
+                long secuencia = CodificadorBinario.secuencia(segmento, desplazamiento);
+                return secuencia <= version ? null : new EventoCambioDTO(secuencia, TipoCambio.ACTUALIZADO,
+                        EntidadCambio.INSTRUMENTO, CodificadorBinario.codigo(segmento, desplazamiento), null,
+                        CodificadorBinario.version(segmento, desplazamiento));
+            });
+            if (cambio != null) {
+                ultimasSecuencias.put(clave(cambio.getCodigo()), cambio.getSecuencia());
+                cambios.add(cambio);
+            }
+        }
+        for (EventoCambioDTO eliminacion : eliminaciones) {
+            Long ultima = ultimasSecuencias.get(clave(eliminacion.getCodigo()));
+            boolean anulada = ultima != null && ultima > eliminacion.getSecuencia()
+                    && (eliminacion.getEntidad() == EntidadCambio.INSTRUMENTO
+                    || buscarInstrumento(eliminacion.getCodigo()).orElse(null) instanceof Guitarra guitarra
+                    && guitarra.buscarFunda(eliminacion.getCodigoFunda()).isPresent());
+            if (!anulada) {
+                cambios.add(eliminacion);
+            }
+        }
+        cambios.sort(Comparator.comparingLong(EventoCambioDTO::getSecuencia));
+        return ServicioInstrumento.armarDelta(actual, cambios, this::buscarInstrumento);
+    }
+
+    /**
+     * Devuelve una copia completa del catálogo con la versión desde la que se deben pedir los
+     * cambios siguientes. La versión se lee antes que la vista, para no perder ningún cambio.
+     *
+     * @return versión y vista de los instrumentos
+     */
+    @Override
+    public InstantaneaCatalogoDTO instantaneaCatalogo() {
+        long version = versionCatalogo.get();
+        return new InstantaneaCatalogoDTO(version, almacen.vista(-1));
+    }
+
+    /**
+     * Aplica en este nodo los cambios recibidos de otro nodo (replicación desde el líder),
+     * conservando la versión que tienen los instrumentos en el origen.
+     *
+     * @param cambios cambios a aplicar
+     */
+    @Override
+    public void aplicarReplica(DeltaCatalogoDTO cambios) {
+        almacen.bloquear();
+        try {
+            for (Instrumento instrumento : cambios.getModificados()) {
+                String clave = clave(instrumento.getCodigo());
+                int posicion = almacen.ubicar(clave);
+                if (posicion < 0) {
+                    posicion = almacen.agregar(clave, instrumento);
+                    indiceFechas.agregar(instrumento.getFechaIngreso(), clave, Boolean.TRUE);
+                    indiceTexto.actualizar(clave);
+                    marcar(posicion, publicarCambio(TipoCambio.CREADO, EntidadCambio.INSTRUMENTO, instrumento.getCodigo(), null, instrumento.getVersion()));
+                } else {
+                    LocalDate fechaAnterior = fecha(posicion);
+                    almacen.reemplazar(posicion, clave, instrumento);
+                    indiceFechas.mover(fechaAnterior, clave, Boolean.TRUE, instrumento.getFechaIngreso(), clave, Boolean.TRUE);
+                    indiceTexto.actualizar(clave);
+                    marcar(posicion, publicarCambio(TipoCambio.ACTUALIZADO, EntidadCambio.INSTRUMENTO, instrumento.getCodigo(), null, instrumento.getVersion()));
+                }
+            }
+            for (String codigo : cambios.getEliminados()) {
+                int posicion = almacen.ubicar(clave(codigo));
+                if (posicion >= 0) {
+                    String codigoActual = codigo(posicion);
+                    long version = CodificadorBinario.version(almacen.segmento(posicion), almacen.desplazamiento(posicion));
+                    indiceFechas.quitar(fecha(posicion), clave(codigoActual), Boolean.TRUE);
+                    almacen.eliminar(posicion);
+                    indiceTexto.actualizar(clave(codigoActual));
+                    publicarCambio(TipoCambio.ELIMINADO, EntidadCambio.INSTRUMENTO, codigoActual, null, version);
+                }
+            }
+            cambios.getFundasEliminadas().forEach((codigo, fundas) -> {
+                int posicion = almacen.ubicar(clave(codigo));
+                if (posicion >= 0 && almacen.instrumento(posicion) instanceof Guitarra guitarra) {
+                    List<String> quitadas = new ArrayList<>();
+                    for (String codigoFunda : fundas) {
+                        if (guitarra.buscarFunda(codigoFunda).isPresent()) {
+                            guitarra.eliminarFunda(codigoFunda);
+                            quitadas.add(codigoFunda);
+                        }
+                    }
+                    if (!quitadas.isEmpty()) {
+                        almacen.reemplazar(posicion, clave(codigo), guitarra);
+                        indiceTexto.actualizar(clave(codigo));
+                    }
+                    for (String codigoFunda : quitadas) {
+                        marcar(posicion, publicarCambio(TipoCambio.ELIMINADO, EntidadCambio.FUNDA, guitarra.getCodigo(), codigoFunda, guitarra.getVersion()));
+                    }
+                }
+            });
+        } finally {
+            almacen.desbloquear();
+        }
+    }
+
+    /**
+     * Reemplaza el catálogo de este nodo por una copia completa recibida de otro nodo:
+     * elimina los instrumentos que no están en la copia y aplica los demás como modificados.
+     *
+     * @param instrumentos instrumentos de la copia completa
+     */
+    @Override
+    public void reemplazarCatalogo(List<Instrumento> instrumentos) {
+        Set<String> presentes = new HashSet<>();
+        for (Instrumento instrumento : instrumentos) {
+            presentes.add(clave(instrumento.getCodigo()));
+        }
+        List<String> eliminados = new ArrayList<>();
+        AlmacenFueraDeHeap.Vista vista = almacen.vista(-1);
+        for (int i = 0; i < vista.size(); i++) {
+            String codigo = CodificadorBinario.codigo(vista.segmento(i), vista.desplazamiento(i));
+            if (!presentes.contains(clave(codigo))) {
+                eliminados.add(codigo);
+            }
+        }
+        aplicarReplica(new DeltaCatalogoDTO(versionCatalogo.get(), true, instrumentos, eliminados, Map.of()));
+    }
+
+    /**
+     * Asigna la siguiente versión del catálogo a una modificación y publica su evento.
+     *
+     * @param tipo tipo de modificación
+     * @param entidad tipo de elemento modificado
+     * @param codigo código del instrumento (o de la guitarra propietaria de la funda)
+     * @param codigoFunda código de la funda, o {@code null} si el cambio es de un instrumento
+     * @param version versión del instrumento después del cambio
+     * @return secuencia asignada al cambio
+     */
+    private long publicarCambio(TipoCambio tipo, EntidadCambio entidad, String codigo, String codigoFunda, long version) {
+        RegistroCambios registro = registroCambios;
+        long secuencia;
+        registro.bloquear();
+        try {
+            secuencia = versionCatalogo.incrementAndGet();
+            EventoCambioDTO evento = new EventoCambioDTO(secuencia, tipo, entidad, codigo, codigoFunda, version);
+            bufferCambios.publicar(evento);
+            if (tipo == TipoCambio.ELIMINADO) {
+                registro.registrar(evento);
+            }
+        } finally {
+            registro.desbloquear();
+        }
+        avisarCambios();
+        return secuencia;
+    }
+
+    /**
+     * Anota en la cabecera de un registro la secuencia de su último cambio, que usa
+     * {@link #deltaDesde(long)} para encontrar los instrumentos modificados.
+     *
+     * @param posicion posición del instrumento
+     * @param secuencia secuencia del cambio publicado
+     */
+    private void marcar(int posicion, long secuencia) {
+        CodificadorBinario.fijarSecuencia(almacen.segmento(posicion), almacen.desplazamiento(posicion), secuencia);
+    }
+
+    /**
+     * Modifica en el lugar la cabecera de un instrumento, avanza su versión y publica el cambio.
+     * Requiere el cerrojo de escritura. Los campos, la versión y la secuencia cambian dentro de una
+     * misma modificación del almacenamiento, así que las vistas no los ven a medias.
+     *
+     * @param posicion posición del instrumento
+     * @param cambio escritura de los campos modificados sobre el segmento y el desplazamiento del registro
+     */
+    private void modificarEnLugar(int posicion, ObjIntConsumer<ByteBuffer> cambio) {
+        ByteBuffer segmento = almacen.segmento(posicion);
+        int desplazamiento = almacen.desplazamiento(posicion);
+        almacen.iniciarModificacion(posicion);
+        try {
+            cambio.accept(segmento, desplazamiento);
+            long version = CodificadorBinario.version(segmento, desplazamiento) + 1;
+            CodificadorBinario.fijarVersion(segmento, desplazamiento, version);
+            marcar(posicion, publicarCambio(TipoCambio.ACTUALIZADO, EntidadCambio.INSTRUMENTO, CodificadorBinario.codigo(segmento, desplazamiento), null, version));
+        } finally {
+            almacen.terminarModificacion(posicion);
+        }
+    }
+
+    /**
+     * Suma unidades al stock de un instrumento en la cabecera de su registro.
+     *
+     * @param codigo código del instrumento
+     * @param delta unidades a sumar (positivo) o restar (negativo)
+     * @return stock resultante
+     * @throws NoSuchElementException si no existe instrumento con ese código
+     * @throws IllegalStateException si el stock resultante sería negativo
+     * @throws IllegalArgumentException si el stock resultante supera el máximo
+     */
+    private int modificarStock(String codigo, int delta) {
+        almacen.bloquear();
+        try {
+            int posicion = obtenerPosicion(codigo);
+            ByteBuffer segmento = almacen.segmento(posicion);
+            int desplazamiento = almacen.desplazamiento(posicion);
+            long nuevo = (long) CodificadorBinario.stock(segmento, desplazamiento) + delta;
+            if (nuevo < 0) {
+                throw new IllegalStateException("Stock insuficiente para el instrumento " + codigo(posicion));
+            }
+            if (nuevo > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Stock invalido");
+            }
+            modificarEnLugar(posicion, (registro, inicio) -> CodificadorBinario.fijarStock(registro, inicio, (int) nuevo));
+            return (int) nuevo;
+        } finally {
+            almacen.desbloquear();
+        }
+    }
+
+    /**
+     * Evalúa un filtro sobre una vista del catálogo. Los criterios de la cabecera se comprueban
+     * sin decodificar; los registros que los cumplen se decodifican y se comprueban con el predicado completo.
+     *
+     * @param filtro criterios del filtro
+     * @param orden orden y límite de las coincidencias
+     * @return coincidencias seleccionadas, en orden de ingreso (o de fecha, con rango de fechas) si no se pidió otro
+     */
+    private List<Instrumento> evaluarFiltro(FiltroInstrumentoDTO filtro, SeleccionInstrumentos.Orden orden) {
+        Predicate<Instrumento> predicado = construirPredicado(filtro);
+        SeleccionInstrumentos seleccion = new SeleccionInstrumentos(orden);
+        List<String> terminos = ServicioInstrumento.terminosDifusos(filtro);
+        if (!terminos.isEmpty()) {
+            // Sólo se decodifican los registros que el índice de texto da como candidatos.
+            for (String clave : indiceTexto.candidatos(terminos)) {
+                Instrumento instrumento = almacen.buscar(clave);
+                if (instrumento != null && predicado.test(instrumento)) {
+                    seleccion.agregar(instrumento);
+                    if (seleccion.completa()) {
+                        break;
+                    }
+                }
+            }
+            return seleccion.resultado();
+        }
+        if (ServicioInstrumento.filtraPorFecha(filtro)) {
+            // Sólo se decodifican los registros del rango de fechas, obtenidos del índice.
+            for (Map.Entry<IndiceFechas.Entrada, Boolean> entrada
+                    : indiceFechas.rango(filtro.getFechaIngresoDesde(), filtro.getFechaIngresoHasta())) {
+                Instrumento instrumento = almacen.buscar(entrada.getKey().clave());
+                if (instrumento != null && IndiceFechas.corresponde(entrada.getKey(), instrumento.getFechaIngreso())
+                        && predicado.test(instrumento)) {
+                    seleccion.agregar(instrumento);
+                    if (seleccion.completa()) {
+                        break;
+                    }
+                }
+            }
+            return seleccion.resultado();
+        }
+        AlmacenFueraDeHeap.Vista vista = almacen.vista(-1);
+        CriteriosCabecera criterios = new CriteriosCabecera(filtro);
+        for (int i = 0; i < vista.size() && !seleccion.completa(); i++) {
+            if (criterios.aceptan(vista.segmento(i), vista.desplazamiento(i))) {
+                Instrumento instrumento = vista.get(i);
+                if (predicado.test(instrumento)) {
+                    seleccion.agregar(instrumento);
+                }
+            }
+        }
+        return seleccion.resultado();
+    }
+
+    /**
+     * Selecciona las posiciones de los instrumentos que cumplen un filtro. Requiere el cerrojo de
+     * escritura; sólo decodifica los registros si el filtro incluye el nombre.
+     *
+     * @param filtro criterios del filtro
+     * @return posiciones de los instrumentos seleccionados, en orden de ingreso
+     */
+    private int[] seleccionar(FiltroInstrumentoDTO filtro) {
+        CriteriosCabecera criterios = new CriteriosCabecera(filtro);
+        Predicate<Instrumento> predicado = construirPredicado(filtro);
+        IntStream.Builder seleccionados = IntStream.builder();
+        for (int posicion = 0; posicion < almacen.ocupadas(); posicion++) {
+            if (almacen.vivo(posicion)
+                    && criterios.aceptan(almacen.segmento(posicion), almacen.desplazamiento(posicion))
+                    && (filtro.getNombre() == null || predicado.test(almacen.instrumento(posicion)))) {
+                seleccionados.add(posicion);
+            }
+        }
+        return seleccionados.build().toArray();
+    }
+
+    /**
+     * Obtiene la posición de un instrumento o lanza excepción si no existe. Requiere el cerrojo de escritura.
+     *
+     * @param codigo código del instrumento
+     * @return posición del instrumento
+     * @throws NoSuchElementException si no existe instrumento con ese código
+     */
+    private int obtenerPosicion(String codigo) {
+        int posicion = almacen.ubicar(clave(codigo));
+        if (posicion < 0) {
+            throw new NoSuchElementException("No se encontró un instrumento con el código: " + codigo);
+        }
+        return posicion;
+    }
+
+    /**
+     * Obtiene la posición de una guitarra o lanza excepción si no existe o no es una guitarra.
+     *
+     * @param codigoGuitarra código de la guitarra
+     * @return posición de la guitarra
+     * @throws NoSuchElementException si no existe instrumento con ese código
+     * @throws IllegalArgumentException si el código no corresponde a una guitarra
+     */
+    private int obtenerPosicionGuitarra(String codigoGuitarra) {
+        int posicion = almacen.ubicar(clave(codigoGuitarra));
+        if (posicion < 0) {
+            throw new NoSuchElementException("No se encontró una guitarra con el código: " + codigoGuitarra);
+        }
+        if (CodificadorBinario.clase(almacen.segmento(posicion), almacen.desplazamiento(posicion)) != CodificadorBinario.GUITARRA) {
+            throw new IllegalArgumentException("El código debe ser de una guitarra");
+        }
+        return posicion;
+    }
+
+    /**
+     * Calcula la versión que tendrá un instrumento después de modificarlo.
+     *
+     * @param posicion posición del instrumento
+     * @param versionEsperada versión que debe tener el instrumento, o {@code null} para no comprobarla
+     * @return versión actual más uno
+     * @throws ConflictoVersionException si la versión actual no es la esperada
+     */
+    private long siguienteVersion(int posicion, Long versionEsperada) {
+        long actual = CodificadorBinario.version(almacen.segmento(posicion), almacen.desplazamiento(posicion));
+        if (versionEsperada != null && actual != versionEsperada) {
+            throw new ConflictoVersionException("El instrumento " + codigo(posicion)
+                    + " fue modificado: versión actual " + actual + ", esperada " + versionEsperada);
+        }
+        return actual + 1;
+    }
+
+    private String codigo(int posicion) {
+        return CodificadorBinario.codigo(almacen.segmento(posicion), almacen.desplazamiento(posicion));
+    }
+
+    private LocalDate fecha(int posicion) {
+        int dia = CodificadorBinario.dia(almacen.segmento(posicion), almacen.desplazamiento(posicion));
+        return dia == CodificadorBinario.SIN_FECHA ? null : LocalDate.ofEpochDay(dia);
+    }
+
+    private static void validarFunda(Guitarra guitarra, String codigoFunda) {
+        if (guitarra.buscarFunda(codigoFunda).isEmpty()) {
+            throw new NoSuchElementException("No se encontró una funda con el código: " + codigoFunda);
+        }
+    }
+
+    private static void validarCantidad(int cantidad) {
+        if (cantidad <= 0) {
+            throw new IllegalArgumentException("La cantidad debe ser positiva");
+        }
+    }
+
+    /**
+     * Criterios de un filtro que se comprueban sobre la cabecera del registro, sin decodificarlo:
+     * precio, stock, fecha de ingreso, tipo de guitarra, sensibilidad y marca. El nombre queda para el
+     * predicado completo.
+     */
+    private final class CriteriosCabecera
+    {
+        private final FiltroInstrumentoDTO filtro;
+
+        /**
+         * Rango de días de ingreso aceptados, ambos incluidos.
+         */
+        private final long diaDesde;
+        private final long diaHasta;
+
+        /**
+         * Criterio que debe cumplir la marca: igual a la del filtro sin distinguir mayúsculas o,
+         * si el filtro es difuso, parecida por términos; {@code null} si el filtro no restringe la marca.
+         */
+        private final Predicate<String> criterioMarca;
+
+        /**
+         * Marcas que cumplen {@link #criterioMarca}, por identificador del diccionario,
+         * o {@code null} si el filtro no restringe la marca.
+         */
+        private final boolean[] marcasAceptadas;
+
+        CriteriosCabecera(FiltroInstrumentoDTO filtro) {
+            this.filtro = filtro;
+            this.diaDesde = filtro.getFechaIngresoDesde() == null ? Long.MIN_VALUE : filtro.getFechaIngresoDesde().toEpochDay();
+            this.diaHasta = filtro.getFechaIngresoHasta() == null ? Long.MAX_VALUE : filtro.getFechaIngresoHasta().toEpochDay();
+            if (filtro.getMarca() == null) {
+                this.criterioMarca = null;
+            } else if (Boolean.TRUE.equals(filtro.getDifuso())) {
+                List<String> terminos = IndiceTexto.terminos(filtro.getMarca());
+                this.criterioMarca = marca -> DiccionarioTerminos.coincide(marca, terminos);
+            } else {
+                this.criterioMarca = filtro.getMarca()::equalsIgnoreCase;
+            }
+            this.marcasAceptadas = criterioMarca == null ? null : marcas.coincidencias(criterioMarca);
+        }
+
+        boolean aceptan(ByteBuffer segmento, int desplazamiento) {
+            double precio = CodificadorBinario.precio(segmento, desplazamiento);
+            int stock = CodificadorBinario.stock(segmento, desplazamiento);
+            if ((filtro.getPrecioMin() != null && precio < filtro.getPrecioMin())
+                    || (filtro.getPrecioMax() != null && precio > filtro.getPrecioMax())
+                    || (filtro.getStockMin() != null && stock < filtro.getStockMin())
+                    || (filtro.getStockMax() != null && stock > filtro.getStockMax())) {
+                return false;
+            }
+            if (ServicioInstrumento.filtraPorFecha(filtro)) {
+                int dia = CodificadorBinario.dia(segmento, desplazamiento);
+                if (dia == CodificadorBinario.SIN_FECHA || dia < diaDesde || dia > diaHasta) {
+                    return false;
+                }
+            }
+            byte clase = CodificadorBinario.clase(segmento, desplazamiento);
+            byte variante = CodificadorBinario.variante(segmento, desplazamiento);
+            if (filtro.getTipoGuitarra() != null
+                    && (clase != CodificadorBinario.GUITARRA || variante != filtro.getTipoGuitarra().ordinal())) {
+                return false;
+            }
+            if (filtro.getSensibilidad() != null
+                    && (clase != CodificadorBinario.TECLADO || variante != filtro.getSensibilidad().ordinal())) {
+                return false;
+            }
+            if (marcasAceptadas != null) {
+                int marca = CodificadorBinario.marca(segmento, desplazamiento);
+                return marca >= 0 && (marca < marcasAceptadas.length
+                        ? marcasAceptadas[marca]
+                        : criterioMarca.test(marcas.valor(marca)));
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.unibague.poctiendainstrumentos.service;
+
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+
+import java.io.Serial;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+/**
+ * Tarea fork/join que evalúa un filtro sobre un rango de la lista de instrumentos.
+ *
+ * <p>Reparte el rango en la cantidad de bloques indicada, dividiéndolo recursivamente,
+ * y evalúa cada bloque de forma secuencial. Los resultados parciales se combinan siempre
+ * en el orden izquierda-derecha, por lo que la lista final conserva el orden del catálogo.</p>
+ *
+ * <p>La cantidad de bloques la fija el servicio a partir del paralelismo máximo permitido
+ * por consulta, de modo que una sola consulta nunca ocupa más hilos que ese límite.</p>
+ *
+ * <p>Si el filtro pide orden o límite, cada bloque acumula sus coincidencias en una
+ * {@link SeleccionInstrumentos} acotada y sólo se combinan las seleccionadas.</p>
+ *
+ * <p>La tarea no se serializa nunca: sólo vive dentro del pool que la ejecuta, así que sus
+ * campos no serializables se marcan {@code transient}.</p>
+ *
+ * @author Jorge
+ */
+class TareaFiltro extends RecursiveTask<TareaFiltro.ResultadoParcial>
+{
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Instrumentos sobre los que se evalúa el filtro (acceso aleatorio).
+     */
+    private final transient List<Instrumento> instrumentos;
+
+    /**
+     * Posición inicial del rango (incluida).
+     */
+    private final int desde;
+
+    /**
+     * Posición final del rango (excluida).
+     */
+    private final int hasta;
+
+    /**
+     * Cantidad de bloques en que se reparte el rango.
+     */
+    private final int bloques;
+
+    /**
+     * Predicado del filtro.
+     */
+    private final transient Predicate<Instrumento> predicado;
+
+    /**
+     * Límites de la faceta de precios, o {@code null} si no se calculan facetas.
+     */
+    private final double[] limitesFacetas;
+
+    /**
+     * Orden y límite de las coincidencias.
+     */
+    private final transient SeleccionInstrumentos.Orden orden;
+
+    /**
+     * Crea una tarea sobre el rango indicado.
+     *
+     * @param instrumentos lista de instrumentos con acceso aleatorio
+     * @param desde posición inicial (incluida)
+     * @param hasta posición final (excluida)
+     * @param bloques cantidad de bloques en que se reparte el rango
+     * @param predicado predicado del filtro
+     * @param limitesFacetas límites de la faceta de precios, o {@code null} para no calcular facetas
+     * @param orden orden y límite de las coincidencias
+     */
+    TareaFiltro(List<Instrumento> instrumentos, int desde, int hasta, int bloques,
+                Predicate<Instrumento> predicado, double[] limitesFacetas, SeleccionInstrumentos.Orden orden) {
+        this.instrumentos = instrumentos;
+        this.desde = desde;
+        this.hasta = hasta;
+        this.bloques = bloques;
+        this.predicado = predicado;
+        this.limitesFacetas = limitesFacetas;
+        this.orden = orden;
+    }
+
+    /**
+     * Evalúa el rango, dividiéndolo mientras corresponda a más de un bloque.
+     *
+     * @return coincidencias del rango en orden, con sus facetas si se pidieron
+     */
+    @Override
+    protected ResultadoParcial compute() {
+        if (bloques <= 1) {
+            return evaluar(instrumentos, desde, hasta, predicado, limitesFacetas, orden);
+        }
+        int bloquesIzquierda = bloques / 2;
+        int medio = desde + (int) ((long) (hasta - desde) * bloquesIzquierda / bloques);
+        TareaFiltro izquierda = new TareaFiltro(instrumentos, desde, medio, bloquesIzquierda, predicado, limitesFacetas, orden);
+        TareaFiltro derecha = new TareaFiltro(instrumentos, medio, hasta, bloques - bloquesIzquierda, predicado, limitesFacetas, orden);
+        izquierda.fork();
+        ResultadoParcial resultadoDerecha = derecha.compute();
+        return izquierda.join().combinar(resultadoDerecha);
+    }
+
+    /**
+     * Evalúa secuencialmente un rango de instrumentos. Si no se calculan facetas y la selección
+     * ya no admite más coincidencias, el recorrido termina antes.
+     *
+     * @param instrumentos lista de instrumentos
+     * @param desde posición inicial (incluida)
+     * @param hasta posición final (excluida)
+     * @param predicado predicado del filtro
+     * @param limitesFacetas límites de la faceta de precios, o {@code null} para no calcular facetas
+     * @param orden orden y límite de las coincidencias
+     * @return coincidencias seleccionadas del rango, con las facetas de todas las coincidencias si se pidieron
+     */
+    static ResultadoParcial evaluar(List<Instrumento> instrumentos, int desde, int hasta,
+                                    Predicate<Instrumento> predicado, double[] limitesFacetas,
+                                    SeleccionInstrumentos.Orden orden) {
+        AcumuladorFacetas facetas = limitesFacetas != null ? new AcumuladorFacetas(limitesFacetas) : null;
+        SeleccionInstrumentos seleccion = new SeleccionInstrumentos(orden);
+        for (int i = desde; i < hasta; i++) {
+            Instrumento instrumento = instrumentos.get(i);
+            if (predicado.test(instrumento)) {
+                seleccion.agregar(instrumento);
+                if (facetas != null) {
+                    facetas.contar(instrumento);
+                } else if (seleccion.completa()) {
+                    break;
+                }
+            }
+        }
+        return new ResultadoParcial(seleccion, facetas);
+    }
+
+    /**
+     * Coincidencias de un rango y, opcionalmente, sus facetas.
+     *
+     * @param seleccion coincidencias seleccionadas según el orden y el límite del filtro
+     * @param facetas conteos por faceta sobre todas las coincidencias, o {@code null} si no se calculan
+     */
+    record ResultadoParcial(SeleccionInstrumentos seleccion, AcumuladorFacetas facetas)
+    {
+        /**
+         * Devuelve las coincidencias seleccionadas, en el orden del catálogo o en el pedido.
+         *
+         * @return lista modificable con las coincidencias
+         */
+        List<Instrumento> coincidencias() {
+            return seleccion.resultado();
+        }
+
+        /**
+         * Agrega al final las coincidencias de un rango posterior y suma sus facetas.
+         *
+         * @param siguiente resultado del rango inmediatamente posterior
+         * @return este resultado combinado
+         */
+        ResultadoParcial combinar(ResultadoParcial siguiente) {
+            seleccion.combinar(siguiente.seleccion);
+            if (facetas != null) {
+                facetas.combinar(siguiente.facetas);
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.unibague.poctiendainstrumentos.service;
+
+import java.io.Serial;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntFunction;
+
+/**
+ * Tarea fork/join que evalúa una consulta sobre un rango de particiones del catálogo
+ * (dispersión) y combina sus resultados en el orden de las particiones (recolección).
+ *
+ * <p>Igual que {@link TareaFiltro}, reparte el rango en a lo sumo la cantidad de bloques indicada,
+ * de modo que una consulta no ocupa más hilos que el paralelismo máximo por consulta.</p>
+ *
+ * @author Jorge
+ */
+class TareaParticiones extends RecursiveTask<TareaFiltro.ResultadoParcial>
+{
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Evaluación de la consulta sobre una partición, por número de partición.
+     */
+    private final transient IntFunction<TareaFiltro.ResultadoParcial> evaluarParticion;
+
+    /**
+     * Primera partición del rango (incluida).
+     */
+    private final int desde;
+
+    /**
+     * Última partición del rango (excluida).
+     */
+    private final int hasta;
+
+    /**
+     * Cantidad de bloques en que se reparte el rango.
+     */
+    private final int bloques;
+
+    /**
+     * Crea una tarea sobre el rango de particiones indicado.
+     *
+     * @param evaluarParticion evaluación de la consulta sobre una partición
+     * @param desde primera partición (incluida)
+     * @param hasta última partición (excluida)
+     * @param bloques cantidad de bloques en que se reparte el rango
+     */
+    TareaParticiones(IntFunction<TareaFiltro.ResultadoParcial> evaluarParticion, int desde, int hasta, int bloques) {
+        this.evaluarParticion = evaluarParticion;
+        this.desde = desde;
+        this.hasta = hasta;
+        this.bloques = bloques;
+    }
+
+    /**
+     * Evalúa el rango, dividiéndolo mientras corresponda a más de un bloque y a más de una partición.
+     *
+     * @return resultados combinados de las particiones del rango, en orden
+     */
+    @Override
+    protected TareaFiltro.ResultadoParcial compute() {
+        if (bloques <= 1 || hasta - desde <= 1) {
+            return evaluar(evaluarParticion, desde, hasta);
+        }
+        int bloquesIzquierda = bloques / 2;
+        int medio = desde + Math.max(1, (hasta - desde) * bloquesIzquierda / bloques);
+        TareaParticiones izquierda = new TareaParticiones(evaluarParticion, desde, medio, bloquesIzquierda);
+        TareaParticiones derecha = new TareaParticiones(evaluarParticion, medio, hasta, bloques - bloquesIzquierda);
+        izquierda.fork();
+        TareaFiltro.ResultadoParcial resultadoDerecha = derecha.compute();
+        return izquierda.join().combinar(resultadoDerecha);
+    }
+
+    /**
+     * Evalúa secuencialmente un rango de particiones.
+     *
+     * @param evaluarParticion evaluación de la consulta sobre una partición
+     * @param desde primera partición (incluida)
+     * @param hasta última partición (excluida)
+     * @return resultados combinados en orden
+     */
+    static TareaFiltro.ResultadoParcial evaluar(IntFunction<TareaFiltro.ResultadoParcial> evaluarParticion,
+                                                int desde, int hasta) {
+        TareaFiltro.ResultadoParcial resultado = evaluarParticion.apply(desde);
+        for (int i = desde + 1; i < hasta; i++) {
+            resultado = resultado.combinar(evaluarParticion.apply(i));
+        }
+        return resultado;
+    }
+}
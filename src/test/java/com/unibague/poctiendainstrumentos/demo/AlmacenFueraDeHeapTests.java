@@ -0,0 +1,163 @@
+package com.unibague.poctiendainstrumentos.demo;
+
+import com.unibague.poctiendainstrumentos.dto.DeltaCatalogoDTO;
+import com.unibague.poctiendainstrumentos.dto.FiltroInstrumentoDTO;
+import com.unibague.poctiendainstrumentos.exception.ConflictoVersionException;
+import com.unibague.poctiendainstrumentos.model.Funda;
+import com.unibague.poctiendainstrumentos.model.Guitarra;
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+import com.unibague.poctiendainstrumentos.model.Teclado;
+import com.unibague.poctiendainstrumentos.model.enums.SensibilidadTeclado;
+import com.unibague.poctiendainstrumentos.model.enums.TipoGuitarra;
+import com.unibague.poctiendainstrumentos.service.IServicioInstrumento;
+import com.unibague.poctiendainstrumentos.service.ServicioInstrumentoFueraDeHeap;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Segmentos de 4 KB para que las pruebas abran varios y compacten.
+@SpringBootTest(properties = {
+		"tienda.catalogo.almacenamiento=fuera-de-heap",
+		"tienda.catalogo.fuera-de-heap.tamano-segmento=4096"})
+class AlmacenFueraDeHeapTests {
+
+	@Autowired
+	private IServicioInstrumento servicioInstrumento;
+
+	@Test
+	void guardaYDecodificaGuitarrasConFundasYTeclados() {
+		assertInstanceOf(ServicioInstrumentoFueraDeHeap.class, servicioInstrumento);
+		LocalDate fecha = LocalDate.of(2024, 5, 1);
+		Guitarra guitarra = new Guitarra("OFF-G1", "Telecaster", "Fender", 2_500_000, 3, fecha, TipoGuitarra.ELECTRICA, "Fresno");
+		guitarra.setFundas(List.of(new Funda("F1", "Rígida", 300_000, null)));
+		servicioInstrumento.agregarInstrumento(guitarra);
+		servicioInstrumento.agregarInstrumento(new Teclado("OFF-T1", "Nord Stage", "Nord", 9_000_000, 1, null, 88, true, SensibilidadTeclado.PROFESIONAL));
+
+		Guitarra leida = (Guitarra) servicioInstrumento.buscarInstrumento("off-g1").orElseThrow();
+		assertEquals("Telecaster", leida.getNombre());
+		assertEquals("Fender", leida.getMarca());
+		assertEquals(fecha, leida.getFechaIngreso());
+		assertEquals(TipoGuitarra.ELECTRICA, leida.getTipo());
+		assertEquals("Fresno", leida.getMaterialCuerpo());
+		assertEquals(1, leida.getVersion());
+		assertEquals("Rígida", leida.getFundas().getFirst().getNombre());
+		assertSame(leida, leida.getFundas().getFirst().getGuitarra());
+
+		Teclado teclado = (Teclado) servicioInstrumento.buscarInstrumento("OFF-T1").orElseThrow();
+		assertEquals(88, teclado.getNumeroTeclas());
+		assertTrue(teclado.isDigital());
+		assertEquals(SensibilidadTeclado.PROFESIONAL, teclado.getSensibilidad());
+
+		servicioInstrumento.agregarFundas("OFF-G1", List.of(new Funda("F2", "Blanda", 80_000, null)));
+		servicioInstrumento.editarFunda("OFF-G1", "F1", new Funda("F1", "Rígida TSA", 350_000, null), 2L);
+		assertThrows(ConflictoVersionException.class, () -> servicioInstrumento.eliminarFunda("OFF-G1", "F2", 2L));
+		servicioInstrumento.eliminarFunda("OFF-G1", "F2", 3L);
+		leida = (Guitarra) servicioInstrumento.buscarInstrumento("OFF-G1").orElseThrow();
+		assertEquals(4, leida.getVersion());
+		assertEquals(List.of("Rígida TSA"), leida.getFundas().stream().map(Funda::getNombre).toList());
+
+		assertEquals(2, servicioInstrumento.reservarStock("OFF-G1", 1));
+		assertThrows(IllegalStateException.class, () -> servicioInstrumento.reservarStock("OFF-G1", 3));
+		assertThrows(IllegalStateException.class, () -> servicioInstrumento.agregarInstrumento(guitarra));
+
+		FiltroInstrumentoDTO filtro = FiltroInstrumentoDTO.builder().marca("FENDER").tipoGuitarra(TipoGuitarra.ELECTRICA).build();
+		assertEquals(List.of("OFF-G1"), servicioInstrumento.filtrarInstrumentos(filtro).stream().map(Instrumento::getCodigo).toList());
+	}
+
+	@Test
+	void conservaElOrdenYLosDatosAlCompactar() {
+		for (int i = 0; i < 200; i++) {
+			servicioInstrumento.agregarInstrumento(new Guitarra("CMP-" + i, "Modelo " + i, "Ibanez", 1_000 * i, i,
+					LocalDate.of(2024, 1, 1), TipoGuitarra.ACUSTICA, "Cedro"));
+		}
+		// Cada edición deja el registro anterior como espacio muerto; las eliminaciones dejan huecos.
+		for (int ronda = 0; ronda < 5; ronda++) {
+			for (int i = 0; i < 200; i++) {
+				Guitarra editada = new Guitarra("CMP-" + i, "Modelo " + i + " v" + ronda, "Ibanez", 1_000 * i, i,
+						LocalDate.of(2024, 1, 1), TipoGuitarra.ACUSTICA, "Cedro");
+				servicioInstrumento.editarInstrumento("CMP-" + i, editada);
+			}
+		}
+		for (int i = 0; i < 200; i += 2) {
+			servicioInstrumento.eliminarInstrumento("CMP-" + i);
+		}
+
+		List<Instrumento> restantes = servicioInstrumento.listarInstrumentos().stream()
+				.filter(instrumento -> instrumento.getCodigo().startsWith("CMP-")).toList();
+		assertEquals(100, restantes.size());
+		for (int j = 0; j < restantes.size(); j++) {
+			int i = 2 * j + 1;
+			Instrumento instrumento = restantes.get(j);
+			assertEquals("CMP-" + i, instrumento.getCodigo());
+			assertEquals("Modelo " + i + " v4", instrumento.getNombre());
+			assertEquals(i, instrumento.getStock());
+			assertEquals(6, instrumento.getVersion());
+		}
+		assertTrue(servicioInstrumento.buscarInstrumento("CMP-10").isEmpty());
+		assertEquals("Modelo 11 v4", servicioInstrumento.buscarInstrumento("cmp-11").orElseThrow().getNombre());
+	}
+
+	@Test
+	void lasVistasNoMezclanStockYVersionDeCambiosDistintos() throws Exception {
+		servicioInstrumento.agregarInstrumento(new Teclado("SEQ-1", "PSR", "Yamaha", 1_500_000, 0, null, 61, true, SensibilidadTeclado.MEDIA));
+		// Cada cambio suma una unidad y una versión: un registro leído completo siempre tiene stock = versión - 1.
+		Thread escritor = new Thread(() -> {
+			for (int i = 0; i < 5_000; i++) {
+				servicioInstrumento.ajustarStock("SEQ-1", 1);
+			}
+		});
+		escritor.start();
+		while (escritor.isAlive()) {
+			for (Teclado teclado : servicioInstrumento.listarTeclados()) {
+				if (teclado.getCodigo().equals("SEQ-1")) {
+					assertEquals(teclado.getVersion() - 1, teclado.getStock());
+				}
+			}
+		}
+		escritor.join();
+		assertEquals(5_000, servicioInstrumento.buscarInstrumento("SEQ-1").orElseThrow().getStock());
+	}
+
+	@Test
+	void deltaIncluyeModificadosYEliminacionesVigentes() {
+		for (String codigo : List.of("DLT-1", "DLT-2", "DLT-3")) {
+			servicioInstrumento.agregarInstrumento(new Teclado(codigo, "PSR", "Yamaha", 1_500_000, 4, null, 61, true, SensibilidadTeclado.MEDIA));
+		}
+		long version = servicioInstrumento.versionCatalogo();
+
+		servicioInstrumento.ajustarStock("DLT-1", 2);
+		servicioInstrumento.eliminarInstrumento("DLT-2");
+		servicioInstrumento.eliminarInstrumento("DLT-3");
+		servicioInstrumento.agregarInstrumento(new Teclado("DLT-3", "PSR", "Yamaha", 1_500_000, 4, null, 61, true, SensibilidadTeclado.MEDIA));
+
+		DeltaCatalogoDTO delta = servicioInstrumento.deltaDesde(version);
+		assertEquals(List.of("DLT-1", "DLT-3"), delta.getModificados().stream().map(Instrumento::getCodigo).toList());
+		assertEquals(6, delta.getModificados().getFirst().getStock());
+		assertEquals(List.of("DLT-2"), delta.getEliminados());
+		assertEquals(servicioInstrumento.versionCatalogo(), delta.getVersion());
+	}
+
+	@Test
+	void filtroPorFechaDeIngresoUsaElRegistroVigente() {
+		LocalDate base = LocalDate.of(1991, 1, 1);
+		for (int i = 0; i < 5; i++) {
+			servicioInstrumento.agregarInstrumento(new Teclado("OFF-F" + i, "PSR", "Yamaha", 1_500_000, i, base.plusDays(i), 61, true, SensibilidadTeclado.MEDIA));
+		}
+		servicioInstrumento.editarInstrumento("OFF-F0", new Teclado("OFF-F0", "PSR", "Yamaha", 1_500_000, 0, base.plusDays(10), 61, true, SensibilidadTeclado.MEDIA), null);
+		servicioInstrumento.eliminarInstrumento("OFF-F3");
+
+		FiltroInstrumentoDTO filtro = FiltroInstrumentoDTO.builder().fechaIngresoDesde(base).fechaIngresoHasta(base.plusDays(10)).stockMin(1).build();
+		assertEquals(List.of("OFF-F1", "OFF-F2", "OFF-F4"),
+				servicioInstrumento.filtrarInstrumentos(filtro).stream().map(Instrumento::getCodigo).toList());
+		assertEquals(3, servicioInstrumento.ajustarPrecios(filtro, 10.0));
+	}
+}
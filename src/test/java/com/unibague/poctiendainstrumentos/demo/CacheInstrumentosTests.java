@@ -0,0 +1,84 @@
+package com.unibague.poctiendainstrumentos.demo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.unibague.poctiendainstrumentos.controller.CacheInstrumentos;
+import com.unibague.poctiendainstrumentos.dto.EstadisticasCacheDTO;
+import com.unibague.poctiendainstrumentos.model.Teclado;
+import com.unibague.poctiendainstrumentos.model.enums.SensibilidadTeclado;
+import com.unibague.poctiendainstrumentos.service.IServicioInstrumento;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class CacheInstrumentosTests {
+
+	@Autowired
+	private IServicioInstrumento servicioInstrumento;
+
+	@Autowired
+	private ObjectMapper mapeador;
+
+	private Teclado teclado(String codigo, int stock) {
+		return new Teclado(codigo, "PSR", "Yamaha", 1_500_000, stock, null, 61, true, SensibilidadTeclado.MEDIA);
+	}
+
+	@Test
+	void sirveElJsonSerializadoEInvalidaAlCambiar() throws Exception {
+		CacheInstrumentos cache = new CacheInstrumentos(servicioInstrumento, mapeador, 4);
+		servicioInstrumento.agregarInstrumento(teclado("CCH-1", 5));
+
+		CacheInstrumentos.Entrada primera = cache.obtener("CCH-1").orElseThrow();
+		assertArrayEquals(mapeador.writeValueAsBytes(servicioInstrumento.buscarInstrumento("CCH-1").orElseThrow()), primera.json());
+		assertSame(primera, cache.obtener("cch-1").orElseThrow());
+
+		servicioInstrumento.ajustarStock("CCH-1", -2);
+		CacheInstrumentos.Entrada segunda = cache.obtener("CCH-1").orElseThrow();
+		assertNotSame(primera, segunda);
+		assertEquals(3, segunda.instrumento().getStock());
+		assertEquals(2, segunda.version());
+
+		servicioInstrumento.eliminarInstrumento("CCH-1");
+		assertTrue(cache.obtener("CCH-1").isEmpty());
+
+		EstadisticasCacheDTO estadisticas = cache.estadisticas();
+		assertEquals(1, estadisticas.getAciertos());
+		assertEquals(3, estadisticas.getFallos());
+		assertEquals(2, estadisticas.getPromociones());
+		assertEquals(2, estadisticas.getInvalidaciones());
+		assertEquals(0, estadisticas.getTamano());
+	}
+
+	@Test
+	void soloAdmiteInstrumentosMasFrecuentesQueElExpulsado() {
+		CacheInstrumentos cache = new CacheInstrumentos(servicioInstrumento, mapeador, 2);
+		for (String codigo : new String[]{"ADM-1", "ADM-2", "ADM-3"}) {
+			servicioInstrumento.agregarInstrumento(teclado(codigo, 1));
+		}
+		for (int i = 0; i < 5; i++) {
+			cache.obtener("ADM-1");
+			cache.obtener("ADM-2");
+		}
+
+		// Una consulta aislada no desplaza a los instrumentos populares.
+		cache.obtener("ADM-3");
+		EstadisticasCacheDTO estadisticas = cache.estadisticas();
+		assertEquals(1, estadisticas.getRechazos());
+		assertEquals(0, estadisticas.getExpulsiones());
+
+		// Cuando se vuelve más frecuente que uno de ellos, lo reemplaza.
+		for (int i = 0; i < 10; i++) {
+			cache.obtener("ADM-3");
+		}
+		estadisticas = cache.estadisticas();
+		assertEquals(1, estadisticas.getExpulsiones());
+		assertEquals(3, estadisticas.getPromociones());
+		assertEquals(2, estadisticas.getTamano());
+	}
+}
@@ -0,0 +1,116 @@
+package com.unibague.poctiendainstrumentos.demo;
+
+import com.unibague.poctiendainstrumentos.dto.DeltaCatalogoDTO;
+import com.unibague.poctiendainstrumentos.exception.CambiosNoDisponiblesException;
+import com.unibague.poctiendainstrumentos.handler.GlobalExceptionHandler;
+import com.unibague.poctiendainstrumentos.model.Guitarra;
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+import com.unibague.poctiendainstrumentos.model.enums.TipoGuitarra;
+import com.unibague.poctiendainstrumentos.service.IServicioInstrumento;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {"tienda.cambios.eliminados-retenidos=8", "tienda.catalogo.particiones=4"})
+class CambiosCatalogoTests {
+
+	@Autowired
+	private IServicioInstrumento servicioInstrumento;
+
+	@Test
+	void elDeltaConservaLaEliminacionComoMarca() {
+		long version = servicioInstrumento.versionCatalogo();
+		servicioInstrumento.agregarInstrumento(guitarra("MRC-1"));
+		servicioInstrumento.agregarInstrumento(guitarra("MRC-2"));
+		servicioInstrumento.reservarStock("MRC-2", 1);
+		servicioInstrumento.eliminarInstrumento("MRC-1", null);
+
+		DeltaCatalogoDTO delta = servicioInstrumento.deltaDesde(version);
+		assertFalse(delta.isResincronizacionCompleta());
+		assertEquals(servicioInstrumento.versionCatalogo(), delta.getVersion());
+		assertEquals(List.of("MRC-1"), delta.getEliminados());
+		assertEquals(List.of("MRC-2"), delta.getModificados().stream().map(Instrumento::getCodigo).toList());
+		assertEquals(1, delta.getModificados().getFirst().getStock());
+	}
+
+	@Test
+	void compactarMasAllaDelHorizontePideResincronizar() {
+		long version = servicioInstrumento.versionCatalogo();
+		for (int i = 0; i < 40; i++) {
+			servicioInstrumento.agregarInstrumento(guitarra("HRZ-" + i));
+			servicioInstrumento.eliminarInstrumento("HRZ-" + i, null);
+		}
+		assertTrue(servicioInstrumento.deltaDesde(version).isResincronizacionCompleta());
+		assertTrue(servicioInstrumento.deltaDesde(-1).isResincronizacionCompleta());
+
+		long actual = servicioInstrumento.versionCatalogo();
+		DeltaCatalogoDTO vacio = servicioInstrumento.deltaDesde(actual);
+		assertFalse(vacio.isResincronizacionCompleta());
+		assertTrue(vacio.getModificados().isEmpty() && vacio.getEliminados().isEmpty());
+	}
+
+	@Test
+	void unaVersionDesconocidaRespondeGone() {
+		long futura = servicioInstrumento.versionCatalogo() + 1;
+		CambiosNoDisponiblesException e = assertThrows(CambiosNoDisponiblesException.class,
+				() -> servicioInstrumento.cambiosDesde(futura, 10));
+		assertEquals(410, new GlobalExceptionHandler().handleGone(e).getStatusCode().value());
+	}
+
+	@Test
+	void losDeltasConsultadosDuranteEscriturasNoPierdenCambios() throws Exception {
+		int hilos = 8;
+		int porHilo = 300;
+		long version = servicioInstrumento.versionCatalogo();
+		CountDownLatch inicio = new CountDownLatch(1);
+		ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+		for (int h = 0; h < hilos; h++) {
+			int hilo = h;
+			ejecutor.submit(() -> {
+				inicio.await();
+				for (int i = 0; i < porHilo; i++) {
+					servicioInstrumento.agregarInstrumento(guitarra("CUT-" + hilo + "-" + i));
+				}
+				return null;
+			});
+		}
+		inicio.countDown();
+		ejecutor.shutdown();
+
+		// Un cliente que sincroniza mientras se escribe: cada delta avanza su versión y nunca debe saltarse un alta.
+		Set<String> vistos = new HashSet<>();
+		boolean terminado;
+		do {
+			terminado = ejecutor.awaitTermination(1, TimeUnit.MILLISECONDS);
+			DeltaCatalogoDTO delta = servicioInstrumento.deltaDesde(version);
+			assertFalse(delta.isResincronizacionCompleta());
+			delta.getModificados().forEach(i -> vistos.add(i.getCodigo()));
+			version = delta.getVersion();
+		} while (!terminado);
+
+		for (int h = 0; h < hilos; h++) {
+			for (int i = 0; i < porHilo; i++) {
+				assertTrue(vistos.contains("CUT-" + h + "-" + i), "Falta CUT-" + h + "-" + i);
+			}
+		}
+	}
+
+	private static Guitarra guitarra(String codigo) {
+		return new Guitarra(codigo, "Modelo", "Cambios", 1_000_000, 2, LocalDate.of(2024, 7, 1),
+				TipoGuitarra.ELECTRICA, "Aliso");
+	}
+}
@@ -0,0 +1,930 @@
+package com.unibague.poctiendainstrumentos.demo;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.unibague.poctiendainstrumentos.POCTiendaInstrumentos;
+import com.unibague.poctiendainstrumentos.config.ProyeccionConfig;
+import com.unibague.poctiendainstrumentos.controller.CacheInstrumentos;
+import com.unibague.poctiendainstrumentos.dto.EstadisticasCacheDTO;
+import com.unibague.poctiendainstrumentos.dto.FiltroInstrumentoDTO;
+import com.unibague.poctiendainstrumentos.model.Funda;
+import com.unibague.poctiendainstrumentos.model.Guitarra;
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+import com.unibague.poctiendainstrumentos.model.Teclado;
+import com.unibague.poctiendainstrumentos.model.enums.CampoOrden;
+import com.unibague.poctiendainstrumentos.model.enums.SensibilidadTeclado;
+import com.unibague.poctiendainstrumentos.model.enums.TipoGuitarra;
+import com.unibague.poctiendainstrumentos.service.IServicioInstrumento;
+import com.unibague.poctiendainstrumentos.service.ServicioInstrumento;
+import com.unibague.poctiendainstrumentos.service.ServicioInstrumentoFueraDeHeap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de carga sobre la aplicación ejecutada en otro proceso.
+ * Son lentas y abren miles de conexiones, así que sólo se ejecutan con {@code -Dtienda.carga=true};
+ * la cantidad de conexiones se ajusta con {@code -Dtienda.carga.conexiones} (10.000 por defecto) y la de
+ * instrumentos de las comparaciones de almacenamientos y de caché con {@code -Dtienda.carga.instrumentos} (1.000.000 por defecto).
+ */
+@EnabledIfSystemProperty(named = "tienda.carga", matches = "true")
+class CargaTests {
+
+	private static final String AUTORIZACION = "Basic "
+			+ Base64.getEncoder().encodeToString("admin:admin".getBytes(StandardCharsets.UTF_8));
+
+	private static final int CONEXIONES = Integer.getInteger("tienda.carga.conexiones", 10_000);
+
+	private static final String[] MARCAS = {"Fender", "Gibson", "Ibanez", "Yamaha", "PRS", "Taylor", "Martin", "Epiphone"};
+
+	@Test
+	void comparaHilosDePlataformaConHilosVirtuales() throws Exception {
+		for (boolean virtuales : new boolean[]{false, true}) {
+			File registro = new File("target/carga-" + (virtuales ? "virtuales" : "plataforma") + ".log");
+			try (Servidor servidor = new Servidor(registro, "--spring.threads.virtual.enabled=" + virtuales)) {
+				assertEquals(201, enviar(HttpClient.newHttpClient(), "POST", servidor.base + "/instrumentos", guitarra("CARGA-1")).statusCode());
+
+				medir(servidor.base + "/instrumentos/CARGA-1", CONEXIONES);
+				imprimir(virtuales ? "Hilos virtuales" : "Hilos de plataforma", CONEXIONES,
+						medir(servidor.base + "/instrumentos/CARGA-1", CONEXIONES));
+			}
+			// Con -Djdk.tracePinnedThreads la JVM anota cada hilo virtual que bloquea a su portador dentro de un monitor.
+			assertFalse(Files.readString(registro.toPath()).contains("<== monitors"), "Hay hilos virtuales fijados: ver " + registro);
+		}
+	}
+
+	@Test
+	void comparaListadoMvcConListadoReactivo() throws Exception {
+		int instrumentos = 1_000;
+		int conexiones = Math.min(CONEXIONES, 2_000);
+		try (Servidor servidor = new Servidor(new File("target/carga-reactivo.log"))) {
+			HttpClient cliente = HttpClient.newHttpClient();
+			try (ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+				List<Future<Integer>> altas = new ArrayList<>();
+				for (int i = 0; i < instrumentos; i++) {
+					String codigo = "CARGA-" + i;
+					altas.add(ejecutor.submit(() -> enviar(cliente, "POST", servidor.base + "/instrumentos", guitarra(codigo)).statusCode()));
+				}
+				for (Future<Integer> alta : altas) {
+					assertEquals(201, alta.get());
+				}
+			}
+
+			for (String ruta : List.of("/instrumentos", "/reactivo/instrumentos", "/instrumentos", "/reactivo/instrumentos")) {
+				imprimir("GET " + ruta + " (" + instrumentos + " instrumentos)", conexiones,
+						medir(servidor.base + ruta, conexiones));
+			}
+		}
+	}
+
+	@Test
+	void comparaAlmacenEnHeapConAlmacenFueraDeHeap() throws Exception {
+		int instrumentos = Integer.getInteger("tienda.carga.instrumentos", 1_000_000);
+		for (String almacenamiento : List.of("heap", "fuera-de-heap")) {
+			File registro = new File("target/carga-almacen-" + almacenamiento + ".log");
+			Process proceso = new ProcessBuilder(
+					ProcessHandle.current().info().command().orElse("java"),
+					"-Xmx2g", "-XX:+UseG1GC", "-Dstdout.encoding=UTF-8",
+					"-cp", System.getProperty("java.class.path"),
+					CargaAlmacen.class.getName(), almacenamiento, String.valueOf(instrumentos), "30")
+					.redirectErrorStream(true).redirectOutput(registro).start();
+			assertEquals(0, proceso.waitFor(), "Falló la carga: ver " + registro);
+			System.out.print(Files.readString(registro.toPath()));
+		}
+	}
+
+	/**
+	 * Carga de un almacenamiento del catálogo, ejecutada en su propio proceso para que cada
+	 * uno mida sólo su recolector: ingresa los instrumentos y luego, durante el tiempo indicado,
+	 * atiende búsquedas por código con reservas y liberaciones de stock intercaladas desde cuatro
+	 * hilos, mientras otro hilo repite un filtro por marca y rango de precio.
+	 * Argumentos: almacenamiento ({@code heap} o {@code fuera-de-heap}), cantidad de instrumentos y segundos.
+	 */
+	static final class CargaAlmacen {
+
+		public static void main(String[] argumentos) throws Exception {
+			String almacenamiento = argumentos[0];
+			int instrumentos = Integer.parseInt(argumentos[1]);
+			int segundos = Integer.parseInt(argumentos[2]);
+			IServicioInstrumento servicio = almacenamiento.equals("heap")
+					? ServicioInstrumento.getInstance()
+					: new ServicioInstrumentoFueraDeHeap(64 << 20, "");
+			List<Long> pausas = Collections.synchronizedList(new ArrayList<>());
+			for (GarbageCollectorMXBean recolector : ManagementFactory.getGarbageCollectorMXBeans()) {
+				((NotificationEmitter) recolector).addNotificationListener((notificacion, contexto) -> {
+					GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+							.from((CompositeData) notificacion.getUserData());
+					// Los ciclos concurrentes de G1 no detienen la aplicación.
+					if (!info.getGcName().contains("Concurrent")) {
+						pausas.add(info.getGcInfo().getDuration());
+					}
+				}, null, null);
+			}
+
+			String[] marcas = {"Fender", "Gibson", "Ibanez", "Yamaha", "PRS", "Taylor", "Martin", "Epiphone"};
+			long inicio = System.nanoTime();
+			for (int i = 0; i < instrumentos; i++) {
+				Guitarra guitarra = new Guitarra("G-" + i, "Modelo " + i, marcas[i % marcas.length], 500_000 + (i % 5_000) * 1_000,
+						10, LocalDate.of(2024, 1, 1).plusDays(i % 365), TipoGuitarra.values()[i % 4], "Aliso");
+				guitarra.setFundas(List.of(new Funda("F-" + i, "Estuche rígido", 250_000, null)));
+				servicio.agregarInstrumento(guitarra);
+			}
+			double segundosIngreso = (System.nanoTime() - inicio) / 1e9;
+			System.gc();
+			long heapUsado = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+			int pausasIngreso = pausas.size();
+			long tiempoPausasIngreso = pausas.stream().mapToLong(Long::longValue).sum();
+			pausas.clear();
+
+			AtomicLong operaciones = new AtomicLong();
+			AtomicLong filtros = new AtomicLong();
+			long fin = System.nanoTime() + segundos * 1_000_000_000L;
+			FiltroInstrumentoDTO filtro = FiltroInstrumentoDTO.builder().marca("ibanez").precioMin(1_000_000.0).precioMax(2_000_000.0).build();
+			try (ExecutorService ejecutor = Executors.newFixedThreadPool(5)) {
+				ejecutor.submit(() -> {
+					while (System.nanoTime() < fin) {
+						servicio.filtrarInstrumentos(filtro);
+						filtros.incrementAndGet();
+					}
+					return null;
+				});
+				for (int hilo = 0; hilo < 4; hilo++) {
+					ejecutor.submit(() -> {
+						ThreadLocalRandom azar = ThreadLocalRandom.current();
+						while (System.nanoTime() < fin) {
+							String codigo = "G-" + azar.nextInt(instrumentos);
+							servicio.buscarInstrumento(codigo).orElseThrow();
+							if (azar.nextInt(10) == 0) {
+								servicio.reservarStock(codigo, 1);
+								servicio.liberarStock(codigo, 1);
+							}
+							operaciones.incrementAndGet();
+						}
+						return null;
+					});
+				}
+			}
+
+			long[] duraciones = pausas.stream().mapToLong(Long::longValue).sorted().toArray();
+			System.out.printf("Almacenamiento %s, %d instrumentos: ingreso %.1f s (%d pausas, %d ms); heap ocupado %.1f MB%n",
+					almacenamiento, instrumentos, segundosIngreso, pausasIngreso, tiempoPausasIngreso, heapUsado / 1e6);
+			System.out.printf("  %d s de carga: %.0f búsquedas/s, %.2f filtros/s; %d pausas, total %d ms, p50 %d ms, máx %d ms%n",
+					segundos, operaciones.get() / (double) segundos, filtros.get() / (double) segundos, duraciones.length,
+					Arrays.stream(duraciones).sum(), duraciones.length == 0 ? 0 : duraciones[duraciones.length / 2],
+					duraciones.length == 0 ? 0 : duraciones[duraciones.length - 1]);
+		}
+	}
+
+	/**
+	 * Consultas por código con popularidad Zipf (exponente 0,99) sobre el almacenamiento fuera del heap,
+	 * sin caché y con cachés de distinta capacidad. Cuatro hilos consultan y serializan cada instrumento
+	 * durante 15 segundos por configuración; una de cada cien consultas ajusta además el stock, lo que
+	 * invalida la entrada del instrumento.
+	 */
+	@Test
+	void comparaConsultasZipfConYSinCache() throws Exception {
+		int instrumentos = Integer.getInteger("tienda.carga.instrumentos", 1_000_000);
+		ServicioInstrumentoFueraDeHeap servicio = new ServicioInstrumentoFueraDeHeap(64 << 20, "");
+		for (int i = 0; i < instrumentos; i++) {
+			Guitarra guitarra = new Guitarra("G-" + i, "Modelo " + i, "Fender", 500_000 + (i % 5_000) * 1_000,
+					1_000, LocalDate.of(2024, 1, 1).plusDays(i % 365), TipoGuitarra.values()[i % 4], "Aliso");
+			guitarra.setFundas(List.of(new Funda("F-" + i, "Estuche rígido", 250_000, null)));
+			servicio.agregarInstrumento(guitarra);
+		}
+		// Distribución acumulada de Zipf: el rango k se consulta con probabilidad proporcional a 1 / k^0,99.
+		double[] acumulada = new double[instrumentos];
+		double total = 0;
+		for (int k = 0; k < instrumentos; k++) {
+			total += 1 / Math.pow(k + 1, 0.99);
+			acumulada[k] = total;
+		}
+		ObjectMapper mapeador = Jackson2ObjectMapperBuilder.json().build();
+		int segundos = 15;
+
+		for (int capacidad : new int[]{0, 1_024, 4_096, 16_384}) {
+			CacheInstrumentos cache = new CacheInstrumentos(servicio, mapeador, capacidad);
+			AtomicLong consultas = new AtomicLong();
+			double suma = total;
+			long fin = System.nanoTime() + segundos * 1_000_000_000L;
+			try (ExecutorService ejecutor = Executors.newFixedThreadPool(4)) {
+				for (int hilo = 0; hilo < 4; hilo++) {
+					ejecutor.submit(() -> {
+						ThreadLocalRandom azar = ThreadLocalRandom.current();
+						long propias = 0;
+						while (System.nanoTime() < fin) {
+							int rango = Arrays.binarySearch(acumulada, azar.nextDouble() * suma);
+							String codigo = "G-" + (rango < 0 ? -rango - 1 : rango);
+							cache.obtener(codigo).orElseThrow();
+							if (azar.nextInt(100) == 0) {
+								servicio.ajustarStock(codigo, azar.nextBoolean() ? 1 : -1);
+							}
+							propias++;
+						}
+						consultas.addAndGet(propias);
+						return null;
+					});
+				}
+			}
+			EstadisticasCacheDTO estadisticas = cache.estadisticas();
+			System.out.printf("Zipf 0,99 sobre %d instrumentos, caché de %d: %.0f consultas/s; aciertos %.1f %%, "
+							+ "%d promociones, %d rechazos, %d expulsiones, %d invalidaciones%n",
+					instrumentos, capacidad, consultas.get() / (double) segundos, estadisticas.getTasaAciertos() * 100,
+					estadisticas.getPromociones(), estadisticas.getRechazos(), estadisticas.getExpulsiones(),
+					estadisticas.getInvalidaciones());
+		}
+	}
+
+	/**
+	 * Tamaño y costo de codificar y decodificar un listado de 10.000 instrumentos (guitarras con funda
+	 * y teclados) en JSON, CBOR y Smile, con la misma configuración de Jackson que la aplicación.
+	 */
+	@Test
+	void comparaJsonConCborYSmile() throws Exception {
+		List<Instrumento> instrumentos = new ArrayList<>();
+		String[] marcas = {"Fender", "Gibson", "Ibanez", "Yamaha", "Roland", "Nord", "Korg", "Casio"};
+		for (int i = 0; i < 10_000; i++) {
+			if (i % 2 == 0) {
+				Guitarra guitarra = new Guitarra("G-" + i, "Modelo " + i, marcas[i % marcas.length], 500_000 + i * 100.0,
+						i % 20, LocalDate.of(2024, 1, 1).plusDays(i % 365), TipoGuitarra.values()[i % 4], "Aliso");
+				guitarra.setFundas(List.of(new Funda("F-" + i, "Estuche rígido", 250_000, null)));
+				instrumentos.add(guitarra);
+			} else {
+				instrumentos.add(new Teclado("T-" + i, "Teclado " + i, marcas[i % marcas.length], 1_500_000 + i * 100.0,
+						i % 20, LocalDate.of(2024, 1, 1).plusDays(i % 365), 61 + i % 28, i % 3 != 0,
+						SensibilidadTeclado.values()[i % SensibilidadTeclado.values().length]));
+			}
+		}
+		TypeReference<List<Instrumento>> tipoLista = new TypeReference<>() {};
+		for (String formato : List.of("JSON", "CBOR", "Smile")) {
+			Jackson2ObjectMapperBuilder constructor = Jackson2ObjectMapperBuilder.json()
+					.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+			ObjectMapper mapeador = switch (formato) {
+				case "CBOR" -> constructor.factory(new CBORFactory()).build();
+				case "Smile" -> constructor.factory(new SmileFactory()).build();
+				default -> constructor.build();
+			};
+			ObjectWriter escritor = mapeador.writerFor(tipoLista);
+			ObjectReader lector = mapeador.readerFor(tipoLista);
+			byte[] bytes = escritor.writeValueAsBytes(instrumentos);
+			assertEquals(instrumentos.size(), lector.<List<Instrumento>>readValue(bytes).size());
+			for (int i = 0; i < 30; i++) {
+				lector.readValue(escritor.writeValueAsBytes(instrumentos));
+			}
+
+			int repeticiones = 100;
+			long inicio = System.nanoTime();
+			for (int i = 0; i < repeticiones; i++) {
+				bytes = escritor.writeValueAsBytes(instrumentos);
+			}
+			long codificacion = (System.nanoTime() - inicio) / repeticiones;
+			inicio = System.nanoTime();
+			for (int i = 0; i < repeticiones; i++) {
+				lector.readValue(bytes);
+			}
+			long decodificacion = (System.nanoTime() - inicio) / repeticiones;
+			ByteArrayOutputStream comprimido = new ByteArrayOutputStream();
+			try (GZIPOutputStream gzip = new GZIPOutputStream(comprimido)) {
+				gzip.write(bytes);
+			}
+			System.out.printf("%s: %d bytes (%d con gzip), codificar %.1f ms, decodificar %.1f ms%n",
+					formato, bytes.length, comprimido.size(), codificacion / 1e6, decodificacion / 1e6);
+		}
+	}
+
+	/**
+	 * Tamaño y costo de serializar un listado de 10.000 guitarras con tres fundas cada una, completo y
+	 * proyectado a los campos de una grilla ({@code codigo,nombre,precioBase,stock}), con la configuración
+	 * de proyección de la aplicación.
+	 */
+	@Test
+	void comparaListadoCompletoConProyeccion() throws Exception {
+		Instrumento[] guitarras = new Instrumento[10_000];
+		for (int i = 0; i < guitarras.length; i++) {
+			Guitarra guitarra = new Guitarra("G-" + i, "Modelo " + i, "Fender", 500_000 + i * 100.0, i % 20,
+					LocalDate.of(2024, 1, 1).plusDays(i % 365), TipoGuitarra.values()[i % 4], "Aliso");
+			guitarra.setFundas(List.of(new Funda("F-" + i + "-1", "Estuche rígido", 250_000, null),
+					new Funda("F-" + i + "-2", "Funda acolchada", 120_000, null),
+					new Funda("F-" + i + "-3", "Funda de viaje", 90_000, null)));
+			guitarras[i] = guitarra;
+		}
+		Jackson2ObjectMapperBuilder constructor = Jackson2ObjectMapperBuilder.json()
+				.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+		new ProyeccionConfig().proyeccionInstrumentos().customize(constructor);
+		ObjectMapper mapeador = constructor.build();
+		ObjectWriter completo = mapeador.writer();
+		ObjectWriter proyectado = mapeador.writer(new SimpleFilterProvider().addFilter(ProyeccionConfig.FILTRO,
+				SimpleBeanPropertyFilter.filterOutAllExcept("codigo", "nombre", "precioBase", "stock")));
+		for (ObjectWriter escritor : List.of(completo, proyectado, completo, proyectado)) {
+			byte[] bytes = escritor.writeValueAsBytes(guitarras);
+			int repeticiones = 100;
+			long inicio = System.nanoTime();
+			for (int i = 0; i < repeticiones; i++) {
+				bytes = escritor.writeValueAsBytes(guitarras);
+			}
+			System.out.printf("%s: %d bytes, serializar %.2f ms%n", escritor == completo ? "Completo" : "Proyectado",
+					bytes.length, (System.nanoTime() - inicio) / 1e6 / repeticiones);
+		}
+	}
+
+	/**
+	 * Costo de obtener las 10 guitarras eléctricas más baratas (y las 100 más recientes) de un catálogo en
+	 * memoria: con orden y límite en el filtro frente a traer todas las coincidencias y ordenarlas después.
+	 */
+	@Test
+	void comparaTopKConOrdenamientoCompleto() {
+		int instrumentos = Integer.getInteger("tienda.carga.instrumentos", 1_000_000);
+		IServicioInstrumento servicio = ServicioInstrumento.getInstance();
+		ThreadLocalRandom azar = ThreadLocalRandom.current();
+		for (int i = 0; i < instrumentos; i++) {
+			servicio.agregarInstrumento(new Guitarra("TK-" + i, "Modelo " + i, "TopK", 500_000 + azar.nextInt(10_000_000),
+					10, LocalDate.of(2020, 1, 1).plusDays(azar.nextInt(2_000)), TipoGuitarra.values()[i % 4], "Aliso"));
+		}
+		FiltroInstrumentoDTO electricas = FiltroInstrumentoDTO.builder().marca("topk").tipoGuitarra(TipoGuitarra.ELECTRICA).build();
+		FiltroInstrumentoDTO baratas = FiltroInstrumentoDTO.builder().marca("topk").tipoGuitarra(TipoGuitarra.ELECTRICA)
+				.ordenarPor(CampoOrden.PRECIO_BASE).limite(10).build();
+		FiltroInstrumentoDTO recientes = FiltroInstrumentoDTO.builder().marca("topk").tipoGuitarra(TipoGuitarra.ELECTRICA)
+				.ordenarPor(CampoOrden.FECHA_INGRESO).descendente(true).limite(100).build();
+
+		for (int ronda = 0; ronda < 2; ronda++) {
+			int repeticiones = 20;
+			long inicio = System.nanoTime();
+			List<Instrumento> completo = null;
+			for (int i = 0; i < repeticiones; i++) {
+				completo = new ArrayList<>(servicio.filtrarInstrumentos(electricas));
+				completo.sort(Comparator.comparingDouble(Instrumento::getPrecioBase));
+			}
+			double ordenamiento = (System.nanoTime() - inicio) / 1e6 / repeticiones;
+			inicio = System.nanoTime();
+			List<Instrumento> primeros = null;
+			for (int i = 0; i < repeticiones; i++) {
+				primeros = servicio.filtrarInstrumentos(baratas);
+			}
+			double topK = (System.nanoTime() - inicio) / 1e6 / repeticiones;
+			inicio = System.nanoTime();
+			for (int i = 0; i < repeticiones; i++) {
+				servicio.filtrarInstrumentos(recientes);
+			}
+			double topRecientes = (System.nanoTime() - inicio) / 1e6 / repeticiones;
+			assertEquals(completo.get(9).getPrecioBase(), primeros.get(9).getPrecioBase());
+			System.out.printf("%d instrumentos, %d coincidencias: filtrar y ordenar todo %.1f ms; 10 más baratas %.1f ms; "
+					+ "100 más recientes %.1f ms%n", instrumentos, completo.size(), ordenamiento, topK, topRecientes);
+		}
+	}
+
+	/**
+	 * Costo de los filtros por rango de fecha de ingreso (último día, última semana, último mes) sobre un
+	 * catálogo en memoria con ingresos repartidos en unos cinco años, frente a un filtro por precio de
+	 * selectividad parecida a la del último mes, que recorre todo el catálogo.
+	 */
+	@Test
+	void comparaRangoDeFechasConRecorridoCompleto() {
+		int instrumentos = Integer.getInteger("tienda.carga.instrumentos", 1_000_000);
+		IServicioInstrumento servicio = ServicioInstrumento.getInstance();
+		LocalDate hoy = LocalDate.of(2025, 1, 1);
+		ThreadLocalRandom azar = ThreadLocalRandom.current();
+		for (int i = 0; i < instrumentos; i++) {
+			servicio.agregarInstrumento(new Guitarra("FR-" + i, "Modelo " + i, "Fender", 500_000 + azar.nextInt(10_000_000),
+					10, hoy.minusDays(azar.nextInt(1_825)), TipoGuitarra.values()[i % 4], "Aliso"));
+		}
+		List<FiltroInstrumentoDTO> filtros = List.of(
+				FiltroInstrumentoDTO.builder().fechaIngresoDesde(hoy).build(),
+				FiltroInstrumentoDTO.builder().fechaIngresoDesde(hoy.minusDays(6)).build(),
+				FiltroInstrumentoDTO.builder().fechaIngresoDesde(hoy.minusDays(29)).build(),
+				FiltroInstrumentoDTO.builder().fechaIngresoDesde(hoy.minusDays(29)).tipoGuitarra(TipoGuitarra.ELECTRICA).build(),
+				FiltroInstrumentoDTO.builder().precioMax(664_000.0).build());
+		List<String> escenarios = List.of("último día", "última semana", "último mes", "último mes, eléctricas", "precio (recorrido)");
+		for (int ronda = 0; ronda < 2; ronda++) {
+			for (int f = 0; f < filtros.size(); f++) {
+				int repeticiones = 50;
+				int resultados = 0;
+				long inicio = System.nanoTime();
+				for (int i = 0; i < repeticiones; i++) {
+					resultados = servicio.filtrarInstrumentos(filtros.get(f)).size();
+				}
+				System.out.printf("%d instrumentos, %s: %d resultados en %.2f ms%n", instrumentos, escenarios.get(f),
+						resultados, (System.nanoTime() - inicio) / 1e6 / repeticiones);
+			}
+		}
+	}
+
+	@Test
+	void comparaBusquedaDeTextoConFiltroPorNombre() {
+		int instrumentos = Integer.getInteger("tienda.carga.instrumentos", 1_000_000);
+		IServicioInstrumento servicio = ServicioInstrumento.getInstance();
+		String[] modelos = {"Stratocaster", "Telecaster", "Les Paul", "Clásica Concierto", "Acústica Dreadnought",
+				"Jumbo", "Jazzmaster", "Flamenca", "SG", "Explorer", "Parlor", "Requinto"};
+		String[] marcas = {"Fender", "Gibson", "Yamaha", "Ibanez", "Alhambra", "Taylor", "Martin", "Epiphone"};
+		String[] materiales = {"Aliso", "Fresno", "Caoba", "Cedro", "Abeto", "Arce"};
+		ThreadLocalRandom azar = ThreadLocalRandom.current();
+		for (int i = 0; i < instrumentos; i++) {
+			servicio.agregarInstrumento(new Guitarra("TX-" + i,
+					"Guitarra " + modelos[azar.nextInt(modelos.length)] + " Serie " + azar.nextInt(1_000),
+					marcas[azar.nextInt(marcas.length)], 500_000 + azar.nextInt(10_000_000), 10, LocalDate.of(2024, 1, 1),
+					TipoGuitarra.values()[i % 4], materiales[azar.nextInt(materiales.length)]));
+		}
+		List<String> consultas = List.of("stratocaster", "fender stratocaster", "guitarra clasica cedro",
+				"telecaster serie 512", "guitarra");
+		for (int ronda = 0; ronda < 2; ronda++) {
+			for (String consulta : consultas) {
+				int repeticiones = 50;
+				int resultados = 0;
+				long inicio = System.nanoTime();
+				for (int i = 0; i < repeticiones; i++) {
+					resultados = servicio.buscarTexto(consulta, 10, false).size();
+				}
+				System.out.printf("%d instrumentos, búsqueda \"%s\": %d resultados en %.2f ms%n", instrumentos, consulta,
+						resultados, (System.nanoTime() - inicio) / 1e6 / repeticiones);
+			}
+			FiltroInstrumentoDTO porNombre = FiltroInstrumentoDTO.builder().nombre("stratocaster").limite(10).build();
+			int repeticiones = 10;
+			long inicio = System.nanoTime();
+			for (int i = 0; i < repeticiones; i++) {
+				servicio.filtrarInstrumentos(porNombre);
+			}
+			System.out.printf("%d instrumentos, filtro por nombre (recorrido): %.2f ms%n", instrumentos,
+					(System.nanoTime() - inicio) / 1e6 / repeticiones);
+		}
+	}
+
+	/**
+	 * Cada instrumento tiene un modelo inventado de cuatro sílabas, así que el diccionario llega a un
+	 * millón de términos distintos; las consultas llevan una o dos letras cambiadas o intercambiadas.
+	 */
+	@Test
+	void comparaBusquedaDifusaConExacta() {
+		int instrumentos = Integer.getInteger("tienda.carga.instrumentos", 1_000_000);
+		IServicioInstrumento servicio = ServicioInstrumento.getInstance();
+		String[] silabas = {"ba", "be", "ca", "co", "da", "di", "fa", "fo", "ga", "gu", "la", "lo", "ma", "mi", "na", "no",
+				"pa", "pe", "ra", "ro", "sa", "so", "ta", "tu", "va", "vi", "za", "zo", "cha", "que", "tri", "bla"};
+		String[] marcas = {"Fender", "Gibson", "Yamaha", "Ibanez", "Alhambra", "Taylor", "Martin", "Epiphone"};
+		String[] modelos = new String[instrumentos];
+		ThreadLocalRandom azar = ThreadLocalRandom.current();
+		for (int i = 0; i < instrumentos; i++) {
+			StringBuilder modelo = new StringBuilder();
+			for (int s = 0; s < 4; s++) {
+				modelo.append(silabas[azar.nextInt(silabas.length)]);
+			}
+			modelos[i] = modelo.toString();
+			servicio.agregarInstrumento(new Guitarra("FZ-" + i, "Guitarra " + modelos[i], marcas[azar.nextInt(marcas.length)],
+					500_000 + azar.nextInt(10_000_000), 10, LocalDate.of(2024, 1, 1), TipoGuitarra.values()[i % 4], "Aliso"));
+		}
+		String modelo = modelos[instrumentos / 2];
+		String unError = modelo.substring(0, 3) + modelo.substring(4);
+		String dosErrores = modelo.charAt(1) + "" + modelo.charAt(0) + modelo.substring(2, 5) + "x" + modelo.substring(6);
+		List<String> consultas = List.of(modelo, unError, dosErrores, "yamah", "fendr " + unError);
+		for (int ronda = 0; ronda < 2; ronda++) {
+			for (String consulta : consultas) {
+				for (boolean difuso : new boolean[]{false, true}) {
+					int repeticiones = 50;
+					int resultados = 0;
+					long inicio = System.nanoTime();
+					for (int i = 0; i < repeticiones; i++) {
+						resultados = servicio.buscarTexto(consulta, 10, difuso).size();
+					}
+					System.out.printf("%d instrumentos, búsqueda%s \"%s\": %d resultados en %.2f ms%n", instrumentos,
+							difuso ? " difusa" : "", consulta, resultados, (System.nanoTime() - inicio) / 1e6 / repeticiones);
+				}
+			}
+			FiltroInstrumentoDTO porNombre = FiltroInstrumentoDTO.builder().nombre(dosErrores).difuso(true).build();
+			int repeticiones = 50;
+			int resultados = 0;
+			long inicio = System.nanoTime();
+			for (int i = 0; i < repeticiones; i++) {
+				resultados = servicio.filtrarInstrumentos(porNombre).size();
+			}
+			System.out.printf("%d instrumentos, filtro difuso por nombre: %d resultados en %.2f ms%n", instrumentos,
+					resultados, (System.nanoTime() - inicio) / 1e6 / repeticiones);
+		}
+	}
+
+	/**
+	 * Reservas de stock desde 200 hilos que compiten por un solo código (una venta relámpago) frente a
+	 * las mismas reservas repartidas entre 1.000 códigos. Cada reserva se libera enseguida para que el
+	 * stock no se agote.
+	 */
+	@Test
+	void comparaReservasSobreUnCodigoYSobreVarios() throws Exception {
+		IServicioInstrumento servicio = ServicioInstrumento.getInstance();
+		int codigos = 1_000;
+		for (int i = 0; i < codigos; i++) {
+			servicio.agregarInstrumento(new Guitarra("RS-" + i, "Modelo " + i, "Reservas", 1_000_000, 1_000,
+					LocalDate.of(2024, 1, 1), TipoGuitarra.ELECTRICA, "Aliso"));
+		}
+		int hilos = 200;
+		int reservasPorHilo = 2_000;
+		for (int ronda = 0; ronda < 2; ronda++) {
+			for (int distintos : new int[]{1, codigos}) {
+				long inicio = System.nanoTime();
+				try (ExecutorService ejecutor = Executors.newFixedThreadPool(hilos)) {
+					for (int hilo = 0; hilo < hilos; hilo++) {
+						ejecutor.submit(() -> {
+							ThreadLocalRandom azar = ThreadLocalRandom.current();
+							for (int i = 0; i < reservasPorHilo; i++) {
+								String codigo = "RS-" + azar.nextInt(distintos);
+								servicio.reservarStock(codigo, 1);
+								servicio.liberarStock(codigo, 1);
+							}
+							return null;
+						});
+					}
+				}
+				double segundos = (System.nanoTime() - inicio) / 1e9;
+				System.out.printf("%d hilos, reservas sobre %d código(s): %.0f op/s%n", hilos, distintos,
+						2.0 * hilos * reservasPorHilo / segundos);
+			}
+		}
+		for (int i = 0; i < codigos; i++) {
+			assertEquals(1_000, servicio.buscarInstrumento("RS-" + i).orElseThrow().getStock());
+		}
+	}
+
+	/**
+	 * Heap retenido por 1.000.000 de guitarras ingresadas con cadenas recién creadas, como las deja Jackson
+	 * (20 marcas, 8 materiales y 5 nombres de funda, una funda por guitarra), sin compartir los valores
+	 * repetidos ({@code tienda.catalogo.valores-canonicos=0}) y compartiéndolos. Se mide la diferencia del heap
+	 * ocupado tras una recolección completa antes y después del ingreso; conviene ejecutarla con
+	 * {@code -DargLine=-Xmx3g}.
+	 */
+	@Test
+	void comparaHeapConYSinValoresCompartidos() {
+		int instrumentos = Integer.getInteger("tienda.carga.instrumentos", 1_000_000);
+		String[] marcas = new String[20];
+		for (int i = 0; i < marcas.length; i++) {
+			marcas[i] = "Marca " + i;
+		}
+		String[] materiales = {"Aliso", "Fresno", "Caoba", "Cedro", "Abeto", "Arce", "Palo rosa", "Nogal"};
+		String[] fundas = {"Estuche rígido", "Funda acolchada", "Funda de lona", "Estuche de vuelo", "Bolsa de viaje"};
+		for (int valoresCanonicos : new int[]{0, 4_096}) {
+			try (ConfigurableApplicationContext aplicacion = aplicacion("tienda.catalogo.valores-canonicos=" + valoresCanonicos)) {
+				IServicioInstrumento servicio = aplicacion.getBean(IServicioInstrumento.class);
+				long antes = heapOcupado();
+				for (int i = 0; i < instrumentos; i++) {
+					Guitarra guitarra = new Guitarra("HP-" + i, "Modelo " + i, new String(marcas[i % marcas.length]),
+							500_000 + (i % 5_000) * 1_000, 10, LocalDate.of(2024, 1, 1).plusDays(i % 365),
+							TipoGuitarra.values()[i % 4], new String(materiales[i % materiales.length]));
+					guitarra.setFundas(List.of(new Funda("HF-" + i, new String(fundas[i % fundas.length]), 250_000, null)));
+					servicio.agregarInstrumento(guitarra);
+				}
+				long retenido = heapOcupado() - antes;
+				assertEquals(instrumentos, servicio.listarInstrumentos().size());
+				System.out.printf("%d guitarras, %s: %.1f MB retenidos (%d bytes por guitarra)%n", instrumentos,
+						valoresCanonicos == 0 ? "sin compartir valores" : "valores compartidos", retenido / 1e6,
+						retenido / instrumentos);
+			}
+		}
+	}
+
+	/**
+	 * Filtro por rango de precio amplio y stock mínimo sobre 1.000.000 de instrumentos, recorriendo los objetos
+	 * frente a la copia columnar ({@code tienda.filtro.columnar=true}), sin repartir el recorrido. La primera
+	 * consulta columnar incluye la construcción de la copia y se informa aparte, igual que las consultas que
+	 * siguen a un cambio de stock, que ponen la copia al día.
+	 */
+	@Test
+	void comparaFiltroColumnarConRecorridoDeObjetos() {
+		int instrumentos = Integer.getInteger("tienda.carga.instrumentos", 1_000_000);
+		FiltroInstrumentoDTO filtro = FiltroInstrumentoDTO.builder().precioMin(600_000.0).precioMax(5_000_000.0).stockMin(3).build();
+		for (boolean columnar : new boolean[]{false, true}) {
+			try (ConfigurableApplicationContext aplicacion = aplicacion("tienda.filtro.columnar=" + columnar,
+					"tienda.filtro.umbral-paralelo=" + Integer.MAX_VALUE)) {
+				IServicioInstrumento servicio = aplicacion.getBean(IServicioInstrumento.class);
+				for (int i = 0; i < instrumentos; i++) {
+					servicio.agregarInstrumento(new Guitarra("CL-" + i, "Modelo " + i, MARCAS[i % MARCAS.length],
+							500_000 + (i * 7_919L % 5_000) * 1_000, i % 10, LocalDate.of(2024, 1, 1).plusDays(i % 365),
+							TipoGuitarra.values()[i % 4], "Aliso"));
+				}
+				long inicio = System.nanoTime();
+				int coincidencias = servicio.filtrarInstrumentos(filtro).size();
+				double primera = (System.nanoTime() - inicio) / 1e6;
+				for (int ronda = 0; ronda < 3; ronda++) {
+					// Sin la basura de la carga, para que una recolección completa no caiga dentro de la medición.
+					System.gc();
+					int repeticiones = 30;
+					inicio = System.nanoTime();
+					for (int r = 0; r < repeticiones; r++) {
+						assertEquals(coincidencias, servicio.filtrarInstrumentos(filtro).size());
+					}
+					System.out.printf("%d instrumentos (%d coincidencias), %s: %.1f ms por filtro (primera consulta %.1f ms)%n",
+							instrumentos, coincidencias, columnar ? "copia columnar" : "recorrido de objetos",
+							(System.nanoTime() - inicio) / 1e6 / repeticiones, primera);
+				}
+				if (columnar) {
+					// Cada cambio de stock invalida la copia; sólo se reconstruye el bloque del instrumento cambiado.
+					int repeticiones = 30;
+					inicio = System.nanoTime();
+					for (int r = 0; r < repeticiones; r++) {
+						servicio.liberarStock("CL-" + r * 7_919 % instrumentos, 1);
+						servicio.filtrarInstrumentos(filtro);
+					}
+					System.out.printf("%d instrumentos, copia columnar: %.1f ms por filtro después de un cambio de stock%n",
+							instrumentos, (System.nanoTime() - inicio) / 1e6 / repeticiones);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Punto de cruce entre el recorrido secuencial y el repartido en el {@link java.util.concurrent.ForkJoinPool}
+	 * común: el mismo filtro sobre catálogos de 1.000 a 500.000 instrumentos, con un servicio que nunca reparte
+	 * el recorrido y otro que siempre lo reparte, en a lo sumo {@code tienda.filtro.paralelismo-maximo} bloques.
+	 * Sirve para elegir {@code tienda.filtro.umbral-paralelo} en la máquina donde se despliega; el resultado depende
+	 * de los núcleos disponibles ({@link Runtime#availableProcessors()} se imprime con cada medición).
+	 */
+	@Test
+	void comparaFiltroSecuencialConParalelo() {
+		int[] tamanos = {1_000, 5_000, 10_000, 20_000, 50_000, 100_000, 500_000};
+		FiltroInstrumentoDTO filtro = FiltroInstrumentoDTO.builder().marca("gibson").tipoGuitarra(TipoGuitarra.ELECTRICA)
+				.precioMin(1_000_000.0).precioMax(4_000_000.0).build();
+		try (ConfigurableApplicationContext secuencial = aplicacion("tienda.filtro.umbral-paralelo=" + Integer.MAX_VALUE);
+			 ConfigurableApplicationContext paralelo = aplicacion("tienda.filtro.umbral-paralelo=1")) {
+			List<IServicioInstrumento> servicios = List.of(secuencial.getBean(IServicioInstrumento.class),
+					paralelo.getBean(IServicioInstrumento.class));
+			int ingresados = 0;
+			for (int tamano : tamanos) {
+				for (; ingresados < tamano; ingresados++) {
+					int i = ingresados;
+					for (IServicioInstrumento servicio : servicios) {
+						servicio.agregarInstrumento(new Guitarra("PX-" + i, "Modelo " + i, MARCAS[i % MARCAS.length],
+								500_000 + (i * 7_919L % 5_000) * 1_000, 10, LocalDate.of(2024, 1, 1).plusDays(i % 365),
+								TipoGuitarra.values()[i / MARCAS.length % 4], "Aliso"));
+					}
+				}
+				// Unas 20 millones de filas evaluadas por medición, y no menos de 20 repeticiones.
+				int repeticiones = Math.max(20, 20_000_000 / tamano);
+				double[] microsegundos = new double[2];
+				int[] coincidencias = new int[2];
+				for (int ronda = 0; ronda < 2; ronda++) {
+					for (int s = 0; s < 2; s++) {
+						long inicio = System.nanoTime();
+						for (int r = 0; r < repeticiones; r++) {
+							coincidencias[s] = servicios.get(s).filtrarInstrumentos(filtro).size();
+						}
+						microsegundos[s] = (System.nanoTime() - inicio) / 1e3 / repeticiones;
+					}
+				}
+				assertEquals(coincidencias[0], coincidencias[1]);
+				System.out.printf("%d instrumentos (%d coincidencias, %d núcleos): secuencial %.1f µs, paralelo %.1f µs (%.2fx)%n",
+						tamano, coincidencias[0], Runtime.getRuntime().availableProcessors(), microsegundos[0], microsegundos[1],
+						microsegundos[0] / microsegundos[1]);
+			}
+		}
+	}
+
+	/**
+	 * Altas concurrentes desde 8 hilos (75.000 por hilo, 600.000 instrumentos) con el catálogo en 1, 4 y 16
+	 * particiones, seguidas de un filtro con facetas sobre todo el catálogo.
+	 */
+	@Test
+	void comparaCantidadesDeParticiones() {
+		int hilos = 8;
+		int altasPorHilo = 75_000;
+		FiltroInstrumentoDTO filtro = FiltroInstrumentoDTO.builder().precioMin(1_000_000.0).precioMax(3_000_000.0).build();
+		for (int ronda = 0; ronda < 2; ronda++) {
+			for (int particiones : new int[]{1, 4, 16}) {
+				try (ConfigurableApplicationContext aplicacion = aplicacion("tienda.catalogo.particiones=" + particiones)) {
+					IServicioInstrumento servicio = aplicacion.getBean(IServicioInstrumento.class);
+					double segundos = altasConcurrentes(servicio, hilos, altasPorHilo);
+					int repeticiones = 20;
+					int coincidencias = 0;
+					long inicio = System.nanoTime();
+					for (int i = 0; i < repeticiones; i++) {
+						coincidencias = servicio.filtrarConFacetas(filtro).getResultados().size();
+					}
+					System.out.printf("%d partición(es): %d hilos x %d altas, %.0f altas/s; filtro con facetas sobre %d "
+									+ "instrumentos (%d coincidencias) %.1f ms%n", particiones, hilos, altasPorHilo,
+							hilos * altasPorHilo / segundos, hilos * altasPorHilo, coincidencias,
+							(System.nanoTime() - inicio) / 1e6 / repeticiones);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Altas concurrentes desde 8 hilos (25.000 por hilo) con las modificaciones aplicadas en el hilo que las
+	 * pide, con el cerrojo de la partición, frente al escritor único, que las aplica por lotes y publica una
+	 * instantánea por lote.
+	 */
+	@Test
+	void comparaEscritorUnicoConEscrituraDirecta() {
+		int hilos = 8;
+		int altasPorHilo = 25_000;
+		for (int ronda = 0; ronda < 2; ronda++) {
+			for (boolean escritorUnico : new boolean[]{false, true}) {
+				try (ConfigurableApplicationContext aplicacion = aplicacion("tienda.escritura.escritor-unico=" + escritorUnico)) {
+					IServicioInstrumento servicio = aplicacion.getBean(IServicioInstrumento.class);
+					double segundos = altasConcurrentes(servicio, hilos, altasPorHilo);
+					assertEquals(hilos * altasPorHilo, servicio.listarInstrumentos().size());
+					System.out.printf("%d hilos x %d altas, %s: %.0f altas/s%n", hilos, altasPorHilo,
+							escritorUnico ? "escritor único" : "escritura directa", hilos * altasPorHilo / segundos);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Aplicación iniciada en otro proceso: cliente y servidor juntos superarían el límite de descriptores.
+	 */
+	private static final class Servidor implements AutoCloseable {
+
+		private final Process proceso;
+		private final String base;
+
+		Servidor(File registro, String... argumentos) throws Exception {
+			int puerto;
+			try (ServerSocket libre = new ServerSocket(0)) {
+				puerto = libre.getLocalPort();
+			}
+			List<String> comando = new ArrayList<>(List.of(
+					ProcessHandle.current().info().command().orElse("java"),
+					"-Djdk.tracePinnedThreads=short",
+					"-cp", System.getProperty("java.class.path"),
+					POCTiendaInstrumentos.class.getName(),
+					"--server.port=" + puerto,
+					"--spring.devtools.restart.enabled=false",
+					"--spring.devtools.livereload.enabled=false",
+					// Sin BCrypt, para medir el servidor y no la verificación de la contraseña.
+					"--spring.main.sources=" + ContrasenaSinCifrar.class.getName()));
+			comando.addAll(List.of(argumentos));
+			proceso = new ProcessBuilder(comando).redirectErrorStream(true).redirectOutput(registro).start();
+			base = "http://localhost:" + puerto;
+			esperarServidor(base);
+		}
+
+		@Override
+		public void close() throws InterruptedException {
+			proceso.destroy();
+			proceso.waitFor();
+		}
+	}
+
+	/**
+	 * Heap ocupado después de una recolección completa.
+	 */
+	private static long heapOcupado() {
+		System.gc();
+		System.gc();
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	/**
+	 * Inicia la aplicación en este proceso, en un puerto libre, para comparar configuraciones del servicio en
+	 * memoria: cada contexto crea su propia instancia del servicio con las propiedades indicadas.
+	 *
+	 * @param propiedades propiedades con la forma {@code nombre=valor}
+	 */
+	private static ConfigurableApplicationContext aplicacion(String... propiedades) {
+		List<String> argumentos = new ArrayList<>(List.of("--server.port=0",
+				"--spring.devtools.restart.enabled=false", "--logging.level.root=WARN"));
+		for (String propiedad : propiedades) {
+			argumentos.add("--" + propiedad);
+		}
+		return SpringApplication.run(POCTiendaInstrumentos.class, argumentos.toArray(String[]::new));
+	}
+
+	/**
+	 * Ingresa guitarras desde varios hilos a la vez, cada hilo con sus propios códigos.
+	 *
+	 * @return segundos transcurridos
+	 */
+	private static double altasConcurrentes(IServicioInstrumento servicio, int hilos, int altasPorHilo) {
+		long inicio = System.nanoTime();
+		try (ExecutorService ejecutor = Executors.newFixedThreadPool(hilos)) {
+			for (int hilo = 0; hilo < hilos; hilo++) {
+				int numero = hilo;
+				ejecutor.submit(() -> {
+					for (int i = 0; i < altasPorHilo; i++) {
+						servicio.agregarInstrumento(new Guitarra("AC-" + numero + "-" + i, "Modelo " + i, MARCAS[i % MARCAS.length],
+								500_000 + (i % 5_000) * 1_000, 10, LocalDate.of(2024, 1, 1).plusDays(i % 365),
+								TipoGuitarra.values()[i % 4], "Aliso"));
+					}
+				});
+			}
+		}
+		return (System.nanoTime() - inicio) / 1e9;
+	}
+
+	/**
+	 * Lanza una solicitud GET por conexión, todas a la vez, y anota la latencia de cada una.
+	 *
+	 * @return latencias ordenadas en nanosegundos, seguidas del tiempo total transcurrido
+	 */
+	private static long[] medir(String url, int conexiones) throws Exception {
+		HttpClient cliente = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(60)).build();
+		long[] latencias = new long[conexiones + 1];
+		try (ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+			List<Future<Integer>> respuestas = new ArrayList<>(conexiones);
+			long inicio = System.nanoTime();
+			for (int i = 0; i < conexiones; i++) {
+				int indice = i;
+				respuestas.add(ejecutor.submit(() -> {
+					long envio = System.nanoTime();
+					int estado = enviar(cliente, "GET", url, null).statusCode();
+					latencias[indice] = System.nanoTime() - envio;
+					return estado;
+				}));
+			}
+			for (Future<Integer> respuesta : respuestas) {
+				assertEquals(200, respuesta.get());
+			}
+			latencias[conexiones] = System.nanoTime() - inicio;
+		}
+		Arrays.sort(latencias, 0, conexiones);
+		return latencias;
+	}
+
+	private static void imprimir(String escenario, int conexiones, long[] latencias) {
+		System.out.printf("%s: %d conexiones concurrentes, %.0f solicitudes/s, p50 %d ms, p99 %d ms, máx %d ms%n",
+				escenario, conexiones, conexiones / (latencias[conexiones] / 1e9),
+				latencias[conexiones / 2] / 1_000_000, latencias[conexiones * 99 / 100] / 1_000_000,
+				latencias[conexiones - 1] / 1_000_000);
+	}
+
+	private static void esperarServidor(String base) throws Exception {
+		HttpClient cliente = HttpClient.newHttpClient();
+		long limite = System.currentTimeMillis() + 60_000;
+		while (true) {
+			try {
+				if (enviar(cliente, "GET", base + "/instrumentos/healthCheck", null).statusCode() == 200) {
+					return;
+				}
+			} catch (java.io.IOException e) {
+				assertTrue(System.currentTimeMillis() < limite, "El servidor no inició a tiempo");
+			}
+			Thread.sleep(200);
+		}
+	}
+
+	private static HttpResponse<String> enviar(HttpClient cliente, String metodo, String url, String cuerpo) throws Exception {
+		HttpRequest.Builder solicitud = HttpRequest.newBuilder(URI.create(url))
+				.timeout(Duration.ofSeconds(120))
+				.header("Authorization", AUTORIZACION)
+				.method(metodo, cuerpo == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(cuerpo));
+		if (cuerpo != null) {
+			solicitud.header("Content-Type", "application/json");
+		}
+		return cliente.send(solicitud.build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+	@Configuration
+	static class ContrasenaSinCifrar {
+
+		@Bean
+		@SuppressWarnings("deprecation")
+		PasswordEncoder passwordEncoder() {
+			return NoOpPasswordEncoder.getInstance();
+		}
+	}
+
+	private static String guitarra(String codigo) {
+		return """
+				{"type":"guitarra","codigo":"%s","nombre":"Telecaster","marca":"Fender","precioBase":2500000,
+				 "stock":3,"fechaIngreso":"2024-05-01","tipo":"Eléctrica","materialCuerpo":"Fresno"}
+				""".formatted(codigo);
+	}
+}
@@ -0,0 +1,79 @@
+package com.unibague.poctiendainstrumentos.demo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CompresionTests {
+
+	private static final String AUTORIZACION = "Basic "
+			+ Base64.getEncoder().encodeToString("admin:admin".getBytes(StandardCharsets.UTF_8));
+
+	@LocalServerPort
+	private int puerto;
+
+	private final HttpClient cliente = HttpClient.newHttpClient();
+
+	@Test
+	void sirveElListadoPrecomprimidoHastaQueCambieElCatalogo() throws Exception {
+		agregar("GZ-1");
+		HttpResponse<byte[]> comprimida = enviar("GET", "/instrumentos/guitarras", null, "gzip", null);
+		assertEquals("gzip", comprimida.headers().firstValue("Content-Encoding").orElseThrow());
+		String etag = comprimida.headers().firstValue("ETag").orElseThrow();
+		assertTrue(etag.startsWith("W/\"guitarras-"));
+
+		// Sin gzip se recibe el mismo listado sin comprimir, con el mismo ETag.
+		HttpResponse<byte[]> plana = enviar("GET", "/instrumentos/guitarras", null, null, null);
+		assertTrue(plana.headers().firstValue("Content-Encoding").isEmpty());
+		assertEquals(etag, plana.headers().firstValue("ETag").orElseThrow());
+		try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(comprimida.body()))) {
+			assertArrayEquals(plana.body(), gzip.readAllBytes());
+		}
+
+		assertEquals(304, enviar("GET", "/instrumentos/guitarras", null, "gzip", etag).statusCode());
+
+		agregar("GZ-2");
+		HttpResponse<byte[]> nueva = enviar("GET", "/instrumentos/guitarras", null, "gzip", etag);
+		assertEquals(200, nueva.statusCode());
+		assertNotEquals(etag, nueva.headers().firstValue("ETag").orElseThrow());
+	}
+
+	private void agregar(String codigo) throws Exception {
+		String guitarra = """
+				{"type":"guitarra","codigo":"%s","nombre":"Telecaster","marca":"Fender","precioBase":2500000,
+				 "stock":3,"fechaIngreso":"2024-05-01","tipo":"Eléctrica","materialCuerpo":"Fresno"}
+				""".formatted(codigo);
+		assertEquals(201, enviar("POST", "/instrumentos", guitarra, null, null).statusCode());
+	}
+
+	private HttpResponse<byte[]> enviar(String metodo, String ruta, String cuerpo, String acceptEncoding, String ifNoneMatch) throws Exception {
+		HttpRequest.Builder solicitud = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + ruta))
+				.header("Authorization", AUTORIZACION)
+				.method(metodo, cuerpo == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(cuerpo));
+		if (cuerpo != null) {
+			solicitud.header("Content-Type", "application/json");
+		}
+		if (acceptEncoding != null) {
+			solicitud.header("Accept-Encoding", acceptEncoding);
+		}
+		if (ifNoneMatch != null) {
+			solicitud.header("If-None-Match", ifNoneMatch);
+		}
+		return cliente.send(solicitud.build(), HttpResponse.BodyHandlers.ofByteArray());
+	}
+}
@@ -0,0 +1,67 @@
+package com.unibague.poctiendainstrumentos.demo;
+
+import com.unibague.poctiendainstrumentos.dto.FiltroInstrumentoDTO;
+import com.unibague.poctiendainstrumentos.model.Guitarra;
+import com.unibague.poctiendainstrumentos.model.enums.TipoGuitarra;
+import com.unibague.poctiendainstrumentos.service.IServicioInstrumento;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {"tienda.escritura.escritor-unico=true", "tienda.escritura.tamano-lote=4"})
+class EscritorUnicoServicioTests {
+
+	@Autowired
+	private IServicioInstrumento servicioInstrumento;
+
+	@Test
+	void cadaEscrituraSeVeEnLaLecturaSiguiente() throws Exception {
+		int hilos = 8;
+		int porHilo = 200;
+		CountDownLatch inicio = new CountDownLatch(1);
+		ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+		List<Future<?>> escritores = new ArrayList<>();
+		for (int h = 0; h < hilos; h++) {
+			int hilo = h;
+			escritores.add(ejecutor.submit(() -> {
+				inicio.await();
+				for (int i = 0; i < porHilo; i++) {
+					String codigo = "ESC-" + hilo + "-" + i;
+					servicioInstrumento.agregarInstrumento(new Guitarra(codigo, "Modelo", "Escritor", 1_000_000, 5,
+							LocalDate.of(2024, 11, 1), TipoGuitarra.ELECTRICA, "Aliso"));
+					assertTrue(servicioInstrumento.buscarInstrumento(codigo).isPresent(), codigo);
+					assertEquals(4, servicioInstrumento.reservarStock(codigo, 1));
+					assertEquals(4, servicioInstrumento.buscarInstrumento(codigo).orElseThrow().getStock());
+				}
+				return null;
+			}));
+		}
+		inicio.countDown();
+		ejecutor.shutdown();
+		assertTrue(ejecutor.awaitTermination(60, TimeUnit.SECONDS));
+		for (Future<?> escritor : escritores) {
+			escritor.get();
+		}
+		FiltroInstrumentoDTO escritor = FiltroInstrumentoDTO.builder().marca("escritor").build();
+		assertEquals(hilos * porHilo, servicioInstrumento.filtrarInstrumentos(escritor).size());
+
+		assertThrows(IllegalStateException.class, () -> servicioInstrumento.agregarInstrumento(new Guitarra("ESC-0-0",
+				"Modelo", "Escritor", 1_000_000, 5, LocalDate.of(2024, 11, 1), TipoGuitarra.ELECTRICA, "Aliso")));
+		assertThrows(IllegalStateException.class, () -> servicioInstrumento.reservarStock("ESC-0-0", 10));
+		assertEquals(hilos * porHilo, servicioInstrumento.ajustarStock(escritor, null, 1));
+		assertEquals(5, servicioInstrumento.buscarInstrumento("ESC-7-199").orElseThrow().getStock());
+	}
+}
@@ -0,0 +1,82 @@
+package com.unibague.poctiendainstrumentos.demo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class FiltroConsultaTests {
+
+	private static final String AUTORIZACION = "Basic "
+			+ Base64.getEncoder().encodeToString("admin:admin".getBytes(StandardCharsets.UTF_8));
+
+	@LocalServerPort
+	private int puerto;
+
+	private final HttpClient cliente = HttpClient.newHttpClient();
+
+	@Test
+	void consultasEquivalentesCompartenClaveYSeRevalidanSinFiltrar() throws Exception {
+		agregar("FLT-1");
+		HttpResponse<String> respuesta = enviar("GET",
+				"/instrumentos/filtrar?marca=GIBSON&tipoGuitarra=ELECTRICA&precioMin=1000.00&fields=nombre,codigo", null, null);
+		assertEquals(200, respuesta.statusCode());
+		assertEquals("/instrumentos/filtrar?fields=codigo,nombre&marca=gibson&precioMin=1000&tipoGuitarra=El%C3%A9ctrica",
+				respuesta.headers().firstValue("Content-Location").orElseThrow());
+		String cacheControl = respuesta.headers().firstValue("Cache-Control").orElseThrow();
+		assertTrue(cacheControl.contains("public"));
+		assertTrue(cacheControl.contains("s-maxage=10"));
+		JsonNode resultado = new ObjectMapper().readTree(respuesta.body());
+		assertEquals(1, resultado.size());
+		assertEquals("guitarra", resultado.get(0).get("type").asText());
+		assertEquals("FLT-1", resultado.get(0).get("codigo").asText());
+		String etag = respuesta.headers().firstValue("ETag").orElseThrow();
+
+		// La misma consulta en otro orden y con otras mayúsculas.
+		String equivalente = "/instrumentos/filtrar?FIELDS=codigo,nombre&tipoguitarra=El%C3%A9ctrica&precioMin=1e3&Marca=gibson";
+		assertEquals(304, enviar("GET", equivalente, null, etag).statusCode());
+
+		agregar("FLT-2");
+		respuesta = enviar("GET", equivalente, null, etag);
+		assertEquals(200, respuesta.statusCode());
+		assertNotEquals(etag, respuesta.headers().firstValue("ETag").orElseThrow());
+		assertEquals(2, new ObjectMapper().readTree(respuesta.body()).size());
+
+		assertEquals(400, enviar("GET", "/instrumentos/filtrar?color=rojo", null, null).statusCode());
+		assertEquals(400, enviar("GET", "/instrumentos/filtrar?stockMin=1&stockMin=2", null, null).statusCode());
+	}
+
+	private void agregar(String codigo) throws Exception {
+		String guitarra = """
+				{"type":"guitarra","codigo":"%s","nombre":"Les Paul","marca":"Gibson","precioBase":9500000,
+				 "stock":2,"fechaIngreso":"2024-05-01","tipo":"Eléctrica","materialCuerpo":"Caoba"}
+				""".formatted(codigo);
+		assertEquals(201, enviar("POST", "/instrumentos", guitarra, null).statusCode());
+	}
+
+	private HttpResponse<String> enviar(String metodo, String ruta, String cuerpo, String ifNoneMatch) throws Exception {
+		HttpRequest.Builder solicitud = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + ruta))
+				.header("Authorization", AUTORIZACION)
+				.method(metodo, cuerpo == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(cuerpo));
+		if (cuerpo != null) {
+			solicitud.header("Content-Type", "application/json");
+		}
+		if (ifNoneMatch != null) {
+			solicitud.header("If-None-Match", ifNoneMatch);
+		}
+		return cliente.send(solicitud.build(), HttpResponse.BodyHandlers.ofString());
+	}
+}
@@ -0,0 +1,89 @@
+package com.unibague.poctiendainstrumentos.demo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class FormatosBinariosTests {
+
+	private static final String AUTORIZACION = "Basic "
+			+ Base64.getEncoder().encodeToString("admin:admin".getBytes(StandardCharsets.UTF_8));
+
+	private static final String CBOR = "application/cbor";
+
+	private static final String SMILE = "application/x-jackson-smile";
+
+	@LocalServerPort
+	private int puerto;
+
+	private final HttpClient cliente = HttpClient.newHttpClient();
+
+	private final ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+
+	private final ObjectMapper smile = new ObjectMapper(new SmileFactory());
+
+	@Test
+	void aceptaYRespondeCborYSmileConservandoTipoYEnumerados() throws Exception {
+		ObjectNode guitarra = cbor.createObjectNode()
+				.put("type", "guitarra").put("codigo", "BIN-G1").put("nombre", "Telecaster").put("marca", "Fender")
+				.put("precioBase", 2_500_000).put("stock", 3).put("fechaIngreso", "2024-05-01")
+				.put("tipo", "Eléctrica").put("materialCuerpo", "Fresno");
+		assertEquals(201, enviar("POST", "/instrumentos", CBOR, cbor.writeValueAsBytes(guitarra), CBOR).statusCode());
+		ObjectNode teclado = smile.createObjectNode()
+				.put("type", "teclado").put("codigo", "BIN-T1").put("nombre", "Nord Stage").put("marca", "Nord")
+				.put("precioBase", 9_000_000).put("stock", 1).put("numeroTeclas", 88).put("digital", true)
+				.put("sensibilidad", "Básica");
+		assertEquals(201, enviar("POST", "/instrumentos", SMILE, smile.writeValueAsBytes(teclado), SMILE).statusCode());
+
+		HttpResponse<byte[]> respuesta = enviar("GET", "/instrumentos/BIN-G1", null, null, CBOR);
+		assertEquals(CBOR, respuesta.headers().firstValue("Content-Type").orElseThrow());
+		JsonNode leida = cbor.readTree(respuesta.body());
+		assertEquals("guitarra", leida.get("type").asText());
+		assertEquals("Eléctrica", leida.get("tipo").asText());
+		assertEquals("2024-05-01", leida.get("fechaIngreso").asText());
+
+		respuesta = enviar("GET", "/instrumentos/teclados", null, null, SMILE + ", application/json;q=0.5");
+		assertEquals(SMILE, respuesta.headers().firstValue("Content-Type").orElseThrow());
+		JsonNode teclados = smile.readTree(respuesta.body());
+		JsonNode nord = null;
+		for (JsonNode elemento : teclados) {
+			if (elemento.get("codigo").asText().equals("BIN-T1")) {
+				nord = elemento;
+			}
+		}
+		assertEquals("teclado", nord.get("type").asText());
+		assertEquals("Básica", nord.get("sensibilidad").asText());
+
+		// Sin preferencia por un formato binario se sigue respondiendo JSON.
+		respuesta = enviar("GET", "/instrumentos/BIN-G1", null, null, "*/*");
+		assertTrue(respuesta.headers().firstValue("Content-Type").orElseThrow().startsWith("application/json"));
+		assertEquals("guitarra", new ObjectMapper().readTree(respuesta.body()).get("type").asText());
+	}
+
+	private HttpResponse<byte[]> enviar(String metodo, String ruta, String tipo, byte[] cuerpo, String accept) throws Exception {
+		HttpRequest.Builder solicitud = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + ruta))
+				.header("Authorization", AUTORIZACION)
+				.header("Accept", accept)
+				.method(metodo, cuerpo == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(cuerpo));
+		if (tipo != null) {
+			solicitud.header("Content-Type", tipo);
+		}
+		return cliente.send(solicitud.build(), HttpResponse.BodyHandlers.ofByteArray());
+	}
+}
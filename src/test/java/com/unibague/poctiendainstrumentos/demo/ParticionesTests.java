@@ -0,0 +1,73 @@
+package com.unibague.poctiendainstrumentos.demo;
+
+import com.unibague.poctiendainstrumentos.dto.FiltroInstrumentoDTO;
+import com.unibague.poctiendainstrumentos.dto.ResultadoFiltroDTO;
+import com.unibague.poctiendainstrumentos.model.Guitarra;
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+import com.unibague.poctiendainstrumentos.model.Teclado;
+import com.unibague.poctiendainstrumentos.model.enums.CampoOrden;
+import com.unibague.poctiendainstrumentos.model.enums.SensibilidadTeclado;
+import com.unibague.poctiendainstrumentos.model.enums.TipoGuitarra;
+import com.unibague.poctiendainstrumentos.service.IServicioInstrumento;
+import com.unibague.poctiendainstrumentos.service.ServicioInstrumento;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@SpringBootTest(properties = {"tienda.catalogo.particiones=4", "tienda.filtro.umbral-paralelo=100"})
+class ParticionesTests {
+
+	@Autowired
+	private IServicioInstrumento particionado;
+
+	@Test
+	void filtrosParticionadosCoincidenConUnaSolaParticion() {
+		// La instancia única del servicio no pasa por Spring y conserva una sola partición.
+		IServicioInstrumento unico = ServicioInstrumento.getInstance();
+		String[] marcas = {"ParA", "ParB", "ParC"};
+		for (int i = 0; i < 1_500; i++) {
+			for (IServicioInstrumento servicio : List.of(particionado, unico)) {
+				servicio.agregarInstrumento(i % 3 == 0
+						? new Teclado("PAR-" + i, "Piano " + (i % 11), marcas[i % 3], 800_000 + (i * 7 % 400) * 2_500,
+								i % 9, LocalDate.of(2023, 1, 1).plusDays(i % 500), 61 + i % 3 * 12, i % 2 == 0,
+								SensibilidadTeclado.values()[i % 5])
+						: new Guitarra("PAR-" + i, "Modelo " + (i % 13), marcas[i % 3], 500_000 + (i * 31 % 800) * 2_500,
+								i % 7, LocalDate.of(2023, 1, 1).plusDays(i % 500), TipoGuitarra.values()[i % 4], "Aliso"));
+			}
+		}
+		for (IServicioInstrumento servicio : List.of(particionado, unico)) {
+			servicio.eliminarInstrumento("PAR-10", null);
+			servicio.ajustarStock("PAR-11", 5);
+		}
+
+		List<FiltroInstrumentoDTO.FiltroInstrumentoDTOBuilder> filtros = List.of(
+				FiltroInstrumentoDTO.builder().marca("parb"),
+				FiltroInstrumentoDTO.builder().nombre("modelo 1").precioMin(900_000.0).precioMax(2_000_000.0),
+				FiltroInstrumentoDTO.builder().tipoGuitarra(TipoGuitarra.ELECTRICA).stockMin(2),
+				FiltroInstrumentoDTO.builder().sensibilidad(SensibilidadTeclado.ALTA).fechaIngresoDesde(LocalDate.of(2023, 6, 1)),
+				FiltroInstrumentoDTO.builder().nombre("piamo").marca("para").difuso(true),
+				FiltroInstrumentoDTO.builder().marca("parc").limitesPrecio(List.of(1_000_000.0, 1_500_000.0)));
+		for (FiltroInstrumentoDTO.FiltroInstrumentoDTOBuilder filtro : filtros) {
+			ResultadoFiltroDTO esperado = unico.filtrarConFacetas(filtro.build());
+			ResultadoFiltroDTO obtenido = particionado.filtrarConFacetas(filtro.build());
+			assertFalse(esperado.getResultados().isEmpty(), filtro.toString());
+			// Con varias particiones el orden es el de las particiones; el contenido y las facetas son los mismos.
+			assertEquals(porCodigo(esperado.getResultados()), porCodigo(obtenido.getResultados()), filtro.toString());
+			assertEquals(esperado.getFacetas(), obtenido.getFacetas(), filtro.toString());
+
+			FiltroInstrumentoDTO ordenado = filtro.ordenarPor(CampoOrden.PRECIO_BASE).descendente(true).limite(25).build();
+			assertEquals(unico.filtrarInstrumentos(ordenado), particionado.filtrarInstrumentos(ordenado), filtro.toString());
+		}
+	}
+
+	private static List<String> porCodigo(List<Instrumento> instrumentos) {
+		return instrumentos.stream().map(Instrumento::getCodigo).sorted(Comparator.naturalOrder()).toList();
+	}
+}
@@ -0,0 +1,84 @@
+package com.unibague.poctiendainstrumentos.demo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ProyeccionCamposTests {
+
+	private static final String AUTORIZACION = "Basic "
+			+ Base64.getEncoder().encodeToString("admin:admin".getBytes(StandardCharsets.UTF_8));
+
+	@LocalServerPort
+	private int puerto;
+
+	private final HttpClient cliente = HttpClient.newHttpClient();
+
+	private final ObjectMapper mapeador = new ObjectMapper();
+
+	@Test
+	void soloSerializaLosCamposPedidos() throws Exception {
+		String guitarra = """
+				{"type":"guitarra","codigo":"PRY-1","nombre":"Telecaster","marca":"Fender","precioBase":2500000,
+				 "stock":3,"fechaIngreso":"2024-05-01","tipo":"Eléctrica","materialCuerpo":"Fresno",
+				 "fundas":[{"codigo":"F1","nombre":"Rígida","precio":300000}]}
+				""";
+		assertEquals(201, enviar("POST", "/instrumentos", guitarra).statusCode());
+
+		JsonNode proyectada = buscar(mapeador.readTree(enviar("GET", "/instrumentos/guitarras?fields=codigo,nombre,precioBase,stock", null).body()));
+		assertEquals(List.of("type", "codigo", "nombre", "precioBase", "stock"), campos(proyectada));
+		assertEquals("guitarra", proyectada.get("type").asText());
+
+		// Sin proyección el listado conserva todos los campos.
+		JsonNode completa = buscar(mapeador.readTree(enviar("GET", "/instrumentos/guitarras", null).body()));
+		assertTrue(completa.has("fundas"));
+		assertTrue(completa.has("materialCuerpo"));
+
+		String filtro = "{\"marca\":\"Fender\"}";
+		JsonNode conFacetas = mapeador.readTree(enviar("POST", "/instrumentos/filtrar?facetas=true&fields=codigo,stock", filtro).body());
+		assertEquals(List.of("type", "codigo", "stock"), campos(buscar(conFacetas.get("resultados"))));
+		assertTrue(conFacetas.has("facetas"));
+
+		assertEquals(400, enviar("GET", "/instrumentos?fields=codigo,inexistente", null).statusCode());
+	}
+
+	private JsonNode buscar(JsonNode instrumentos) {
+		for (JsonNode instrumento : instrumentos) {
+			if (instrumento.get("codigo").asText().equals("PRY-1")) {
+				return instrumento;
+			}
+		}
+		throw new AssertionError("No se encontró PRY-1");
+	}
+
+	private List<String> campos(JsonNode nodo) {
+		List<String> nombres = new ArrayList<>();
+		nodo.fieldNames().forEachRemaining(nombres::add);
+		return nombres;
+	}
+
+	private HttpResponse<String> enviar(String metodo, String ruta, String cuerpo) throws Exception {
+		HttpRequest.Builder solicitud = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + ruta))
+				.header("Authorization", AUTORIZACION)
+				.method(metodo, cuerpo == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(cuerpo));
+		if (cuerpo != null) {
+			solicitud.header("Content-Type", "application/json");
+		}
+		return cliente.send(solicitud.build(), HttpResponse.BodyHandlers.ofString());
+	}
+}
@@ -0,0 +1,117 @@
+package com.unibague.poctiendainstrumentos.demo;
+
+import com.unibague.poctiendainstrumentos.POCTiendaInstrumentos;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ReplicacionTests {
+
+	private static final String AUTORIZACION = "Basic "
+			+ Base64.getEncoder().encodeToString("admin:admin".getBytes(StandardCharsets.UTF_8));
+
+	@LocalServerPort
+	private int puertoLider;
+
+	private final HttpClient cliente = HttpClient.newHttpClient();
+
+	private final List<ConfigurableApplicationContext> seguidores = new ArrayList<>();
+
+	@AfterEach
+	void detenerSeguidores() {
+		seguidores.forEach(ConfigurableApplicationContext::close);
+	}
+
+	@Test
+	void seguidoresReplicanLecturasYReenvianEscrituras() throws Exception {
+		String lider = "http://localhost:" + puertoLider;
+		String seguidor1 = iniciarSeguidor(lider);
+		String seguidor2 = iniciarSeguidor(lider);
+
+		assertEquals(201, enviar("POST", lider + "/instrumentos", guitarra("REP-1")).statusCode());
+		esperarInstrumento(seguidor1, "REP-1");
+		esperarInstrumento(seguidor2, "REP-1");
+
+		// La escritura en un seguidor se reenvía al líder y el seguidor la ve de inmediato.
+		assertEquals(201, enviar("POST", seguidor1 + "/instrumentos", guitarra("REP-2")).statusCode());
+		assertEquals(200, enviar("GET", seguidor1 + "/instrumentos/REP-2", null).statusCode());
+		assertEquals(200, enviar("GET", lider + "/instrumentos/REP-2", null).statusCode());
+		esperarInstrumento(seguidor2, "REP-2");
+
+		// Las lecturas se reparten entre los tres nodos y todos responden lo mismo.
+		List<String> nodos = List.of(lider, seguidor1, seguidor2);
+		String esperado = enviar("GET", lider + "/instrumentos", null).body();
+		int lecturas = 300;
+		ExecutorService ejecutor = Executors.newFixedThreadPool(nodos.size() * 4);
+		long inicio = System.nanoTime();
+		List<Future<String>> respuestas = new ArrayList<>();
+		for (int i = 0; i < lecturas; i++) {
+			String nodo = nodos.get(i % nodos.size());
+			respuestas.add(ejecutor.submit(() -> enviar("GET", nodo + "/instrumentos", null).body()));
+		}
+		for (Future<String> respuesta : respuestas) {
+			assertEquals(esperado, respuesta.get());
+		}
+		double segundos = (System.nanoTime() - inicio) / 1e9;
+		ejecutor.shutdown();
+		System.out.printf("%d lecturas repartidas en %d nodos: %.0f lecturas/s%n", lecturas, nodos.size(), lecturas / segundos);
+
+		String estado = enviar("GET", seguidor2 + "/replicacion/estado", null).body();
+		assertTrue(estado.contains("\"rol\":\"seguidor\""), estado);
+	}
+
+	private String iniciarSeguidor(String lider) {
+		ConfigurableApplicationContext contexto = new SpringApplicationBuilder(POCTiendaInstrumentos.class)
+				.run("--server.port=0",
+						"--spring.devtools.restart.enabled=false",
+						"--spring.devtools.livereload.enabled=false",
+						"--tienda.replicacion.lider-url=" + lider,
+						"--tienda.replicacion.intervalo-ms=50");
+		seguidores.add(contexto);
+		return "http://localhost:" + contexto.getEnvironment().getProperty("local.server.port");
+	}
+
+	private void esperarInstrumento(String nodo, String codigo) throws Exception {
+		long limite = System.currentTimeMillis() + 5_000;
+		while (enviar("GET", nodo + "/instrumentos/" + codigo, null).statusCode() != 200) {
+			assertTrue(System.currentTimeMillis() < limite, "El instrumento " + codigo + " no se replicó en " + nodo);
+			Thread.sleep(20);
+		}
+	}
+
+	private HttpResponse<String> enviar(String metodo, String url, String cuerpo) throws Exception {
+		HttpRequest.Builder solicitud = HttpRequest.newBuilder(URI.create(url))
+				.header("Authorization", AUTORIZACION)
+				.method(metodo, cuerpo == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(cuerpo));
+		if (cuerpo != null) {
+			solicitud.header("Content-Type", "application/json");
+		}
+		return cliente.send(solicitud.build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+	private static String guitarra(String codigo) {
+		return """
+				{"type":"guitarra","codigo":"%s","nombre":"Telecaster","marca":"Fender","precioBase":2500000,
+				 "stock":3,"fechaIngreso":"2024-05-01","tipo":"Eléctrica","materialCuerpo":"Fresno"}
+				""".formatted(codigo);
+	}
+}
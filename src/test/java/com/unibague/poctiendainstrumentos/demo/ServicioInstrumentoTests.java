@@ -0,0 +1,468 @@
+package com.unibague.poctiendainstrumentos.demo;
+
+import com.unibague.poctiendainstrumentos.dto.EventoCambioDTO;
+import com.unibague.poctiendainstrumentos.dto.FacetasDTO;
+import com.unibague.poctiendainstrumentos.dto.FiltroInstrumentoDTO;
+import com.unibague.poctiendainstrumentos.dto.ResultadoFiltroDTO;
+import com.unibague.poctiendainstrumentos.exception.ConflictoVersionException;
+import com.unibague.poctiendainstrumentos.model.Funda;
+import com.unibague.poctiendainstrumentos.model.Guitarra;
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+import com.unibague.poctiendainstrumentos.model.Teclado;
+import com.unibague.poctiendainstrumentos.model.enums.CampoOrden;
+import com.unibague.poctiendainstrumentos.model.enums.SensibilidadTeclado;
+import com.unibague.poctiendainstrumentos.model.enums.TipoGuitarra;
+import com.unibague.poctiendainstrumentos.service.IServicioInstrumento;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class ServicioInstrumentoTests {
+
+	@Autowired
+	private IServicioInstrumento servicioInstrumento;
+
+	@Test
+	void reservasConcurrentesNoDejanStockNegativo() throws InterruptedException {
+		int stockInicial = 1_000;
+		int hilos = 200;
+		int intentosPorHilo = 20;
+		servicioInstrumento.agregarInstrumento(new Guitarra("HOT-1", "Stratocaster", "Fender", 1_000_000,
+				stockInicial, LocalDate.now(), TipoGuitarra.ELECTRICA, "Aliso"));
+
+		AtomicInteger exitosas = new AtomicInteger();
+		AtomicInteger rechazadas = new AtomicInteger();
+		CountDownLatch inicio = new CountDownLatch(1);
+		ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+		for (int i = 0; i < hilos; i++) {
+			ejecutor.submit(() -> {
+				inicio.await();
+				for (int j = 0; j < intentosPorHilo; j++) {
+					try {
+						servicioInstrumento.reservarStock("hot-1", 1);
+						exitosas.incrementAndGet();
+					} catch (IllegalStateException e) {
+						rechazadas.incrementAndGet();
+					}
+				}
+				return null;
+			});
+		}
+		inicio.countDown();
+		ejecutor.shutdown();
+		assertTrue(ejecutor.awaitTermination(30, TimeUnit.SECONDS));
+
+		assertEquals(stockInicial, exitosas.get());
+		assertEquals(hilos * intentosPorHilo - stockInicial, rechazadas.get());
+		assertEquals(0, servicioInstrumento.buscarInstrumento("HOT-1").orElseThrow().getStock());
+		// Las reservas no toman el cerrojo de la partición, pero el listado las ve igual.
+		assertEquals(0, servicioInstrumento.listarInstrumentos().stream()
+				.filter(i -> i.getCodigo().equals("HOT-1")).findFirst().orElseThrow().getStock());
+	}
+
+	@Test
+	void liberarYAjustarStock() {
+		servicioInstrumento.agregarInstrumento(new Guitarra("HOT-2", "Les Paul", "Gibson", 2_000_000,
+				5, LocalDate.now(), TipoGuitarra.ELECTRICA, "Caoba"));
+
+		assertEquals(2, servicioInstrumento.reservarStock("HOT-2", 3));
+		assertEquals(4, servicioInstrumento.liberarStock("HOT-2", 2));
+		assertEquals(10, servicioInstrumento.ajustarStock("HOT-2", 6));
+		assertThrows(IllegalStateException.class, () -> servicioInstrumento.ajustarStock("HOT-2", -11));
+		assertThrows(IllegalArgumentException.class, () -> servicioInstrumento.reservarStock("HOT-2", 0));
+		assertEquals(10, servicioInstrumento.buscarInstrumento("HOT-2").orElseThrow().getStock());
+	}
+
+	@Test
+	void filtroConOrdenYLimiteDevuelveLosPrimeros() {
+		for (int i = 0; i < 50; i++) {
+			servicioInstrumento.agregarInstrumento(new Guitarra("ORD-" + i, "Modelo " + (i % 7), "Orden", 1_000_000 + (i * 37 % 50) * 1_000,
+					i % 5, LocalDate.of(2024, 1, 1).plusDays(i), TipoGuitarra.values()[i % 4], "Aliso"));
+		}
+		FiltroInstrumentoDTO.FiltroInstrumentoDTOBuilder filtro = FiltroInstrumentoDTO.builder().marca("orden");
+		List<Instrumento> todos = servicioInstrumento.filtrarInstrumentos(filtro.build());
+
+		List<Instrumento> baratos = servicioInstrumento.filtrarInstrumentos(filtro.ordenarPor(CampoOrden.PRECIO_BASE).limite(5).build());
+		assertEquals(todos.stream().sorted(Comparator.comparingDouble(Instrumento::getPrecioBase)).limit(5).toList(), baratos);
+
+		// Con empates en el stock se desempata por código.
+		List<Instrumento> conMasStock = servicioInstrumento.filtrarInstrumentos(filtro.ordenarPor(CampoOrden.STOCK).descendente(true).limite(3).build());
+		assertEquals(List.of("ORD-14", "ORD-19", "ORD-24"), conMasStock.stream().map(Instrumento::getCodigo).toList());
+
+		ResultadoFiltroDTO recientes = servicioInstrumento.filtrarConFacetas(filtro.ordenarPor(CampoOrden.FECHA_INGRESO).limite(2).build());
+		assertEquals(List.of("ORD-49", "ORD-48"), recientes.getResultados().stream().map(Instrumento::getCodigo).toList());
+		assertEquals(50L, recientes.getFacetas().getMarcas().get("Orden"));
+
+		assertEquals(todos.subList(0, 4), servicioInstrumento.filtrarInstrumentos(filtro.ordenarPor(null).descendente(null).limite(4).build()));
+		assertThrows(IllegalArgumentException.class, () -> servicioInstrumento.filtrarInstrumentos(filtro.limite(0).build()));
+		assertThrows(IllegalArgumentException.class, () -> servicioInstrumento.ajustarPrecios(filtro.limite(1).build(), 10.0));
+	}
+
+	@Test
+	void filtroPorFechaDeIngresoSigueAltasEdicionesYBajas() {
+		LocalDate base = LocalDate.of(1990, 1, 1);
+		for (int i = 0; i < 10; i++) {
+			servicioInstrumento.agregarInstrumento(new Guitarra("FEC-" + i, "Modelo " + i, "Fechas", 1_000_000, 1,
+					base.plusDays(i * 10L), TipoGuitarra.values()[i % 4], "Aliso"));
+		}
+		FiltroInstrumentoDTO.FiltroInstrumentoDTOBuilder enero = FiltroInstrumentoDTO.builder()
+				.fechaIngresoDesde(base).fechaIngresoHasta(base.plusDays(30));
+		assertEquals(List.of("FEC-0", "FEC-1", "FEC-2", "FEC-3"), codigos(servicioInstrumento.filtrarInstrumentos(enero.build())));
+
+		servicioInstrumento.editarInstrumento("FEC-1", new Guitarra("FEC-1", "Modelo 1", "Fechas", 1_000_000, 1,
+				base.plusDays(200), TipoGuitarra.ACUSTICA, "Aliso"), null);
+		servicioInstrumento.editarInstrumento("FEC-9", new Guitarra("FEC-9B", "Modelo 9", "Fechas", 1_000_000, 1,
+				base.plusDays(5), TipoGuitarra.ELECTRICA, "Aliso"), null);
+		servicioInstrumento.eliminarInstrumento("FEC-2", null);
+		assertEquals(List.of("FEC-0", "FEC-9B", "FEC-3"), codigos(servicioInstrumento.filtrarInstrumentos(enero.build())));
+
+		// Se combina con los demás criterios, con el orden y con los ajustes masivos.
+		assertEquals(List.of("FEC-9B", "FEC-0"), codigos(servicioInstrumento.filtrarInstrumentos(
+				enero.tipoGuitarra(TipoGuitarra.ELECTRICA).ordenarPor(CampoOrden.FECHA_INGRESO).descendente(true).build())));
+		assertEquals(3, servicioInstrumento.ajustarStock(FiltroInstrumentoDTO.builder().marca("fechas")
+				.fechaIngresoHasta(base.plusDays(30)).build(), 7, null));
+		assertThrows(IllegalArgumentException.class, () -> servicioInstrumento.filtrarInstrumentos(
+				FiltroInstrumentoDTO.builder().fechaIngresoDesde(base.plusDays(1)).fechaIngresoHasta(base).build()));
+	}
+
+	@Test
+	void busquedaDeTextoIgnoraTildesYSigueLasModificaciones() {
+		servicioInstrumento.agregarInstrumento(new Guitarra("BUS-1", "Guitarra Clásica Quetzal", "Zarabanda", 900_000, 2,
+				LocalDate.of(2024, 3, 1), TipoGuitarra.CLASICA, "Cedro"));
+		servicioInstrumento.agregarInstrumento(new Guitarra("BUS-2", "Guitarra Acústica Quetzal", "Zarabanda", 1_100_000, 2,
+				LocalDate.of(2024, 3, 2), TipoGuitarra.ACUSTICA, "Caoba"));
+		servicioInstrumento.agregarFundas("BUS-1", List.of(new Funda("BUS-F1", "Estuche Tucán", 150_000, null)));
+
+		assertEquals(List.of("BUS-1", "BUS-2"), busqueda("QUETZAL clasica"));
+		assertEquals(List.of("BUS-2", "BUS-1"), busqueda("acústica quetzal"));
+		assertEquals(List.of("BUS-1"), busqueda("tucan cedro"));
+
+		servicioInstrumento.editarFunda("BUS-1", "BUS-F1", new Funda("BUS-F1", "Funda acolchada", 150_000, null), null);
+		servicioInstrumento.editarInstrumento("BUS-2", new Guitarra("BUS-2B", "Requinto Quetzal", "Zarabanda", 1_100_000, 2,
+				LocalDate.of(2024, 3, 2), TipoGuitarra.ACUSTICA, "Caoba"), null);
+		assertEquals(List.of(), busqueda("tucan"));
+		assertEquals(List.of("BUS-2B"), busqueda("requinto"));
+
+		servicioInstrumento.eliminarInstrumento("BUS-1", null);
+		assertEquals(List.of("BUS-2B"), busqueda("quetzal"));
+		assertThrows(IllegalArgumentException.class, () -> servicioInstrumento.buscarTexto("  ", 10, false));
+	}
+
+	@Test
+	void modoDifusoToleraErroresDeEscritura() {
+		servicioInstrumento.agregarInstrumento(new Guitarra("DIF-1", "Bandola Cununo", "Zumbadora", 700_000, 3,
+				LocalDate.of(2024, 4, 1), TipoGuitarra.ACUSTICA, "Cedro"));
+		servicioInstrumento.agregarInstrumento(new Guitarra("DIF-2", "Bandola Llanera", "Marimbera", 800_000, 3,
+				LocalDate.of(2024, 4, 2), TipoGuitarra.ACUSTICA, "Cedro"));
+
+		assertEquals(List.of(), busqueda("cunnuo"));
+		assertEquals(List.of("DIF-1"), busqueda("cunnuo", true));
+		assertEquals(List.of("DIF-1", "DIF-2"), busqueda("bandla cununo", true));
+
+		FiltroInstrumentoDTO.FiltroInstrumentoDTOBuilder filtro = FiltroInstrumentoDTO.builder().nombre("Bandla Cununo").marca("Zumbadra");
+		assertEquals(List.of(), codigos(servicioInstrumento.filtrarInstrumentos(filtro.build())));
+		assertEquals(List.of("DIF-1"), codigos(servicioInstrumento.filtrarInstrumentos(filtro.difuso(true).build())));
+		assertEquals(List.of("DIF-2"), codigos(servicioInstrumento.filtrarInstrumentos(
+				FiltroInstrumentoDTO.builder().marca("marimbra").difuso(true).build())));
+
+		servicioInstrumento.editarInstrumento("DIF-1", new Guitarra("DIF-1", "Bandola Guabina", "Zumbadora", 700_000, 3,
+				LocalDate.of(2024, 4, 1), TipoGuitarra.ACUSTICA, "Cedro"), null);
+		assertEquals(List.of(), busqueda("cunnuo", true));
+		assertEquals(List.of(), codigos(servicioInstrumento.filtrarInstrumentos(filtro.build())));
+	}
+
+	@Test
+	void edicionYEliminacionDistinguenGuitarrasIgualesSegunEquals() {
+		// Guitarra compara con equals sólo tipo, material y fundas: estas dos son "iguales".
+		servicioInstrumento.agregarInstrumento(new Guitarra("IDE-1", "Primera", "Identidad", 1_000_000, 1,
+				LocalDate.of(2024, 5, 1), TipoGuitarra.ELECTRICA, "Aliso"));
+		servicioInstrumento.agregarInstrumento(new Guitarra("IDE-2", "Segunda", "Identidad", 1_000_000, 1,
+				LocalDate.of(2024, 5, 1), TipoGuitarra.ELECTRICA, "Aliso"));
+		FiltroInstrumentoDTO identidad = FiltroInstrumentoDTO.builder().marca("identidad").build();
+
+		servicioInstrumento.editarInstrumento("IDE-2", new Guitarra("IDE-2", "Segunda editada", "Identidad", 1_000_000, 1,
+				LocalDate.of(2024, 5, 1), TipoGuitarra.ELECTRICA, "Aliso"), null);
+		assertEquals(List.of("Primera", "Segunda editada"),
+				servicioInstrumento.filtrarInstrumentos(identidad).stream().map(Instrumento::getNombre).toList());
+
+		servicioInstrumento.eliminarInstrumento("IDE-2", null);
+		assertEquals(List.of("IDE-1"), codigos(servicioInstrumento.filtrarInstrumentos(identidad)));
+	}
+
+	@Test
+	void dosEdicionesNoTerminanConElMismoCodigo() throws Exception {
+		for (int ronda = 0; ronda < 50; ronda++) {
+			for (String codigo : List.of("REN-A" + ronda, "REN-B" + ronda)) {
+				servicioInstrumento.agregarInstrumento(new Guitarra(codigo, "Modelo", "Renombre", 1_000_000, 1,
+						LocalDate.of(2024, 5, 1), TipoGuitarra.CLASICA, "Cedro"));
+			}
+			String destino = "REN-Z" + ronda;
+			AtomicInteger rechazadas = new AtomicInteger();
+			CountDownLatch inicio = new CountDownLatch(1);
+			ExecutorService ejecutor = Executors.newFixedThreadPool(2);
+			for (String codigo : List.of("REN-A" + ronda, "REN-B" + ronda)) {
+				ejecutor.submit(() -> {
+					inicio.await();
+					try {
+						servicioInstrumento.editarInstrumento(codigo, new Guitarra(destino, "Modelo", "Renombre", 1_000_000, 1,
+								LocalDate.of(2024, 5, 1), TipoGuitarra.CLASICA, "Cedro"), null);
+					} catch (IllegalStateException e) {
+						rechazadas.incrementAndGet();
+					}
+					return null;
+				});
+			}
+			inicio.countDown();
+			ejecutor.shutdown();
+			assertTrue(ejecutor.awaitTermination(10, TimeUnit.SECONDS));
+			assertEquals(1, rechazadas.get());
+			List<String> codigos = List.of("REN-A" + ronda, "REN-B" + ronda, destino);
+			assertEquals(2, servicioInstrumento.listarInstrumentos().stream().filter(i -> codigos.contains(i.getCodigo())).count());
+			assertEquals(1, servicioInstrumento.listarInstrumentos().stream().filter(i -> i.getCodigo().equals(destino)).count());
+		}
+	}
+
+	@Test
+	void fundasAgregadasAlMismoTiempoNoSePierden() throws InterruptedException {
+		int hilos = 16;
+		servicioInstrumento.agregarInstrumento(new Guitarra("FUN-1", "Telecaster", "Fender", 1_000_000, 1,
+				LocalDate.of(2024, 6, 1), TipoGuitarra.ELECTRICA, "Fresno"));
+		CountDownLatch inicio = new CountDownLatch(1);
+		ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+		for (int i = 0; i < hilos; i++) {
+			String codigoFunda = "FUN-F" + i;
+			ejecutor.submit(() -> {
+				inicio.await();
+				servicioInstrumento.agregarFundas("FUN-1", List.of(new Funda(codigoFunda, "Funda", 100_000, null)));
+				servicioInstrumento.editarFunda("FUN-1", codigoFunda, new Funda(codigoFunda, "Funda editada", 120_000, null), null);
+				return null;
+			});
+		}
+		inicio.countDown();
+		ejecutor.shutdown();
+		assertTrue(ejecutor.awaitTermination(30, TimeUnit.SECONDS));
+
+		Guitarra guitarra = (Guitarra) servicioInstrumento.buscarInstrumento("FUN-1").orElseThrow();
+		assertEquals(hilos, guitarra.getFundas().size());
+		assertTrue(guitarra.getFundas().stream().allMatch(f -> f.getNombre().equals("Funda editada")));
+		assertEquals(1 + 2L * hilos, guitarra.getVersion());
+	}
+
+	@Test
+	void edicionesConLaMismaVersionEsperadaAplicanSoloUna() throws InterruptedException {
+		int hilos = 16;
+		servicioInstrumento.agregarInstrumento(new Guitarra("VER-1", "Original", "Gibson", 1_000_000, 5,
+				LocalDate.of(2024, 6, 1), TipoGuitarra.ELECTRICA, "Caoba"));
+		AtomicInteger exitosas = new AtomicInteger();
+		AtomicInteger conflictos = new AtomicInteger();
+		CountDownLatch inicio = new CountDownLatch(1);
+		ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+		for (int i = 0; i < hilos; i++) {
+			String nombre = "Edicion " + i;
+			ejecutor.submit(() -> {
+				inicio.await();
+				try {
+					servicioInstrumento.editarInstrumento("VER-1", new Guitarra("VER-1", nombre, "Gibson", 1_000_000, 5,
+							LocalDate.of(2024, 6, 1), TipoGuitarra.ELECTRICA, "Caoba"), 1L);
+					exitosas.incrementAndGet();
+				} catch (ConflictoVersionException e) {
+					conflictos.incrementAndGet();
+				}
+				return null;
+			});
+		}
+		inicio.countDown();
+		ejecutor.shutdown();
+		assertTrue(ejecutor.awaitTermination(30, TimeUnit.SECONDS));
+
+		assertEquals(1, exitosas.get());
+		assertEquals(hilos - 1, conflictos.get());
+		assertEquals(2, servicioInstrumento.buscarInstrumento("VER-1").orElseThrow().getVersion());
+	}
+
+	@Test
+	void lasModificacionesNoAlteranLoYaLeido() {
+		for (int i = 0; i < 3; i++) {
+			servicioInstrumento.agregarInstrumento(new Guitarra("ISO-" + i, "Modelo", "Aislamiento", 1_000_000, 10,
+					LocalDate.of(2024, 6, 1), TipoGuitarra.ELECTRICA, "Aliso"));
+		}
+		FiltroInstrumentoDTO aislamiento = FiltroInstrumentoDTO.builder().marca("aislamiento").build();
+		List<Instrumento> antes = servicioInstrumento.filtrarInstrumentos(aislamiento);
+		Instrumento leido = servicioInstrumento.buscarInstrumento("ISO-0").orElseThrow();
+
+		servicioInstrumento.reservarStock("ISO-0", 4);
+		assertEquals(3, servicioInstrumento.ajustarPrecios(aislamiento, 10.0));
+		assertEquals(3, servicioInstrumento.ajustarStock(aislamiento, null, 5));
+
+		assertEquals(10, leido.getStock());
+		assertEquals(1, leido.getVersion());
+		for (Instrumento instrumento : antes) {
+			assertEquals(1_000_000, instrumento.getPrecioBase());
+			assertEquals(10, instrumento.getStock());
+		}
+		Instrumento actual = servicioInstrumento.buscarInstrumento("ISO-0").orElseThrow();
+		assertEquals(11, actual.getStock());
+		assertEquals(1_100_000, actual.getPrecioBase(), 1e-6);
+		assertEquals(4, actual.getVersion());
+		assertEquals(List.of("ISO-0", "ISO-1", "ISO-2"), codigos(servicioInstrumento.filtrarInstrumentos(aislamiento)));
+	}
+
+	@Test
+	void ajusteMasivoInvalidoNoCambiaNada() {
+		servicioInstrumento.agregarInstrumento(new Guitarra("MAS-1", "Modelo", "Masivo", 1_000_000, 5,
+				LocalDate.of(2024, 8, 1), TipoGuitarra.ELECTRICA, "Aliso"));
+		servicioInstrumento.agregarInstrumento(new Guitarra("MAS-2", "Modelo", "Masivo", 2_000_000, 2,
+				LocalDate.of(2024, 8, 1), TipoGuitarra.ELECTRICA, "Aliso"));
+		FiltroInstrumentoDTO masivo = FiltroInstrumentoDTO.builder().marca("masivo").build();
+		long version = servicioInstrumento.versionCatalogo();
+
+		// MAS-2 quedaría con stock negativo: tampoco se ajusta MAS-1.
+		assertThrows(IllegalArgumentException.class, () -> servicioInstrumento.ajustarStock(masivo, null, -3));
+		assertThrows(IllegalArgumentException.class, () -> servicioInstrumento.ajustarPrecios(masivo, -150.0));
+		assertThrows(IllegalArgumentException.class, () -> servicioInstrumento.ajustarPrecios(masivo, Double.NaN));
+		assertThrows(IllegalArgumentException.class, () -> servicioInstrumento.ajustarStock(masivo, 1, 1));
+		assertThrows(IllegalArgumentException.class, () -> servicioInstrumento.ajustarStock(
+				FiltroInstrumentoDTO.builder().marca("masivo").ordenarPor(CampoOrden.STOCK).build(), 1, null));
+		assertThrows(IllegalArgumentException.class, () -> servicioInstrumento.ajustarPrecios(
+				FiltroInstrumentoDTO.builder().marca("masivo").descendente(true).build(), 10.0));
+
+		assertEquals(version, servicioInstrumento.versionCatalogo());
+		assertEquals(List.of(5, 2), servicioInstrumento.filtrarInstrumentos(masivo).stream().map(Instrumento::getStock).toList());
+		assertEquals(List.of(1_000_000.0, 2_000_000.0),
+				servicioInstrumento.filtrarInstrumentos(masivo).stream().map(Instrumento::getPrecioBase).toList());
+
+		assertEquals(2, servicioInstrumento.ajustarStock(masivo, null, -2));
+		List<EventoCambioDTO> cambios = servicioInstrumento.cambiosDesde(version, 10);
+		assertEquals(version + 2, servicioInstrumento.versionCatalogo());
+		assertEquals(List.of(version + 1, version + 2), cambios.stream().map(EventoCambioDTO::getSecuencia).toList());
+	}
+
+	@Test
+	void ajusteMasivoNoPierdeReservasConcurrentes() throws InterruptedException {
+		int stockInicial = 10_000;
+		int hilos = 8;
+		int reservasPorHilo = 500;
+		int ajustes = 50;
+		servicioInstrumento.agregarInstrumento(new Guitarra("LOT-1", "Modelo", "Lote", 1_000_000, stockInicial,
+				LocalDate.of(2024, 9, 1), TipoGuitarra.ELECTRICA, "Aliso"));
+		FiltroInstrumentoDTO lote = FiltroInstrumentoDTO.builder().marca("lote").build();
+
+		CountDownLatch inicio = new CountDownLatch(1);
+		ExecutorService ejecutor = Executors.newFixedThreadPool(hilos + 1);
+		for (int i = 0; i < hilos; i++) {
+			ejecutor.submit(() -> {
+				inicio.await();
+				for (int j = 0; j < reservasPorHilo; j++) {
+					servicioInstrumento.reservarStock("LOT-1", 1);
+				}
+				return null;
+			});
+		}
+		ejecutor.submit(() -> {
+			inicio.await();
+			for (int j = 0; j < ajustes; j++) {
+				servicioInstrumento.ajustarStock(lote, null, 1);
+			}
+			return null;
+		});
+		inicio.countDown();
+		ejecutor.shutdown();
+		assertTrue(ejecutor.awaitTermination(30, TimeUnit.SECONDS));
+
+		Instrumento actual = servicioInstrumento.buscarInstrumento("LOT-1").orElseThrow();
+		assertEquals(stockInicial - hilos * reservasPorHilo + ajustes, actual.getStock());
+		assertEquals(1 + hilos * reservasPorHilo + ajustes, actual.getVersion());
+	}
+
+	@Test
+	void valoresRepetidosCompartenInstancia() {
+		servicioInstrumento.agregarInstrumento(new Guitarra("CAN-1", "Modelo", new String("Canonica"), 1_000_000, 1,
+				LocalDate.of(2024, 10, 1), TipoGuitarra.ELECTRICA, new String("Fresno")));
+		servicioInstrumento.agregarInstrumento(new Guitarra("CAN-2", "Modelo", new String("Canonica"), 1_000_000, 1,
+				LocalDate.of(2024, 10, 1), TipoGuitarra.ELECTRICA, new String("Fresno")));
+
+		Guitarra primera = (Guitarra) servicioInstrumento.buscarInstrumento("CAN-1").orElseThrow();
+		Guitarra segunda = (Guitarra) servicioInstrumento.buscarInstrumento("CAN-2").orElseThrow();
+		assertSame(primera.getMarca(), segunda.getMarca());
+		assertSame(primera.getMaterialCuerpo(), segunda.getMaterialCuerpo());
+	}
+
+	@Test
+	void facetasCuentanSoloLasCoincidencias() {
+		servicioInstrumento.agregarInstrumento(new Guitarra("FAC-1", "Facetado 1", "Yamaha", 400_000, 1,
+				LocalDate.of(2024, 12, 1), TipoGuitarra.ELECTRICA, "Aliso"));
+		servicioInstrumento.agregarInstrumento(new Guitarra("FAC-2", "Facetado 2", "YAMAHA", 1_200_000, 1,
+				LocalDate.of(2024, 12, 1), TipoGuitarra.ELECTRICA, "Aliso"));
+		servicioInstrumento.agregarInstrumento(new Guitarra("FAC-3", "Facetado 3", "Fender", 2_500_000, 1,
+				LocalDate.of(2024, 12, 1), TipoGuitarra.ACUSTICA, "Cedro"));
+		servicioInstrumento.agregarInstrumento(new Teclado("FAC-4", "Facetado 4", "yamaha", 6_000_000, 1,
+				LocalDate.of(2024, 12, 1), 88, true, SensibilidadTeclado.ALTA));
+		servicioInstrumento.agregarInstrumento(new Teclado("FAC-5", "Facetado 5", "Roland", 999_999, 1,
+				LocalDate.of(2024, 12, 1), 61, true, SensibilidadTeclado.ALTA));
+
+		ResultadoFiltroDTO todos = servicioInstrumento.filtrarConFacetas(FiltroInstrumentoDTO.builder().nombre("facetado").build());
+		assertEquals(List.of("FAC-1", "FAC-2", "FAC-3", "FAC-4", "FAC-5"), codigos(todos.getResultados()));
+		FacetasDTO facetas = todos.getFacetas();
+		// Las marcas se agrupan sin distinguir mayúsculas de minúsculas.
+		assertEquals(Map.of("Fender", 1L, "Roland", 1L, "Yamaha", 3L), facetas.getMarcas());
+		assertEquals(Map.of(TipoGuitarra.ELECTRICA.getValor(), 2L, TipoGuitarra.ACUSTICA.getValor(), 1L), facetas.getTiposGuitarra());
+		assertEquals(Map.of(SensibilidadTeclado.ALTA.getValor(), 2L), facetas.getSensibilidades());
+		assertEquals(List.of("0 - 500000", "500000 - 1000000", "1000000 - 2500000", "2500000 - 5000000", "5000000+"),
+				List.copyOf(facetas.getRangosPrecio().keySet()));
+		assertEquals(List.of(1L, 1L, 1L, 1L, 1L), List.copyOf(facetas.getRangosPrecio().values()));
+
+		FacetasDTO yamaha = servicioInstrumento.filtrarConFacetas(FiltroInstrumentoDTO.builder().nombre("facetado").marca("yamaha")
+				.limitesPrecio(List.of(1_000_000.0)).build()).getFacetas();
+		assertEquals(Map.of("Yamaha", 3L), yamaha.getMarcas());
+		assertEquals(Map.of(TipoGuitarra.ELECTRICA.getValor(), 2L), yamaha.getTiposGuitarra());
+		assertEquals(Map.of(SensibilidadTeclado.ALTA.getValor(), 1L), yamaha.getSensibilidades());
+		assertEquals(Map.of("0 - 1000000", 1L, "1000000+", 2L), yamaha.getRangosPrecio());
+	}
+
+	@Test
+	void unAltaRechazadaNoModificaElInstrumentoRecibido() {
+		servicioInstrumento.agregarInstrumento(new Guitarra("DUP-1", "Original", "Fender", 1_000_000,
+				1, LocalDate.now(), TipoGuitarra.ELECTRICA, "Aliso"));
+		Guitarra duplicada = new Guitarra("DUP-1", "Duplicada", "Fender", 1_000_000,
+				1, LocalDate.now(), TipoGuitarra.ELECTRICA, "Aliso");
+		Funda funda = new Funda("F-DUP", "Estuche", 100_000, null);
+		duplicada.setFundas(List.of(funda));
+
+		assertThrows(IllegalStateException.class, () -> servicioInstrumento.agregarInstrumento(duplicada));
+		assertEquals(0, duplicada.getVersion());
+		assertNull(funda.getGuitarra());
+		assertEquals("Original", servicioInstrumento.buscarInstrumento("DUP-1").orElseThrow().getNombre());
+
+		assertThrows(IllegalArgumentException.class, () -> servicioInstrumento.editarInstrumento("DUP-1", null));
+	}
+
+	private List<String> busqueda(String consulta) {
+		return busqueda(consulta, false);
+	}
+
+	private List<String> busqueda(String consulta, boolean difuso) {
+		return servicioInstrumento.buscarTexto(consulta, 10, difuso).stream().map(c -> c.getInstrumento().getCodigo()).toList();
+	}
+
+	private static List<String> codigos(List<Instrumento> instrumentos) {
+		return instrumentos.stream().map(Instrumento::getCodigo).toList();
+	}
+
+}
@@ -0,0 +1,130 @@
+package com.unibague.poctiendainstrumentos.demo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "tienda.cambios.capacidad=16")
+class SuscripcionCambiosTests {
+
+	private static final String AUTORIZACION = "Basic "
+			+ Base64.getEncoder().encodeToString("admin:admin".getBytes(StandardCharsets.UTF_8));
+
+	@LocalServerPort
+	private int puerto;
+
+	private final HttpClient cliente = HttpClient.newHttpClient();
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	@Test
+	void reanudaDesdeElUltimoEventoRecibido() throws Exception {
+		long version = mapper.readTree(enviar("GET", "/instrumentos/delta?desde=0", null).body()).get("version").asLong();
+		for (int i = 1; i <= 3; i++) {
+			agregar("SSE-" + i);
+		}
+
+		// El cliente ya recibió el alta de SSE-1: sólo le llegan las dos siguientes, con su secuencia como id.
+		List<Map<String, String>> eventos = eventos(String.valueOf(version + 1), 2);
+		for (int i = 0; i < 2; i++) {
+			Map<String, String> evento = eventos.get(i);
+			assertEquals("cambio", evento.get("event"));
+			assertEquals(String.valueOf(version + 2 + i), evento.get("id"));
+			assertEquals("SSE-" + (i + 2), mapper.readTree(evento.get("data")).get("codigo").asText());
+		}
+
+		// Con los eventos ya descartados del buffer no hay desde dónde reanudar: resincronizar, sin id.
+		for (int i = 4; i <= 40; i++) {
+			agregar("SSE-" + i);
+		}
+		Map<String, String> resincronizar = eventos(String.valueOf(version + 1), 1).getFirst();
+		assertEquals("resincronizar", resincronizar.get("event"));
+		assertFalse(resincronizar.containsKey("id"));
+	}
+
+	@Test
+	void entregaLosCambiosPublicadosDuranteLaSuscripcion() throws Exception {
+		long version = mapper.readTree(enviar("GET", "/instrumentos/delta?desde=0", null).body()).get("version").asLong();
+		CompletableFuture<List<Map<String, String>>> recibidos = CompletableFuture.supplyAsync(() -> eventos(String.valueOf(version), 2));
+		Thread.sleep(500);
+		agregar("VIVO-1");
+		agregar("VIVO-2");
+
+		// El suscriptor esperaba sin eventos pendientes: lo despierta el aviso, mucho antes del latido de 15 s.
+		List<Map<String, String>> eventos = recibidos.get(5, TimeUnit.SECONDS);
+		for (int i = 0; i < 2; i++) {
+			assertEquals("VIVO-" + (i + 1), mapper.readTree(eventos.get(i).get("data")).get("codigo").asText());
+		}
+	}
+
+	/**
+	 * Se suscribe al canal de cambios y lee eventos hasta reunir la cantidad indicada; los comentarios de
+	 * latido se ignoran.
+	 */
+	private List<Map<String, String>> eventos(String ultimoEvento, int cantidad) {
+		return assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+			HttpRequest solicitud = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + "/instrumentos/cambios"))
+					.header("Authorization", AUTORIZACION)
+					.header("Accept", "text/event-stream")
+					.header("Last-Event-ID", ultimoEvento)
+					.build();
+			List<Map<String, String>> eventos = new ArrayList<>();
+			try (Stream<String> lineas = cliente.send(solicitud, HttpResponse.BodyHandlers.ofLines()).body()) {
+				Map<String, String> evento = new HashMap<>();
+				Iterator<String> iterador = lineas.iterator();
+				while (eventos.size() < cantidad && iterador.hasNext()) {
+					String linea = iterador.next();
+					if (linea.isEmpty()) {
+						if (evento.containsKey("event")) {
+							eventos.add(evento);
+						}
+						evento = new HashMap<>();
+					} else if (!linea.startsWith(":")) {
+						int separador = linea.indexOf(':');
+						evento.put(linea.substring(0, separador), linea.substring(separador + 1));
+					}
+				}
+			}
+			return eventos;
+		});
+	}
+
+	private void agregar(String codigo) throws Exception {
+		String guitarra = """
+				{"type":"guitarra","codigo":"%s","nombre":"Telecaster","marca":"Fender","precioBase":2500000,
+				 "stock":3,"fechaIngreso":"2024-05-01","tipo":"Eléctrica","materialCuerpo":"Fresno"}
+				""".formatted(codigo);
+		assertEquals(201, enviar("POST", "/instrumentos", guitarra).statusCode());
+	}
+
+	private HttpResponse<String> enviar(String metodo, String ruta, String cuerpo) throws Exception {
+		HttpRequest.Builder solicitud = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + ruta))
+				.header("Authorization", AUTORIZACION)
+				.method(metodo, cuerpo == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(cuerpo));
+		if (cuerpo != null) {
+			solicitud.header("Content-Type", "application/json");
+		}
+		return cliente.send(solicitud.build(), HttpResponse.BodyHandlers.ofString());
+	}
+}
@@ -0,0 +1,91 @@
+package com.unibague.poctiendainstrumentos.demo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class VersionesInstrumentoTests {
+
+	private static final String AUTORIZACION = "Basic "
+			+ Base64.getEncoder().encodeToString("admin:admin".getBytes(StandardCharsets.UTF_8));
+
+	@LocalServerPort
+	private int puerto;
+
+	private final HttpClient cliente = HttpClient.newHttpClient();
+
+	@Test
+	void lasModificacionesAvanzanLaVersionYRechazanUnIfMatchViejo() throws Exception {
+		assertEquals(201, enviar("POST", "/instrumentos", guitarra("VER-1", "Les Paul"), null).statusCode());
+		assertEquals("\"1\"", etag("VER-1"));
+
+		assertEquals(200, enviar("PUT", "/instrumentos/VER-1", guitarra("VER-1", "Les Paul Custom"), "\"1\"").statusCode());
+		assertEquals("\"2\"", etag("VER-1"));
+		assertEquals(412, enviar("PUT", "/instrumentos/VER-1", guitarra("VER-1", "Les Paul Studio"), "\"1\"").statusCode());
+
+		String fundas = """
+				[{"codigo":"F-1","nombre":"Estuche rígido","precio":450000}]
+				""";
+		assertEquals(201, enviar("POST", "/instrumentos/guitarras/VER-1/fundas", fundas, null).statusCode());
+		assertEquals("\"3\"", etag("VER-1"));
+
+		String funda = """
+				{"codigo":"F-1","nombre":"Estuche blando","precio":150000}
+				""";
+		assertEquals(412, enviar("PUT", "/instrumentos/guitarras/VER-1/fundas/F-1", funda, "\"2\"").statusCode());
+		assertEquals(200, enviar("PUT", "/instrumentos/guitarras/VER-1/fundas/F-1", funda, "W/\"3\"").statusCode());
+		assertEquals("\"4\"", etag("VER-1"));
+
+		assertEquals(412, enviar("DELETE", "/instrumentos/guitarras/VER-1/fundas/F-1", null, "\"3\"").statusCode());
+		assertEquals(200, enviar("DELETE", "/instrumentos/guitarras/VER-1/fundas/F-1", null, "\"4\"").statusCode());
+		assertEquals("\"5\"", etag("VER-1"));
+
+		assertEquals(412, enviar("DELETE", "/instrumentos/VER-1", null, "\"4\"").statusCode());
+		assertEquals(200, enviar("DELETE", "/instrumentos/VER-1", null, "\"5\"").statusCode());
+		assertEquals(404, enviar("GET", "/instrumentos/VER-1", null, null).statusCode());
+	}
+
+	@Test
+	void losCodigosQueCoincidenConUnaRutaSeRechazan() throws Exception {
+		assertEquals(400, enviar("POST", "/instrumentos", guitarra("Delta", "Les Paul"), null).statusCode());
+		assertEquals(201, enviar("POST", "/instrumentos", guitarra("VER-2", "Les Paul"), null).statusCode());
+		assertEquals(400, enviar("PUT", "/instrumentos/VER-2", guitarra("filtrar", "Les Paul"), null).statusCode());
+		assertEquals("\"1\"", etag("VER-2"));
+	}
+
+	private String etag(String codigo) throws Exception {
+		HttpResponse<String> respuesta = enviar("GET", "/instrumentos/" + codigo, null, null);
+		assertEquals(200, respuesta.statusCode());
+		return respuesta.headers().firstValue("ETag").orElseThrow();
+	}
+
+	private static String guitarra(String codigo, String nombre) {
+		return """
+				{"type":"guitarra","codigo":"%s","nombre":"%s","marca":"Gibson","precioBase":9500000,
+				 "stock":2,"fechaIngreso":"2024-05-01","tipo":"Eléctrica","materialCuerpo":"Caoba"}
+				""".formatted(codigo, nombre);
+	}
+
+	private HttpResponse<String> enviar(String metodo, String ruta, String cuerpo, String ifMatch) throws Exception {
+		HttpRequest.Builder solicitud = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + ruta))
+				.header("Authorization", AUTORIZACION)
+				.method(metodo, cuerpo == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(cuerpo));
+		if (cuerpo != null) {
+			solicitud.header("Content-Type", "application/json");
+		}
+		if (ifMatch != null) {
+			solicitud.header("If-Match", ifMatch);
+		}
+		return cliente.send(solicitud.build(), HttpResponse.BodyHandlers.ofString());
+	}
+}
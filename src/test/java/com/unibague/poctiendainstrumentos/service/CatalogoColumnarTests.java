@@ -0,0 +1,59 @@
+package com.unibague.poctiendainstrumentos.service;
+
+import com.unibague.poctiendainstrumentos.dto.FiltroInstrumentoDTO;
+import com.unibague.poctiendainstrumentos.model.Guitarra;
+import com.unibague.poctiendainstrumentos.model.Instrumento;
+import com.unibague.poctiendainstrumentos.model.enums.TipoGuitarra;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CatalogoColumnarTests {
+
+	private static final List<FiltroInstrumentoDTO> FILTROS = List.of(
+			FiltroInstrumentoDTO.builder().marca("marca 3").build(),
+			FiltroInstrumentoDTO.builder().marca("Nueva").build(),
+			FiltroInstrumentoDTO.builder().stockMin(5).stockMax(7).build(),
+			FiltroInstrumentoDTO.builder().precioMin(1_500.0).tipoGuitarra(TipoGuitarra.ACUSTICA).build());
+
+	@Test
+	void laCopiaActualizadaFiltraIgualQueUnaNueva() {
+		ListaSegmentada<Instrumento> lista = new ListaSegmentada<>();
+		for (int i = 0; i < 3_000; i++) {
+			lista.add(guitarra(i, "Marca " + (i % 7), i % 10));
+		}
+		List<Instrumento> vista = lista.instantanea();
+		CatalogoColumnar copia = new CatalogoColumnar(vista, 0);
+
+		// Un cambio de stock, un cambio de marca, un alta y una baja, cada uno con su propia instantánea.
+		lista.set(10, guitarra(10, "Marca 3", 6));
+		copia = comprobar(copia, lista.instantanea(), 1);
+		lista.set(2_500, guitarra(2_500, "Nueva", 0));
+		copia = comprobar(copia, lista.instantanea(), 2);
+		lista.add(guitarra(3_000, "Nueva", 5));
+		copia = comprobar(copia, lista.instantanea(), 3);
+		lista.remove(1_500);
+		copia = comprobar(copia, lista.instantanea(), 4);
+		for (int i = 0; i < 4_000; i++) {
+			lista.set(i % lista.size(), guitarra(i, "Otra " + i, i % 10));
+			copia = comprobar(copia, lista.instantanea(), 5 + i);
+		}
+	}
+
+	private static CatalogoColumnar comprobar(CatalogoColumnar anterior, List<Instrumento> vista, long version) {
+		CatalogoColumnar actualizada = anterior.actualizar(vista, version);
+		CatalogoColumnar nueva = new CatalogoColumnar(vista, version);
+		for (FiltroInstrumentoDTO filtro : FILTROS) {
+			assertEquals(nueva.filtrar(filtro), actualizada.filtrar(filtro));
+		}
+		return actualizada;
+	}
+
+	private static Guitarra guitarra(int i, String marca, int stock) {
+		return new Guitarra("COL-" + i, "Modelo " + i, marca, 1_000 + i, stock, LocalDate.of(2024, 1, 1),
+				i % 2 == 0 ? TipoGuitarra.ACUSTICA : TipoGuitarra.ELECTRICA, "Aliso");
+	}
+}
@@ -0,0 +1,45 @@
+package com.unibague.poctiendainstrumentos.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DiccionarioCadenasTests {
+
+	@Test
+	void valoresIgualesCompartenInstancia() {
+		DiccionarioCadenas diccionario = new DiccionarioCadenas(10);
+		String primera = new String("Fender");
+		String segunda = new String("Fender");
+
+		assertSame(primera, diccionario.canonica(primera));
+		assertSame(primera, diccionario.canonica(segunda));
+		assertEquals(diccionario.id(segunda), diccionario.id(primera));
+		assertSame(primera, diccionario.valor(diccionario.id("Fender")));
+		assertNull(diccionario.canonica(null));
+		assertEquals(-1, diccionario.id(null));
+	}
+
+	@Test
+	void llenoNoComparteNiRegistraValoresNuevos() {
+		DiccionarioCadenas diccionario = new DiccionarioCadenas(20);
+		for (int i = 0; i < 20; i++) {
+			assertEquals(i, diccionario.id("Marca " + i));
+		}
+
+		String nueva = new String("Otra");
+		assertSame(nueva, diccionario.canonica(nueva));
+		assertNotSame(nueva, diccionario.canonica(new String("Otra")));
+		assertThrows(IllegalStateException.class, () -> diccionario.id("Otra"));
+		assertEquals(20, diccionario.tamano());
+
+		// Los valores ya registrados se siguen compartiendo.
+		assertSame(diccionario.valor(3), diccionario.canonica(new String("Marca 3")));
+		assertThrows(IllegalArgumentException.class, () -> new DiccionarioCadenas(-1));
+		assertSame(nueva, new DiccionarioCadenas(0).canonica(nueva));
+	}
+}
@@ -0,0 +1,64 @@
+package com.unibague.poctiendainstrumentos.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EscritorUnicoTests {
+
+	@Test
+	void relanzaLaExcepcionDeLaModificacion() {
+		EscritorUnico escritor = new EscritorUnico(8, () -> {});
+		IllegalStateException error = new IllegalStateException("Ya existe");
+
+		assertSame(error, assertThrows(IllegalStateException.class, () -> escritor.ejecutar(() -> { throw error; })));
+		assertEquals(3, escritor.ejecutar(() -> 3));
+		assertTrue(escritor.ejecutar(escritor::esHiloEscritor));
+	}
+
+	@Test
+	void unaPublicacionFallidaFallaTodoElLote() throws Exception {
+		AtomicBoolean fallar = new AtomicBoolean(true);
+		AtomicInteger publicaciones = new AtomicInteger();
+		IllegalStateException errorPublicacion = new IllegalStateException("Publicación fallida");
+		EscritorUnico escritor = new EscritorUnico(16, () -> {
+			publicaciones.incrementAndGet();
+			if (fallar.getAndSet(false)) {
+				throw errorPublicacion;
+			}
+		});
+
+		// La primera modificación detiene al escritor hasta que las demás estén encoladas: van en el mismo lote.
+		CountDownLatch encoladas = new CountDownLatch(1);
+		CompletableFuture<Integer> primera = escritor.enviar(() -> {
+			try {
+				encoladas.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return 0;
+		});
+		List<CompletableFuture<Integer>> resto = List.of(escritor.enviar(() -> 1), escritor.enviar(() -> 2), escritor.enviar(() -> 3));
+		encoladas.countDown();
+
+		for (CompletableFuture<Integer> futuro : List.of(primera, resto.get(0), resto.get(1), resto.get(2))) {
+			CompletionException e = assertThrows(CompletionException.class, futuro::join);
+			assertSame(errorPublicacion, e.getCause());
+		}
+		assertEquals(1, publicaciones.get());
+
+		// El hilo escritor sigue atendiendo la cola.
+		assertEquals(4, escritor.ejecutar(() -> 4));
+		assertEquals(2, publicaciones.get());
+	}
+}